@@ -0,0 +1,192 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Open addressing hash map from long keys to long values without boxing. Reads never block, writes are serialized.
+ * A value of 0 marks a missing mapping, so 0 cannot be stored as value.
+ * @author Philipp Backes
+ */
+final class ConcurrentLongLongMap {
+
+  private static final long FREE = Long.MIN_VALUE;
+  private static final int MIN_CAPACITY = 16;
+
+  // Keys at even and values at odd positions. Values are published before their keys.
+  private volatile AtomicLongArray table;
+  // Number of used slots including removed mappings, these are only dropped when the table grows
+  private int usedSlots;
+
+  /**
+   * Creates a new and empty map.
+   */
+  ConcurrentLongLongMap() {
+    table = newTable(MIN_CAPACITY);
+  }
+
+  /**
+   * Creates a copy of the given map.
+   * @param copy Map to copy.
+   */
+  ConcurrentLongLongMap(ConcurrentLongLongMap copy) {
+    synchronized (copy) {
+      AtomicLongArray slots = newTable(copy.table.length() / 2);
+      forEach(copy.table, (key, value) -> insert(slots, key, value));
+      table = slots;
+    }
+  }
+
+  /**
+   * Returns the value for the given key.
+   * @param key Key, must not be {@link Long#MIN_VALUE}.
+   * @return The value or 0 if the key is not mapped.
+   */
+  long get(long key) {
+    AtomicLongArray slots = table;
+    int mask = slots.length() / 2 - 1;
+    for (int i = spread(key) & mask;; i = (i + 1) & mask) {
+      long current = slots.getAcquire(2 * i);
+      if (current == key) {
+        return slots.getAcquire(2 * i + 1);
+      }
+      if (current == FREE) {
+        return 0;
+      }
+    }
+  }
+
+  /**
+   * Maps the given key to the given value.
+   * @param key Key, must not be {@link Long#MIN_VALUE}.
+   * @param value Value, must not be 0.
+   */
+  synchronized void put(long key, long value) {
+    if (key == FREE || value == 0) {
+      throw new IllegalArgumentException("Key " + key + " or value " + value + " is not supported.");
+    }
+    if (2 * (usedSlots + 1) > table.length() / 2) {
+      resize();
+    }
+    insert(table, key, value);
+  }
+
+  /**
+   * Removes the mapping of the given key if it is mapped to the given value.
+   * @param key Key of the mapping.
+   * @param value Expected value of the mapping.
+   * @return True if the mapping was removed, otherwise false.
+   */
+  synchronized boolean remove(long key, long value) {
+    AtomicLongArray slots = table;
+    int mask = slots.length() / 2 - 1;
+    for (int i = spread(key) & mask;; i = (i + 1) & mask) {
+      long current = slots.get(2 * i);
+      if (current == key) {
+        if (slots.get(2 * i + 1) != value) {
+          return false;
+        }
+        slots.setRelease(2 * i + 1, 0);
+        return true;
+      }
+      if (current == FREE) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Passes all mappings to the given consumer. Mappings changed during the iteration may or may not be passed.
+   * @param consumer Consumer receiving the key and value of each mapping.
+   */
+  void forEach(LongBinaryConsumer consumer) {
+    forEach(table, consumer);
+  }
+
+  /**
+   * Removes all mappings.
+   */
+  synchronized void clear() {
+    table = newTable(MIN_CAPACITY);
+    usedSlots = 0;
+  }
+
+  private void insert(AtomicLongArray slots, long key, long value) {
+    int mask = slots.length() / 2 - 1;
+    for (int i = spread(key) & mask;; i = (i + 1) & mask) {
+      long current = slots.get(2 * i);
+      if (current == key) {
+        slots.setRelease(2 * i + 1, value);
+        return;
+      }
+      if (current == FREE) {
+        slots.setRelease(2 * i + 1, value);
+        slots.setRelease(2 * i, key);
+        usedSlots++;
+        return;
+      }
+    }
+  }
+
+  // Rehashes all mappings into a new table, readers keep using the old one until it is published
+  private void resize() {
+    AtomicLongArray old = table;
+    int capacity = old.length() / 2;
+    int live = 0;
+    for (int i = 0; i < capacity; i++) {
+      if (old.get(2 * i) != FREE && old.get(2 * i + 1) != 0) {
+        live++;
+      }
+    }
+    while (4 * (live + 1) > capacity) {
+      capacity <<= 1;
+    }
+    AtomicLongArray slots = newTable(capacity);
+    usedSlots = 0;
+    forEach(old, (key, value) -> insert(slots, key, value));
+    table = slots;
+  }
+
+  private void forEach(AtomicLongArray slots, LongBinaryConsumer consumer) {
+    for (int i = 0; i < slots.length(); i += 2) {
+      long key = slots.get(i);
+      long value = slots.get(i + 1);
+      if (key != FREE && value != 0) {
+        consumer.accept(key, value);
+      }
+    }
+  }
+
+  private static AtomicLongArray newTable(int capacity) {
+    AtomicLongArray slots = new AtomicLongArray(2 * capacity);
+    for (int i = 0; i < slots.length(); i += 2) {
+      slots.set(i, FREE);
+    }
+    return slots;
+  }
+
+  private static int spread(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  /**
+   * Consumer of a key and a value.
+   */
+  @FunctionalInterface
+  interface LongBinaryConsumer {
+    void accept(long key, long value);
+  }
+}
@@ -15,9 +15,9 @@ package image;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -32,22 +32,39 @@ import utilities.datamodel.ImageSize;
  */
 public class ImageDB {
 
-  // Internal storage container to allow mapping product IDs and image names (for
-  // non-generated images) to images
-  // with different sizes
-  private HashMap<Long, Map<Long, ImageSize>> products = new HashMap<>();
-  private HashMap<String, Map<Long, ImageSize>> webui = new HashMap<>();
-  private HashMap<Long, ImageSize> sizes = new HashMap<>();
+  // Number of low bits of an index key holding the size code
+  private static final int SIZE_BITS = 16;
+  private static final long MAX_KEY_ID = (1L << (Long.SIZE - 1 - SIZE_BITS)) - 1;
+
+  // Internal storage containers directly mapping the product ID or image name (for
+  // non-generated images) combined with the size code to the image ID. Image names
+  // are replaced by numeric IDs first.
+  // Compact codes of the image sizes in use
+  private final ImageSizeCodes sizeCodes;
+  private final ConcurrentLongLongMap products;
+  private final ConcurrentLongLongMap webui;
+  private final ConcurrentHashMap<String, Long> names;
+  private final AtomicLong nextNameID;
+  // Image ID to size code + 1 and image ID to index key, needed to remove mappings.
+  // Keys of product images are stored as key + 1, keys of web images as ~key.
+  private final ConcurrentLongLongMap sizes;
+  private final ConcurrentLongLongMap keys;
   private static final Logger LOG = LogManager.getLogger(ImageDB.class);
 
-  // Locking
-  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  // Locking, only writers lock, readers never block
+  private final ReentrantLock lock = new ReentrantLock();
 
   /**
    * Standard constructor creating a new and empty image database.
    */
   public ImageDB() {
-
+    sizeCodes = new ImageSizeCodes(1 << SIZE_BITS);
+    products = new ConcurrentLongLongMap();
+    webui = new ConcurrentLongLongMap();
+    names = new ConcurrentHashMap<>();
+    nextNameID = new AtomicLong(1);
+    sizes = new ConcurrentLongLongMap();
+    keys = new ConcurrentLongLongMap();
   }
 
   /**
@@ -64,9 +81,18 @@ public class ImageDB {
       throw new NullPointerException("The supplied image database to copy is null.");
     }
 
-    this.products = new HashMap<>(copy.products);
-    this.webui = new HashMap<>(copy.webui);
-    this.sizes = new HashMap<>(copy.sizes);
+    copy.lock.lock();
+    try {
+      this.sizeCodes = new ImageSizeCodes(copy.sizeCodes);
+      this.products = new ConcurrentLongLongMap(copy.products);
+      this.webui = new ConcurrentLongLongMap(copy.webui);
+      this.names = new ConcurrentHashMap<>(copy.names);
+      this.nextNameID = new AtomicLong(copy.nextNameID.get());
+      this.sizes = new ConcurrentLongLongMap(copy.sizes);
+      this.keys = new ConcurrentLongLongMap(copy.keys);
+    } finally {
+      copy.lock.unlock();
+    }
   }
 
   /**
@@ -115,7 +141,7 @@ public class ImageDB {
    * @return True if the image was found in the correct size, otherwise false
    */
   public boolean hasImageID(String name, ImageSize imageSize) {
-    return findImageID(name, imageSize, webui) != 0;
+    return getImageID(name, imageSize) != 0;
   }
 
   /**
@@ -168,25 +194,24 @@ public class ImageDB {
    * @return The image ID if the image with the size was found, otherwise 0
    */
   public long getImageID(String name, ImageSize imageSize) {
-    return findImageID(name, imageSize, webui);
+    Long nameID = name == null ? null : names.get(name);
+    if (nameID == null) {
+      return 0;
+    }
+    return findImageID(nameID, imageSize, webui);
   }
 
   // Does actually all the heavy lifting for the getImageID methods
-  private <K> long findImageID(K key, ImageSize imageSize, HashMap<K, Map<Long, ImageSize>> db) {
-    Optional<Map.Entry<Long, ImageSize>> img = null;
-    lock.readLock().lock();
-    try {
-      img = db.getOrDefault(key, new HashMap<>()).entrySet().stream()
-          .filter(t -> t.getValue().equals(imageSize)).findFirst();
-    } finally {
-      lock.readLock().unlock();
-    }
-
-    if (img.isPresent()) {
-      return img.get().getKey();
+  private long findImageID(long keyID, ImageSize imageSize, ConcurrentLongLongMap db) {
+    int sizeCode = sizeCodes.codeOf(imageSize);
+    if (sizeCode < 0 || keyID < 0 || keyID > MAX_KEY_ID) {
+      return 0;
     }
+    return db.get(indexKey(keyID, sizeCode));
+  }
 
-    return 0;
+  private static long indexKey(long keyID, int sizeCode) {
+    return (keyID << SIZE_BITS) | sizeCode;
   }
 
   /**
@@ -197,14 +222,11 @@ public class ImageDB {
    * @return The image size or null if the ID could not be found
    */
   public ImageSize getImageSize(long imageID) {
-    ImageSize result = null;
-    lock.readLock().lock();
-    try {
-      result = sizes.getOrDefault(imageID, null);
-    } finally {
-      lock.readLock().unlock();
+    long sizeCode = sizes.get(imageID);
+    if (sizeCode == 0) {
+      return null;
     }
-    return result;
+    return sizeCodes.sizeOf((int) sizeCode - 1);
   }
 
   /**
@@ -245,7 +267,19 @@ public class ImageDB {
    *          The size of the image
    */
   public void setImageMapping(long productID, long imageID, ImageSize imageSize) {
-    map(productID, imageID, imageSize, products);
+    if (productID < 0 || productID > MAX_KEY_ID) {
+      LOG.error("The supplied product ID is out of range.");
+      throw new IllegalArgumentException("The supplied product ID is out of range.");
+    }
+
+    lock.lock();
+    try {
+      int sizeCode = acquireSizeCode(imageSize);
+      long key = indexKey(productID, sizeCode);
+      map(imageID, sizeCode, key, key + 1, products);
+    } finally {
+      lock.unlock();
+    }
   }
 
   /**
@@ -266,58 +300,117 @@ public class ImageDB {
       throw new NullPointerException("The supplied image name is null.");
     }
 
-    map(name, imageID, imageSize, webui);
+    lock.lock();
+    try {
+      int sizeCode = acquireSizeCode(imageSize);
+      Long nameID = names.computeIfAbsent(name, n -> nextNameID.getAndIncrement());
+      long key = indexKey(nameID, sizeCode);
+      map(imageID, sizeCode, key, ~key, webui);
+    } finally {
+      lock.unlock();
+    }
   }
 
-  // Actually creates the image mapping
-  private <K> void map(K key, long imageID, ImageSize imageSize,
-      HashMap<K, Map<Long, ImageSize>> db) {
+  // Returns the code of the given image size and counts the new mapping, assigning a code to unused sizes. Fails if
+  // all codes are used by other sizes. Requires the lock.
+  private int acquireSizeCode(ImageSize imageSize) {
     if (imageSize == null) {
       LOG.error("Supplied image size is null.");
       throw new NullPointerException("Supplied image size is null.");
     }
 
-    // In case the product ID or image name is not known, we create a new map to
-    // store the mapping
-    Map<Long, ImageSize> images = new HashMap<>();
+    try {
+      return sizeCodes.acquire(imageSize);
+    } catch (IllegalArgumentException e) {
+      LOG.error(e.getMessage());
+      throw e;
+    }
+  }
+
+  // Actually creates the image mapping, the size code is already acquired for it. Requires the lock.
+  private void map(long imageID, int sizeCode, long key, long storedKey, ConcurrentLongLongMap db) {
+    unmap(imageID);
+    // The key is remapped, so the image it pointed to is not mapped anymore
+    long previousImageID = db.get(key);
+    if (previousImageID != 0) {
+      unmap(previousImageID);
+    }
+    db.put(key, imageID);
+    keys.put(imageID, storedKey);
+    sizes.put(imageID, sizeCode + 1);
+  }
+
+  /**
+   * Passes every mapping of this database to the given consumer.
+   * 
+   * @param consumer
+   *          Consumer receiving the image key, image ID and image size of each mapping
+   */
+  public void forEachMapping(ImageMappingConsumer consumer) {
+    if (consumer == null) {
+      LOG.error("The supplied mapping consumer is null.");
+      throw new NullPointerException("The supplied mapping consumer is null.");
+    }
 
-    lock.writeLock().lock();
+    lock.lock();
     try {
-      if (db.containsKey(key)) {
-        images = db.get(key);
-      }
-
-      // Add the new mapping to the internal map and put it back into the correct
-      // database (map)
-      images.put(imageID, imageSize);
-      db.put(key, images);
-      sizes.put(imageID, imageSize);
+      Map<Long, String> nameOf = new HashMap<>();
+      names.forEach((name, nameID) -> nameOf.put(nameID, name));
+      keys.forEach((imageID, storedKey) -> {
+        ImageSize imageSize = getImageSize(imageID);
+        if (storedKey > 0) {
+          consumer.accept(new ImageDBKey((storedKey - 1) >>> SIZE_BITS), imageID, imageSize);
+        } else {
+          consumer.accept(new ImageDBKey(nameOf.get(~storedKey >>> SIZE_BITS)), imageID, imageSize);
+        }
+      });
     } finally {
-      lock.writeLock().unlock();
+      lock.unlock();
     }
   }
 
+  /**
+   * Consumer of the mappings of an image database.
+   */
+  @FunctionalInterface
+  public interface ImageMappingConsumer {
+
+    /**
+     * Receives a single mapping.
+     * @param imageKey Image key, either product ID or image name
+     * @param imageID The unique image ID
+     * @param imageSize The size of the image
+     */
+    void accept(ImageDBKey imageKey, long imageID, ImageSize imageSize);
+  }
+
   /**
    * Removes an image id from the database. This will not delete an image but just remove all connections between a 
    * product or WebUI id and the given image id.
    * @param imageID Image ID to remove from this database.
    */
   public void removeImageMapping(long imageID) {
-    lock.writeLock().lock();
+    lock.lock();
     try {
-      unmap(imageID, webui);
-      unmap(imageID, products);
-      sizes.remove(imageID);
+      unmap(imageID);
     } finally {
-      lock.writeLock().unlock();
+      lock.unlock();
     }
   }
 
-  private <K> void unmap(long imageID, HashMap<K, Map<Long, ImageSize>> db) {
-    Map.Entry<String, Map<Long, ImageSize>> img = webui.entrySet().stream()
-        .filter(entry -> entry.getValue().containsKey(imageID)).findFirst().orElse(null);
-    if (img != null) {
-      webui.remove(img.getKey());
+  // Removes the mapping of the given image ID. Requires the lock.
+  private void unmap(long imageID) {
+    long storedKey = keys.get(imageID);
+    if (storedKey > 0) {
+      products.remove(storedKey - 1, imageID);
+    } else if (storedKey < 0) {
+      webui.remove(~storedKey, imageID);
+    }
+    keys.remove(imageID, storedKey);
+    long sizeCode = sizes.get(imageID);
+    if (sizeCode != 0) {
+      sizes.remove(imageID, sizeCode);
+      sizeCodes.release((int) sizeCode - 1);
     }
   }
 }
@@ -13,6 +13,8 @@
  */
 package image;
 
+import java.util.Objects;
+
 /**
  * Entry for an image database ({@link image.ImageDB}). 
  * @author Norbert Schmitt
@@ -67,4 +69,22 @@ public class ImageDBKey {
     return webuiName;
   }
 
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ImageDBKey)) {
+      return false;
+    }
+    ImageDBKey other = (ImageDBKey) obj;
+    return isProductKey == other.isProductKey && productID == other.productID
+        && Objects.equals(webuiName, other.webuiName);
+  }
+
+  @Override
+  public int hashCode() {
+    return isProductKey ? Long.hashCode(productID) : Objects.hashCode(webuiName);
+  }
+
 }
@@ -14,17 +14,42 @@
 package image;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.imageio.ImageIO;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.base64.Base64;
+import io.netty.handler.codec.base64.Base64Dialect;
 import utilities.datamodel.ImageSize;
 import utilities.enumeration.ImageSizePreset;
+import image.cache.IDataCache;
 import image.setup.ImageIDFactory;
 import image.storage.IDataStorage;
 
+import static utilities.rest.api.API.IMAGE_ENDPOINT;
+import static utilities.rest.api.API.IMAGE_RAW_PATH;
+
 /**
  * The actual image provider class containing the mapping between products,
  * web interface static images, the cache and underlying storage.
@@ -43,12 +68,64 @@ public enum ImageProvider {
    */
   public static final String IMAGE_NOT_FOUND = "notFound";
 
+  /**
+   * Content type of images served as plain image files.
+   */
+  public static final String IMAGE_CONTENT_TYPE = "image/" + StoreImage.STORE_IMAGE_FORMAT;
+
+  /**
+   * Cache control for images served as plain image files. Images never change for a given image ID.
+   */
+  public static final String IMAGE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+  /**
+   * Maximum number of scaling jobs waiting for a free scaling thread. Further requests for unscaled images are served
+   * without an image until the backlog is processed.
+   */
+  public static final int SCALING_QUEUE_CAPACITY = 256;
+
+  /**
+   * Maximum time in seconds a request waits for the scaled version of an image.
+   */
+  public static final long SCALING_TIMEOUT_SECONDS = 10;
+
+  /**
+   * Maximum number of decoded standard size images kept for scaling them to further sizes.
+   */
+  public static final int SCALING_SOURCE_CACHE_SIZE = 64;
+
   private ImageDB db;
   private IDataStorage<StoreImage> storage;
+  // Image IDs are only unique within one run, so entity tags also carry the start time of the service
+  private final String eTagPrefix = "\"" + Long.toString(System.currentTimeMillis(), Character.MAX_RADIX) + "-";
+  // Scaling jobs in progress, concurrent requests for the same image and size wait for the same job
+  private final Map<ScalingKey, CompletableFuture<StoreImage>> scalings = new ConcurrentHashMap<>();
+  // Bounded number of threads and queued jobs, so a burst of new image sizes cannot occupy every request handler
+  private final ThreadPoolExecutor scalingExecutor = createScalingExecutor();
+  // Decoded standard size images by image ID, products are usually requested in several sizes in a row
+  private final Map<Long, BufferedImage> scalingSources = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+      return size() > SCALING_SOURCE_CACHE_SIZE;
+    }
+  };
   private static final Logger LOG = LogManager.getLogger(ImageProvider.class);
 
   private ImageProvider() {}
 
+  private static ThreadPoolExecutor createScalingExecutor() {
+    int threads = Runtime.getRuntime().availableProcessors();
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(SCALING_QUEUE_CAPACITY), runnable -> {
+          Thread thread = new Thread(runnable, "image-scaling-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   /**
    * Assign the image provider the mapping between products and web interface static images.
    * @param imgDB Image database, mapping between products and web interface static images.
@@ -67,6 +144,10 @@ public enum ImageProvider {
   public void setStorage(IDataStorage<StoreImage> imgStorage) {
     if (imgStorage != null) {
         storage = imgStorage;
+        // Image IDs start over after the images have been deleted
+        synchronized (scalingSources) {
+          scalingSources.clear();
+        }
     }
   }
 
@@ -110,15 +191,317 @@ public enum ImageProvider {
     return result;
   }
 
+  /**
+   * Searches and returns the requested product images in the requested sizes as data URIs. Behaves like
+   * {@link #getProductImages(Map)}, but returns read-only views of the stored image data instead of copying it into
+   * strings. The caller is responsible for releasing the returned buffers.
+   * @param images Map of product IDs and image sizes to search for.
+   * @return Map between product IDs and the image data URIs.
+   */
+  public Map<Long, ByteBuf> getProductImageData(Map<Long, ImageSize> images) {
+    Map<Long, ByteBuf> result = new LinkedHashMap<>();
+    for (Map.Entry<Long, ImageSize> entry : images.entrySet()) {
+      ByteBuf imgData = getDataUriFor(new ImageDBKey(entry.getKey()), entry.getValue());
+      if (imgData == null) {
+        continue;
+      }
+      result.put(entry.getKey(), imgData);
+    }
+    return result;
+  }
+
+  /**
+   * Searches and returns the requested web interface images in the requested sizes as data URIs. Behaves like
+   * {@link #getWebImages(Map)}, but returns read-only views of the stored image data instead of copying it into
+   * strings. The caller is responsible for releasing the returned buffers.
+   * @param images Map of web interface image names and image sizes to search for.
+   * @return Map between web interface image names and the image data URIs.
+   */
+  public Map<String, ByteBuf> getWebImageData(Map<String, ImageSize> images) {
+    Map<String, ByteBuf> result = new LinkedHashMap<>();
+    for (Map.Entry<String, ImageSize> entry : images.entrySet()) {
+      ByteBuf imgData = getDataUriFor(new ImageDBKey(entry.getKey()), entry.getValue());
+      if (imgData == null) {
+        continue;
+      }
+      result.put(entry.getKey(), imgData);
+    }
+    return result;
+  }
+
+  /**
+   * Searches the requested product images in the requested sizes like {@link #getProductImages(Map)}, but returns the
+   * URLs of the plain image files instead of the image data.
+   * @param images Map of product IDs and image sizes to search for.
+   * @return Map between product IDs and image URLs.
+   */
+  public Map<Long, String> getProductImageUrls(Map<Long, ImageSize> images) {
+    Map<Long, String> result = new HashMap<>();
+    for (Map.Entry<Long, ImageSize> entry : images.entrySet()) {
+      long imgID = getImageIDFor(new ImageDBKey(entry.getKey()), entry.getValue());
+      if (imgID == 0) {
+        continue;
+      }
+      result.put(entry.getKey(), getImageUrl(imgID));
+    }
+    return result;
+  }
+
+  /**
+   * Searches the requested web interface images in the requested sizes like {@link #getWebImages(Map)}, but returns
+   * the URLs of the plain image files instead of the image data.
+   * @param images Map of web interface image names and image sizes to search for.
+   * @return Map between web interface image names and image URLs.
+   */
+  public Map<String, String> getWebImageUrls(Map<String, ImageSize> images) {
+    Map<String, String> result = new HashMap<>();
+    for (Map.Entry<String, ImageSize> entry : images.entrySet()) {
+      long imgID = getImageIDFor(new ImageDBKey(entry.getKey()), entry.getValue());
+      if (imgID == 0) {
+        continue;
+      }
+      result.put(entry.getKey(), getImageUrl(imgID));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the URL of the plain image file with the given image ID.
+   * @param imageID Image ID.
+   * @return URL relative to the gateway.
+   */
+  public String getImageUrl(long imageID) {
+    return IMAGE_ENDPOINT + IMAGE_RAW_PATH + imageID;
+  }
+
+  /**
+   * Returns the entity tag of the image with the given image ID.
+   * @param imageID Image ID.
+   * @return Quoted entity tag.
+   */
+  public String getImageETag(long imageID) {
+    return eTagPrefix + imageID + "\"";
+  }
+
+  /**
+   * Returns the file holding the image with the given image ID as plain image file, if it is stored on disk.
+   * @param imageID Image ID.
+   * @return Path of the image file or null if the image is not stored as file.
+   */
+  public Path getImageFile(long imageID) {
+    if (storage == null) {
+      return null;
+    }
+    return storage.getDataFile(imageID);
+  }
+
+  /**
+   * Returns the image with the given image ID as plain image file content in a direct buffer. The caller is
+   * responsible for releasing the returned buffer.
+   * @param imageID Image ID.
+   * @return Image file content or null if the image is unknown.
+   */
+  public ByteBuf getImageData(long imageID) {
+    if (storage == null) {
+      LOG.warn("Image provider not correctly initialized. Missing storage.");
+      return null;
+    }
+    ByteBuf dataUri = null;
+    if (storage instanceof IDataCache) {
+      dataUri = ((IDataCache<?>) storage).loadBuffer(imageID);
+    }
+    // Images that are not cached are read from their file instead of being encoded and decoded again
+    Path imgFile = storage.getDataFile(imageID);
+    if (dataUri == null && imgFile != null
+        && !(storage instanceof IDataCache && ((IDataCache<?>) storage).dataIsInCache(imageID))) {
+      ByteBuf imgData = readImageFile(imgFile);
+      if (imgData != null) {
+        return imgData;
+      }
+    }
+    if (dataUri == null) {
+      StoreImage storedImg = storage.loadData(imageID);
+      if (storedImg == null) {
+        return null;
+      }
+      dataUri = storedImg.getDataUri();
+    }
+    // Decode the base64 data behind the data URI prefix
+    try {
+      int offset = dataUri.readerIndex() + StoreImage.STORE_IMAGE_DATA_STRING.length();
+      return Base64.decode(dataUri, offset, dataUri.writerIndex() - offset, Base64Dialect.STANDARD,
+          PooledByteBufAllocator.DEFAULT);
+    } finally {
+      dataUri.release();
+    }
+  }
+
+  private ByteBuf readImageFile(Path imgFile) {
+    try (FileChannel channel = FileChannel.open(imgFile, StandardOpenOption.READ)) {
+      int length = (int) channel.size();
+      ByteBuf imgData = PooledByteBufAllocator.DEFAULT.directBuffer(length, length);
+      try {
+        while (imgData.isWritable()) {
+          if (imgData.writeBytes(channel, imgData.writerIndex(), imgData.writableBytes()) < 0) {
+            break;
+          }
+        }
+      } catch (IOException ioException) {
+        imgData.release();
+        throw ioException;
+      }
+      return imgData;
+    } catch (IOException ioException) {
+      LOG.warn("An IOException occured while reading the image file " + imgFile.toAbsolutePath() + ".",
+          ioException);
+      return null;
+    }
+  }
+
   private StoreImage scaleAndRegisterImg(BufferedImage image, ImageDBKey key, ImageSize size) {
     StoreImage storedImg = new StoreImage(ImageIDFactory.ID.getNextImageID(),
         ImageScaler.scale(image, size), size);
-    db.setImageMapping(key, storedImg.getId(), size);
+    // Publish the mapping only after the image is saved, so no request resolves an ID without data
     storage.saveData(storedImg);
+    try {
+      db.setImageMapping(key, storedImg.getId(), size);
+    } catch (IllegalArgumentException e) {
+      // Too many different sizes are in use, the image is served without being registered
+      LOG.warn("The scaled image of size " + size + " is not registered: " + e.getMessage());
+    }
     return storedImg;
   }
 
+  // Scales the standard size image of the given key on the scaling executor. Only one job per key and size runs at a
+  // time, all other requests wait for its result.
+  private StoreImage getScaledImage(ImageDBKey key, ImageSize size) {
+    ScalingKey scalingKey = new ScalingKey(key, size);
+    CompletableFuture<StoreImage> scaling = scalings.get(scalingKey);
+    if (scaling == null) {
+      CompletableFuture<StoreImage> newScaling = new CompletableFuture<>();
+      scaling = scalings.putIfAbsent(scalingKey, newScaling);
+      if (scaling == null) {
+        scaling = newScaling;
+        try {
+          scalingExecutor.execute(() -> scale(scalingKey, newScaling));
+        } catch (RejectedExecutionException rejectedException) {
+          scalings.remove(scalingKey, newScaling);
+          newScaling.completeExceptionally(rejectedException);
+        }
+      }
+    }
+
+    try {
+      return scaling.get(SCALING_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException executionException) {
+      LOG.warn("Scaling image " + key.getProductID() + " " + key.getWebUIName() + " to size " + size + " failed.",
+          executionException.getCause());
+    } catch (TimeoutException timeoutException) {
+      LOG.warn("Scaling image " + key.getProductID() + " " + key.getWebUIName() + " to size " + size
+          + " timed out.");
+    }
+    return null;
+  }
+
+  private void scale(ScalingKey scalingKey, CompletableFuture<StoreImage> scaling) {
+    try {
+      // A previous job might have registered the image between the lookup of the request and the start of this job
+      StoreImage storedImg = loadImage(scalingKey.key(), scalingKey.size());
+      if (storedImg == null) {
+        BufferedImage source = getScalingSource(scalingKey.key());
+        if (source != null) {
+          storedImg = scaleAndRegisterImg(source, scalingKey.key(), scalingKey.size());
+        }
+      }
+      scaling.complete(storedImg);
+    } catch (RuntimeException | Error throwable) {
+      scaling.completeExceptionally(throwable);
+    } finally {
+      scalings.remove(scalingKey, scaling);
+    }
+  }
+
+  // Returns the decoded standard size image of the given key in the pixel format the image scaler works on
+  private BufferedImage getScalingSource(ImageDBKey key) {
+    long imgID = db.getImageID(key, ImageSizePreset.STD_IMAGE_SIZE);
+    if (imgID == 0) {
+      return null;
+    }
+    synchronized (scalingSources) {
+      BufferedImage source = scalingSources.get(imgID);
+      if (source != null) {
+        return source;
+      }
+    }
+
+    // Decode the image from the cached buffer or the image file, without copying its data URI to the heap first
+    ByteBuf imgData = getImageData(imgID);
+    if (imgData == null) {
+      return null;
+    }
+    BufferedImage image;
+    try (ByteBufInputStream stream = new ByteBufInputStream(imgData, true)) {
+      image = ImageIO.read(stream);
+    } catch (IOException ioException) {
+      LOG.warn("An IOException occured while trying to read image " + imgID + ".", ioException);
+      return null;
+    }
+    if (image == null) {
+      return null;
+    }
+    BufferedImage source = ImageScaler.toIntRaster(image);
+    synchronized (scalingSources) {
+      scalingSources.put(imgID, source);
+    }
+    return source;
+  }
+
+  private StoreImage loadImage(ImageDBKey key, ImageSize size) {
+    long imgID = db.getImageID(key, size);
+    return imgID == 0 ? null : storage.loadData(imgID);
+  }
+
   private String getImageFor(ImageDBKey key, ImageSize size) {
+    ByteBuf dataUri = getDataUriFor(key, size);
+    if (dataUri == null) {
+      return null;
+    }
+    try {
+      return dataUri.toString(StandardCharsets.US_ASCII);
+    } finally {
+      dataUri.release();
+    }
+  }
+
+  private long getImageIDFor(ImageDBKey key, ImageSize size) {
+    if (db != null && key != null && size != null) {
+      long imgID = db.getImageID(key, size);
+      if (imgID != 0 && storage != null && storage.dataExists(imgID)) {
+        return imgID;
+      }
+    }
+    StoreImage storedImg = findImage(key, size);
+    return storedImg == null ? 0 : storedImg.getId();
+  }
+
+  private ByteBuf getDataUriFor(ImageDBKey key, ImageSize size) {
+    // Caches keeping buffers hand out their data directly, without creating a store image on the heap
+    if (storage instanceof IDataCache && db != null && key != null && size != null) {
+      long imgID = db.getImageID(key, size);
+      if (imgID != 0) {
+        ByteBuf imgData = ((IDataCache<?>) storage).loadBuffer(imgID);
+        if (imgData != null) {
+          return imgData;
+        }
+      }
+    }
+    StoreImage storedImg = findImage(key, size);
+    return storedImg == null ? null : storedImg.getDataUri();
+  }
+
+  private StoreImage findImage(ImageDBKey key, ImageSize size) {
     if (db == null || storage == null) {
       LOG.warn("Image provider not correctly initialized. Missing image database and storage.");
       return null;
@@ -133,32 +516,25 @@ public enum ImageProvider {
     }
 
     ImageSize stdSize = ImageSizePreset.STD_IMAGE_SIZE;
-    StoreImage storedImg = null;
 
     // Try to retrieve image from disk or from cache
-    long imgID = db.getImageID(key, size);
-    if (imgID != 0) {
-      storedImg = storage.loadData(imgID);
-    }
+    StoreImage storedImg = loadImage(key, size);
 
-    // If we dont have the image in the right size, get the biggest one and scale it
+    // If we dont have the image in the right size, scale the biggest one
+    if (storedImg == null && db.hasImageID(key, stdSize)) {
+      storedImg = getScaledImage(key, size);
+    }
     if (storedImg == null) {
-      storedImg = storage.loadData(db.getImageID(key, stdSize));
-      if (storedImg != null) {
-        storedImg = scaleAndRegisterImg(storedImg.getImage(), key, size);
-      } else {
-        storedImg = storage.loadData(db.getImageID(IMAGE_NOT_FOUND, size));
-        if (storedImg == null) {
-          storedImg = storage.loadData(db.getImageID(IMAGE_NOT_FOUND, stdSize));
-          if (storedImg == null) {
-            return null;
-          }
-          storedImg = scaleAndRegisterImg(storedImg.getImage(), new ImageDBKey(IMAGE_NOT_FOUND),
-              size);
-        }
+      ImageDBKey notFoundKey = new ImageDBKey(IMAGE_NOT_FOUND);
+      storedImg = loadImage(notFoundKey, size);
+      if (storedImg == null && db.hasImageID(notFoundKey, stdSize)) {
+        storedImg = getScaledImage(notFoundKey, size);
       }
     }
-    return storedImg.toString();
+    return storedImg;
   }
 
+  // Key of a scaling job, an image in a given size
+  private record ScalingKey(ImageDBKey key, ImageSize size) {}
+
 }
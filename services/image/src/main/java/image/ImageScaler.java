@@ -14,8 +14,9 @@
 package image;
 
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.stream.IntStream;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -26,13 +27,28 @@ import utilities.datamodel.ImageSize;
  * Utility class with static methods to scale a
  * {@link java.awt.image.BufferedImage} to a given size or by a given ratio,
  * returning a copy of the {@link java.awt.image.BufferedImage} with the scaled
- * size and identical content.
+ * size and identical content. Images are scaled on their integer pixel arrays.
+ * Large reductions are done in several steps, halving the image by averaging
+ * pixels before the final bicubic step, and large images are scaled in parallel
+ * stripes.
  * 
  * @author Norbert Schmitt
  *
  */
 public final class ImageScaler {
 
+  /**
+   * Number of pixels of a scaled image from which on it is scaled in parallel
+   * stripes.
+   */
+  public static final int PARALLEL_SCALING_PIXELS = 1 << 20;
+
+  // Interpolation weights are fixed point numbers with this number of fraction bits
+  private static final int WEIGHT_BITS = 14;
+  private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+  private static final int NR_OF_STRIPES = Runtime.getRuntime().availableProcessors();
+  // Minimum height of a stripe scaled in parallel
+  private static final int MIN_STRIPE_HEIGHT = 64;
   private static final Logger LOG = LogManager.getLogger(ImageScaler.class);
 
   private ImageScaler() {
@@ -167,6 +183,11 @@ public final class ImageScaler {
    * @return New image scaled to the given width and height
    */
   public static BufferedImage scale(BufferedImage image, int width, int height) {
+    return scale(image, width, height, NR_OF_STRIPES);
+  }
+
+  // Scales the given image, splitting large images into at most the given number of stripes scaled in parallel
+  static BufferedImage scale(BufferedImage image, int width, int height, int nrOfStripes) {
     if (image == null) {
       LOG.error("The supplied image is null.");
       throw new NullPointerException("The supplied image is null.");
@@ -180,12 +201,219 @@ public final class ImageScaler {
       throw new IllegalArgumentException("The supplied pixel height is below 1.");
     }
 
-    BufferedImage scaledImg = new BufferedImage(width, height, BufferedImage.TRANSLUCENT);
-    Graphics2D graphics = scaledImg.createGraphics();
-    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-        RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-    graphics.drawImage(image, 0, 0, width, height, null);
-    graphics.dispose();
+    int[] pixels = getPixels(toIntRaster(image));
+    int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_RGB;
+    int sourceWidth = image.getWidth();
+    int sourceHeight = image.getHeight();
+
+    // A single bicubic step skips most source pixels for large reductions, halve the image first
+    int halvedWidth = sourceWidth / 2 >= width ? sourceWidth / 2 : sourceWidth;
+    int halvedHeight = sourceHeight / 2 >= height ? sourceHeight / 2 : sourceHeight;
+    while (halvedWidth != sourceWidth || halvedHeight != sourceHeight) {
+      pixels = halve(pixels, sourceWidth, sourceHeight, halvedWidth, halvedHeight, nrOfStripes);
+      sourceWidth = halvedWidth;
+      sourceHeight = halvedHeight;
+      halvedWidth = sourceWidth / 2 >= width ? sourceWidth / 2 : sourceWidth;
+      halvedHeight = sourceHeight / 2 >= height ? sourceHeight / 2 : sourceHeight;
+    }
+
+    // Separable bicubic interpolation, first along the rows, then along the columns
+    BufferedImage scaledImg = new BufferedImage(width, height, type);
+    int[] scaledPixels = getPixels(scaledImg);
+    boolean premultiplied = type == BufferedImage.TYPE_INT_ARGB_PRE;
+    int[] rowScaled = pixels;
+    if (sourceWidth != width) {
+      rowScaled = sourceHeight == height ? scaledPixels : new int[width * sourceHeight];
+      resampleRows(pixels, sourceWidth, rowScaled, width, sourceHeight, premultiplied, nrOfStripes);
+    }
+    if (sourceHeight != height) {
+      resampleColumns(rowScaled, sourceHeight, scaledPixels, width, height, premultiplied, nrOfStripes);
+    } else if (rowScaled != scaledPixels) {
+      System.arraycopy(rowScaled, 0, scaledPixels, 0, scaledPixels.length);
+    }
     return scaledImg;
   }
+
+  /**
+   * Returns a copy of the given image in the pixel format used for scaling. Images
+   * already in this format are returned as they are. Scaling an image that is
+   * already converted saves one conversion per scaling.
+   * 
+   * @param image
+   *          Image to convert
+   * @return The image with an integer RGB raster, or integer premultiplied ARGB
+   *         raster for images with transparency
+   */
+  public static BufferedImage toIntRaster(BufferedImage image) {
+    if (image == null) {
+      LOG.error("The supplied image is null.");
+      throw new NullPointerException("The supplied image is null.");
+    }
+
+    int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_RGB;
+    if (image.getType() == type && image.getRaster().getDataBuffer().getSize() == image.getWidth()
+        * image.getHeight()) {
+      return image;
+    }
+    BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+    Graphics2D graphics = converted.createGraphics();
+    try {
+      graphics.drawImage(image, 0, 0, null);
+    } finally {
+      graphics.dispose();
+    }
+    return converted;
+  }
+
+  private static int[] getPixels(BufferedImage image) {
+    return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+  }
+
+  // Averages blocks of two pixels along each axis that is halved
+  private static int[] halve(int[] pixels, int sourceWidth, int sourceHeight, int width, int height,
+      int nrOfStripes) {
+    int[] halved = new int[width * height];
+    // Along an axis that is not halved the same pixel is added twice
+    int stepX = width == sourceWidth ? 0 : 1;
+    int stepY = height == sourceHeight ? 0 : sourceWidth;
+    forEachStripe(width, height, nrOfStripes, (fromRow, toRow) -> {
+      for (int y = fromRow; y < toRow; y++) {
+        int row = (stepY == 0 ? y : 2 * y) * sourceWidth;
+        for (int x = 0; x < width; x++) {
+          int i = row + (stepX == 0 ? x : 2 * x);
+          int p0 = pixels[i];
+          int p1 = pixels[i + stepX];
+          int p2 = pixels[i + stepY];
+          int p3 = pixels[i + stepY + stepX];
+          int sum = 0;
+          for (int channel = 0; channel < 32; channel += 8) {
+            int value = (p0 >>> channel & 0xFF) + (p1 >>> channel & 0xFF) + (p2 >>> channel & 0xFF)
+                + (p3 >>> channel & 0xFF);
+            sum |= (value + 2 >> 2) << channel;
+          }
+          halved[y * width + x] = sum;
+        }
+      }
+    });
+    return halved;
+  }
+
+  // Bicubic interpolation along the rows
+  private static void resampleRows(int[] source, int sourceWidth, int[] target, int width, int height,
+      boolean premultiplied, int nrOfStripes) {
+    int[] taps = getTaps(sourceWidth, width);
+    int[] weights = getWeights(sourceWidth, width);
+    forEachStripe(width, height, nrOfStripes, (fromRow, toRow) -> {
+      for (int y = fromRow; y < toRow; y++) {
+        int sourceRow = y * sourceWidth;
+        int targetRow = y * width;
+        for (int x = 0; x < width; x++) {
+          int tap = x * 4;
+          target[targetRow + x] = interpolate(source[sourceRow + taps[tap]], source[sourceRow + taps[tap + 1]],
+              source[sourceRow + taps[tap + 2]], source[sourceRow + taps[tap + 3]], weights, tap, premultiplied);
+        }
+      }
+    });
+  }
+
+  // Bicubic interpolation along the columns, processed row by row to read and write memory sequentially
+  private static void resampleColumns(int[] source, int sourceHeight, int[] target, int width, int height,
+      boolean premultiplied, int nrOfStripes) {
+    int[] taps = getTaps(sourceHeight, height);
+    int[] weights = getWeights(sourceHeight, height);
+    forEachStripe(width, height, nrOfStripes, (fromRow, toRow) -> {
+      for (int y = fromRow; y < toRow; y++) {
+        int tap = y * 4;
+        int row0 = taps[tap] * width;
+        int row1 = taps[tap + 1] * width;
+        int row2 = taps[tap + 2] * width;
+        int row3 = taps[tap + 3] * width;
+        int targetRow = y * width;
+        for (int x = 0; x < width; x++) {
+          target[targetRow + x] = interpolate(source[row0 + x], source[row1 + x], source[row2 + x],
+              source[row3 + x], weights, tap, premultiplied);
+        }
+      }
+    });
+  }
+
+  // Indices of the four source pixels each target pixel is interpolated from
+  private static int[] getTaps(int sourceLength, int length) {
+    int[] taps = new int[length * 4];
+    double ratio = (double) sourceLength / length;
+    for (int i = 0; i < length; i++) {
+      int first = (int) Math.floor((i + 0.5) * ratio - 0.5) - 1;
+      for (int tap = 0; tap < 4; tap++) {
+        taps[i * 4 + tap] = Math.min(Math.max(first + tap, 0), sourceLength - 1);
+      }
+    }
+    return taps;
+  }
+
+  // Fixed point weights of the four source pixels each target pixel is interpolated from, each set sums up to one
+  private static int[] getWeights(int sourceLength, int length) {
+    int[] weights = new int[length * 4];
+    double ratio = (double) sourceLength / length;
+    for (int i = 0; i < length; i++) {
+      double center = (i + 0.5) * ratio - 0.5;
+      int first = (int) Math.floor(center) - 1;
+      int sum = 0;
+      for (int tap = 0; tap < 4; tap++) {
+        weights[i * 4 + tap] = (int) Math.round(cubic(center - first - tap) * WEIGHT_ONE);
+        sum += weights[i * 4 + tap];
+      }
+      // The two inner pixels carry most of the weight, rounding errors are corrected there
+      weights[i * 4 + 1] += WEIGHT_ONE - sum;
+    }
+    return weights;
+  }
+
+  private static int interpolate(int p0, int p1, int p2, int p3, int[] weights, int tap, boolean premultiplied) {
+    int w0 = weights[tap];
+    int w1 = weights[tap + 1];
+    int w2 = weights[tap + 2];
+    int w3 = weights[tap + 3];
+    int alpha = clamp((p0 >>> 24) * w0 + (p1 >>> 24) * w1 + (p2 >>> 24) * w2 + (p3 >>> 24) * w3, 255);
+    // Premultiplied colors must not exceed the alpha value
+    int max = premultiplied ? alpha : 255;
+    int red = clamp((p0 >>> 16 & 0xFF) * w0 + (p1 >>> 16 & 0xFF) * w1 + (p2 >>> 16 & 0xFF) * w2
+        + (p3 >>> 16 & 0xFF) * w3, max);
+    int green = clamp((p0 >>> 8 & 0xFF) * w0 + (p1 >>> 8 & 0xFF) * w1 + (p2 >>> 8 & 0xFF) * w2
+        + (p3 >>> 8 & 0xFF) * w3, max);
+    int blue = clamp((p0 & 0xFF) * w0 + (p1 & 0xFF) * w1 + (p2 & 0xFF) * w2 + (p3 & 0xFF) * w3, max);
+    return alpha << 24 | red << 16 | green << 8 | blue;
+  }
+
+  // Catmull-Rom cubic convolution kernel, the kernel Java 2D uses for bicubic interpolation
+  private static double cubic(double distance) {
+    double x = Math.abs(distance);
+    if (x <= 1) {
+      return (1.5 * x - 2.5) * x * x + 1;
+    }
+    if (x < 2) {
+      return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+    }
+    return 0;
+  }
+
+  private static int clamp(int weightedSum, int max) {
+    int value = (weightedSum + WEIGHT_ONE / 2) >> WEIGHT_BITS;
+    return value < 0 ? 0 : value > max ? max : value;
+  }
+
+  // Splits the rows of large images into stripes processed in parallel
+  private static void forEachStripe(int width, int height, int maxNrOfStripes, StripeRenderer renderer) {
+    int nrOfStripes = Math.min(maxNrOfStripes, height / MIN_STRIPE_HEIGHT);
+    if ((long) width * height < PARALLEL_SCALING_PIXELS || nrOfStripes < 2) {
+      renderer.render(0, height);
+    } else {
+      IntStream.range(0, nrOfStripes).parallel().forEach(stripe -> renderer.render(
+          height * stripe / nrOfStripes, height * (stripe + 1) / nrOfStripes));
+    }
+  }
+
+  @FunctionalInterface
+  private interface StripeRenderer {
+    void render(int fromRow, int toRow);
+  }
 }
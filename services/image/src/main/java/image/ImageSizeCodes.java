@@ -0,0 +1,148 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import utilities.datamodel.ImageSize;
+import utilities.enumeration.ImageSizePreset;
+
+/**
+ * Compact codes of the image sizes of an {@link ImageDB}. Presets always use their ordinal. Other sizes get the lowest
+ * free code with their first mapping and release it with their last one, so the codes are bounded by the sizes in use.
+ * Reads never block, writes are serialized by the lock of the database.
+ * @author Philipp Backes
+ */
+final class ImageSizeCodes {
+
+  private static final ImageSize[] PRESET_SIZES;
+  private static final Map<ImageSize, Integer> PRESET_CODES = new HashMap<>();
+
+  static {
+    ImageSizePreset[] presets = ImageSizePreset.values();
+    PRESET_SIZES = new ImageSize[presets.length];
+    for (ImageSizePreset preset : presets) {
+      PRESET_SIZES[preset.ordinal()] = preset.getSize();
+      PRESET_CODES.putIfAbsent(preset.getSize(), preset.ordinal());
+    }
+  }
+
+  private final int maxCodes;
+  private final ConcurrentHashMap<ImageSize, Integer> codes;
+  // Size of each code, written before the first mapping of the code is published
+  private volatile ImageSize[] sizes;
+  // Number of mappings using each code, presets are not counted
+  private int[] references;
+  private final BitSet used;
+
+  /**
+   * Creates codes containing only the presets.
+   * @param maxCodes Maximum number of codes including the presets.
+   */
+  ImageSizeCodes(int maxCodes) {
+    if (maxCodes < PRESET_SIZES.length) {
+      throw new IllegalArgumentException("At least " + PRESET_SIZES.length + " codes are required.");
+    }
+    this.maxCodes = maxCodes;
+    codes = new ConcurrentHashMap<>(PRESET_CODES);
+    sizes = Arrays.copyOf(PRESET_SIZES, PRESET_SIZES.length);
+    references = new int[PRESET_SIZES.length];
+    used = new BitSet();
+    used.set(0, PRESET_SIZES.length);
+  }
+
+  /**
+   * Creates a copy of the given codes. Requires the lock of the copied database.
+   * @param copy Codes to copy.
+   */
+  ImageSizeCodes(ImageSizeCodes copy) {
+    maxCodes = copy.maxCodes;
+    codes = new ConcurrentHashMap<>(copy.codes);
+    sizes = copy.sizes.clone();
+    references = copy.references.clone();
+    used = (BitSet) copy.used.clone();
+  }
+
+  /**
+   * Returns the code of the given size.
+   * @param size Image size.
+   * @return The code or -1 if the size is not mapped.
+   */
+  int codeOf(ImageSize size) {
+    Integer code = size == null ? null : codes.get(size);
+    return code == null ? -1 : code;
+  }
+
+  /**
+   * Returns the size of the given code.
+   * @param code Code of a size.
+   * @return The size or null if the code is not used.
+   */
+  ImageSize sizeOf(int code) {
+    ImageSize[] current = sizes;
+    return code < 0 || code >= current.length ? null : current[code];
+  }
+
+  /**
+   * Adds a mapping of the given size, assigning a code if the size is not used yet.
+   * @param size Image size.
+   * @return The code of the size.
+   * @throws IllegalArgumentException If all codes are in use by other sizes.
+   */
+  int acquire(ImageSize size) {
+    int code = codeOf(size);
+    if (code < 0) {
+      code = used.nextClearBit(PRESET_SIZES.length);
+      if (code >= maxCodes) {
+        throw new IllegalArgumentException("Too many different image sizes are in use.");
+      }
+      used.set(code);
+      if (code >= sizes.length) {
+        int capacity = Math.min(maxCodes, 2 * sizes.length);
+        references = Arrays.copyOf(references, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+      }
+      sizes[code] = size;
+      codes.put(size, code);
+    }
+    references[code]++;
+    return code;
+  }
+
+  /**
+   * Removes a mapping of the given code, which is freed with the last mapping of a size other than a preset.
+   * @param code Code of a size.
+   */
+  void release(int code) {
+    if (code < PRESET_SIZES.length || code >= references.length || references[code] == 0) {
+      return;
+    }
+    if (--references[code] == 0) {
+      codes.remove(sizes[code], code);
+      sizes[code] = null;
+      used.clear(code);
+    }
+  }
+
+  /**
+   * @return The number of codes in use including the presets.
+   */
+  int size() {
+    return used.cardinality();
+  }
+}
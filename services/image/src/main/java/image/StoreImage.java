@@ -15,8 +15,9 @@ package image;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Base64;
 
@@ -25,6 +26,8 @@ import javax.imageio.ImageIO;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import utilities.datamodel.ImageSize;
 import image.cache.entry.ICachable;
 
@@ -53,7 +56,10 @@ public class StoreImage implements ICachable<StoreImage> {
   public static final String STORE_IMAGE_DATA_STRING = "data:image/" + STORE_IMAGE_FORMAT
       + ";base64,";
 
+  private static final byte[] DATA_URI_PREFIX = STORE_IMAGE_DATA_STRING.getBytes(StandardCharsets.US_ASCII);
+
   private final long id;
+  // Image in its wire form, the data URI prefix followed by the base64 encoded image
   private byte[] data;
   private ImageSize size;
   private static final Logger LOG = LogManager.getLogger(StoreImage.class);
@@ -93,10 +99,25 @@ public class StoreImage implements ICachable<StoreImage> {
     }
 
     this.id = id;
-    data = Arrays.copyOf(base64, base64.length);
+    setBase64(base64);
     setImageSize(size);
   }
 
+  /**
+   * Creates a new store image from the raw bytes of an image in the store image format.
+   * @param id imageId
+   * @param png Image file content
+   * @param size Imagesize object
+   * @return The store image.
+   */
+  public static StoreImage fromPng(final long id, byte[] png, ImageSize size) {
+    if (png == null) {
+      LOG.error("Supplied image file content is null.");
+      throw new NullPointerException("Supplied image file content is null.");
+    }
+    return new StoreImage(id, Base64.getEncoder().encode(png), size);
+  }
+
   private void setImageSize(ImageSize size) {
     if (size == null) {
       LOG.error("Supplied image size is null.");
@@ -118,7 +139,7 @@ public class StoreImage implements ICachable<StoreImage> {
     }
 
     this.id = image.getId();
-    this.data = Arrays.copyOf(image.getByteArray(), image.getByteArray().length);
+    this.data = Arrays.copyOf(image.data, image.data.length);
     this.size = image.getSize();
   }
 
@@ -134,13 +155,19 @@ public class StoreImage implements ICachable<StoreImage> {
   // Converts the Java internal image representation to a byte array and encodes
   // it in base64 for embedding.
   private void setImage(BufferedImage image) {
-    ByteArrayOutputStream stream = new ByteArrayOutputStream();
     try {
-      ImageIO.write(image, STORE_IMAGE_FORMAT, stream);
+      data = PngEncoder.encodeBase64(image, DATA_URI_PREFIX);
     } catch (IOException ioException) {
       LOG.warn("An IOException occured while trying to write image to a stream.", ioException);
+      setBase64(new byte[0]);
     }
-    data = Base64.getEncoder().encode(stream.toByteArray());
+  }
+
+  // Stores the base64 encoded image with the data URI prefix, so responses can send it without further copies
+  private void setBase64(byte[] base64) {
+    data = new byte[DATA_URI_PREFIX.length + base64.length];
+    System.arraycopy(DATA_URI_PREFIX, 0, data, 0, DATA_URI_PREFIX.length);
+    System.arraycopy(base64, 0, data, DATA_URI_PREFIX.length, base64.length);
   }
 
   /**
@@ -150,7 +177,7 @@ public class StoreImage implements ICachable<StoreImage> {
    */
   public BufferedImage getImage() {
     BufferedImage image = null;
-    ByteArrayInputStream stream = new ByteArrayInputStream(Base64.getDecoder().decode(data));
+    ByteArrayInputStream stream = new ByteArrayInputStream(getPng());
     try {
       image = ImageIO.read(stream);
     } catch (IOException ioException) {
@@ -168,6 +195,16 @@ public class StoreImage implements ICachable<StoreImage> {
     return size;
   }
 
+  /**
+   * Returns the image size as group of the cache statistics.
+   * 
+   * @return The image size.
+   */
+  @Override
+  public String getCacheGroup() {
+    return String.valueOf(size);
+  }
+
   /**
    * Returns the number of bytes stored in the internal data structure.
    * 
@@ -184,7 +221,8 @@ public class StoreImage implements ICachable<StoreImage> {
    * @return Base64 encoded data as string.
    */
   public String getBase64() {
-    return new String(data);
+    return new String(data, DATA_URI_PREFIX.length, data.length - DATA_URI_PREFIX.length,
+        StandardCharsets.US_ASCII);
   }
 
   /**
@@ -192,12 +230,31 @@ public class StoreImage implements ICachable<StoreImage> {
    * @return bytearray
    */
   public byte[] getByteArray() {
-    return Arrays.copyOf(data, data.length);
+    return Arrays.copyOfRange(data, DATA_URI_PREFIX.length, data.length);
+  }
+
+  /**
+   * Returns the decoded image in the store image format, as it is stored on disk.
+   * @return Image file content.
+   */
+  public byte[] getPng() {
+    ByteBuffer decoded = Base64.getDecoder().decode(
+        ByteBuffer.wrap(data, DATA_URI_PREFIX.length, data.length - DATA_URI_PREFIX.length));
+    return decoded.limit() == decoded.capacity() ? decoded.array() : Arrays.copyOf(decoded.array(), decoded.limit());
+  }
+
+  /**
+   * Returns a read-only view of the image as data URI, ready to be embedded in a response without copying.
+   * 
+   * @return Data URI bytes.
+   */
+  public ByteBuf getDataUri() {
+    return Unpooled.wrappedBuffer(data).asReadOnly();
   }
 
   @Override
   public String toString() {
-    return STORE_IMAGE_DATA_STRING + getBase64();
+    return new String(data, StandardCharsets.US_ASCII);
   }
 
   // Auto-generated
@@ -13,7 +13,9 @@
  */
 package image.cache;
 
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
@@ -39,11 +41,13 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
 
   private IDataStorage<T> cachedStorage;
   private S entries;
+  private final HashMap<Long, F> index = new HashMap<>();
   private long maxCacheSize;
   private long currentCacheSize;
   private Predicate<T> cachingRule;
   private static final Logger LOG = LogManager.getLogger(AbstractCache.class);
   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final CacheStatsCounter stats = new CacheStatsCounter();
 
   /**
    * Basic abstract cache constructor for subclasses.  
@@ -91,7 +95,8 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
   }
 
   private F findInEntries(long id) {
-    return entries.stream().filter(entry -> entry.getId() == id).findFirst().orElse(null);
+    // The index is kept in sync with the entry collection, the collection only defines the eviction order
+    return index.get(id);
   }
 
   private T getData(long id, boolean markUsed) {
@@ -152,6 +157,11 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
     return true;
   }
 
+  @Override
+  public CacheStatsCounter getStatsCounter() {
+    return stats;
+  }
+
   @Override
   public long getCurrentCacheSize() {
     long size = 0;
@@ -186,6 +196,10 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
 
     lock.writeLock().lock();
     try {
+      // Another thread might have cached the same data since the check above
+      if (findInEntries(data.getId()) != null) {
+        return;
+      }
       while (!hasStorageFor(data.getByteSize())) {
         removeEntryByCachingStrategy();
       }
@@ -199,8 +213,11 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
   public void uncacheData(T data) {
     lock.writeLock().lock();
     try {
-      if (entries.remove(createEntry(data))) {
-        dataRemovedFromCache(data.getByteSize());
+      F entry = index.get(data.getId());
+      if (entry != null && removeEntry(entry)) {
+        index.remove(entry.getId());
+        dataRemovedFromCache(entry.getByteSize());
+        stats.recordRemoved(entry.getData().getCacheGroup(), entry.getByteSize());
       }
     } finally {
       lock.writeLock().unlock();
@@ -221,8 +238,10 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
   public void clearCache() {
     lock.writeLock().lock();
     try {
-      entries.clear();
+      clearEntries();
+      index.clear();
       currentCacheSize = 0;
+      stats.recordCleared();
     } finally {
       lock.writeLock().unlock();
     }
@@ -254,12 +273,17 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
     T entry = getData(id, true);
     if (entry == null) {
       // No entry in cache found, search in underlying storage
+      stats.recordMiss();
+      long loadStart = System.nanoTime();
       entry = cachedStorage.loadData(id);
+      stats.recordLoad(System.nanoTime() - loadStart, entry != null);
       if (entry == null) {
         return null;
       }
       // Data found, cache it and return
       cacheData(entry);
+    } else {
+      stats.recordHit();
     }
     return entry;
   }
@@ -285,6 +309,11 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
     return cachedStorage.deleteData(data);
   }
 
+  @Override
+  public Path getDataFile(long id) {
+    return cachedStorage.getDataFile(id);
+  }
+
   /*
    * Modifier for current cache size
    */
@@ -336,10 +365,41 @@ public abstract class AbstractCache<S extends Collection<F>, T extends ICachable
    */
   protected void addEntry(F data) {
     if (entries.add(data)) {
+      index.put(data.getId(), data);
       dataAddedToCache(data.getByteSize());
+      stats.recordAdded(data.getData().getCacheGroup(), data.getByteSize());
     }
   }
 
+  /**
+   * Removes a given entry wrapper object from the internal collection. The index and cache size are updated by the 
+   * caller.
+   * @param data Wrapper object to remove from internal collection.
+   * @return True if the entry was part of the internal collection, otherwise false.
+   */
+  protected boolean removeEntry(F data) {
+    return entries.remove(data);
+  }
+
+  /**
+   * Removes all entry wrapper objects from the internal collection.
+   */
+  protected void clearEntries() {
+    entries.clear();
+  }
+
+  /**
+   * Must be called by the eviction strategy after an entry has been taken out of the internal collection. Removes the 
+   * entry from the index and changes the current memory size of this cache accordingly.
+   * @param data Wrapper object that was evicted from the internal collection.
+   */
+  protected void entryEvicted(F data) {
+    // The index and the entry collection are only changed under the write lock, so the evicted entry is the indexed one
+    index.remove(data.getId());
+    dataRemovedFromCache(data.getByteSize());
+    stats.recordEviction(data.getData().getCacheGroup(), data.getByteSize());
+  }
+
   /**
    * Evicts one entry in the cache according to the caching strategy of a specific implementation.
    */
@@ -13,7 +13,7 @@
  */
 package image.cache;
 
-import java.util.LinkedList;
+import java.util.TreeSet;
 import java.util.function.Predicate;
 
 import image.cache.entry.ICachable;
@@ -21,13 +21,14 @@ import image.cache.entry.SimpleEntry;
 import image.storage.IDataStorage;
 
 /**
- * Abstract cache class using a queue as internal collection for cache entries.
+ * Abstract cache class using a queue as internal collection for cache entries. The queue is backed by a tree sorted 
+ * by insertion order, so both ends and arbitrary entries can be removed in logarithmic time.
  * @author Norbert Schmitt
  *
  * @param <T> Entry Type implementing ICachable.
  */
 public abstract class AbstractQueueCache<T extends ICachable<T>>
-    extends AbstractCache<LinkedList<SimpleEntry<T>>, T, SimpleEntry<T>> {
+    extends AbstractCache<TreeSet<SimpleEntry<T>>, T, SimpleEntry<T>> {
 
   /**
    * Base constructor used by specific implementations.
@@ -37,7 +38,8 @@ public abstract class AbstractQueueCache<T extends ICachable<T>>
    */
   public AbstractQueueCache(IDataStorage<T> cachedStorage, long maxCacheSize,
       Predicate<T> cachingRule) {
-    super(new LinkedList<>(), cachedStorage, maxCacheSize, cachingRule);
+    super(new TreeSet<>((a, b) -> Long.compare(a.getInsertionOrder(), b.getInsertionOrder())), cachedStorage,
+        maxCacheSize, cachingRule);
   }
 
   /*
@@ -0,0 +1,48 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the statistics of a cache, returned by the cache statistics endpoint of the image API.
+ * @author Philipp Backes
+ *
+ * @param cachingMode Name of the cache implementation.
+ * @param maxCacheSize Maximum cache size in bytes.
+ * @param currentCacheSize Current cache size in bytes.
+ * @param hitCount Number of requests answered from the cache.
+ * @param missCount Number of requests answered from the underlying storage.
+ * @param hitRate Share of requests answered from the cache.
+ * @param evictionCount Number of entries evicted by the eviction strategy.
+ * @param evictedBytes Bytes evicted by the eviction strategy.
+ * @param loadSuccessCount Number of misses the underlying storage contained the data for.
+ * @param loadFailureCount Number of misses the underlying storage did not contain the data for.
+ * @param averageLoadTime Average time to load data from the underlying storage in ms.
+ * @param occupancy Bytes occupied in the cache for each group of cached data, e.g. each image size.
+ */
+public record CacheStatistics(
+    String cachingMode,
+    long maxCacheSize,
+    long currentCacheSize,
+    long hitCount,
+    long missCount,
+    double hitRate,
+    long evictionCount,
+    long evictedBytes,
+    long loadSuccessCount,
+    long loadFailureCount,
+    double averageLoadTime,
+    Map<String, Long> occupancy
+) {}
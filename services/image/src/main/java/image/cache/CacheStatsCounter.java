@@ -0,0 +1,144 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics recorded by a cache. All counters are striped, so recording a hit only updates a cell that is rarely
+ * shared with other threads and never takes a lock. A consistent view of the counters is not needed, a snapshot
+ * created with {@link #snapshot(String, long, long)} sums the counters at some point while they are updated.
+ * @author Philipp Backes
+ */
+public final class CacheStatsCounter {
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder loadSuccessCount = new LongAdder();
+  private final LongAdder loadFailureCount = new LongAdder();
+  private final LongAdder totalLoadTime = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private final LongAdder evictedBytes = new LongAdder();
+  // Bytes occupied in the cache for each group of cached data, e.g. each image size
+  private final ConcurrentHashMap<String, LongAdder> occupancy = new ConcurrentHashMap<>();
+
+  /**
+   * Records a request answered from the cache.
+   */
+  public void recordHit() {
+    hitCount.increment();
+  }
+
+  /**
+   * Records a request that had to be answered from the underlying storage.
+   */
+  public void recordMiss() {
+    missCount.increment();
+  }
+
+  /**
+   * Records the time it took to load data from the underlying storage after a miss.
+   * @param loadTime Load time in ns.
+   * @param found True if the storage contained the data, otherwise false.
+   */
+  public void recordLoad(long loadTime, boolean found) {
+    if (found) {
+      loadSuccessCount.increment();
+    } else {
+      loadFailureCount.increment();
+    }
+    totalLoadTime.add(loadTime);
+  }
+
+  /**
+   * Records data added to the cache.
+   * @param group Group of the data, see {@link image.cache.entry.ICachable#getCacheGroup()}.
+   * @param byteSize Byte size of the data.
+   */
+  public void recordAdded(String group, long byteSize) {
+    occupancy.computeIfAbsent(group, key -> new LongAdder()).add(byteSize);
+  }
+
+  /**
+   * Records data removed from the cache on request.
+   * @param group Group of the data, see {@link image.cache.entry.ICachable#getCacheGroup()}.
+   * @param byteSize Byte size of the data.
+   */
+  public void recordRemoved(String group, long byteSize) {
+    LongAdder bytes = occupancy.get(group);
+    if (bytes != null) {
+      bytes.add(-byteSize);
+    }
+  }
+
+  /**
+   * Records data evicted from the cache by the eviction strategy.
+   * @param group Group of the data, see {@link image.cache.entry.ICachable#getCacheGroup()}.
+   * @param byteSize Byte size of the data.
+   */
+  public void recordEviction(String group, long byteSize) {
+    evictionCount.increment();
+    evictedBytes.add(byteSize);
+    recordRemoved(group, byteSize);
+  }
+
+  /**
+   * Records that all data was removed from the cache.
+   */
+  public void recordCleared() {
+    occupancy.clear();
+  }
+
+  /**
+   * Resets all counters. The occupancy is kept, as it describes the current content of the cache.
+   */
+  public void reset() {
+    hitCount.reset();
+    missCount.reset();
+    loadSuccessCount.reset();
+    loadFailureCount.reset();
+    totalLoadTime.reset();
+    evictionCount.reset();
+    evictedBytes.reset();
+  }
+
+  /**
+   * Creates a snapshot of the recorded statistics.
+   * @param cachingMode Name of the cache implementation.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param currentCacheSize Current cache size in bytes.
+   * @return Snapshot of the statistics.
+   */
+  public CacheStatistics snapshot(String cachingMode, long maxCacheSize, long currentCacheSize) {
+    long hits = hitCount.sum();
+    long misses = missCount.sum();
+    long loads = loadSuccessCount.sum() + loadFailureCount.sum();
+    Map<String, Long> bytesPerGroup = new TreeMap<>();
+    occupancy.forEach((group, bytes) -> {
+      long sum = bytes.sum();
+      if (sum > 0) {
+        bytesPerGroup.put(group, sum);
+      }
+    });
+    return new CacheStatistics(cachingMode, maxCacheSize, currentCacheSize, hits, misses,
+        hits + misses == 0 ? 0 : (double) hits / (hits + misses), evictionCount.sum(), evictedBytes.sum(),
+        loadSuccessCount.sum(), loadFailureCount.sum(),
+        loads == 0 ? 0 : (double) totalLoadTime.sum() / loads / TimeUnit.MILLISECONDS.toNanos(1), bytesPerGroup);
+  }
+
+}
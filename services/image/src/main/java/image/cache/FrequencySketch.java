@@ -0,0 +1,132 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch estimating the access frequency of IDs with four 4-bit counters per ID. Counters are halved
+ * periodically so that the popularity of IDs adapts over time. This class is not thread safe, callers must guard
+ * all access with their own lock.
+ * @author Philipp Backes
+ */
+public final class FrequencySketch {
+
+  private static final long[] SEED = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+      0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MIN_TABLE_SIZE = 64;
+  private static final int SAMPLE_FACTOR = 10;
+
+  private long[] table;
+  private int tableMask;
+  private int sampleSize;
+  private int size;
+
+  /**
+   * Creates a new sketch with the minimum table size.
+   */
+  public FrequencySketch() {
+    ensureCapacity(MIN_TABLE_SIZE);
+  }
+
+  /**
+   * Grows the sketch to accurately track the given number of IDs. All counters are reset if the sketch grows.
+   * @param maximumSize Number of IDs expected to be tracked.
+   */
+  public void ensureCapacity(long maximumSize) {
+    int maximum = (int) Math.min(Math.max(maximumSize, MIN_TABLE_SIZE), Integer.MAX_VALUE >>> 1);
+    if (table != null && table.length >= maximum) {
+      return;
+    }
+    table = new long[Integer.highestOneBit(maximum - 1) << 1];
+    tableMask = table.length - 1;
+    sampleSize = SAMPLE_FACTOR * table.length;
+    size = 0;
+  }
+
+  /**
+   * Returns the estimated number of accesses of the given ID, at most 15.
+   * @param id ID to look up.
+   * @return Estimated access frequency.
+   */
+  public int frequency(long id) {
+    int hash = spread(Long.hashCode(id));
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Increments the estimated access frequency of the given ID. Counters are aged once enough accesses were recorded.
+   * @param id ID that was accessed.
+   */
+  public void increment(long id) {
+    int hash = spread(Long.hashCode(id));
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Resets all counters to zero.
+   */
+  public void clear() {
+    Arrays.fill(table, 0L);
+    size = 0;
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  // Halves all counters, so old popularity fades out
+  private void reset() {
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf(int item, int i) {
+    long hash = (item + SEED[i]) * SEED[i];
+    hash += hash >>> 32;
+    return ((int) hash) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
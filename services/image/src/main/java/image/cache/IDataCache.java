@@ -13,6 +13,7 @@
  */
 package image.cache;
 
+import io.netty.buffer.ByteBuf;
 import image.cache.entry.ICachable;
 import image.storage.IDataStorage;
 
@@ -95,4 +96,20 @@ public interface IDataCache<T extends ICachable<T>> extends IDataStorage<T> {
    */
   public boolean setMaxCacheSize(long cacheSize);
 
+  /**
+   * Returns the statistics recorded by the cache since it was created or the statistics were reset.
+   * @return Statistics of the cache.
+   */
+  public CacheStatsCounter getStatsCounter();
+
+  /**
+   * Returns a read-only view of the cached data of the given ID, if the cache keeps its data in buffers. The view
+   * holds its own reference to the data and must be released by the caller.
+   * @param id ID of the cached data.
+   * @return View of the cached data or null if the data is not cached or the cache does not keep buffers.
+   */
+  public default ByteBuf loadBuffer(long id) {
+    return null;
+  }
+
 }
@@ -68,7 +68,7 @@ public class LastInFirstOut<T extends ICachable<T>> extends AbstractQueueCache<T
 
   @Override
   protected void removeEntryByCachingStrategy() {
-    dataRemovedFromCache(getEntries().pollLast().getData().getByteSize());
+    entryEvicted(getEntries().pollLast());
   }
 
 }
@@ -0,0 +1,421 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import utilities.datamodel.ImageSize;
+import image.StoreImage;
+import image.cache.rules.CacheAll;
+import image.storage.IDataStorage;
+import image.storage.NoStorage;
+
+/**
+ * Cache keeping the image data URIs outside of the Java heap. The data is stored in direct buffers taken from the
+ * pooled Netty allocator, which serves them from large preallocated arena chunks. Only a small index entry per image
+ * stays on the heap, so large caches neither grow the heap nor prolong garbage collection pauses. Callers can obtain
+ * read-only views of the cached data with {@link #loadBuffer(long)} or copy it directly into a response buffer with
+ * {@link #writeData(long, ByteBuf)}. Lookups do not take a lock, they only mark the entry as referenced. Entries are
+ * evicted with the CLOCK approximation of least recently used, which gives referenced entries a second chance.
+ * @author Philipp Backes
+ */
+public class OffHeapCache implements IDataCache<StoreImage> {
+
+  private IDataStorage<StoreImage> cachedStorage;
+  private Predicate<StoreImage> cachingRule;
+  private final ByteBufAllocator allocator;
+  private final ConcurrentHashMap<Long, OffHeapEntry> entries = new ConcurrentHashMap<>();
+  // Insertion ordered, the first entry is the next one to check for eviction, only accessed while holding the lock.
+  // Uncached entries stay in the clock marked as removed until the hand passes them.
+  private final ArrayDeque<OffHeapEntry> clock = new ArrayDeque<>();
+  private int removedInClock;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final CacheStatsCounter stats = new CacheStatsCounter();
+  private volatile long maxCacheSize;
+  private volatile long currentCacheSize;
+  private static final Logger LOG = LogManager.getLogger(OffHeapCache.class);
+
+  /**
+   * Off-heap cache standard constructor setting the maximum cache size to the standard value
+   * {@link image.cache.IDataCache.STD_MAX_CACHE_SIZE} and allowing all data to be cached.
+   */
+  public OffHeapCache() {
+    this(IDataCache.STD_MAX_CACHE_SIZE);
+  }
+
+  /**
+   * Off-heap cache constructor setting the maximum cache size to the given size and allowing all data to be cached.
+   * @param maxCacheSize Maximum cache size in bytes.
+   */
+  public OffHeapCache(long maxCacheSize) {
+    this(maxCacheSize, new CacheAll<StoreImage>());
+  }
+
+  /**
+   * Off-heap cache constructor setting the maximum cache size to the given size and caching only data that is tested
+   * true for the given caching rule.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   */
+  public OffHeapCache(long maxCacheSize, Predicate<StoreImage> cachingRule) {
+    this(null, maxCacheSize, cachingRule);
+  }
+
+  /**
+   * Off-heap cache constructor setting the maximum cache size to the given size and caching only data that is tested
+   * true for the given caching rule. This constructor also lets you set the underlying storage, queried if an entry is
+   * not found in the cache.
+   * @param cachedStorage Storage object to query if an entry is not found in the cache.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   */
+  public OffHeapCache(IDataStorage<StoreImage> cachedStorage, long maxCacheSize,
+      Predicate<StoreImage> cachingRule) {
+    this(cachedStorage, maxCacheSize, cachingRule, PooledByteBufAllocator.DEFAULT);
+  }
+
+  /**
+   * Off-heap cache constructor additionally setting the allocator providing the direct buffers.
+   * @param cachedStorage Storage object to query if an entry is not found in the cache.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   * @param allocator Allocator providing the direct buffers holding the image data.
+   */
+  public OffHeapCache(IDataStorage<StoreImage> cachedStorage, long maxCacheSize,
+      Predicate<StoreImage> cachingRule, ByteBufAllocator allocator) {
+    if (cachingRule == null) {
+      LOG.error("The provided caching rule is null.");
+      throw new NullPointerException("The provided caching rule is null.");
+    }
+    if (allocator == null) {
+      LOG.error("The provided allocator is null.");
+      throw new NullPointerException("The provided allocator is null.");
+    }
+
+    if (cachedStorage == null) {
+      LOG.info("No underlying disk storage supplied, assuming no data is stored on disk.");
+      this.cachedStorage = new NoStorage<StoreImage>();
+    } else {
+      this.cachedStorage = cachedStorage;
+    }
+    this.cachingRule = cachingRule;
+    this.allocator = allocator;
+    setMaxCacheSize(maxCacheSize);
+  }
+
+  /**
+   * Returns a read-only view of the cached data URI of the image with the given ID. The view holds its own
+   * reference to the off-heap memory and must be released by the caller, e.g. by writing it to a channel.
+   * @param id ID of the image.
+   * @return Read-only view of the image data or null if the image is not cached.
+   */
+  @Override
+  public ByteBuf loadBuffer(long id) {
+    ByteBuf data = retainData(entries.get(id));
+    return data == null ? null : data.asReadOnly();
+  }
+
+  /**
+   * Copies the cached data URI of the image with the given ID into the given buffer without creating an
+   * intermediate copy on the heap.
+   * @param id ID of the image.
+   * @param target Buffer to write the image data to.
+   * @return True if the image was cached and written, otherwise false.
+   */
+  public boolean writeData(long id, ByteBuf target) {
+    ByteBuf data = loadBuffer(id);
+    if (data == null) {
+      return false;
+    }
+    try {
+      target.writeBytes(data);
+    } finally {
+      data.release();
+    }
+    return true;
+  }
+
+  /*
+   * Implementations for interface IDataCache
+   */
+
+  @Override
+  public long getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  @Override
+  public boolean setMaxCacheSize(long maxCacheSize) {
+    if (maxCacheSize <= 0) {
+      LOG.error("The provided cache size is negative. Must be positive.");
+      throw new IllegalArgumentException("The provided cache size is negative. Must be positive.");
+    }
+
+    lock.lock();
+    try {
+      this.maxCacheSize = maxCacheSize;
+      evictEntries(0);
+    } finally {
+      lock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public CacheStatsCounter getStatsCounter() {
+    return stats;
+  }
+
+  @Override
+  public long getCurrentCacheSize() {
+    return currentCacheSize;
+  }
+
+  @Override
+  public long getFreeSpace() {
+    return maxCacheSize - getCurrentCacheSize();
+  }
+
+  @Override
+  public boolean hasStorageFor(long size) {
+    return size <= getFreeSpace();
+  }
+
+  @Override
+  public void cacheData(StoreImage data) {
+    if (!dataIsCachable(data) || data.getByteSize() > maxCacheSize) {
+      return;
+    }
+
+    // Copy the data off-heap before taking the lock, readers only wait for the index update
+    ByteBuf dataUri = data.getDataUri();
+    int length = dataUri.readableBytes();
+    ByteBuf buffer = allocator.directBuffer(length, length);
+    buffer.writeBytes(dataUri);
+    lock.lock();
+    try {
+      if (entries.containsKey(data.getId())) {
+        buffer.release();
+        return;
+      }
+      evictEntries(length);
+      OffHeapEntry entry = new OffHeapEntry(data.getId(), buffer, data.getSize());
+      entries.put(entry.id, entry);
+      clock.addLast(entry);
+      currentCacheSize += length;
+      stats.recordAdded(data.getCacheGroup(), length);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void uncacheData(StoreImage data) {
+    lock.lock();
+    try {
+      OffHeapEntry entry = entries.remove(data.getId());
+      if (entry != null) {
+        removeFromClock(entry);
+        currentCacheSize -= entry.data.readableBytes();
+        stats.recordRemoved(data.getCacheGroup(), entry.data.readableBytes());
+        entry.release();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean dataIsCachable(StoreImage data) {
+    return cachingRule.test(data);
+  }
+
+  @Override
+  public boolean dataIsInCache(long id) {
+    return entries.containsKey(id);
+  }
+
+  @Override
+  public void clearCache() {
+    lock.lock();
+    try {
+      entries.values().forEach(OffHeapEntry::release);
+      entries.clear();
+      clock.clear();
+      removedInClock = 0;
+      currentCacheSize = 0;
+      stats.recordCleared();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /*
+   * Implementations for interface IDataStorage
+   */
+
+  @Override
+  public boolean dataExists(long id) {
+    return dataIsInCache(id) || cachedStorage.dataExists(id);
+  }
+
+  @Override
+  public StoreImage loadData(long id) {
+    // Search entry in cache. A store image keeps its data on the heap, so a hit copies the cached data. Callers
+    // serving the data should use loadBuffer(long) or writeData(long, ByteBuf) instead.
+    OffHeapEntry cached = entries.get(id);
+    ByteBuf data = retainData(cached);
+    if (data != null) {
+      try {
+        ByteBuf base64 = data.skipBytes(StoreImage.STORE_IMAGE_DATA_STRING.length());
+        return new StoreImage(id, ByteBufUtil.getBytes(base64), cached.size);
+      } finally {
+        data.release();
+      }
+    }
+    // No entry in cache found, search in underlying storage
+    stats.recordMiss();
+    long loadStart = System.nanoTime();
+    StoreImage entry = cachedStorage.loadData(id);
+    stats.recordLoad(System.nanoTime() - loadStart, entry != null);
+    if (entry == null) {
+      return null;
+    }
+    // Data found, cache it and return
+    cacheData(entry);
+    return entry;
+  }
+
+  @Override
+  public boolean saveData(StoreImage data) {
+    if (data == null) {
+      return false;
+    }
+
+    cacheData(data);
+    return cachedStorage.saveData(data);
+  }
+
+  @Override
+  public boolean dataIsStorable(StoreImage data) {
+    return cachedStorage.dataIsStorable(data);
+  }
+
+  @Override
+  public boolean deleteData(StoreImage data) {
+    uncacheData(data);
+    return cachedStorage.deleteData(data);
+  }
+
+  @Override
+  public Path getDataFile(long id) {
+    return cachedStorage.getDataFile(id);
+  }
+
+  // Returns a retained duplicate of the data of the given entry without locking, marking it as referenced and
+  // counting the hit, or null if there is no entry or it was evicted in the meantime
+  private ByteBuf retainData(OffHeapEntry entry) {
+    if (entry == null || !entry.acquire()) {
+      return null;
+    }
+    try {
+      entry.referenced = true;
+      stats.recordHit();
+      return entry.data.retainedDuplicate();
+    } finally {
+      entry.release();
+    }
+  }
+
+  // Removes entries that were not referenced since the last check until the given number of bytes fits into the
+  // cache, referenced entries get a second chance at the end of the clock
+  private void evictEntries(long required) {
+    while (currentCacheSize + required > maxCacheSize && !clock.isEmpty()) {
+      OffHeapEntry entry = clock.pollFirst();
+      if (entry.removed) {
+        removedInClock--;
+        continue;
+      }
+      if (entry.referenced) {
+        entry.referenced = false;
+        clock.addLast(entry);
+        continue;
+      }
+      entries.remove(entry.id, entry);
+      currentCacheSize -= entry.data.readableBytes();
+      stats.recordEviction(String.valueOf(entry.size), entry.data.readableBytes());
+      entry.release();
+    }
+  }
+
+  // Marks the given entry as removed instead of searching it in the clock. The clock is compacted once most of its
+  // entries are removed, so it does not grow if entries are uncached faster than the hand passes them.
+  private void removeFromClock(OffHeapEntry entry) {
+    entry.removed = true;
+    removedInClock++;
+    if (removedInClock > clock.size() / 2) {
+      clock.removeIf(clockEntry -> clockEntry.removed);
+      removedInClock = 0;
+    }
+  }
+
+  // On-heap index entry referencing the off-heap image data. The entry counts the references of the cache and of
+  // concurrent readers itself, because pooled buffers are recycled once released and must not be retained afterwards.
+  private static final class OffHeapEntry {
+    private final long id;
+    private final ByteBuf data;
+    private final ImageSize size;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile boolean referenced;
+    // Only accessed while holding the lock of the cache
+    private boolean removed;
+
+    private OffHeapEntry(long id, ByteBuf data, ImageSize size) {
+      this.id = id;
+      this.data = data;
+      this.size = size;
+    }
+
+    // Adds a reference unless the data was already released
+    private boolean acquire() {
+      int current;
+      do {
+        current = references.get();
+        if (current == 0) {
+          return false;
+        }
+      } while (!references.compareAndSet(current, current + 1));
+      return true;
+    }
+
+    // Removes a reference, the last one releases the data
+    private void release() {
+      if (references.decrementAndGet() == 0) {
+        data.release();
+      }
+    }
+  }
+}
@@ -13,22 +13,28 @@
  */
 package image.cache;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Random;
 import java.util.function.Predicate;
 
 import image.cache.entry.ICachable;
+import image.cache.entry.SimpleEntry;
 import image.cache.rules.CacheAll;
 import image.storage.IDataStorage;
 
 /**
- * Random replacement (RR) cache implementation.
+ * Random replacement (RR) cache implementation. Entries are kept in an array list together with their position, so 
+ * random eviction and removal of arbitrary entries are constant time operations.
  * @author Norbert Schmitt
  *
  * @param <T> Entry Type implementing ICachable.
  */
-public class RandomReplacement<T extends ICachable<T>> extends AbstractQueueCache<T> {
+public class RandomReplacement<T extends ICachable<T>>
+    extends AbstractCache<ArrayList<SimpleEntry<T>>, T, SimpleEntry<T>> {
 
   private Random rand = new Random();
+  private final HashMap<Long, Integer> positions = new HashMap<>();
 
   /**
    * RR cache standard constructor setting the maximum cache size to the standard value 
@@ -66,7 +72,7 @@ public class RandomReplacement<T extends ICachable<T>> extends AbstractQueueCach
    */
   public RandomReplacement(IDataStorage<T> cachedStorage, long maxCacheSize,
       Predicate<T> cachingRule) {
-    super(cachedStorage, maxCacheSize, cachingRule);
+    super(new ArrayList<>(), cachedStorage, maxCacheSize, cachingRule);
   }
 
   /**
@@ -80,7 +86,7 @@ public class RandomReplacement<T extends ICachable<T>> extends AbstractQueueCach
    */
   public RandomReplacement(IDataStorage<T> cachedStorage, long maxCacheSize,
       Predicate<T> cachingRule, long seed) {
-    super(cachedStorage, maxCacheSize, cachingRule);
+    this(cachedStorage, maxCacheSize, cachingRule);
     setSeed(seed);
   }
 
@@ -92,9 +98,43 @@ public class RandomReplacement<T extends ICachable<T>> extends AbstractQueueCach
     rand.setSeed(seed);
   }
 
+  @Override
+  protected SimpleEntry<T> createEntry(T data) {
+    return new SimpleEntry<T>(data);
+  }
+
+  @Override
+  protected void addEntry(SimpleEntry<T> data) {
+    positions.put(data.getId(), getEntries().size());
+    super.addEntry(data);
+  }
+
+  @Override
+  protected boolean removeEntry(SimpleEntry<T> data) {
+    Integer position = positions.remove(data.getId());
+    if (position == null) {
+      return false;
+    }
+    // Move the last entry into the gap so no other entry needs to be shifted
+    SimpleEntry<T> last = getEntries().remove(getEntries().size() - 1);
+    if (position < getEntries().size()) {
+      getEntries().set(position, last);
+      positions.put(last.getId(), position);
+    }
+    return true;
+  }
+
+  @Override
+  protected void clearEntries() {
+    super.clearEntries();
+    positions.clear();
+  }
+
   @Override
   protected void removeEntryByCachingStrategy() {
-    dataRemovedFromCache(getEntries().remove(rand.nextInt(getEntries().size())).getByteSize());
+    SimpleEntry<T> victim = getEntries().get(rand.nextInt(getEntries().size()));
+    removeEntry(victim);
+    entryEvicted(victim);
   }
 
 }
\ No newline at end of file
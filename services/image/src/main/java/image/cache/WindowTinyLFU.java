@@ -0,0 +1,523 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import image.cache.entry.ICachable;
+import image.cache.rules.CacheAll;
+import image.storage.IDataStorage;
+import image.storage.NoStorage;
+
+/**
+ * Concurrent W-TinyLFU cache implementation. Lookups go to a concurrent hash map and never block. Accesses are
+ * recorded in striped, lossy read buffers that are replayed against the eviction policy by whichever thread obtains
+ * the eviction lock, so hits do not serialize on a global lock. New entries enter a small LRU window and have to beat
+ * the least recently used entry of the main region in a frequency sketch to be admitted. The main region is a
+ * segmented LRU with a probation and a protected part. All regions are bounded by the byte size of their entries.
+ * @author Philipp Backes
+ *
+ * @param <T> Entry Type implementing ICachable.
+ */
+public class WindowTinyLFU<T extends ICachable<T>> implements IDataCache<T> {
+
+  /**
+   * Share of the maximum cache size reserved for the admission window.
+   */
+  public static final double WINDOW_RATIO = 0.01;
+
+  /**
+   * Share of the main region reserved for protected entries.
+   */
+  public static final double PROTECTED_RATIO = 0.8;
+
+  /**
+   * Expected minimum byte size of an entry, used to size the frequency sketch from the maximum cache size.
+   */
+  public static final long MIN_ENTRY_SIZE = 1024;
+
+  private static final int READ_BUFFER_SIZE = 16;
+  private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+  private static final int NR_OF_READ_BUFFERS = Integer.highestOneBit(
+      Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+
+  private IDataStorage<T> cachedStorage;
+  private Predicate<T> cachingRule;
+  private final ConcurrentHashMap<Long, Node<T>> data = new ConcurrentHashMap<>();
+  private final List<ReadBuffer<T>> readBuffers = new ArrayList<>(NR_OF_READ_BUFFERS);
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final FrequencySketch sketch = new FrequencySketch();
+  private final CacheStatsCounter stats = new CacheStatsCounter();
+  private final AccessOrderDeque<T> window = new AccessOrderDeque<>();
+  private final AccessOrderDeque<T> probation = new AccessOrderDeque<>();
+  private final AccessOrderDeque<T> protectedRegion = new AccessOrderDeque<>();
+  private volatile long maxCacheSize;
+  private volatile long currentCacheSize;
+  private long windowMaxSize;
+  private long protectedMaxSize;
+  private static final Logger LOG = LogManager.getLogger(WindowTinyLFU.class);
+
+  /**
+   * W-TinyLFU cache standard constructor setting the maximum cache size to the standard value
+   * {@link image.cache.IDataCache.STD_MAX_CACHE_SIZE} and allowing all data to be cached.
+   */
+  public WindowTinyLFU() {
+    this(IDataCache.STD_MAX_CACHE_SIZE);
+  }
+
+  /**
+   * W-TinyLFU cache constructor setting the maximum cache size to the given size and allowing all data to be cached.
+   * @param maxCacheSize Maximum cache size in bytes.
+   */
+  public WindowTinyLFU(long maxCacheSize) {
+    this(maxCacheSize, new CacheAll<T>());
+  }
+
+  /**
+   * W-TinyLFU cache constructor setting the maximum cache size to the given size and caching only data that is tested
+   * true for the given caching rule.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   */
+  public WindowTinyLFU(long maxCacheSize, Predicate<T> cachingRule) {
+    this(null, maxCacheSize, cachingRule);
+  }
+
+  /**
+   * W-TinyLFU cache constructor setting the maximum cache size to the given size and caching only data that is tested
+   * true for the given caching rule. This constructor also lets you set the underlying storage, queried if an entry is
+   * not found in the cache.
+   * @param cachedStorage Storage object to query if an entry is not found in the cache.
+   * @param maxCacheSize Maximum cache size in bytes.
+   * @param cachingRule Cache rule determining which data will be cached.
+   */
+  public WindowTinyLFU(IDataStorage<T> cachedStorage, long maxCacheSize, Predicate<T> cachingRule) {
+    if (cachingRule == null) {
+      LOG.error("The provided caching rule is null.");
+      throw new NullPointerException("The provided caching rule is null.");
+    }
+
+    if (cachedStorage == null) {
+      LOG.info("No underlying disk storage supplied, assuming no data is stored on disk.");
+      this.cachedStorage = new NoStorage<T>();
+    } else {
+      this.cachedStorage = cachedStorage;
+    }
+    this.cachingRule = cachingRule;
+    for (int i = 0; i < NR_OF_READ_BUFFERS; i++) {
+      readBuffers.add(new ReadBuffer<>());
+    }
+    setMaxCacheSize(maxCacheSize);
+  }
+
+  /*
+   * Implementations for interface IDataCache
+   */
+
+  @Override
+  public long getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  @Override
+  public boolean setMaxCacheSize(long maxCacheSize) {
+    if (maxCacheSize <= 0) {
+      LOG.error("The provided cache size is negative. Must be positive.");
+      throw new IllegalArgumentException("The provided cache size is negative. Must be positive.");
+    }
+
+    evictionLock.lock();
+    try {
+      this.maxCacheSize = maxCacheSize;
+      windowMaxSize = (long) (maxCacheSize * WINDOW_RATIO);
+      protectedMaxSize = (long) ((maxCacheSize - windowMaxSize) * PROTECTED_RATIO);
+      // Growing the sketch to the new number of entries resets its counters, it never shrinks
+      drainReadBuffers();
+      sketch.ensureCapacity(maxCacheSize / MIN_ENTRY_SIZE);
+      evictEntries();
+    } finally {
+      evictionLock.unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public CacheStatsCounter getStatsCounter() {
+    return stats;
+  }
+
+  @Override
+  public long getCurrentCacheSize() {
+    return currentCacheSize;
+  }
+
+  @Override
+  public long getFreeSpace() {
+    return maxCacheSize - getCurrentCacheSize();
+  }
+
+  @Override
+  public boolean hasStorageFor(long size) {
+    return size <= getFreeSpace();
+  }
+
+  @Override
+  public void cacheData(T data) {
+    if (!dataIsCachable(data) || data.getByteSize() > maxCacheSize) {
+      return;
+    }
+
+    evictionLock.lock();
+    try {
+      sketch.increment(data.getId());
+      if (this.data.containsKey(data.getId())) {
+        return;
+      }
+      Node<T> node = new Node<>(data);
+      this.data.put(node.id, node);
+      window.addLast(node);
+      node.region = Region.WINDOW;
+      currentCacheSize += node.weight;
+      stats.recordAdded(data.getCacheGroup(), node.weight);
+      drainReadBuffers();
+      evictEntries();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public void uncacheData(T data) {
+    evictionLock.lock();
+    try {
+      Node<T> node = this.data.get(data.getId());
+      if (node != null) {
+        removeNode(node);
+        stats.recordRemoved(node.value.getCacheGroup(), node.weight);
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean dataIsCachable(T data) {
+    return cachingRule.test(data);
+  }
+
+  @Override
+  public boolean dataIsInCache(long id) {
+    return data.containsKey(id);
+  }
+
+  @Override
+  public void clearCache() {
+    evictionLock.lock();
+    try {
+      drainReadBuffers();
+      data.values().forEach(node -> node.region = null);
+      data.clear();
+      window.clear();
+      probation.clear();
+      protectedRegion.clear();
+      sketch.clear();
+      currentCacheSize = 0;
+      stats.recordCleared();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /*
+   * Implementations for interface IDataStorage
+   */
+
+  @Override
+  public boolean dataExists(long id) {
+    return dataIsInCache(id) || cachedStorage.dataExists(id);
+  }
+
+  @Override
+  public T loadData(long id) {
+    // Search entry in cache
+    Node<T> node = data.get(id);
+    if (node != null) {
+      stats.recordHit();
+      afterRead(node);
+      return node.value;
+    }
+    // No entry in cache found, search in underlying storage
+    stats.recordMiss();
+    long loadStart = System.nanoTime();
+    T entry = cachedStorage.loadData(id);
+    stats.recordLoad(System.nanoTime() - loadStart, entry != null);
+    if (entry == null) {
+      return null;
+    }
+    // Data found, cache it and return
+    cacheData(entry);
+    return entry;
+  }
+
+  @Override
+  public boolean saveData(T data) {
+    if (data == null) {
+      return false;
+    }
+
+    cacheData(data);
+    return cachedStorage.saveData(data);
+  }
+
+  @Override
+  public boolean dataIsStorable(T data) {
+    return cachedStorage.dataIsStorable(data);
+  }
+
+  @Override
+  public boolean deleteData(T data) {
+    uncacheData(data);
+    return cachedStorage.deleteData(data);
+  }
+
+  @Override
+  public Path getDataFile(long id) {
+    return cachedStorage.getDataFile(id);
+  }
+
+  /*
+   * Eviction policy, all methods below except afterRead must be called while holding the eviction lock
+   */
+
+  // Records the access in the read buffer of the current thread and replays the buffers if it is full
+  private void afterRead(Node<T> node) {
+    int probe = (int) Thread.currentThread().getId() * 0x9E3779B9;
+    ReadBuffer<T> buffer = readBuffers.get((probe >>> 16) & (NR_OF_READ_BUFFERS - 1));
+    if (!buffer.offer(node) && evictionLock.tryLock()) {
+      try {
+        drainReadBuffers();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private void drainReadBuffers() {
+    for (ReadBuffer<T> buffer : readBuffers) {
+      buffer.drain(this::onAccess);
+    }
+  }
+
+  private void onAccess(Node<T> node) {
+    if (node.region == null) {
+      // Entry was evicted after it was read
+      return;
+    }
+    sketch.increment(node.id);
+    switch (node.region) {
+    case WINDOW:
+      window.moveToBack(node);
+      break;
+    case PROBATION:
+      probation.remove(node);
+      protectedRegion.addLast(node);
+      node.region = Region.PROTECTED;
+      demoteFromProtected();
+      break;
+    case PROTECTED:
+      protectedRegion.moveToBack(node);
+      break;
+    default:
+      break;
+    }
+  }
+
+  private void demoteFromProtected() {
+    while (protectedRegion.weight > protectedMaxSize && protectedRegion.first != null) {
+      Node<T> demoted = protectedRegion.first;
+      protectedRegion.remove(demoted);
+      probation.addLast(demoted);
+      demoted.region = Region.PROBATION;
+    }
+  }
+
+  private void evictEntries() {
+    // Entries leaving the window become candidates at the most recently used end of the probation region
+    int candidates = 0;
+    while (window.weight > windowMaxSize && window.first != null) {
+      Node<T> candidate = window.first;
+      window.remove(candidate);
+      probation.addLast(candidate);
+      candidate.region = Region.PROBATION;
+      candidates++;
+    }
+
+    while (currentCacheSize > maxCacheSize) {
+      Node<T> victim = probation.first;
+      if (victim == null) {
+        victim = protectedRegion.first != null ? protectedRegion.first : window.first;
+        evictNode(victim);
+        continue;
+      }
+      Node<T> candidate = candidates > 0 ? probation.last : null;
+      if (candidate == null || candidate == victim) {
+        evictNode(victim);
+        candidates = Math.max(0, candidates - 1);
+      } else if (sketch.frequency(candidate.id) > sketch.frequency(victim.id)) {
+        evictNode(victim);
+      } else {
+        evictNode(candidate);
+        candidates--;
+      }
+    }
+  }
+
+  private void evictNode(Node<T> node) {
+    removeNode(node);
+    stats.recordEviction(node.value.getCacheGroup(), node.weight);
+  }
+
+  private void removeNode(Node<T> node) {
+    switch (node.region) {
+    case WINDOW:
+      window.remove(node);
+      break;
+    case PROBATION:
+      probation.remove(node);
+      break;
+    case PROTECTED:
+      protectedRegion.remove(node);
+      break;
+    default:
+      break;
+    }
+    node.region = null;
+    data.remove(node.id, node);
+    currentCacheSize -= node.weight;
+  }
+
+  private enum Region {
+    WINDOW, PROBATION, PROTECTED
+  }
+
+  // Cache entry that is linked into the access order of its region
+  private static final class Node<T> {
+    private final long id;
+    private final long weight;
+    private final T value;
+    private Region region;
+    private Node<T> prev;
+    private Node<T> next;
+
+    private Node(T value) {
+      this.value = value;
+      this.id = ((ICachable<?>) value).getId();
+      this.weight = ((ICachable<?>) value).getByteSize();
+    }
+  }
+
+  // Intrusive doubly linked list ordered from least to most recently used, tracking the byte size of its entries
+  private static final class AccessOrderDeque<T> {
+    private Node<T> first;
+    private Node<T> last;
+    private long weight;
+
+    private void addLast(Node<T> node) {
+      node.prev = last;
+      node.next = null;
+      if (last == null) {
+        first = node;
+      } else {
+        last.next = node;
+      }
+      last = node;
+      weight += node.weight;
+    }
+
+    private void remove(Node<T> node) {
+      if (node.prev == null) {
+        first = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        last = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+      weight -= node.weight;
+    }
+
+    private void moveToBack(Node<T> node) {
+      if (node != last) {
+        remove(node);
+        addLast(node);
+      }
+    }
+
+    private void clear() {
+      first = null;
+      last = null;
+      weight = 0;
+    }
+  }
+
+  // Lossy ring buffer of recent reads, written without locking and drained under the eviction lock
+  private static final class ReadBuffer<T> {
+    private final AtomicLong writeCounter = new AtomicLong();
+    private final AtomicReferenceArray<Node<T>> buffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private volatile long readCounter;
+
+    // Returns false if the buffer is full and the access was dropped
+    private boolean offer(Node<T> node) {
+      long tail = writeCounter.get();
+      if (tail - readCounter >= READ_BUFFER_SIZE) {
+        return false;
+      }
+      if (writeCounter.compareAndSet(tail, tail + 1)) {
+        buffer.lazySet((int) (tail & READ_BUFFER_MASK), node);
+      }
+      return true;
+    }
+
+    private void drain(Consumer<Node<T>> consumer) {
+      long head = readCounter;
+      long tail = writeCounter.get();
+      for (; head < tail; head++) {
+        int index = (int) (head & READ_BUFFER_MASK);
+        Node<T> node = buffer.get(index);
+        if (node == null) {
+          // Slot was claimed but not written yet
+          break;
+        }
+        buffer.lazySet(index, null);
+        consumer.accept(node);
+      }
+      readCounter = head;
+    }
+  }
+}
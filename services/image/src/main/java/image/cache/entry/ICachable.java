@@ -40,4 +40,13 @@ public interface ICachable<D extends ICachable<D>> {
    */
   public long getId();
 
+  /**
+   * Returns the group of the cachable data that cache statistics are broken down by.
+   * 
+   * @return The group of the cachable data
+   */
+  public default String getCacheGroup() {
+    return "";
+  }
+
 }
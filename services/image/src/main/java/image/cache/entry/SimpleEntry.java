@@ -13,6 +13,8 @@
  */
 package image.cache.entry;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Instantiable wrapper class not storing any additional data aparat from the
  * cachable data.
@@ -25,6 +27,9 @@ package image.cache.entry;
  */
 public class SimpleEntry<D extends ICachable<D>> extends AbstractEntry<D> {
 
+  private static final AtomicLong NEXT_INSERTION_ORDER = new AtomicLong();
+  private final long insertionOrder = NEXT_INSERTION_ORDER.getAndIncrement();
+
   /**
    * Basic constructor storing the cachable data. If the cachable data supplied is
    * null, a {@link java.lang.NullPointerException} is thrown.
@@ -36,6 +41,15 @@ public class SimpleEntry<D extends ICachable<D>> extends AbstractEntry<D> {
     super(data);
   }
 
+  /**
+   * Returns the position of this entry in the global order in which entries were created.
+   * 
+   * @return Insertion order of this entry
+   */
+  public long getInsertionOrder() {
+    return insertionOrder;
+  }
+
   @Override
   public void wasUsed() {
     // There is nothing to do.
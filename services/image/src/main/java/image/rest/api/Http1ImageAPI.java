@@ -16,21 +16,31 @@ package image.rest.api;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import image.ImageProvider;
+import image.cache.CacheStatistics;
+import image.setup.CachingMode;
 import image.setup.SetupController;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.handler.codec.http.*;
 import io.netty.util.CharsetUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import utilities.datamodel.*;
 import utilities.rest.api.API;
+import utilities.rest.api.ETagUtil;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import static io.netty.handler.codec.http.HttpResponseStatus.*;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static utilities.rest.api.API.*;
 
 /**
  * HTTP/1.1 API for image service
@@ -54,8 +64,12 @@ public class Http1ImageAPI implements API {
         // Select endpoint
         if (path.startsWith("/api/image")) {
             String subPath = path.substring("/api/image".length());
+            boolean imageUrls = isUrlFormat(queryStringDecoder);
             switch (method) {
                 case "GET":
+                    if (subPath.startsWith(IMAGE_RAW_PATH)) {
+                        return getRawImage(subPath.substring(IMAGE_RAW_PATH.length()), header);
+                    }
                     switch (subPath) {
                         case "/finished":
                             return isFinished();
@@ -63,15 +77,19 @@ public class Http1ImageAPI implements API {
                             return regenerateImages();
                         case "/state":
                             return getState();
+                        case "/cache/stats":
+                            return getCacheStats();
                     }
                 case "POST":
                     switch (subPath) {
                         case "/productimages":
-                            return getProductImages(body);
+                            return getProductImages(body, imageUrls);
                         case "/webimages":
-                            return getWebImages(body);
+                            return getWebImages(body, imageUrls);
                         case "/setcachesize":
                             return setCacheSize(body);
+                        case "/cache/mode":
+                            return setCachingMode(body);
                     }
                 default:
                     break;
@@ -80,6 +98,89 @@ public class Http1ImageAPI implements API {
         return new DefaultFullHttpResponse(HTTP_1_1, NOT_FOUND);
     }
 
+    /**
+     * Handles GET /raw/{imageId} requests for images stored as plain files on disk,
+     * the file content is transferred to the channel without copying it into the heap
+     *
+     * @param header Request header
+     * @return File response or null if the request is not served from a file
+     */
+    public Http1FileResponse handleFile(HttpRequest header) {
+        String path = new QueryStringDecoder(header.uri()).path();
+        if (header.method() != HttpMethod.GET || !path.startsWith(IMAGE_ENDPOINT + IMAGE_RAW_PATH)) {
+            return null;
+        }
+        long imageId = parseImageId(path.substring((IMAGE_ENDPOINT + IMAGE_RAW_PATH).length()));
+        String eTag = ImageProvider.IP.getImageETag(imageId);
+        if (imageId <= 0 || ETagUtil.matches(header.headers().get(HttpHeaderNames.IF_NONE_MATCH), eTag)) {
+            return null;
+        }
+        Path file = ImageProvider.IP.getImageFile(imageId);
+        if (file == null) {
+            return null;
+        }
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            long length = channel.size();
+            HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
+            setImageHeaders(response.headers(), eTag);
+            HttpUtil.setContentLength(response, length);
+            return new Http1FileResponse(response, new DefaultFileRegion(channel, 0, length));
+        } catch (IOException e) {
+            LOG.error(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * GET /raw/{imageId}
+     *
+     * Returns the image with the given image ID as PNG file
+     *
+     * @param imageId Image ID
+     * @param header Request header, checked for a matching entity tag
+     * @return Image file content
+     */
+    private FullHttpResponse getRawImage(String imageId, HttpRequest header) {
+        long id = parseImageId(imageId);
+        if (id <= 0) {
+            return new DefaultFullHttpResponse(HTTP_1_1, BAD_REQUEST);
+        }
+        String eTag = ImageProvider.IP.getImageETag(id);
+        if (ETagUtil.matches(header.headers().get(HttpHeaderNames.IF_NONE_MATCH), eTag)) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, NOT_MODIFIED);
+            response.headers().set(HttpHeaderNames.ETAG, eTag);
+            response.headers().set(HttpHeaderNames.CACHE_CONTROL, ImageProvider.IMAGE_CACHE_CONTROL);
+            return response;
+        }
+        ByteBuf image = ImageProvider.IP.getImageData(id);
+        if (image == null) {
+            return new DefaultFullHttpResponse(HTTP_1_1, NOT_FOUND);
+        }
+        FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, OK, image);
+        setImageHeaders(response.headers(), eTag);
+        return response;
+    }
+
+    private void setImageHeaders(HttpHeaders headers, String eTag) {
+        headers.set(HttpHeaderNames.CONTENT_TYPE, ImageProvider.IMAGE_CONTENT_TYPE);
+        headers.set(HttpHeaderNames.ETAG, eTag);
+        headers.set(HttpHeaderNames.CACHE_CONTROL, ImageProvider.IMAGE_CACHE_CONTROL);
+    }
+
+    private long parseImageId(String imageId) {
+        try {
+            return Long.parseLong(imageId);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private boolean isUrlFormat(QueryStringDecoder queryStringDecoder) {
+        List<String> format = queryStringDecoder.parameters().get(IMAGE_FORMAT_PARAMETER);
+        return format != null && format.contains(IMAGE_FORMAT_URL);
+    }
+
     /**
      * POST /productimages
      *
@@ -87,9 +188,10 @@ public class Http1ImageAPI implements API {
      * provided as strings
      *
      * @param body Map of product IDs and the corresponding image size as JSON
+     * @param imageUrls Return image URLs instead of the image data
      * @return Map of product IDs and the image data (base64 encoded) as JSON
      */
-    private FullHttpResponse getProductImages(ByteBuf body) {
+    private FullHttpResponse getProductImages(ByteBuf body, boolean imageUrls) {
         byte[] jsonByte = new byte[body.readableBytes()];
         body.readBytes(jsonByte);
         try {
@@ -97,18 +199,21 @@ public class Http1ImageAPI implements API {
                     jsonByte,
                     new TypeReference<Map<Long, String>>(){}
             );
-            images = ImageProvider.IP.getProductImages(
-                    images.entrySet().parallelStream().collect(
-                            Collectors.toMap(Map.Entry::getKey,
-                                    e -> ImageSize.parseImageSize(e.getValue())
-                            )
+            Map<Long, ImageSize> imageSizeMap = images.entrySet().parallelStream().collect(
+                    Collectors.toMap(Map.Entry::getKey,
+                            e -> ImageSize.parseImageSize(e.getValue())
                     )
             );
-            String json = mapper.writeValueAsString(images);
+            ByteBuf json = imageUrls
+                    ? Unpooled.copiedBuffer(
+                            mapper.writeValueAsString(ImageProvider.IP.getProductImageUrls(imageSizeMap)),
+                            CharsetUtil.UTF_8
+                    )
+                    : ImageDataJson.write(ImageProvider.IP.getProductImageData(imageSizeMap));
             return new DefaultFullHttpResponse(
                     HTTP_1_1,
                     HttpResponseStatus.OK,
-                    Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
+                    json
             );
         } catch (Exception e) {
             LOG.error(e.getMessage());
@@ -123,9 +228,10 @@ public class Http1ImageAPI implements API {
      * provided as strings
      *
      * @param body Map web interface image names and the corresponding image size as JSON
+     * @param imageUrls Return image URLs instead of the image data
      * @return Map of web interface image names and the image data (base64 encoded) as JSON
      */
-    private FullHttpResponse getWebImages(ByteBuf body) {
+    private FullHttpResponse getWebImages(ByteBuf body, boolean imageUrls) {
         byte[] jsonByte = new byte[body.readableBytes()];
         body.readBytes(jsonByte);
         try {
@@ -133,21 +239,24 @@ public class Http1ImageAPI implements API {
                     jsonByte,
                     new TypeReference<Map<String, String>>(){}
             );
-            Map<String, String> imageDataMap = ImageProvider.IP.getWebImages(
-                    imageSizeMap.entrySet().parallelStream().collect(
-                            Collectors.toMap(
-                                    Map.Entry::getKey,
-                                    e -> ImageSize.parseImageSize(
-                                            e.getValue()
-                                    )
+            Map<String, ImageSize> imageSizes = imageSizeMap.entrySet().parallelStream().collect(
+                    Collectors.toMap(
+                            Map.Entry::getKey,
+                            e -> ImageSize.parseImageSize(
+                                    e.getValue()
                             )
                     )
             );
-            String json = mapper.writeValueAsString(imageDataMap);
+            ByteBuf json = imageUrls
+                    ? Unpooled.copiedBuffer(
+                            mapper.writeValueAsString(ImageProvider.IP.getWebImageUrls(imageSizes)),
+                            CharsetUtil.UTF_8
+                    )
+                    : ImageDataJson.write(ImageProvider.IP.getWebImageData(imageSizes));
             return new DefaultFullHttpResponse(
                     HTTP_1_1,
                     HttpResponseStatus.OK,
-                    Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
+                    json
             );
         } catch (Exception e) {
             LOG.error(e.getMessage());
@@ -234,4 +343,54 @@ public class Http1ImageAPI implements API {
         }
         return new DefaultFullHttpResponse(HTTP_1_1, INTERNAL_SERVER_ERROR);
     }
+
+    /**
+     * GET /cache/stats
+     *
+     * Hit and miss counts, evictions, load latency and occupancy per image size of the current cache
+     *
+     * @return Cache statistics
+     */
+    private FullHttpResponse getCacheStats() {
+        CacheStatistics statistics = SetupController.SETUP.getCacheStatistics();
+        try {
+            String json = mapper.writeValueAsString(statistics);
+            return new DefaultFullHttpResponse(
+                    HTTP_1_1,
+                    HttpResponseStatus.OK,
+                    Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
+            );
+        } catch (Exception e) {
+            LOG.error(e.getMessage());
+        }
+        return new DefaultFullHttpResponse(HTTP_1_1, INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * POST /cache/mode
+     *
+     * Replaces the cache by an empty cache of the given caching mode, e.g. "LRU" or "W-TinyLFU"
+     *
+     * @return True or BAD_REQUEST if the caching mode is unknown
+     */
+    private FullHttpResponse setCachingMode(ByteBuf body) {
+        byte[] jsonByte = new byte[body.readableBytes()];
+        body.readBytes(jsonByte);
+        try {
+            CachingMode cachingMode = CachingMode.findCachingMode(mapper.readValue(jsonByte, String.class));
+            if (cachingMode == null) {
+                return new DefaultFullHttpResponse(HTTP_1_1, BAD_REQUEST);
+            }
+            SetupController.SETUP.setCachingMode(cachingMode);
+            String json = mapper.writeValueAsString(Boolean.TRUE);
+            return new DefaultFullHttpResponse(
+                    HTTP_1_1,
+                    HttpResponseStatus.OK,
+                    Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
+            );
+        } catch (Exception e) {
+            LOG.error(e.getMessage());
+        }
+        return new DefaultFullHttpResponse(HTTP_1_1, INTERNAL_SERVER_ERROR);
+    }
 }
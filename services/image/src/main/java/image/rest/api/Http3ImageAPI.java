@@ -16,21 +16,30 @@ package image.rest.api;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import image.ImageProvider;
+import image.cache.CacheStatistics;
+import image.setup.CachingMode;
 import image.setup.SetupController;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.incubator.codec.http3.DefaultHttp3Headers;
 import io.netty.incubator.codec.http3.Http3Headers;
 import io.netty.util.CharsetUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import utilities.datamodel.ImageSize;
 import utilities.rest.api.API;
+import utilities.rest.api.ETagUtil;
 import utilities.rest.api.Http3Response;
 
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
+import static utilities.rest.api.API.*;
+
 /**
  * HTTP/3 API for image service
  * /api/image
@@ -53,8 +62,12 @@ public class Http3ImageAPI implements API {
         // Select endpoint
         if (path.startsWith("/api/image")) {
             String subPath = path.substring("/api/image".length());
+            boolean imageUrls = isUrlFormat(queryStringDecoder);
             switch (method) {
                 case "GET":
+                    if (subPath.startsWith(IMAGE_RAW_PATH)) {
+                        return getRawImage(subPath.substring(IMAGE_RAW_PATH.length()), headers);
+                    }
                     switch (subPath) {
                         case "/finished":
                             return isFinished();
@@ -62,15 +75,19 @@ public class Http3ImageAPI implements API {
                             return regenerateImages();
                         case "/state":
                             return getState();
+                        case "/cache/stats":
+                            return getCacheStats();
                     }
                 case "POST":
                     switch (subPath) {
                         case "/productimages":
-                            return getProductImages(body);
+                            return getProductImages(body, imageUrls);
                         case "/webimages":
-                            return getWebImages(body);
+                            return getWebImages(body, imageUrls);
                         case "/setcachesize":
                             return setCacheSize(body);
+                        case "/cache/mode":
+                            return setCachingMode(body);
                     }
                 default:
                     break;
@@ -79,6 +96,56 @@ public class Http3ImageAPI implements API {
         return Http3Response.notFoundResponse();
     }
 
+    /**
+     * GET /raw/{imageId}
+     *
+     * Returns the image with the given image ID as PNG file
+     *
+     * @param imageId Image ID
+     * @param headers Request headers, checked for a matching entity tag
+     * @return Image file content
+     */
+    private Http3Response getRawImage(String imageId, Http3Headers headers) {
+        long id = parseImageId(imageId);
+        if (id <= 0) {
+            return Http3Response.badRequestResponse();
+        }
+        String eTag = ImageProvider.IP.getImageETag(id);
+        if (ETagUtil.matches(headers.get(HttpHeaderNames.IF_NONE_MATCH), eTag)) {
+            return new Http3Response(
+                    new DefaultHttp3Headers().status(NOT_MODIFIED.codeAsText())
+                            .set(HttpHeaderNames.ETAG, eTag)
+                            .set(HttpHeaderNames.CACHE_CONTROL, ImageProvider.IMAGE_CACHE_CONTROL),
+                    null
+            );
+        }
+        ByteBuf image = ImageProvider.IP.getImageData(id);
+        if (image == null) {
+            return Http3Response.notFoundResponse();
+        }
+        return new Http3Response(
+                new DefaultHttp3Headers().status(OK.codeAsText())
+                        .set(HttpHeaderNames.CONTENT_TYPE, ImageProvider.IMAGE_CONTENT_TYPE)
+                        .set(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(image.readableBytes()))
+                        .set(HttpHeaderNames.ETAG, eTag)
+                        .set(HttpHeaderNames.CACHE_CONTROL, ImageProvider.IMAGE_CACHE_CONTROL),
+                image
+        );
+    }
+
+    private long parseImageId(String imageId) {
+        try {
+            return Long.parseLong(imageId);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private boolean isUrlFormat(QueryStringDecoder queryStringDecoder) {
+        List<String> format = queryStringDecoder.parameters().get(IMAGE_FORMAT_PARAMETER);
+        return format != null && format.contains(IMAGE_FORMAT_URL);
+    }
+
     /**
      * POST /productimages
      *
@@ -86,9 +153,10 @@ public class Http3ImageAPI implements API {
      * provided as strings
      *
      * @param body Map of product IDs and the corresponding image size as JSON
+     * @param imageUrls Return image URLs instead of the image data
      * @return Map of product IDs and the image data (base64 encoded) as JSON
      */
-    private Http3Response getProductImages(ByteBuf body) {
+    private Http3Response getProductImages(ByteBuf body, boolean imageUrls) {
         byte[] jsonByte = new byte[body.readableBytes()];
         body.readBytes(jsonByte);
         try {
@@ -96,17 +164,20 @@ public class Http3ImageAPI implements API {
                     jsonByte,
                     new TypeReference<Map<Long, String>>(){}
             );
-            images = ImageProvider.IP.getProductImages(
-                    images.entrySet().parallelStream().collect(
-                            Collectors.toMap(Map.Entry::getKey,
-                                    e -> ImageSize.parseImageSize(e.getValue())
-                            )
+            Map<Long, ImageSize> imageSizeMap = images.entrySet().parallelStream().collect(
+                    Collectors.toMap(Map.Entry::getKey,
+                            e -> ImageSize.parseImageSize(e.getValue())
                     )
             );
-            String json = mapper.writeValueAsString(images);
+            ByteBuf json = imageUrls
+                    ? Unpooled.copiedBuffer(
+                            mapper.writeValueAsString(ImageProvider.IP.getProductImageUrls(imageSizeMap)),
+                            CharsetUtil.UTF_8
+                    )
+                    : ImageDataJson.write(ImageProvider.IP.getProductImageData(imageSizeMap));
             return new Http3Response(
-                    Http3Response.okJsonHeader(json.getBytes(CharsetUtil.UTF_8).length),
-                    Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
+                    Http3Response.okJsonHeader(json.readableBytes()),
+                    json
             );
         } catch (Exception e) {
             LOG.error(e.getMessage());
@@ -121,9 +192,10 @@ public class Http3ImageAPI implements API {
      * provided as strings
      *
      * @param body Map web interface image names and the corresponding image size as JSON
+     * @param imageUrls Return image URLs instead of the image data
      * @return Map of web interface image names and the image data (base64 encoded) as JSON
      */
-    private Http3Response getWebImages(ByteBuf body) {
+    private Http3Response getWebImages(ByteBuf body, boolean imageUrls) {
         byte[] jsonByte = new byte[body.readableBytes()];
         body.readBytes(jsonByte);
         try {
@@ -131,20 +203,23 @@ public class Http3ImageAPI implements API {
                     jsonByte,
                     new TypeReference<Map<String, String>>(){}
             );
-            Map<String, String> imageDataMap = ImageProvider.IP.getWebImages(
-                    imageSizeMap.entrySet().parallelStream().collect(
-                            Collectors.toMap(
-                                    Map.Entry::getKey,
-                                    e -> ImageSize.parseImageSize(
-                                            e.getValue()
-                                    )
+            Map<String, ImageSize> imageSizes = imageSizeMap.entrySet().parallelStream().collect(
+                    Collectors.toMap(
+                            Map.Entry::getKey,
+                            e -> ImageSize.parseImageSize(
+                                    e.getValue()
                             )
                     )
             );
-            String json = mapper.writeValueAsString(imageDataMap);
+            ByteBuf json = imageUrls
+                    ? Unpooled.copiedBuffer(
+                            mapper.writeValueAsString(ImageProvider.IP.getWebImageUrls(imageSizes)),
+                            CharsetUtil.UTF_8
+                    )
+                    : ImageDataJson.write(ImageProvider.IP.getWebImageData(imageSizes));
             return new Http3Response(
-                    Http3Response.okJsonHeader(json.getBytes(CharsetUtil.UTF_8).length),
-                    Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
+                    Http3Response.okJsonHeader(json.readableBytes()),
+                    json
             );
         } catch (Exception e) {
             LOG.error(e.getMessage());
@@ -228,4 +303,52 @@ public class Http3ImageAPI implements API {
         }
         return Http3Response.internalServerErrorResponse();
     }
+
+    /**
+     * GET /cache/stats
+     *
+     * Hit and miss counts, evictions, load latency and occupancy per image size of the current cache
+     *
+     * @return Cache statistics
+     */
+    private Http3Response getCacheStats() {
+        CacheStatistics statistics = SetupController.SETUP.getCacheStatistics();
+        try {
+            String json = mapper.writeValueAsString(statistics);
+            return new Http3Response(
+                    Http3Response.okJsonHeader(json.getBytes(CharsetUtil.UTF_8).length),
+                    Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
+            );
+        } catch (Exception e) {
+            LOG.error(e.getMessage());
+        }
+        return Http3Response.internalServerErrorResponse();
+    }
+
+    /**
+     * POST /cache/mode
+     *
+     * Replaces the cache by an empty cache of the given caching mode, e.g. "LRU" or "W-TinyLFU"
+     *
+     * @return True or BAD_REQUEST if the caching mode is unknown
+     */
+    private Http3Response setCachingMode(ByteBuf body) {
+        byte[] jsonByte = new byte[body.readableBytes()];
+        body.readBytes(jsonByte);
+        try {
+            CachingMode cachingMode = CachingMode.findCachingMode(mapper.readValue(jsonByte, String.class));
+            if (cachingMode == null) {
+                return Http3Response.badRequestResponse();
+            }
+            SetupController.SETUP.setCachingMode(cachingMode);
+            String json = mapper.writeValueAsString(Boolean.TRUE);
+            return new Http3Response(
+                    Http3Response.okJsonHeader(json.getBytes(CharsetUtil.UTF_8).length),
+                    Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
+            );
+        } catch (Exception e) {
+            LOG.error(e.getMessage());
+        }
+        return Http3Response.internalServerErrorResponse();
+    }
 }
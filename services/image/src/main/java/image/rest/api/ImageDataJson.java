@@ -0,0 +1,65 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.rest.api;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+
+import java.util.Map;
+
+/**
+ * Assembles the JSON responses of the image endpoints from image data URIs.
+ * The image data is spliced into a composite buffer as is, only the keys and the JSON syntax are written.
+ * Data URIs only contain characters that need no escaping in JSON strings.
+ *
+ * @author Philipp Backes
+ */
+public final class ImageDataJson {
+
+    private static final byte[] OBJECT_START = "{\"".getBytes(CharsetUtil.US_ASCII);
+    private static final byte[] ENTRY_SEPARATOR = "\",\"".getBytes(CharsetUtil.US_ASCII);
+    private static final byte[] KEY_END = "\":\"".getBytes(CharsetUtil.US_ASCII);
+    private static final byte[] OBJECT_END = "\"}".getBytes(CharsetUtil.US_ASCII);
+    private static final byte[] EMPTY_OBJECT = "{}".getBytes(CharsetUtil.US_ASCII);
+
+    private ImageDataJson() {}
+
+    /**
+     * Writes the given map of keys and image data URIs as JSON object.
+     * The returned buffer takes over the image data buffers and releases them once it is released.
+     *
+     * @param images Map of keys and image data URIs
+     * @return JSON object mapping the keys to the data URIs
+     */
+    public static ByteBuf write(Map<?, ByteBuf> images) {
+        if (images.isEmpty()) {
+            return Unpooled.wrappedBuffer(EMPTY_OBJECT);
+        }
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        CompositeByteBuf json = Unpooled.compositeBuffer(images.size() * 2 + 1);
+        boolean first = true;
+        for (Map.Entry<?, ByteBuf> entry : images.entrySet()) {
+            byte[] key = encoder.quoteAsUTF8(String.valueOf(entry.getKey()));
+            byte[] start = first ? OBJECT_START : ENTRY_SEPARATOR;
+            json.addComponent(true, Unpooled.wrappedBuffer(start, key, KEY_END));
+            json.addComponent(true, entry.getValue());
+            first = false;
+        }
+        json.addComponent(true, Unpooled.wrappedBuffer(OBJECT_END));
+        return json;
+    }
+}
@@ -17,10 +17,12 @@ import static io.netty.handler.codec.http.HttpResponseStatus.*;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
+import image.rest.api.Http1FileResponse;
 import image.rest.api.Http1ImageAPI;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -74,7 +76,12 @@ public class Http1ImageServiceHandler extends SimpleChannelInboundHandler<HttpOb
             }
             // Trailer response header gets ignored in handler
             if (message instanceof LastHttpContent trailer) {
-                writeAPIResponse(context, api.handle(request, httpContent.content().copy(), trailer));
+                Http1FileResponse fileResponse = api.handleFile(request);
+                if (fileResponse != null) {
+                    writeFileResponse(context, fileResponse);
+                } else {
+                    writeAPIResponse(context, api.handle(request, httpContent.content().copy(), trailer));
+                }
             }
         }
     }
@@ -92,7 +99,9 @@ public class Http1ImageServiceHandler extends SimpleChannelInboundHandler<HttpOb
     private void writeAPIResponse(ChannelHandlerContext context, FullHttpResponse httpResponse) {
         boolean keepAlive = HttpUtil.isKeepAlive(request);
 
-        httpResponse.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+        if (!httpResponse.headers().contains(HttpHeaderNames.CONTENT_TYPE)) {
+            httpResponse.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+        }
 
         if (keepAlive) {
             httpResponse.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, httpResponse.content().readableBytes());
@@ -106,6 +115,23 @@ public class Http1ImageServiceHandler extends SimpleChannelInboundHandler<HttpOb
         }
     }
 
+    private void writeFileResponse(ChannelHandlerContext context, Http1FileResponse fileResponse) {
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+
+        if (keepAlive) {
+            fileResponse.response().headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+        }
+
+        // Header, file region (zero-copy transfer) and end of the response
+        context.write(fileResponse.response());
+        context.write(fileResponse.body());
+        ChannelFuture lastContentFuture = context.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+
+        if (!keepAlive) {
+            lastContentFuture.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
     private boolean evaluateDecoderResult(HttpObject object) {
         return !object.decoderResult().isSuccess();
     }
@@ -13,7 +13,10 @@
  */
 package image.rest.server;
 
+import image.PngEncoder;
+import image.setup.CachingMode;
 import image.setup.SetupController;
+import image.setup.StorageMode;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
 import io.netty.channel.socket.nio.NioDatagramChannel;
@@ -63,6 +66,22 @@ public class HttpImageServer {
                 gatewayHost,
                 persistencePort == 80 ? imagePort : persistencePort
         );
+        SetupController.SETUP.setStorageMode(
+                StorageMode.getStorageModeFromString(System.getenv("IMAGE_STORAGE_MODE"))
+        );
+        SetupController.SETUP.setCachingMode(
+                CachingMode.getCachingModeFromString(System.getenv("IMAGE_CACHING_MODE"))
+        );
+        SetupController.SETUP.setPreRenderImages(Boolean.parseBoolean(System.getenv("IMAGE_PRERENDER")));
+        String compressionLevel = System.getenv("IMAGE_PNG_COMPRESSION_LEVEL");
+        if (compressionLevel != null && !compressionLevel.isBlank()) {
+            try {
+                PngEncoder.setCompressionLevel(Integer.parseInt(compressionLevel.trim()));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Invalid PNG compression level \"{}\", using the default level.", compressionLevel);
+            }
+        }
+        PngEncoder.setStreamBase64(!"false".equalsIgnoreCase(System.getenv("IMAGE_PNG_STREAM_BASE64")));
         SetupController.SETUP.startup();
     }
 
@@ -45,6 +45,14 @@ public enum CachingMode {
    * Most recently used cache.
    */
   MRU("MRU"), 
+  /**
+   * Concurrent window TinyLFU cache.
+   */
+  WTINYLFU("W-TinyLFU"), 
+  /**
+   * Least recently used cache storing the image data off-heap.
+   */
+  OFFHEAP("Off-Heap"), 
   /**
    * Use no cache (Cache disabled).
    */
@@ -80,4 +88,15 @@ public enum CachingMode {
         .filter(mode -> mode.strRepresentation.equals(strCachingMode)).findFirst()
         .orElse(STD_CACHING_MODE);
   }
+
+  /**
+   * Convert string representation or name to the correct object.
+   * @param strCachingMode String representation or name of the cache implementation.
+   * @return Enum value of the cache implementation or null if the cache implementation is unknown.
+   */
+  public static CachingMode findCachingMode(String strCachingMode) {
+    return Arrays.asList(CachingMode.values()).stream()
+        .filter(mode -> mode.strRepresentation.equals(strCachingMode) || mode.name().equals(strCachingMode))
+        .findFirst().orElse(null);
+  }
 }
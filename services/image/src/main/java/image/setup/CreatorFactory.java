@@ -1,7 +1,6 @@
 package image.setup;
 
 import java.awt.image.BufferedImage;
-import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
@@ -14,6 +13,8 @@ import utilities.datamodel.Category;
 import utilities.datamodel.ImageSize;
 import utilities.enumeration.ImageSizePreset;
 import image.ImageDB;
+import image.StoreImage;
+import image.storage.IDataStorage;
 
 /**
  * Helper class creating image generation runnables for image provider setup.
@@ -23,32 +24,42 @@ public class CreatorFactory {
 
   private int shapesPerImage = 0;
   private ImageSize imgSize = ImageSizePreset.STD_IMAGE_SIZE;
-  private Path workingDir = SetupController.SETUP.getWorkingDir();
-  private Map<Category, BufferedImage> categoryImages;
+  private IDataStorage<StoreImage> storage;
+  private Map<Category, BufferedImage> categoryImages = Map.of();
   private List<Long> products;
   private List<Category> categories;
+  // Index of the next product, removing products from the front of the list would copy the list for every image
+  private int nextProduct = 0;
   private ImageDB imgDB;
   private AtomicLong nrOfImagesGenerated;
+  private List<ImageSize> preRenderSizes = List.of();
+  private AtomicLong nrOfImagesPreRendered = new AtomicLong();
 
   private static final Logger LOG = LogManager.getLogger(CreatorFactory.class);
 
   /**
-   * Standard constructor defining all necessary information to create image generation runnables.
+   * Constructor defining the storage the generated and pre-rendered images are saved in directly.
    * @param shapesPerImage Number of shapes per generated image.
    * @param imgDB Image database to add image to.
    * @param imgSize Size of the images to generate.
-   * @param workingDir Directory to store images.
+   * @param storage Storage to save the images in.
    * @param products Product IDs for which images will be generated.
    * @param categoryImages Category images that are added after random shapes for the image have been generated.
    * @param nrOfImagesGenerated Current number of images that have been generated by all runnables.
+   * @param preRenderSizes Additional sizes every generated image is scaled to.
+   * @param nrOfImagesPreRendered Current number of images that have been pre-rendered by all runnables.
    */
-  public CreatorFactory(int shapesPerImage, ImageDB imgDB, ImageSize imgSize, Path workingDir,
+  public CreatorFactory(int shapesPerImage, ImageDB imgDB, ImageSize imgSize, IDataStorage<StoreImage> storage,
       Map<Category, List<Long>> products, Map<Category, BufferedImage> categoryImages,
-      AtomicLong nrOfImagesGenerated) {
+      AtomicLong nrOfImagesGenerated, List<ImageSize> preRenderSizes, AtomicLong nrOfImagesPreRendered) {
     if (imgDB == null) {
       LOG.error("Supplied image database is null.");
       throw new NullPointerException("Supplied image database is null.");
     }
+    if (storage == null) {
+      LOG.error("Supplied storage is null.");
+      throw new NullPointerException("Supplied storage is null.");
+    }
     if (products == null) {
       LOG.error("Supplied product map is null.");
       throw new NullPointerException("Supplied product map is null.");
@@ -57,13 +68,15 @@ public class CreatorFactory {
       LOG.error("Supplied counter for images generated is null.");
       throw new NullPointerException("Supplied counter for images generated is null.");
     }
-
-    if (workingDir == null) {
-      LOG.info("Supplied working directory is null. Set to value {}.",
-          SetupController.SETUP.getWorkingDir());
-    } else {
-      this.workingDir = workingDir;
+    if (preRenderSizes == null) {
+      LOG.error("Supplied pre-render sizes are null.");
+      throw new NullPointerException("Supplied pre-render sizes are null.");
     }
+    if (nrOfImagesPreRendered == null) {
+      LOG.error("Supplied counter for images pre-rendered is null.");
+      throw new NullPointerException("Supplied counter for images pre-rendered is null.");
+    }
+
     if (categoryImages == null) {
       LOG.info("Supplied category images are null. Defaulting to not add category images.");
     } else {
@@ -85,7 +98,10 @@ public class CreatorFactory {
     this.categories = products.entrySet().stream()
         .flatMap(e -> e.getValue().stream().map(x -> e.getKey())).collect(Collectors.toList());
     this.imgDB = imgDB;
+    this.storage = storage;
     this.nrOfImagesGenerated = nrOfImagesGenerated;
+    this.preRenderSizes = preRenderSizes;
+    this.nrOfImagesPreRendered = nrOfImagesPreRendered;
   }
 
   /**
@@ -93,8 +109,10 @@ public class CreatorFactory {
    * @return Image generation runnable.
    */
   public Runnable newRunnable() {
-    return new CreatorRunner(imgDB, imgSize, products.remove(0), shapesPerImage,
-        categoryImages.getOrDefault(categories.remove(0), null), workingDir, nrOfImagesGenerated);
+    int product = nextProduct++;
+    return new CreatorRunner(imgDB, imgSize, products.get(product), shapesPerImage,
+        categoryImages.getOrDefault(categories.get(product), null), storage, nrOfImagesGenerated,
+        preRenderSizes, nrOfImagesPreRendered);
   }
 
 }
@@ -1,25 +1,21 @@
 package image.setup;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.channels.ClosedByInterruptException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.util.Base64;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 
-import javax.imageio.ImageIO;
-
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
 import utilities.datamodel.ImageSize;
 import utilities.enumeration.ImageSizePreset;
 import image.ImageDB;
+import image.ImageDBKey;
+import image.PngEncoder;
 import image.StoreImage;
+import image.storage.IDataStorage;
 
 /**
  * Image generation runnable to generate a single image. 
@@ -31,30 +27,40 @@ public class CreatorRunner implements Runnable {
   private final long productID;
   private final ImageDB imgDB;
   private final ImageSize size;
-  private final Path workingDir;
+  private final IDataStorage<StoreImage> storage;
   private final int shapesPerImage;
   private final BufferedImage categoryImage;
   private final AtomicLong nrOfImagesGenerated;
+  private final List<ImageSize> preRenderSizes;
+  private final AtomicLong nrOfImagesPreRendered;
 
   private static final Logger LOG = LogManager.getLogger(CreatorRunner.class);
+  // Every creation thread draws all its images onto the same canvas
+  private static final ThreadLocal<BufferedImage> CANVAS = new ThreadLocal<>();
 
   /**
-   * Creates a new runnable object to generate a single image.
+   * Creates a new runnable object to generate a single image, save it directly in the given storage and pre-render
+   * it in the given sizes.
    * @param imgDB Image database to add image to.
    * @param size Size of the images to generate
    * @param productID Product ID for which the images will be generated.
    * @param shapesPerImage Number of shapes per generated image.
    * @param categoryImage Category images that are added after random shapes for the image have been generated.
-   * @param workingDir Directory to store image.
+   * @param storage Storage to save the image in.
    * @param nrOfImagesGenerated Current number of images that have been generated by all runnables.
+   * @param preRenderSizes Additional sizes the generated image is scaled to.
+   * @param nrOfImagesPreRendered Current number of images that have been pre-rendered by all runnables.
    */
   public CreatorRunner(ImageDB imgDB, ImageSize size, long productID, int shapesPerImage,
-      BufferedImage categoryImage, Path workingDir, AtomicLong nrOfImagesGenerated) {
+      BufferedImage categoryImage, IDataStorage<StoreImage> storage, AtomicLong nrOfImagesGenerated,
+      List<ImageSize> preRenderSizes, AtomicLong nrOfImagesPreRendered) {
     this.imgDB = imgDB;
+    this.preRenderSizes = preRenderSizes;
+    this.nrOfImagesPreRendered = nrOfImagesPreRendered;
     this.productID = productID;
     this.shapesPerImage = shapesPerImage;
     this.categoryImage = categoryImage;
-    this.workingDir = workingDir;
+    this.storage = storage;
     this.nrOfImagesGenerated = nrOfImagesGenerated;
     if (size != null) {
       this.size = size;
@@ -68,31 +74,29 @@ public class CreatorRunner implements Runnable {
     long imgID = ImageIDFactory.ID.getNextImageID();
     Random rand = new Random(productID);
 
-    // All products must be added to the database
-    imgDB.setImageMapping(productID, imgID, size);
-
-    // Resolve path and create a new image
-    Path imgFile = workingDir.resolve(String.valueOf(imgID));
-
-    BufferedImage img = ImageCreator.createImage(shapesPerImage, categoryImage, size, rand);
-    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    BufferedImage img = ImageCreator.createImage(shapesPerImage, categoryImage, size, rand, CANVAS.get());
+    CANVAS.set(img);
 
     try {
-      ImageIO.write(img, StoreImage.STORE_IMAGE_FORMAT, stream);
-      Files.write(imgFile, Base64.getEncoder().encode(stream.toByteArray()),
-          StandardOpenOption.CREATE, StandardOpenOption.WRITE,
-          StandardOpenOption.TRUNCATE_EXISTING);
-    } catch (IOException ioException) {
-      if (!(ioException instanceof ClosedByInterruptException)) {
-        LOG.warn("An IOException occured while writing image with ID " + String.valueOf(imgID)
-            + " to file " + imgFile.toAbsolutePath() + ".", ioException);
-      } else {
-        LOG.warn("An exception was thrown during image creation with ID " + String.valueOf(imgID)
-            + " to file " + imgFile.toAbsolutePath() + ".", ioException);
+      if (!storage.saveEncodedData(imgID, PngEncoder.encode(img))) {
+        LOG.warn("The image with ID {} could not be saved in the storage.", imgID);
+        return;
       }
+    } catch (IOException ioException) {
+      LOG.warn("An IOException occured while encoding image with ID " + String.valueOf(imgID) + ".", ioException);
+      return;
     }
 
+    // Only map stored images, mapping after saving keeps readers from seeing partial images. Products without an
+    // image are served the "not found" image.
+    imgDB.setImageMapping(productID, imgID, size);
     nrOfImagesGenerated.incrementAndGet();
+
+    // Scale the image while it is still in memory, before the canvas is reused
+    if (!preRenderSizes.isEmpty()) {
+      new PreRenderRunner(imgDB, new ImageDBKey(productID), img, preRenderSizes, storage,
+          nrOfImagesPreRendered).run();
+    }
   }
 
 }
@@ -75,7 +75,25 @@ public final class ImageCreator {
    */
   public static BufferedImage createImage(int shapesPerImage, BufferedImage categoryImg,
       ImageSize size, Random rand) {
-    BufferedImage img = new BufferedImage(size.width(), size.height(), BufferedImage.OPAQUE);
+    return createImage(shapesPerImage, categoryImg, size, rand, null);
+  }
+
+  /**
+   * Create an image with the given number of shapes, with the given size, drawn onto the given canvas. The canvas is
+   * completely overwritten, so it can be reused for the next image once the previous one has been encoded.
+   * @param shapesPerImage Number of shapes added to the buffered image.
+   * @param categoryImg Image added at the end representing the product category.
+   * @param size Size of the image in pixel.
+   * @param rand Random number generator.
+   * @param canvas Image to draw onto. A new image is created if it is null or does not have the given size.
+   * @return Returns the canvas or the new buffered image with the added shapes and category image.
+   */
+  public static BufferedImage createImage(int shapesPerImage, BufferedImage categoryImg,
+      ImageSize size, Random rand, BufferedImage canvas) {
+    BufferedImage img = canvas;
+    if (img == null || img.getWidth() != size.width() || img.getHeight() != size.height()) {
+      img = new BufferedImage(size.width(), size.height(), BufferedImage.OPAQUE);
+    }
     Graphics2D graphics = img.createGraphics();
     graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
         RenderingHints.VALUE_INTERPOLATION_BICUBIC);
@@ -40,6 +40,14 @@ public enum ImageIDFactory {
     return nextID.getAndIncrement();
   }
 
+  /**
+   * Returns the next unique image identifier without using it.
+   * @return The next unique image identifier.
+   */
+  public long peekNextImageID() {
+    return nextID.get();
+  }
+
   /**
    * Sets the first image identifier to start with.
    * @param nextID The image identifier to start with.
@@ -0,0 +1,178 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.setup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import utilities.datamodel.ImageSize;
+import image.ImageDB;
+
+/**
+ * Compact binary manifest of the generated images, stored next to the images in the working directory. It contains
+ * all image database mappings, the next image ID and a fingerprint of everything the images were generated from.
+ * A restarted image provider loads the manifest instead of generating all images again, as long as the fingerprint
+ * still matches.
+ * @author Philipp Backes
+ */
+public final class ImageManifest {
+
+  /**
+   * Name of the manifest file in the working directory.
+   */
+  public static final String MANIFEST_FILE = "images.manifest";
+
+  private static final int MAGIC = 0x54534D46;
+  private static final int VERSION = 1;
+  private static final byte PRODUCT_KEY = 0;
+  private static final byte WEBUI_KEY = 1;
+  private static final Logger LOG = LogManager.getLogger(ImageManifest.class);
+
+  private ImageManifest() {}
+
+  /**
+   * Writes the mappings of the given image database and the next image ID to the manifest in the working directory.
+   * The manifest is replaced atomically, so readers never see a partially written manifest.
+   * @param workingDir Working directory containing the images.
+   * @param imgDB Image database to write.
+   * @param nextImageID Next image ID to use after the manifest has been loaded.
+   * @param fingerprint Fingerprint of the data the images were generated from.
+   * @return Number of written mappings or -1 if the manifest could not be written.
+   */
+  public static long write(Path workingDir, ImageDB imgDB, long nextImageID, byte[] fingerprint) {
+    Path manifest = workingDir.resolve(MANIFEST_FILE);
+    Path tmpManifest = workingDir.resolve(MANIFEST_FILE + ".tmp");
+    long[] nrOfMappings = new long[1];
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpManifest)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(fingerprint.length);
+      out.write(fingerprint);
+      out.writeLong(nextImageID);
+      IOException[] exception = new IOException[1];
+      imgDB.forEachMapping((imageKey, imageID, imageSize) -> {
+        if (exception[0] != null || imageSize == null) {
+          return;
+        }
+        try {
+          if (imageKey.isProductKey()) {
+            out.writeByte(PRODUCT_KEY);
+            out.writeLong(imageKey.getProductID());
+          } else {
+            out.writeByte(WEBUI_KEY);
+            out.writeUTF(imageKey.getWebUIName());
+          }
+          out.writeLong(imageID);
+          out.writeInt(imageSize.width());
+          out.writeInt(imageSize.height());
+          nrOfMappings[0]++;
+        } catch (IOException ioException) {
+          exception[0] = ioException;
+        }
+      });
+      if (exception[0] != null) {
+        throw exception[0];
+      }
+      // End of mappings
+      out.writeByte(-1);
+    } catch (IOException ioException) {
+      LOG.warn("An IOException occured while writing the image manifest \"" + tmpManifest.toAbsolutePath() + "\".",
+          ioException);
+      return -1;
+    }
+
+    try {
+      Files.move(tmpManifest, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ioException) {
+      LOG.warn("The image manifest \"" + manifest.toAbsolutePath() + "\" could not be replaced.", ioException);
+      return -1;
+    }
+    return nrOfMappings[0];
+  }
+
+  /**
+   * Reads the manifest in the working directory into the given image database if it was written for the given
+   * fingerprint. The image database is only changed if the complete manifest could be read.
+   * @param workingDir Working directory containing the images.
+   * @param imgDB Image database receiving the mappings.
+   * @param fingerprint Fingerprint of the data the images have to be generated from.
+   * @return Next image ID stored in the manifest or 0 if there is no valid manifest for the fingerprint.
+   */
+  public static long read(Path workingDir, ImageDB imgDB, byte[] fingerprint) {
+    Path manifest = workingDir.resolve(MANIFEST_FILE);
+    ImageDB readDB = new ImageDB();
+    long nextImageID;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        LOG.info("Image manifest \"{}\" has an unknown format.", manifest.toAbsolutePath());
+        return 0;
+      }
+      byte[] manifestFingerprint = new byte[in.readInt()];
+      in.readFully(manifestFingerprint);
+      if (!Arrays.equals(manifestFingerprint, fingerprint)) {
+        LOG.info("Image manifest \"{}\" was written for different products or images.", manifest.toAbsolutePath());
+        return 0;
+      }
+      nextImageID = in.readLong();
+      for (byte keyType = in.readByte(); keyType != -1; keyType = in.readByte()) {
+        if (keyType != PRODUCT_KEY && keyType != WEBUI_KEY) {
+          throw new IOException("Unknown image key type " + keyType + ".");
+        }
+        long productID = keyType == PRODUCT_KEY ? in.readLong() : 0;
+        String name = keyType == WEBUI_KEY ? in.readUTF() : null;
+        long imageID = in.readLong();
+        ImageSize imageSize = new ImageSize(in.readInt(), in.readInt());
+        if (name == null) {
+          readDB.setImageMapping(productID, imageID, imageSize);
+        } else {
+          readDB.setImageMapping(name, imageID, imageSize);
+        }
+      }
+    } catch (NoSuchFileException noSuchFileException) {
+      return 0;
+    } catch (IOException | IllegalArgumentException exception) {
+      LOG.warn("The image manifest \"" + manifest.toAbsolutePath() + "\" could not be read.", exception);
+      return 0;
+    }
+
+    readDB.forEachMapping((imageKey, imageID, imageSize) -> imgDB.setImageMapping(imageKey, imageID, imageSize));
+    return nextImageID;
+  }
+
+  /**
+   * Deletes the manifest in the working directory.
+   * @param workingDir Working directory containing the images.
+   * @return True if a manifest was deleted, otherwise false.
+   */
+  public static boolean delete(Path workingDir) {
+    try {
+      return Files.deleteIfExists(workingDir.resolve(MANIFEST_FILE));
+    } catch (IOException ioException) {
+      LOG.warn("The image manifest in \"" + workingDir.toAbsolutePath() + "\" could not be deleted.", ioException);
+      return false;
+    }
+  }
+
+}
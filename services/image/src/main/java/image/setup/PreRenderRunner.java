@@ -0,0 +1,102 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.setup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import utilities.datamodel.ImageSize;
+import image.ImageDB;
+import image.ImageDBKey;
+import image.ImageScaler;
+import image.PngEncoder;
+import image.StoreImage;
+import image.storage.IDataStorage;
+
+/**
+ * Image pre-rendering runnable scaling a single image into a list of sizes. The scaled images are saved directly in
+ * the storage and added to the image database, so requests for these sizes never have to scale the image themselves.
+ * @author Philipp Backes
+ */
+public class PreRenderRunner implements Runnable {
+
+  private final ImageDB imgDB;
+  private final ImageDBKey key;
+  private final BufferedImage image;
+  private final List<ImageSize> sizes;
+  private final IDataStorage<StoreImage> storage;
+  private final AtomicLong nrOfImagesPreRendered;
+
+  private static final Logger LOG = LogManager.getLogger(PreRenderRunner.class);
+
+  /**
+   * Creates a new runnable object to scale a single image into the given sizes.
+   * @param imgDB Image database to add the scaled images to.
+   * @param key Product or web interface image the scaled images belong to.
+   * @param image Image to scale.
+   * @param sizes Sizes to scale the image to.
+   * @param storage Storage to save the scaled images in.
+   * @param nrOfImagesPreRendered Current number of images that have been pre-rendered by all runnables.
+   */
+  public PreRenderRunner(ImageDB imgDB, ImageDBKey key, BufferedImage image, List<ImageSize> sizes,
+      IDataStorage<StoreImage> storage, AtomicLong nrOfImagesPreRendered) {
+    this.imgDB = imgDB;
+    this.key = key;
+    this.image = image;
+    this.sizes = sizes;
+    this.storage = storage;
+    this.nrOfImagesPreRendered = nrOfImagesPreRendered;
+  }
+
+  @Override
+  public void run() {
+    for (ImageSize size : sizes) {
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+      // Images the storage rule rejects are not saved, they are scaled on request instead
+      if (!isStorable(storage, size)) {
+        continue;
+      }
+      long imgID = ImageIDFactory.ID.getNextImageID();
+
+      try {
+        if (!storage.saveEncodedData(imgID, PngEncoder.encode(ImageScaler.scale(image, size)))) {
+          LOG.warn("The pre-rendered image with ID {} could not be saved in the storage.", imgID);
+          return;
+        }
+      } catch (IOException ioException) {
+        LOG.warn("An IOException occured while encoding pre-rendered image with ID " + String.valueOf(imgID) + ".",
+            ioException);
+        return;
+      }
+      // Only map images that are stored, missing sizes are still scaled on request
+      imgDB.setImageMapping(key, imgID, size);
+
+      nrOfImagesPreRendered.incrementAndGet();
+    }
+  }
+
+  // Checks whether the storage rule of the given storage accepts images of the given size. The storage rules only look
+  // at the size, so the check does not need the scaled image.
+  static boolean isStorable(IDataStorage<StoreImage> storage, ImageSize size) {
+    return storage.dataIsStorable(new StoreImage(0, new byte[0], size));
+  }
+
+}
@@ -16,15 +16,22 @@ package image.setup;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -49,18 +56,25 @@ import utilities.datamodel.ImageSize;
 import utilities.enumeration.ImageSizePreset;
 import utilities.datamodel.Product;
 import image.ImageDB;
+import image.ImageDBKey;
 import image.ImageProvider;
+import image.PngEncoder;
 import image.StoreImage;
+import image.cache.CacheStatistics;
+import image.cache.CacheStatsCounter;
 import image.cache.FirstInFirstOut;
 import image.cache.IDataCache;
 import image.cache.LastInFirstOut;
 import image.cache.LeastFrequentlyUsed;
 import image.cache.LeastRecentlyUsed;
 import image.cache.MostRecentlyUsed;
+import image.cache.OffHeapCache;
 import image.cache.RandomReplacement;
+import image.cache.WindowTinyLFU;
 import image.cache.rules.CacheAll;
 import image.storage.DriveStorage;
 import image.storage.IDataStorage;
+import image.storage.SegmentStorage;
 import image.storage.rules.StoreAll;
 import image.storage.rules.StoreLargeImages;
 import utilities.rest.api.Http2Response;
@@ -107,10 +121,14 @@ public enum SetupController {
     public static final long CREATION_THREAD_POOL_WAIT = 500;
 
     /**
-     * Wait time in ms (per image to generate) before an image provider service is registered if there is another
-     * image provider service registered.
+     * Interval in s in which the image creation progress is logged while waiting for the image creation to finish.
      */
-    public static final long CREATION_THREAD_POOL_WAIT_PER_IMG_NR = 70;
+    public static final long CREATION_PROGRESS_LOG_INTERVAL = 10;
+
+    /**
+     * Maximum time in s to wait for the image creation to finish, e.g. if a creation thread is stuck.
+     */
+    public static final long CREATION_TIMEOUT = 60 * 60;
 
   }
   // HTTP client
@@ -134,18 +152,25 @@ public enum SetupController {
   private Path workingDir = SetupControllerConstants.STD_WORKING_DIR;
   private long cacheSize = IDataCache.STD_MAX_CACHE_SIZE;
   private StorageMode storageMode = StorageMode.STD_STORAGE_MODE;
-  private CachingMode cachingMode = CachingMode.STD_CACHING_MODE;
+  private volatile CachingMode cachingMode = CachingMode.STD_CACHING_MODE;
   private long nrOfImagesToGenerate = 0;
   private long nrOfImagesExisting = 0;
   private long nrOfImagesForCategory = 0;
   private AtomicLong nrOfImagesGenerated = new AtomicLong();
+  private boolean preRenderImages = false;
+  private long nrOfImagesToPreRender = 0;
+  private AtomicLong nrOfImagesPreRendered = new AtomicLong();
+  private long nrOfImagesRestored = 0;
   private HashMap<String, BufferedImage> categoryImages = new HashMap<>();
   private ImageDB imgDB = new ImageDB();
   private IDataStorage<StoreImage> storage = null;
-  private IDataCache<StoreImage> cache = null;
-  private ScheduledThreadPoolExecutor imgCreationPool = new ScheduledThreadPoolExecutor(
-      SetupControllerConstants.CREATION_THREAD_POOL_SIZE
-  );
+  private volatile IDataCache<StoreImage> cache = null;
+  // Work-stealing pool, generating an image takes a different amount of time depending on its shapes
+  private ForkJoinPool imgCreationPool = newCreationPool();
+  // Creation tasks of the current pool that have not completed yet, replaced together with the pool
+  private AtomicLong nrOfCreationTasksPending = new AtomicLong();
+  private long creationStartTime = 0;
+  private volatile long creationEndTime = 0;
   private static final Logger LOG = LogManager.getLogger(SetupController.class);
   private AtomicBoolean isFinished = new AtomicBoolean();
 
@@ -381,17 +406,140 @@ public enum SetupController {
       Map<Category, BufferedImage> categoryImages) {
     nrOfImagesToGenerate = products.entrySet().stream().flatMap(e -> e.getValue().stream()).count();
 
+    List<ImageSize> preRenderSizes = getPreRenderSizes(ImageSizePreset.STD_IMAGE_SIZE);
+    nrOfImagesToPreRender += nrOfImagesToGenerate * preRenderSizes.size();
+
+    // Images are saved directly in the storage instead of being picked up from the working directory later on
+    if (storage == null) {
+      setupStorage();
+    }
     CreatorFactory factory = new CreatorFactory(ImageCreator.STD_NR_OF_SHAPES_PER_IMAGE, imgDB,
-        ImageSizePreset.STD_IMAGE_SIZE, workingDir, products, categoryImages, nrOfImagesGenerated);
+        ImageSizePreset.STD_IMAGE_SIZE, storage, products, categoryImages, nrOfImagesGenerated,
+        preRenderSizes, nrOfImagesPreRendered);
 
     // Schedule all image creation tasks
     for (long i = 0; i < nrOfImagesToGenerate; i++) {
-      imgCreationPool.execute(factory.newRunnable());
+      executeCreationTask(factory.newRunnable());
     }
 
     LOG.info("Image creator thread started. {} {} sized images to generate using {} threads.",
         nrOfImagesToGenerate, ImageSizePreset.STD_IMAGE_SIZE.toString(),
         SetupControllerConstants.CREATION_THREAD_POOL_SIZE);
+    if (!preRenderSizes.isEmpty()) {
+      LOG.info("Pre-rendering every product image in {} additional sizes.", preRenderSizes.size());
+    }
+  }
+
+  /**
+   * Sets the storage implementation used by the next storage setup.
+   * @param storageMode Storage implementation.
+   */
+  public void setStorageMode(StorageMode storageMode) {
+    if (storageMode == null) {
+      LOG.error("The supplied storage mode is null.");
+      throw new NullPointerException("The supplied storage mode is null.");
+    }
+    this.storageMode = storageMode;
+  }
+
+  /**
+   * Sets the cache implementation. If the storage is already set up, the current cache is replaced by an empty cache
+   * of the given implementation and handed over to the image provider, without generating the images again.
+   * @param cachingMode Cache implementation.
+   */
+  public synchronized void setCachingMode(CachingMode cachingMode) {
+    if (cachingMode == null) {
+      LOG.error("The supplied caching mode is null.");
+      throw new NullPointerException("The supplied caching mode is null.");
+    }
+    this.cachingMode = cachingMode;
+    if (storage == null) {
+      return;
+    }
+    IDataCache<StoreImage> oldCache = cache;
+    setupCache();
+    configureImageProvider();
+    // Release the data of the previous cache only after the image provider stopped using it
+    if (oldCache != null) {
+      oldCache.clearCache();
+    }
+    LOG.info("Switched caching mode to {}.", cachingMode.getStrRepresentation());
+  }
+
+  /**
+   * Returns the cache implementation.
+   * @return Cache implementation.
+   */
+  public CachingMode getCachingMode() {
+    return cachingMode;
+  }
+
+  /**
+   * Returns the statistics of the current cache. The statistics start over whenever the cache is replaced.
+   * @return Statistics of the current cache, all zero if the cache is disabled or not set up yet.
+   */
+  public CacheStatistics getCacheStatistics() {
+    IDataCache<StoreImage> currentCache = cache;
+    if (currentCache == null) {
+      return new CacheStatsCounter().snapshot(cachingMode.getStrRepresentation(), 0, 0);
+    }
+    return currentCache.getStatsCounter().snapshot(cachingMode.getStrRepresentation(),
+        currentCache.getMaxCacheSize(), currentCache.getCurrentCacheSize());
+  }
+
+  /**
+   * Enables or disables pre-rendering of all product and web interface images in all image size presets during
+   * image generation. Pre-rendered images do not need to be scaled when they are requested for the first time.
+   * @param preRenderImages True to pre-render all image sizes, otherwise false.
+   */
+  public void setPreRenderImages(boolean preRenderImages) {
+    this.preRenderImages = preRenderImages;
+  }
+
+  /**
+   * Checks whether all image size presets are pre-rendered during image generation.
+   * @return True if all image sizes are pre-rendered, otherwise false.
+   */
+  public boolean isPreRenderImages() {
+    return preRenderImages;
+  }
+
+  // Runs the given task in the image creation pool and keeps track of its completion
+  private void executeCreationTask(Runnable task) {
+    AtomicLong pending = nrOfCreationTasksPending;
+    if (creationStartTime == 0) {
+      creationStartTime = System.nanoTime();
+    }
+    pending.incrementAndGet();
+    imgCreationPool.execute(() -> {
+      try {
+        task.run();
+      } finally {
+        pending.decrementAndGet();
+      }
+    });
+  }
+
+  private static ForkJoinPool newCreationPool() {
+    return new ForkJoinPool(SetupControllerConstants.CREATION_THREAD_POOL_SIZE, pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("image-creation-" + thread.getPoolIndex());
+      return thread;
+    }, null, false);
+  }
+
+  // Returns the distinct preset sizes an image of the given size is pre-rendered in. Sizes the storage rule rejects
+  // are skipped, they would be scaled and encoded for nothing and are scaled on request instead.
+  private List<ImageSize> getPreRenderSizes(ImageSize imageSize) {
+    if (!preRenderImages) {
+      return List.of();
+    }
+    if (storage == null) {
+      setupStorage();
+    }
+    return Arrays.stream(ImageSizePreset.values()).map(ImageSizePreset::getSize)
+        .filter(size -> !size.equals(imageSize)).distinct()
+        .filter(size -> PreRenderRunner.isStorable(storage, size)).collect(Collectors.toList());
   }
 
   /**
@@ -400,15 +548,7 @@ public enum SetupController {
   public void detectCategoryImages() {
     LOG.info("Trying to find images that indicate categories in generated images.");
 
-    String path = "categoryimg/black-tea.png";
-    File imageFile = null;
-    if (!gatewayHost.equals("localhost")) {
-      path = "/service/" + path;
-      imageFile = new File(path);
-    } else {
-      imageFile = new File(getClass().getResource(path).getPath());
-    }
-    File dir = new File(imageFile.getParent());
+    File dir = getResourceDir("categoryimg/black-tea.png");
 
     nrOfImagesForCategory = 0;
     if (dir.exists() && dir.isDirectory()) {
@@ -433,6 +573,18 @@ public enum SetupController {
     LOG.info("Found {} images for categories.", nrOfImagesForCategory);
   }
 
+  // Returns the directory containing the given resource file
+  private File getResourceDir(String path) {
+    File imageFile = null;
+    if (!gatewayHost.equals("localhost")) {
+      path = "/service/" + path;
+      imageFile = new File(path);
+    } else {
+      imageFile = new File(getClass().getResource(path).getPath());
+    }
+    return new File(imageFile.getParent());
+  }
+
   /**
    * Create the working directory in which all generated images are stored if it is not existing.
    */
@@ -468,15 +620,10 @@ public enum SetupController {
       throw new NullPointerException("The supplied image database is null.");
     }
 
-    String path = "existingimg/front.png";
-    File imageFile = null;
-    if (!gatewayHost.equals("localhost")) {
-      path = "/service/" + path;
-      imageFile = new File(path);
-    } else {
-      imageFile = new File(getClass().getResource(path).getPath());
+    File dir = getResourceDir("existingimg/front.png");
+    if (storage == null) {
+      setupStorage();
     }
-    File dir = new File(imageFile.getParent());
 
     if (dir.exists() && dir.isDirectory()) {
       File[] fileList = dir.listFiles();
@@ -502,24 +649,30 @@ public enum SetupController {
             }
           }
 
-          db.setImageMapping(
-              file.getName().substring(0,
-                  file.getName().length() - StoreImage.STORE_IMAGE_FORMAT.length() - 1),
-              imageID, new ImageSize(buffImg.getWidth(), buffImg.getHeight()));
-          StoreImage img = new StoreImage(imageID, buffImg, ImageSizePreset.FULL.getSize());
+          String imageName = file.getName().substring(0,
+              file.getName().length() - StoreImage.STORE_IMAGE_FORMAT.length() - 1);
+          ImageSize imageSize = new ImageSize(buffImg.getWidth(), buffImg.getHeight());
 
           try {
-            Files.write(workingDir.resolve(String.valueOf(imageID)), img.getByteArray(),
-                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
-                StandardOpenOption.TRUNCATE_EXISTING);
+            if (!storage.saveEncodedData(imageID, PngEncoder.encode(buffImg))) {
+              LOG.warn("The image with ID {} could not be saved in the storage.", imageID);
+              continue;
+            }
           } catch (IOException ioException) {
-            LOG.warn("An IOException occured while writing the image with ID "
-                + String.valueOf(imageID) + " to the file "
-                + workingDir.resolve(String.valueOf(imageID)).toAbsolutePath() + ".",
-                ioException.getMessage());
+            LOG.warn("An IOException occured while encoding the image with ID "
+                + String.valueOf(imageID) + ".", ioException.getMessage());
+            continue;
           }
+          db.setImageMapping(imageName, imageID, imageSize);
           // Increment to have correct number of images for the limited drive storage
           nrOfImagesExisting++;
+
+          List<ImageSize> preRenderSizes = getPreRenderSizes(imageSize);
+          if (!preRenderSizes.isEmpty()) {
+            nrOfImagesToPreRender += preRenderSizes.size();
+            executeCreationTask(new PreRenderRunner(db, new ImageDBKey(imageName), buffImg, preRenderSizes,
+                storage, nrOfImagesPreRendered));
+          }
         }
       }
     }
@@ -541,7 +694,12 @@ public enum SetupController {
       LOG.info("No cache defined.");
       return false;
     }
-    return cache.setMaxCacheSize(cacheSize);
+    // Keep the size for caches created by later caching mode switches
+    if (!cache.setMaxCacheSize(cacheSize)) {
+      return false;
+    }
+    this.cacheSize = cacheSize;
+    return true;
   }
 
   /**
@@ -549,13 +707,19 @@ public enum SetupController {
    */
   public void deleteImages() {
     deleteUnusedImages(new ArrayList<>());
+    ImageManifest.delete(workingDir);
+    int nrOfSegmentsDeleted = SegmentStorage.deleteSegments(workingDir);
+    if (nrOfSegmentsDeleted > 0) {
+      LOG.info("Deleted {} image segments in working directory {}.", nrOfSegmentsDeleted,
+          workingDir.toAbsolutePath().toString());
+    }
   }
 
   /**
    * Delete all images from the current working directory, except the images with the IDs given.
-   * @param imagesToKeep List of images to keep.
+   * @param imagesToKeep Collection of images to keep.
    */
-  public void deleteUnusedImages(List<Long> imagesToKeep) {
+  public void deleteUnusedImages(Collection<Long> imagesToKeep) {
     File currentDir = workingDir.toFile();
     int nrOfImagesDeleted = 0;
 
@@ -565,7 +729,9 @@ public enum SetupController {
         return;
       }
       for (File file : fileList) {
-        if (file.isFile() && !imagesToKeep.contains(Long.parseLong(file.getName()))) {
+        // Image files are named by their ID, other files like the manifest are kept
+        if (file.isFile() && !file.getName().isEmpty() && file.getName().chars().allMatch(Character::isDigit)
+            && !imagesToKeep.contains(Long.parseLong(file.getName()))) {
           boolean isDeleted = file.delete();
           if (isDeleted) {
             nrOfImagesDeleted++;
@@ -599,7 +765,7 @@ public enum SetupController {
   /**
    * Sets up the storage, storage rule, cache implementation and caching rule according to the configuration.
    */
-  public void setupStorage() {
+  public synchronized void setupStorage() {
     Predicate<StoreImage> storagePredicate = new StoreAll<StoreImage>();
     switch (storageRule) {
     case ALL:
@@ -611,9 +777,27 @@ public enum SetupController {
       break;
     }
 
-    // Only support Drive Storage at this moment
-    storage = new DriveStorage(workingDir, imgDB, storagePredicate);
+    switch (storageMode) {
+    case SEGMENT:
+      storage = new SegmentStorage(workingDir, imgDB, storagePredicate);
+      break;
+    case DRIVE:
+    default:
+      storage = new DriveStorage(workingDir, imgDB, storagePredicate);
+      break;
+    }
+
+    // Release the data of the previous cache, off-heap caches would otherwise keep their memory
+    if (cache != null) {
+      cache.clearCache();
+    }
+    setupCache();
+    //
+    LOG.info("Storage setup done.");
+  }
 
+  // Creates an empty cache of the configured implementation on top of the storage
+  private void setupCache() {
     Predicate<StoreImage> cachePredicate = null;
     if (cachingRule == CachingRule.ALL) {
       cachePredicate = new CacheAll<StoreImage>();
@@ -621,31 +805,36 @@ public enum SetupController {
       cachePredicate = new CacheAll<StoreImage>();
     }
 
-    cache = null;
+    IDataCache<StoreImage> newCache = null;
     switch (cachingMode) {
     case FIFO:
-      cache = new FirstInFirstOut<StoreImage>(storage, cacheSize, cachePredicate);
+      newCache = new FirstInFirstOut<StoreImage>(storage, cacheSize, cachePredicate);
       break;
     case LIFO:
-      cache = new LastInFirstOut<StoreImage>(storage, cacheSize, cachePredicate);
+      newCache = new LastInFirstOut<StoreImage>(storage, cacheSize, cachePredicate);
       break;
     case RR:
-      cache = new RandomReplacement<StoreImage>(storage, cacheSize, cachePredicate);
+      newCache = new RandomReplacement<StoreImage>(storage, cacheSize, cachePredicate);
       break;
     case LFU:
-      cache = new LeastFrequentlyUsed<StoreImage>(storage, cacheSize, cachePredicate);
+      newCache = new LeastFrequentlyUsed<StoreImage>(storage, cacheSize, cachePredicate);
       break;
     case LRU:
-      cache = new LeastRecentlyUsed<StoreImage>(storage, cacheSize, cachePredicate);
+      newCache = new LeastRecentlyUsed<StoreImage>(storage, cacheSize, cachePredicate);
       break;
     case MRU:
-      cache = new MostRecentlyUsed<StoreImage>(storage, cacheSize, cachePredicate);
+      newCache = new MostRecentlyUsed<StoreImage>(storage, cacheSize, cachePredicate);
+      break;
+    case WTINYLFU:
+      newCache = new WindowTinyLFU<StoreImage>(storage, cacheSize, cachePredicate);
+      break;
+    case OFFHEAP:
+      newCache = new OffHeapCache(storage, cacheSize, cachePredicate);
       break;
     default:
       break;
     }
-    //
-    LOG.info("Storage setup done.");
+    cache = newCache;
   }
 
   /**
@@ -679,7 +868,7 @@ public enum SetupController {
     if (storage == null) {
       return false;
     }
-    if (imgCreationPool.getQueue().size() != 0) {
+    if (nrOfCreationTasksPending.get() != 0) {
       return false;
     }
     return isFinished.get();
@@ -704,14 +893,24 @@ public enum SetupController {
         .append(System.lineSeparator());
     sb.append("Caching Rule: ").append(cachingRule.getStrRepresentation())
         .append(System.lineSeparator());
+    sb.append("PNG Compression Level: ").append(PngEncoder.getCompressionLevel() == PngEncoder.DEFAULT_COMPRESSION_LEVEL
+        ? "Default" : String.valueOf(PngEncoder.getCompressionLevel())).append(System.lineSeparator());
     String poolState = "Running";
-    if (imgCreationPool.getQueue().size() == 0) {
+    if (nrOfCreationTasksPending.get() == 0) {
     	poolState = "Finished";
     }
     sb.append("Creator Thread: ").append(poolState)
         .append(System.lineSeparator());
     sb.append("Images Created: ").append(String.valueOf(nrOfImagesGenerated.get())).append(" / ")
         .append(String.valueOf(nrOfImagesToGenerate)).append(System.lineSeparator());
+    sb.append("Images Pre-Rendered: ").append(String.valueOf(nrOfImagesPreRendered.get())).append(" / ")
+        .append(String.valueOf(nrOfImagesToPreRender)).append(System.lineSeparator());
+    sb.append("Image Creation Time: ").append(String.valueOf(getCreationTime())).append(" ms")
+        .append(System.lineSeparator());
+    sb.append("Image Creation Throughput: ").append(String.format("%.1f", getCreationThroughput()))
+        .append(" images/s").append(System.lineSeparator());
+    sb.append("Images Restored From Manifest: ").append(String.valueOf(nrOfImagesRestored))
+        .append(System.lineSeparator());
     sb.append("Pre-Existing Images Found: ").append(String.valueOf(nrOfImagesExisting))
         .append(System.lineSeparator());
     sb.append("Category Images Found: ").append(String.valueOf(nrOfImagesForCategory))
@@ -720,6 +919,77 @@ public enum SetupController {
     return sb.toString();
   }
 
+  /**
+   * Returns the time the last image creation took so far, or took until all images were created.
+   * @return Image creation time in ms.
+   */
+  public long getCreationTime() {
+    if (creationStartTime == 0) {
+      return 0;
+    }
+    long end = creationEndTime == 0 ? System.nanoTime() : creationEndTime;
+    return TimeUnit.NANOSECONDS.toMillis(end - creationStartTime);
+  }
+
+  /**
+   * Returns the number of generated and pre-rendered images per second of the last image creation.
+   * @return Image creation throughput in images per second.
+   */
+  public double getCreationThroughput() {
+    long creationTime = getCreationTime();
+    if (creationTime == 0) {
+      return 0;
+    }
+    return (nrOfImagesGenerated.get() + nrOfImagesPreRendered.get()) * 1000.0 / creationTime;
+  }
+
+  private void resetCreationProgress() {
+    nrOfImagesGenerated.set(0);
+    nrOfImagesToPreRender = 0;
+    nrOfImagesPreRendered.set(0);
+    creationStartTime = 0;
+    creationEndTime = 0;
+  }
+
+  /**
+   * Waits until all scheduled image creation tasks have completed and replaces the image creation pool afterwards.
+   * Remaining tasks are cancelled if they do not complete within the creation timeout.
+   * @return True if all images were created, false if the waiting was interrupted or timed out.
+   */
+  public boolean awaitImageCreation() {
+    ForkJoinPool pool = imgCreationPool;
+    pool.shutdown();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SetupControllerConstants.CREATION_TIMEOUT);
+    try {
+      while (!pool.awaitTermination(SetupControllerConstants.CREATION_PROGRESS_LOG_INTERVAL, TimeUnit.SECONDS)) {
+        if (System.nanoTime() - deadline >= 0) {
+          LOG.warn("Image creation did not finish within {} s. {} / {} images created, {} / {} images pre-rendered. "
+              + "Cancelling the remaining image creation tasks.", SetupControllerConstants.CREATION_TIMEOUT,
+              nrOfImagesGenerated.get(), nrOfImagesToGenerate, nrOfImagesPreRendered.get(), nrOfImagesToPreRender);
+          pool.shutdownNow();
+          return false;
+        }
+        LOG.info("Image creation running. {} / {} images created, {} / {} images pre-rendered.",
+            nrOfImagesGenerated.get(), nrOfImagesToGenerate, nrOfImagesPreRendered.get(), nrOfImagesToPreRender);
+      }
+    } catch (InterruptedException interruptedException) {
+      LOG.warn("Waiting for image creation thread pool termination interrupted by exception.",
+              interruptedException);
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      imgCreationPool = newCreationPool();
+      nrOfCreationTasksPending = new AtomicLong();
+    }
+    if (creationStartTime != 0) {
+      creationEndTime = System.nanoTime();
+    }
+    LOG.info("Image creation finished. {} images created and {} images pre-rendered in {} ms ({} images/s).",
+        nrOfImagesGenerated.get(), nrOfImagesPreRendered.get(), getCreationTime(),
+        String.format("%.1f", getCreationThroughput()));
+    return true;
+  }
+
   /*
    * Convenience methods
    */
@@ -733,45 +1003,128 @@ public enum SetupController {
   }
 
   /**
-   * Deletes all images and the current working directory and starts the setup by generating product images and
-   * adding web interface images to the image database. The final cache / storage and image database is then handed
-   * over to the image provider instance. If this image provider service is the not the first image provider and other
-   * image provider services are registered, the registration is delayed until all images are generated.
+   * Restores the images of the last run from the image manifest if they were generated from the same products and
+   * images. Otherwise deletes all images and the current working directory and starts the setup by generating product
+   * images and adding web interface images to the image database. The final cache / storage and image database is
+   * then handed over to the image provider instance. If this image provider service is the not the first image
+   * provider and other image provider services are registered, the registration is delayed until all images are
+   * generated.
    */
   public void startup() {
+    isFinished.set(false);
+    resetCreationProgress();
+    nrOfImagesRestored = 0;
+    detectCategoryImages();
+    List<Category> categories = fetchCategories();
+    HashMap<Category, List<Long>> products = new HashMap<>();
+    categories.forEach(cat -> fetchProductsForCategory(cat, products));
+    byte[] fingerprint = getFingerprint(products);
+    if (restoreImages(fingerprint)) {
+      nrOfImagesToGenerate = products.values().stream().mapToLong(List::size).sum();
+      nrOfImagesGenerated.set(nrOfImagesToGenerate);
+      configureImageProvider();
+      isFinished.set(true);
+      return;
+    }
+
     // Delete all images in case the image provider was not shutdown gracefully last
     // time, leaving images on disk
-    isFinished.set(false);
     deleteImages();
     deleteWorkingDir();
     createWorkingDir();
-    detectExistingImages();
-    detectCategoryImages();
-    generateImages();
     setupStorage();
+    detectExistingImages();
+    generateImages(products, matchCategoriesToImage(categories));
     configureImageProvider();
-    // Wait for completion
-    long waitingTime = (
-            (nrOfImagesToGenerate - nrOfImagesGenerated.get())
-            / SetupControllerConstants.CREATION_THREAD_POOL_SIZE
-            * SetupControllerConstants.CREATION_THREAD_POOL_WAIT_PER_IMG_NR
-    );
-    try {
-      imgCreationPool.shutdown();
-      if (imgCreationPool.awaitTermination(waitingTime, TimeUnit.MILLISECONDS)) {
-        LOG.info("Image creation stopped.");
-      } else {
-        LOG.warn("Image creation thread pool not terminating after {}ms. Stop waiting.", waitingTime);
+    // Only complete image sets are restored on the next start
+    if (awaitImageCreation()) {
+      long nrOfMappings = ImageManifest.write(workingDir, imgDB, ImageIDFactory.ID.peekNextImageID(),
+          fingerprint);
+      if (nrOfMappings >= 0) {
+        LOG.info("Image manifest with {} images written.", nrOfMappings);
       }
-    } catch (InterruptedException interruptedException) {
-      LOG.warn("Waiting for image creation thread pool termination interrupted by exception.",
-              interruptedException);
     }
-    // Maybe we need to keep a reference to the old thread pool if it has not finished properly yet.
-    imgCreationPool = new ScheduledThreadPoolExecutor(SetupControllerConstants.CREATION_THREAD_POOL_SIZE);
     isFinished.set(true);
   }
 
+  /**
+   * Loads the image database from the image manifest in the working directory and sets up the storage, if the
+   * manifest was written for the given fingerprint and all images it references are still stored.
+   * @param fingerprint Fingerprint of the products and images the images have to be generated from.
+   * @return True if the images were restored, otherwise false.
+   */
+  public boolean restoreImages(byte[] fingerprint) {
+    ImageDB restoredDB = new ImageDB();
+    long nextImageID = ImageManifest.read(workingDir, restoredDB, fingerprint);
+    if (nextImageID == 0) {
+      return false;
+    }
+
+    imgDB = restoredDB;
+    setupStorage();
+    Set<Long> imageIDs = new HashSet<>();
+    Set<String> webImages = new HashSet<>();
+    long[] nrOfImagesMissing = new long[1];
+    imgDB.forEachMapping((imageKey, imageID, imageSize) -> {
+      imageIDs.add(imageID);
+      if (!imageKey.isProductKey()) {
+        webImages.add(imageKey.getWebUIName());
+      }
+      if (!storage.dataExists(imageID)) {
+        nrOfImagesMissing[0]++;
+      }
+    });
+    if (nrOfImagesMissing[0] > 0) {
+      LOG.info("Image manifest references {} missing images. Generating all images.", nrOfImagesMissing[0]);
+      imgDB = new ImageDB();
+      return false;
+    }
+
+    ImageIDFactory.ID.startAtID(nextImageID);
+    // Images scaled after the manifest was written would collide with the reused image IDs
+    deleteUnusedImages(imageIDs);
+    if (storage instanceof SegmentStorage) {
+      int nrOfImagesDeleted = ((SegmentStorage) storage).deleteUnknownImages();
+      if (nrOfImagesDeleted > 0) {
+        LOG.info("Deleted {} images missing in the image manifest from the image segments.", nrOfImagesDeleted);
+      }
+    }
+    nrOfImagesRestored = imageIDs.size();
+    nrOfImagesExisting = webImages.size();
+    LOG.info("Restored {} images from the image manifest.", nrOfImagesRestored);
+    return true;
+  }
+
+  /**
+   * Returns a fingerprint of everything the images are generated from: the products of each category, the category
+   * images, the web interface images and the generation settings.
+   * @param products Map of categories and the corresponding products.
+   * @return SHA-256 hash of the image generation input.
+   */
+  public byte[] getFingerprint(Map<Category, List<Long>> products) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(ImageCreator.STD_NR_OF_SHAPES_PER_IMAGE).append(';').append(ImageSizePreset.STD_IMAGE_SIZE)
+        .append(';').append(preRenderImages).append('\n');
+    products.entrySet().stream().sorted(Comparator.comparing(e -> e.getKey().id())).forEach(e -> {
+      sb.append(e.getKey().id()).append(';').append(e.getKey().name()).append(';');
+      e.getValue().stream().sorted().forEach(id -> sb.append(id).append(','));
+      sb.append('\n');
+    });
+    categoryImages.keySet().stream().sorted().forEach(name -> sb.append(name).append('\n'));
+    File[] existingImages = getResourceDir("existingimg/front.png").listFiles();
+    if (existingImages != null) {
+      Arrays.stream(existingImages).filter(File::isFile).sorted()
+          .forEach(file -> sb.append(file.getName()).append(';').append(file.length()).append('\n'));
+    }
+
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException noSuchAlgorithmException) {
+      // Every Java platform supports SHA-256
+      throw new IllegalStateException(noSuchAlgorithmException);
+    }
+  }
+
   /**
    * Deletes all images and the current working directory and starts the setup by generating product images and
    * adding web interface images to the image database. The final cache / storage and image database is then handed
@@ -799,19 +1152,22 @@ public enum SetupController {
           LOG.warn("Waiting for image creation thread pool termination interrupted by exception.",
                   interruptedException);
         }
-        // Maybe we need to keep a reference to the old thread pool if it has not finished properly yet.
-        imgCreationPool = new ScheduledThreadPoolExecutor(SetupControllerConstants.CREATION_THREAD_POOL_SIZE);
+        // Tasks cancelled by the shutdown never complete, so the pending tasks are tracked from scratch
+        imgCreationPool = newCreationPool();
+        nrOfCreationTasksPending = new AtomicLong();
 
         // Create new image database
         imgDB = new ImageDB();
 
         isFinished.set(false);
+        resetCreationProgress();
         deleteImages();
+        setupStorage();
         detectExistingImages();
         detectCategoryImages();
         generateImages();
-        setupStorage();
         configureImageProvider();
+        awaitImageCreation();
         isFinished.set(true);
       }
     };
@@ -24,7 +24,12 @@ public enum StorageMode {
   /**
    * Store all images on the pyhsical drive.
    */
-  DRIVE("Drive");
+  DRIVE("Drive"),
+
+  /**
+   * Store all images packed into memory mapped segment files on the physical drive.
+   */
+  SEGMENT("Segment");
 
   /**
    * Standard storage implementation used by the image provider service.
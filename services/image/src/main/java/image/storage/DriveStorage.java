@@ -30,7 +30,8 @@ import image.StoreImage;
 import utilities.datamodel.ImageSize;
 
 /**
- * Storage implementation that saves data in a directory on the physical disc.
+ * Storage implementation that saves data in a directory on the physical disc. Images are stored as plain image files
+ * in the store image format, so they can be sent to clients as they are.
  * @author Norbert Schmitt
  */
 public class DriveStorage implements IDataStorage<StoreImage> {
@@ -120,7 +121,7 @@ public class DriveStorage implements IDataStorage<StoreImage> {
       return null;
     }
 
-    return new StoreImage(id, imgData, size);
+    return StoreImage.fromPng(id, imgData, size);
   }
 
   @Override
@@ -145,11 +146,17 @@ public class DriveStorage implements IDataStorage<StoreImage> {
       return true;
     }
 
-    ReadWriteLock l = getIDLock(data.getId());
+    return saveEncodedData(data.getId(), data.getPng());
+  }
+
+  @Override
+  public boolean saveEncodedData(long id, byte[] encodedData) {
+    Path imgFile = workingDir.resolve(Long.toString(id));
+    ReadWriteLock l = getIDLock(id);
     l.writeLock().lock();
 
     try {
-      Files.write(imgFile, data.getByteArray(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      Files.write(imgFile, encodedData, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
           StandardOpenOption.TRUNCATE_EXISTING);
     } catch (IOException ioException) {
       LOG.warn("An IOException occured while trying to write the file \"" + imgFile.toAbsolutePath()
@@ -162,6 +169,12 @@ public class DriveStorage implements IDataStorage<StoreImage> {
     return true;
   }
 
+  @Override
+  public Path getDataFile(long id) {
+    Path imgFile = workingDir.resolve(Long.toString(id));
+    return imgFile.toFile().exists() ? imgFile : null;
+  }
+
   @Override
   public boolean dataIsStorable(StoreImage data) {
     return storageRule.test(data);
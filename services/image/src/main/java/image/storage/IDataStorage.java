@@ -13,6 +13,8 @@
  */
 package image.storage;
 
+import java.nio.file.Path;
+
 import image.cache.entry.ICachable;
 
 /**
@@ -44,6 +46,17 @@ public interface IDataStorage<T extends ICachable<T>> {
    */
   public boolean saveData(T data);
 
+  /**
+   * Saves data that is already encoded in the form it is stored in, without creating an entry first. The storage
+   * rule is not checked, as it applies to entries.
+   * @param id ID of the data.
+   * @param encodedData Data in its stored form, e.g. the image file content.
+   * @return True if data was saved in the storage, otherwise false.
+   */
+  public default boolean saveEncodedData(long id, byte[] encodedData) {
+    return false;
+  }
+
   /**
    * Checks whether data can be saved in the storage according to the storage rule.
    * @param data Data to check if it complies with the storage rule and can be stored.
@@ -57,4 +70,13 @@ public interface IDataStorage<T extends ICachable<T>> {
    * @return True if the data was deleted, otherwise false.
    */
   public boolean deleteData(T data);
+
+  /**
+   * Returns the file holding the data with the given ID, if the storage keeps it as a plain file on disk.
+   * @param id ID of the data.
+   * @return Path of the file or NULL if the data is not stored as a file.
+   */
+  public default Path getDataFile(long id) {
+    return null;
+  }
 }
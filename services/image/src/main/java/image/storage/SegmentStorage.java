@@ -0,0 +1,471 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import image.ImageDB;
+import image.StoreImage;
+import utilities.datamodel.ImageSize;
+
+/**
+ * Storage implementation that packs images into large segment files on the physical disc instead of using one file
+ * per image. Images are appended to the active segment, an in-memory index maps each image ID to the position of its
+ * data. Segments are memory mapped, so loading an image neither opens a file nor issues a read system call.
+ * Segments that mostly contain deleted images are compacted by moving their remaining images to the active segment.
+ * Each record consists of the image ID, the data length and the image in the store image format. Image files written
+ * to the working directory by the image generation are moved into the segments when they are loaded for the first
+ * time. Images unknown to the image database are only dropped from the segments by
+ * {@link #deleteUnknownImages()}, so opening the segments with an incomplete image database never loses images.
+ * @author Philipp Backes
+ */
+public class SegmentStorage implements IDataStorage<StoreImage> {
+
+  /**
+   * Name of the directory within the working directory containing the segment files.
+   */
+  public static final String SEGMENT_DIR = "segments";
+
+  /**
+   * Capacity of a segment file in bytes. Larger images get a segment of their own.
+   */
+  public static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Share of deleted data in bytes at which a full segment is compacted.
+   */
+  public static final double COMPACTION_THRESHOLD = 0.5;
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+  // Image ID and data length, records with ID 0 mark the end of a segment
+  private static final int RECORD_HEADER_SIZE = Long.BYTES + Integer.BYTES;
+
+  private Path workingDir;
+  private Path segmentDir;
+  private ImageDB imgDB;
+  private Predicate<StoreImage> storageRule;
+  private static final Logger LOG = LogManager.getLogger(SegmentStorage.class);
+
+  private final Map<Long, Location> index = new ConcurrentHashMap<>();
+  // Guards all writes, readers only use the index and the immutable data before the write offset
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final List<Segment> segments = new ArrayList<>();
+  private final int segmentSize;
+  private Segment activeSegment;
+  private int nextSegmentNr;
+
+  /**
+   * Standard constructor creating a segment storage in the working directory on the physical disc. Existing segments
+   * are opened and all images stored in them are added to the index.
+   * @param workingDir Working directory on the physical disc where the data is stored.
+   * @param imgDB Image database containing the IDs for the data.
+   * @param storageRule Storage rule which data can be stored.
+   */
+  public SegmentStorage(Path workingDir, ImageDB imgDB, Predicate<StoreImage> storageRule) {
+    this(workingDir, imgDB, storageRule, SEGMENT_SIZE);
+  }
+
+  // Segment size can be lowered, e.g. to test compaction without writing large files
+  SegmentStorage(Path workingDir, ImageDB imgDB, Predicate<StoreImage> storageRule, int segmentSize) {
+    if (workingDir == null) {
+      LOG.error("The supplied working directory is null.");
+      throw new NullPointerException("The supplied working directory is null.");
+    }
+    if (imgDB == null) {
+      LOG.error("The supplied image database is null.");
+      throw new NullPointerException("The supplied image database is null.");
+    }
+    if (storageRule == null) {
+      LOG.error("The supplied rule to determine if an image can be stored is null.");
+      throw new NullPointerException(
+          "The supplied rule to determine if an image can be stored is null.");
+    }
+
+    this.workingDir = workingDir.normalize();
+    this.segmentDir = this.workingDir.resolve(SEGMENT_DIR);
+    this.imgDB = imgDB;
+    this.storageRule = storageRule;
+    this.segmentSize = segmentSize;
+    try {
+      Files.createDirectories(segmentDir);
+    } catch (IOException ioException) {
+      LOG.error("Segment directory \"" + segmentDir.toAbsolutePath() + "\" could not be created.");
+      throw new IllegalArgumentException("Segment directory \"" + segmentDir.toAbsolutePath()
+          + "\" could not be created.", ioException);
+    }
+    openSegments();
+  }
+
+  /**
+   * Deletes all segment files in the given working directory.
+   * @param workingDir Working directory containing the segment directory.
+   * @return Number of deleted segment files.
+   */
+  public static int deleteSegments(Path workingDir) {
+    Path segmentDir = workingDir.resolve(SEGMENT_DIR);
+    if (!Files.isDirectory(segmentDir)) {
+      return 0;
+    }
+    int nrOfSegmentsDeleted = 0;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(segmentDir, "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        Files.delete(file);
+        nrOfSegmentsDeleted++;
+      }
+      Files.delete(segmentDir);
+    } catch (IOException ioException) {
+      LOG.warn("An IOException occured while deleting the segments in \"" + segmentDir.toAbsolutePath() + "\".",
+          ioException);
+    }
+    return nrOfSegmentsDeleted;
+  }
+
+  /**
+   * Returns the number of segment files.
+   * @return Number of segment files.
+   */
+  public int getNrOfSegments() {
+    writeLock.lock();
+    try {
+      return segments.size();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Compacts all full segments in which the share of deleted data reached the compaction threshold.
+   * @return Number of compacted segments.
+   */
+  public int compact() {
+    int nrOfSegmentsCompacted = 0;
+    writeLock.lock();
+    try {
+      for (Segment segment : new ArrayList<>(segments)) {
+        if (segment != activeSegment && segment.needsCompaction()) {
+          compact(segment);
+          nrOfSegmentsCompacted++;
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+    return nrOfSegmentsCompacted;
+  }
+
+  /**
+   * Deletes all images unknown to the image database from the segments, e.g. images of an outdated image database
+   * whose IDs are going to be reused. Must only be called once the image database is complete.
+   * @return Number of deleted images.
+   */
+  public int deleteUnknownImages() {
+    int nrOfImagesDeleted = 0;
+    writeLock.lock();
+    try {
+      for (Map.Entry<Long, Location> entry : index.entrySet()) {
+        if (imgDB.getImageSize(entry.getKey()) == null && index.remove(entry.getKey(), entry.getValue())) {
+          entry.getValue().segment.deletedBytes += RECORD_HEADER_SIZE + entry.getValue().length;
+          nrOfImagesDeleted++;
+        }
+      }
+      compact();
+    } finally {
+      writeLock.unlock();
+    }
+    return nrOfImagesDeleted;
+  }
+
+  @Override
+  public boolean dataExists(long id) {
+    return index.containsKey(id) || getLooseFile(id) != null;
+  }
+
+  @Override
+  public StoreImage loadData(long id) {
+    byte[] imgData = loadBytes(id);
+    if (imgData == null) {
+      imgData = importLooseFile(id);
+      if (imgData == null) {
+        return null;
+      }
+    }
+
+    ImageSize size = imgDB.getImageSize(id);
+    if (size == null) {
+      return null;
+    }
+
+    return StoreImage.fromPng(id, imgData, size);
+  }
+
+  @Override
+  public boolean saveData(StoreImage data) {
+    // We return true so we do not trigger an error. This is intended
+    if (!dataIsStorable(data)) {
+      return true;
+    }
+    if (index.containsKey(data.getId())) {
+      return true;
+    }
+
+    return saveEncodedData(data.getId(), data.getPng());
+  }
+
+  @Override
+  public boolean saveEncodedData(long id, byte[] encodedData) {
+    writeLock.lock();
+    try {
+      if (!index.containsKey(id)) {
+        append(id, encodedData);
+      }
+    } catch (IOException ioException) {
+      LOG.warn("An IOException occured while trying to append the image with ID " + id
+          + " to a segment in \"" + segmentDir.toAbsolutePath() + "\".", ioException);
+      return false;
+    } finally {
+      writeLock.unlock();
+    }
+
+    return true;
+  }
+
+  @Override
+  public boolean dataIsStorable(StoreImage data) {
+    return storageRule.test(data);
+  }
+
+  @Override
+  public boolean deleteData(StoreImage data) {
+    Path looseFile = getLooseFile(data.getId());
+    if (looseFile != null) {
+      looseFile.toFile().delete();
+    }
+
+    writeLock.lock();
+    try {
+      Location location = index.remove(data.getId());
+      if (location == null) {
+        return true;
+      }
+      location.segment.deletedBytes += RECORD_HEADER_SIZE + location.length;
+      if (location.segment != activeSegment && location.segment.needsCompaction()) {
+        compact(location.segment);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+
+    return true;
+  }
+
+  private byte[] loadBytes(long id) {
+    Location location = index.get(id);
+    if (location == null) {
+      return null;
+    }
+    byte[] imgData = new byte[location.length];
+    location.segment.buffer.get(location.offset, imgData);
+    return imgData;
+  }
+
+  // Image files written by the image generation are moved into the active segment on first access
+  private Path getLooseFile(long id) {
+    if (imgDB.getImageSize(id) == null) {
+      return null;
+    }
+    Path imgFile = workingDir.resolve(Long.toString(id));
+    return imgFile.toFile().exists() ? imgFile : null;
+  }
+
+  private byte[] importLooseFile(long id) {
+    // Most misses are IDs without a loose file, they must not wait for writes
+    if (getLooseFile(id) == null) {
+      return null;
+    }
+    writeLock.lock();
+    try {
+      // Another thread might have imported the file in the meantime
+      byte[] imgData = loadBytes(id);
+      if (imgData != null) {
+        return imgData;
+      }
+      Path imgFile = getLooseFile(id);
+      if (imgFile == null) {
+        return null;
+      }
+      imgData = Files.readAllBytes(imgFile);
+      append(id, imgData);
+      Files.delete(imgFile);
+      return imgData;
+    } catch (IOException ioException) {
+      LOG.warn("An IOException occured while moving the image with ID " + id + " into a segment in \""
+          + segmentDir.toAbsolutePath() + "\".", ioException);
+      return null;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  // Must be called with the write lock held
+  private void append(long id, byte[] imgData) throws IOException {
+    int recordSize = RECORD_HEADER_SIZE + imgData.length;
+    if (activeSegment == null || activeSegment.writeOffset + recordSize > activeSegment.buffer.capacity()) {
+      activeSegment = newSegment(Math.max(segmentSize, recordSize));
+    }
+    Segment segment = activeSegment;
+    int offset = segment.writeOffset;
+    // Write the data before the header, so an interrupted append never leaves a record with a valid ID behind
+    segment.buffer.put(offset + RECORD_HEADER_SIZE, imgData);
+    segment.buffer.putInt(offset + Long.BYTES, imgData.length);
+    segment.buffer.putLong(offset, id);
+    segment.writeOffset += recordSize;
+    index.put(id, new Location(segment, offset + RECORD_HEADER_SIZE, imgData.length));
+  }
+
+  // Must be called with the write lock held
+  private void compact(Segment segment) {
+    try {
+      for (Map.Entry<Long, Location> entry : index.entrySet()) {
+        Location location = entry.getValue();
+        if (location.segment == segment) {
+          byte[] imgData = new byte[location.length];
+          segment.buffer.get(location.offset, imgData);
+          append(entry.getKey(), imgData);
+        }
+      }
+      segments.remove(segment);
+      // The mapping stays valid for readers still holding a location in the deleted file
+      Files.delete(segment.file);
+      LOG.info("Compacted segment {}.", segment.file.getFileName());
+    } catch (IOException ioException) {
+      LOG.warn("An IOException occured while compacting the segment \"" + segment.file.toAbsolutePath() + "\".",
+          ioException);
+    }
+  }
+
+  private Segment newSegment(int capacity) throws IOException {
+    Path file = segmentDir.resolve(nextSegmentNr++ + SEGMENT_SUFFIX);
+    Segment segment = new Segment(file, map(file, capacity));
+    segments.add(segment);
+    return segment;
+  }
+
+  private static MappedByteBuffer map(Path file, long capacity) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, channel.size()));
+    }
+  }
+
+  // Rebuilds the index from existing segments, later records of an image replace earlier ones
+  private void openSegments() {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(segmentDir, "*" + SEGMENT_SUFFIX)) {
+      stream.forEach(files::add);
+    } catch (IOException ioException) {
+      LOG.warn("An IOException occured while listing the segments in \"" + segmentDir.toAbsolutePath() + "\".",
+          ioException);
+      return;
+    }
+    files.sort((a, b) -> Integer.compare(getSegmentNr(a), getSegmentNr(b)));
+
+    for (Path file : files) {
+      try {
+        Segment segment = new Segment(file, map(file, 0));
+        segments.add(segment);
+        nextSegmentNr = Math.max(nextSegmentNr, getSegmentNr(file) + 1);
+        readRecords(segment);
+      } catch (IOException | NumberFormatException exception) {
+        LOG.warn("The segment \"" + file.toAbsolutePath() + "\" could not be opened.", exception);
+      }
+    }
+    if (!index.isEmpty()) {
+      LOG.info("Opened {} segments containing {} images.", segments.size(), index.size());
+    }
+    // Compact before choosing the segment to append to, so every segment can be compacted
+    compact();
+    if (activeSegment == null && !segments.isEmpty()) {
+      activeSegment = segments.get(segments.size() - 1);
+    }
+  }
+
+  private void readRecords(Segment segment) {
+    MappedByteBuffer buffer = segment.buffer;
+    int offset = 0;
+    while (offset + RECORD_HEADER_SIZE <= buffer.capacity()) {
+      long id = buffer.getLong(offset);
+      int length = buffer.getInt(offset + Long.BYTES);
+      if (id == 0 || length < 0 || offset + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+        break;
+      }
+      Location previous = index.put(id, new Location(segment, offset + RECORD_HEADER_SIZE, length));
+      if (previous != null) {
+        previous.segment.deletedBytes += RECORD_HEADER_SIZE + previous.length;
+      }
+      offset += RECORD_HEADER_SIZE + length;
+    }
+    segment.writeOffset = offset;
+  }
+
+  private static int getSegmentNr(Path file) {
+    String name = file.getFileName().toString();
+    return Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  // Memory mapped segment file, only the part before the write offset contains records
+  private static final class Segment {
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private int writeOffset;
+    private long deletedBytes;
+
+    private Segment(Path file, MappedByteBuffer buffer) {
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    private boolean needsCompaction() {
+      return writeOffset > 0 && deletedBytes >= writeOffset * COMPACTION_THRESHOLD;
+    }
+  }
+
+  // Position of the data of an image within a segment
+  private static final class Location {
+    private final Segment segment;
+    private final int offset;
+    private final int length;
+
+    private Location(Segment segment, int offset, int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLongLongMapTest {
+
+    private static Map<Long, Long> toMap(ConcurrentLongLongMap map) {
+        Map<Long, Long> mappings = new HashMap<>();
+        map.forEach((key, value) -> assertNull(mappings.put(key, value)));
+        return mappings;
+    }
+
+    @Test
+    void testPutAndGet() {
+        ConcurrentLongLongMap map = new ConcurrentLongLongMap();
+        map.put(1, 10);
+        map.put(-5, 50);
+        map.put(Long.MAX_VALUE, -1);
+        map.put(1, 11);
+        assertEquals(11, map.get(1));
+        assertEquals(50, map.get(-5));
+        assertEquals(-1, map.get(Long.MAX_VALUE));
+        assertEquals(0, map.get(2));
+        assertEquals(Map.of(1L, 11L, -5L, 50L, Long.MAX_VALUE, -1L), toMap(map));
+    }
+
+    @Test
+    void testUnsupportedMappings() {
+        ConcurrentLongLongMap map = new ConcurrentLongLongMap();
+        assertThrows(IllegalArgumentException.class, () -> map.put(Long.MIN_VALUE, 1));
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, 0));
+    }
+
+    @Test
+    void testRemoveAndReinsert() {
+        ConcurrentLongLongMap map = new ConcurrentLongLongMap();
+        map.put(1, 10);
+        map.put(2, 20);
+        assertFalse(map.remove(1, 11));
+        assertFalse(map.remove(3, 30));
+        assertEquals(10, map.get(1));
+        assertTrue(map.remove(1, 10));
+        assertFalse(map.remove(1, 10));
+        assertEquals(0, map.get(1));
+        // keys behind the removed one are still found
+        assertEquals(20, map.get(2));
+        assertEquals(Map.of(2L, 20L), toMap(map));
+        map.put(1, 12);
+        assertEquals(12, map.get(1));
+        assertEquals(Map.of(1L, 12L, 2L, 20L), toMap(map));
+    }
+
+    @Test
+    void testManyRemovedKeys() {
+        // removed slots are reclaimed when the table grows, so it does not fill up
+        ConcurrentLongLongMap map = new ConcurrentLongLongMap();
+        for (long key = 1; key <= 100000; key++) {
+            map.put(key, key);
+            assertTrue(map.remove(key, key));
+        }
+        map.put(7, 70);
+        assertEquals(Map.of(7L, 70L), toMap(map));
+    }
+
+    @Test
+    void testResize() {
+        ConcurrentLongLongMap map = new ConcurrentLongLongMap();
+        for (long key = 0; key < 10000; key++) {
+            map.put(key * 31, key + 1);
+            if (key % 3 == 0) {
+                map.remove(key * 31, key + 1);
+            }
+        }
+        for (long key = 0; key < 10000; key++) {
+            assertEquals(key % 3 == 0 ? 0 : key + 1, map.get(key * 31));
+        }
+        ConcurrentLongLongMap copy = new ConcurrentLongLongMap(map);
+        assertEquals(toMap(map), toMap(copy));
+        assertEquals(6666, toMap(copy).size());
+        map.clear();
+        assertTrue(toMap(map).isEmpty());
+        assertEquals(2, copy.get(31));
+    }
+
+    @Test
+    void testConcurrentPutAndGet() throws Exception {
+        ConcurrentLongLongMap map = new ConcurrentLongLongMap();
+        int keys = 200000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                start.await();
+                for (long key = 1; key <= keys; key++) {
+                    map.put(key, -key);
+                    if (key % 2 == 0) {
+                        map.remove(key / 2, -(key / 2));
+                    }
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        Thread[] readers = new Thread[3];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int round = 0; round < 5; round++) {
+                        for (long key = 1; key <= keys; key++) {
+                            long value = map.get(key);
+                            // a reader sees either no value or the value of the key, never a torn one
+                            if (value != 0 && value != -key) {
+                                throw new AssertionError("Key " + key + " has the value " + value);
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        start.countDown();
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        for (long key = 1; key <= keys; key++) {
+            assertEquals(key <= keys / 2 ? 0 : -key, map.get(key));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utilities.datamodel.ImageSize;
+import utilities.enumeration.ImageSizePreset;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageDBTest {
+
+    private static final ImageSize FULL = ImageSizePreset.FULL.getSize();
+    private static final ImageSize CUSTOM = new ImageSize(33, 44);
+
+    private ImageDB imgDB;
+
+    @BeforeEach
+    void setUp() {
+        imgDB = new ImageDB();
+    }
+
+    private Map<Long, ImageDBKey> mappings() {
+        Map<Long, ImageDBKey> mappings = new HashMap<>();
+        imgDB.forEachMapping((imageKey, imageID, imageSize) -> assertNull(mappings.put(imageID, imageKey)));
+        return mappings;
+    }
+
+    @Test
+    void testMapping() {
+        imgDB.setImageMapping(7, 1, FULL);
+        imgDB.setImageMapping(7, 2, CUSTOM);
+        imgDB.setImageMapping("front", 3, CUSTOM);
+        assertEquals(1, imgDB.getImageID(7, FULL));
+        assertEquals(2, imgDB.getImageID(7, CUSTOM));
+        assertEquals(3, imgDB.getImageID("front", CUSTOM));
+        assertEquals(0, imgDB.getImageID(8, FULL));
+        assertEquals(0, imgDB.getImageID("front", FULL));
+        assertEquals(CUSTOM, imgDB.getImageSize(3));
+        assertEquals(3, mappings().size());
+    }
+
+    @Test
+    void testRemapKey() {
+        imgDB.setImageMapping(7, 1, FULL);
+        imgDB.setImageMapping("front", 2, CUSTOM);
+        // the keys point to new images, so the previous images are not mapped anymore
+        imgDB.setImageMapping(7, 3, FULL);
+        imgDB.setImageMapping("front", 4, CUSTOM);
+        assertEquals(3, imgDB.getImageID(7, FULL));
+        assertEquals(4, imgDB.getImageID("front", CUSTOM));
+        assertNull(imgDB.getImageSize(1));
+        assertNull(imgDB.getImageSize(2));
+        assertEquals(Map.of(3L, new ImageDBKey(7), 4L, new ImageDBKey("front")), mappings());
+    }
+
+    @Test
+    void testRemapImage() {
+        imgDB.setImageMapping(7, 1, FULL);
+        imgDB.setImageMapping(8, 1, CUSTOM);
+        assertEquals(0, imgDB.getImageID(7, FULL));
+        assertEquals(1, imgDB.getImageID(8, CUSTOM));
+        assertEquals(CUSTOM, imgDB.getImageSize(1));
+        assertEquals(Map.of(1L, new ImageDBKey(8)), mappings());
+    }
+
+    @Test
+    void testRemoveMapping() {
+        imgDB.setImageMapping(7, 1, CUSTOM);
+        imgDB.removeImageMapping(1);
+        assertFalse(imgDB.hasImageID(7, CUSTOM));
+        assertNull(imgDB.getImageSize(1));
+        assertTrue(mappings().isEmpty());
+        imgDB.setImageMapping(7, 2, CUSTOM);
+        assertEquals(2, imgDB.getImageID(7, CUSTOM));
+    }
+
+    @Test
+    void testUnusedSizesAreReleased() {
+        // more sizes than codes are requested over time, but only one is in use at a time
+        for (int width = 1; width <= 70000; width++) {
+            imgDB.setImageMapping(7, width, new ImageSize(width, 1));
+            imgDB.removeImageMapping(width - 1);
+        }
+        assertEquals(70000, imgDB.getImageID(7, new ImageSize(70000, 1)));
+        assertEquals(new ImageSize(70000, 1), imgDB.getImageSize(70000));
+        assertFalse(imgDB.hasImageID(7, new ImageSize(69999, 1)));
+        assertEquals(1, mappings().size());
+    }
+
+    @Test
+    void testTooManySizesInUse() {
+        int width = 1;
+        try {
+            for (; width <= 1 << 16; width++) {
+                imgDB.setImageMapping(width, width, new ImageSize(width, 1));
+            }
+            fail("All sizes were mapped.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(width > (1 << 16) - ImageSizePreset.values().length);
+        }
+        // presets and sizes in use keep working, and a released code is reused
+        imgDB.setImageMapping(1, 1 << 20, FULL);
+        assertEquals(1 << 20, imgDB.getImageID(1, FULL));
+        imgDB.removeImageMapping(2);
+        imgDB.setImageMapping(width, width, new ImageSize(width, 1));
+        assertEquals(width, imgDB.getImageID(width, new ImageSize(width, 1)));
+        // the sizes are codes of this database only
+        assertEquals(0, new ImageDB().getImageID(width, new ImageSize(width, 1)));
+        new ImageDB().setImageMapping(1, 1, new ImageSize(width + 1, 1));
+    }
+
+    @Test
+    void testCopy() {
+        imgDB.setImageMapping(7, 1, CUSTOM);
+        ImageDB copy = new ImageDB(imgDB);
+        imgDB.removeImageMapping(1);
+        imgDB.setImageMapping(8, 2, new ImageSize(1, 2));
+        assertEquals(1, copy.getImageID(7, CUSTOM));
+        assertEquals(CUSTOM, copy.getImageSize(1));
+        assertEquals(0, copy.getImageID(8, new ImageSize(1, 2)));
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image;
+
+import utilities.datamodel.ImageSize;
+import utilities.enumeration.ImageSizePreset;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures the time to scale a product image to the preset sizes with the image scaler and with a single bicubic
+ * Java 2D draw, the way images were scaled before. Not run by the test suite, start it with
+ * {@code java -cp <test classpath> image.ImageScalerBenchmark [source width] [source height]}.
+ */
+public final class ImageScalerBenchmark {
+
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+
+    private ImageScalerBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 1920;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 1080;
+        BufferedImage image = createImage(width, height);
+        BufferedImage intRaster = ImageScaler.toIntRaster(image);
+        System.out.println("Scaling a " + width + "x" + height + " image, mean of " + MEASURED_ROUNDS + " rounds");
+        System.out.printf("%-12s %14s %14s %14s%n", "size", "Java 2D [ms]", "scaler [ms]", "raster [ms]");
+        for (ImageSizePreset preset : ImageSizePreset.values()) {
+            ImageSize size = preset.getSize();
+            double java2D = measure(() -> scaleWithJava2D(image, size));
+            double scaler = measure(() -> ImageScaler.scale(image, size));
+            double raster = measure(() -> ImageScaler.scale(intRaster, size));
+            System.out.printf("%-12s %14.3f %14.3f %14.3f%n", size, java2D, scaler, raster);
+        }
+    }
+
+    // Returns the mean time in milliseconds of one call of the given operation
+    private static double measure(Supplier<BufferedImage> operation) {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            checksum += operation.get().getRGB(0, 0);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            checksum += operation.get().getRGB(0, 0);
+        }
+        long time = System.nanoTime() - start;
+        // Keeps the JIT from dropping the scaling
+        if (checksum == 42) {
+            System.out.println();
+        }
+        return time / 1e6 / MEASURED_ROUNDS;
+    }
+
+    private static BufferedImage scaleWithJava2D(BufferedImage image, ImageSize size) {
+        BufferedImage scaledImg = new BufferedImage(size.width(), size.height(), BufferedImage.TRANSLUCENT);
+        Graphics2D graphics = scaledImg.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.drawImage(image, 0, 0, size.width(), size.height(), null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaledImg;
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | random.nextInt(256));
+            }
+        }
+        return image;
+    }
+}
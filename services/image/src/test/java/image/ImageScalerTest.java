@@ -0,0 +1,192 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image;
+
+import org.junit.jupiter.api.Test;
+import utilities.datamodel.ImageSize;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageScalerTest {
+
+    private static BufferedImage createImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // A gradient with some noise, so the interpolation has to combine different pixels
+                int red = (x * 255 / width + random.nextInt(8)) & 0xFF;
+                int green = (y * 255 / height + random.nextInt(8)) & 0xFF;
+                int blue = random.nextInt(256);
+                int alpha = 64 + (x + y) % 192;
+                image.setRGB(x, y, alpha << 24 | red << 16 | green << 8 | blue);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage createUniformImage(int width, int height, int type, Color color) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(color);
+            graphics.fillRect(0, 0, width, height);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static int[] getRGB(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    @Test
+    void testOutputDimensions() {
+        BufferedImage image = createImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        int[][] sizes = {{1, 1}, {1, 7}, {7, 1}, {2, 2}, {33, 17}, {125, 75}, {149, 99}, {150, 100}, {299, 201},
+            {300, 200}, {301, 199}, {640, 480}};
+        for (int[] size : sizes) {
+            BufferedImage scaled = ImageScaler.scale(image, size[0], size[1]);
+            assertEquals(size[0], scaled.getWidth(), size[0] + "x" + size[1]);
+            assertEquals(size[1], scaled.getHeight(), size[0] + "x" + size[1]);
+        }
+        assertEquals(125, ImageScaler.scale(image, new ImageSize(125, 75)).getWidth());
+        assertEquals(75, ImageScaler.scale(image, new ImageSize(125, 75)).getHeight());
+        BufferedImage scaled = ImageScaler.scale(image, 0.5);
+        assertEquals(150, scaled.getWidth());
+        assertEquals(100, scaled.getHeight());
+        scaled = ImageScaler.scale(image, 0.001, 2.0);
+        assertEquals(1, scaled.getWidth());
+        assertEquals(400, scaled.getHeight());
+        scaled = ImageScaler.scale(image, 50);
+        assertEquals(50, scaled.getWidth());
+        assertEquals(50, scaled.getHeight());
+    }
+
+    @Test
+    void testSinglePixelSource() {
+        BufferedImage image = createUniformImage(1, 1, BufferedImage.TYPE_INT_RGB, new Color(10, 20, 30));
+        BufferedImage scaled = ImageScaler.scale(image, 5, 3);
+        for (int rgb : getRGB(scaled)) {
+            assertEquals(new Color(10, 20, 30).getRGB(), rgb);
+        }
+        assertEquals(new Color(10, 20, 30).getRGB(), ImageScaler.scale(image, 1, 1).getRGB(0, 0));
+    }
+
+    @Test
+    void testImageType() {
+        for (int type : new int[] {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR,
+            BufferedImage.TYPE_BYTE_GRAY}) {
+            assertEquals(BufferedImage.TYPE_INT_RGB, ImageScaler.scale(createImage(40, 30, type), 13, 7).getType());
+        }
+        for (int type : new int[] {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE,
+            BufferedImage.TYPE_4BYTE_ABGR}) {
+            assertEquals(BufferedImage.TYPE_INT_ARGB_PRE,
+                    ImageScaler.scale(createImage(40, 30, type), 13, 7).getType());
+        }
+    }
+
+    @Test
+    void testPremultipliedColorsDoNotExceedAlpha() {
+        BufferedImage scaled = ImageScaler.scale(createImage(301, 199, BufferedImage.TYPE_INT_ARGB), 97, 211);
+        int[] pixels = (int[]) scaled.getRaster().getDataElements(0, 0, scaled.getWidth(), scaled.getHeight(),
+                null);
+        for (int pixel : pixels) {
+            int alpha = pixel >>> 24;
+            assertTrue((pixel >>> 16 & 0xFF) <= alpha);
+            assertTrue((pixel >>> 8 & 0xFF) <= alpha);
+            assertTrue((pixel & 0xFF) <= alpha);
+        }
+    }
+
+    @Test
+    void testUniformColorIsKept() {
+        Color color = new Color(200, 100, 50);
+        BufferedImage image = createUniformImage(257, 129, BufferedImage.TYPE_3BYTE_BGR, color);
+        // Halving, downscaling, upscaling and both at once
+        int[][] sizes = {{64, 32}, {100, 100}, {513, 260}, {20, 300}, {1, 1}};
+        for (int[] size : sizes) {
+            for (int rgb : getRGB(ImageScaler.scale(image, size[0], size[1]))) {
+                assertEquals(color.getRGB(), rgb, size[0] + "x" + size[1]);
+            }
+        }
+    }
+
+    @Test
+    void testUpscalingIsCloseToJava2D() {
+        BufferedImage image = createImage(60, 40, BufferedImage.TYPE_INT_RGB);
+        BufferedImage expected = new BufferedImage(150, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = expected.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.drawImage(image, 0, 0, 150, 100, null);
+        } finally {
+            graphics.dispose();
+        }
+        int[] expectedPixels = getRGB(expected);
+        int[] pixels = getRGB(ImageScaler.scale(image, 150, 100));
+        long difference = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            for (int channel = 0; channel < 24; channel += 8) {
+                difference += Math.abs((pixels[i] >>> channel & 0xFF) - (expectedPixels[i] >>> channel & 0xFF));
+            }
+        }
+        // Both use the same kernel, only the handling of the borders and rounding differ
+        assertTrue(difference / (3.0 * pixels.length) < 4, "mean difference " + difference / (3.0 * pixels.length));
+    }
+
+    @Test
+    void testParallelScalingEqualsSequentialScaling() {
+        for (int type : new int[] {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB}) {
+            BufferedImage image = ImageScaler.toIntRaster(createImage(2400, 2000, type));
+            // Only halving, halving and interpolation, and upscaling above the parallel threshold
+            int[][] sizes = {{1200, 1000}, {1100, 999}, {2500, 2100}};
+            for (int[] size : sizes) {
+                assertTrue((long) size[0] * size[1] >= ImageScaler.PARALLEL_SCALING_PIXELS);
+                int[] sequential = getRGB(ImageScaler.scale(image, size[0], size[1], 1));
+                int[] parallel = getRGB(ImageScaler.scale(image, size[0], size[1], 8));
+                assertArrayEquals(sequential, parallel, size[0] + "x" + size[1]);
+            }
+        }
+    }
+
+    @Test
+    void testToIntRaster() {
+        BufferedImage image = createImage(20, 10, BufferedImage.TYPE_INT_RGB);
+        assertSame(image, ImageScaler.toIntRaster(image));
+        BufferedImage converted = ImageScaler.toIntRaster(createImage(20, 10, BufferedImage.TYPE_3BYTE_BGR));
+        assertEquals(BufferedImage.TYPE_INT_RGB, converted.getType());
+        assertEquals(BufferedImage.TYPE_INT_ARGB_PRE,
+                ImageScaler.toIntRaster(createImage(20, 10, BufferedImage.TYPE_INT_ARGB)).getType());
+    }
+
+    @Test
+    void testInvalidArguments() {
+        BufferedImage image = createImage(20, 10, BufferedImage.TYPE_INT_RGB);
+        assertThrows(NullPointerException.class, () -> ImageScaler.scale(null, 10, 10));
+        assertThrows(NullPointerException.class, () -> ImageScaler.scale(image, (ImageSize) null));
+        assertThrows(IllegalArgumentException.class, () -> ImageScaler.scale(image, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> ImageScaler.scale(image, 10, -1));
+        assertThrows(IllegalArgumentException.class, () -> ImageScaler.scale(image, 0));
+        assertThrows(IllegalArgumentException.class, () -> ImageScaler.scale(image, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> ImageScaler.scale(image, 1.0, -1.0));
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures the encoding time and the size of a product image for every deflate level, with and without encoding
+ * base64 while the image is written. Not run by the test suite, start it with
+ * {@code java -cp <test classpath> image.PngEncoderBenchmark [width] [height]}.
+ */
+public final class PngEncoderBenchmark {
+
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+    private static final byte[] PREFIX = "data:image/png;base64,".getBytes(StandardCharsets.US_ASCII);
+
+    private PngEncoderBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        BufferedImage image = PngEncoderTest.createImage(width, height);
+        System.out.println("Encoding a " + width + "x" + height + " image, mean of " + MEASURED_ROUNDS + " rounds");
+        System.out.printf("%-8s %12s %14s %16s %16s%n", "level", "PNG [bytes]", "PNG [ms]", "streamed [ms]",
+            "buffered [ms]");
+        for (int level = PngEncoder.DEFAULT_COMPRESSION_LEVEL; level <= PngEncoder.MAX_COMPRESSION_LEVEL; level++) {
+            PngEncoder.setCompressionLevel(level);
+            int size = PngEncoder.encode(image).length;
+            double png = measure(() -> PngEncoder.encode(image));
+            PngEncoder.setStreamBase64(true);
+            double streamed = measure(() -> PngEncoder.encodeBase64(image, PREFIX));
+            PngEncoder.setStreamBase64(false);
+            double buffered = measure(() -> PngEncoder.encodeBase64(image, PREFIX));
+            System.out.printf("%-8s %12d %14.3f %16.3f %16.3f%n",
+                level == PngEncoder.DEFAULT_COMPRESSION_LEVEL ? "default" : level, size, png, streamed, buffered);
+        }
+    }
+
+    // Returns the mean time in milliseconds of one call of the given encoding
+    private static double measure(Encoding encoding) throws IOException {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            checksum += encoding.encode().length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            checksum += encoding.encode().length;
+        }
+        long time = System.nanoTime() - start;
+        // Keeps the JIT from dropping the encoding
+        if (checksum == 42) {
+            System.out.println();
+        }
+        return time / 1e6 / MEASURED_ROUNDS;
+    }
+
+    @FunctionalInterface
+    private interface Encoding {
+        byte[] encode() throws IOException;
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PngEncoderTest {
+
+    private static final byte[] PREFIX = "data:image/png;base64,".getBytes(StandardCharsets.US_ASCII);
+
+    private int compressionLevel;
+    private boolean streamBase64;
+
+    @BeforeEach
+    void setUp() {
+        compressionLevel = PngEncoder.getCompressionLevel();
+        streamBase64 = PngEncoder.isStreamBase64();
+    }
+
+    @AfterEach
+    void tearDown() {
+        PngEncoder.setCompressionLevel(compressionLevel);
+        PngEncoder.setStreamBase64(streamBase64);
+    }
+
+    static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Smooth areas compress well, the noise makes the deflate levels produce different streams
+                int noise = random.nextInt(4) == 0 ? random.nextInt(64) : 0;
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | noise);
+            }
+        }
+        return image;
+    }
+
+    // Concatenates the data of all IDAT chunks, the zlib stream of the image
+    private static byte[] getImageData(byte[] png) {
+        ByteBuffer buffer = ByteBuffer.wrap(png);
+        buffer.position(8);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        while (buffer.remaining() >= 12) {
+            int length = buffer.getInt();
+            byte[] type = new byte[4];
+            buffer.get(type);
+            if ("IDAT".equals(new String(type, StandardCharsets.US_ASCII))) {
+                data.write(png, buffer.position(), length);
+            }
+            buffer.position(buffer.position() + length + 4);
+        }
+        return data.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] compressed) throws Exception {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        while (!inflater.finished()) {
+            int length = inflater.inflate(chunk);
+            assertFalse(length == 0 && inflater.needsInput());
+            out.write(chunk, 0, length);
+        }
+        inflater.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, int level) {
+        Deflater deflater = new Deflater(level);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    @Test
+    void testEncode() throws Exception {
+        BufferedImage image = createImage(120, 80);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(PngEncoder.encode(image)));
+        assertEquals(120, decoded.getWidth());
+        assertEquals(80, decoded.getHeight());
+        for (int y = 0; y < 80; y++) {
+            for (int x = 0; x < 120; x++) {
+                assertEquals(image.getRGB(x, y), decoded.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    void testStreamedBase64EqualsEncodedBase64() throws Exception {
+        for (int[] size : new int[][] {{1, 1}, {2, 3}, {120, 80}, {300, 300}}) {
+            BufferedImage image = createImage(size[0], size[1]);
+            byte[] png = PngEncoder.encode(image);
+            PngEncoder.setStreamBase64(true);
+            byte[] streamed = PngEncoder.encodeBase64(image, PREFIX);
+            PngEncoder.setStreamBase64(false);
+            byte[] encoded = PngEncoder.encodeBase64(image, PREFIX);
+            assertArrayEquals(encoded, streamed, size[0] + "x" + size[1]);
+            assertArrayEquals(PREFIX, Arrays.copyOf(streamed, PREFIX.length));
+            assertArrayEquals(png, Base64.getDecoder().decode(
+                    Arrays.copyOfRange(streamed, PREFIX.length, streamed.length)));
+        }
+    }
+
+    @Test
+    void testCompressionLevels() throws Exception {
+        BufferedImage image = createImage(200, 150);
+        byte[] scanlines = null;
+        for (int level = 0; level <= PngEncoder.MAX_COMPRESSION_LEVEL; level++) {
+            PngEncoder.setCompressionLevel(level);
+            assertEquals(level, PngEncoder.getCompressionLevel());
+            byte[] compressed = getImageData(PngEncoder.encode(image));
+            if (scanlines == null) {
+                scanlines = inflate(compressed);
+            }
+            if (level == 0) {
+                // Level 0 only stores blocks, their size depends on the buffers of the writer
+                assertEquals(0, compressed[2] & 0x6, "block type");
+                assertTrue(compressed.length > scanlines.length);
+            } else {
+                // The image data is exactly the stream deflate produces at the configured level
+                assertArrayEquals(deflate(scanlines, level), compressed, "level " + level);
+            }
+        }
+    }
+
+    @Test
+    void testDefaultCompressionLevel() throws Exception {
+        BufferedImage image = createImage(200, 150);
+        PngEncoder.setCompressionLevel(PngEncoder.DEFAULT_COMPRESSION_LEVEL);
+        byte[] compressed = getImageData(PngEncoder.encode(image));
+        assertArrayEquals(deflate(inflate(compressed), 4), compressed);
+    }
+
+    @Test
+    void testInvalidCompressionLevel() {
+        assertThrows(IllegalArgumentException.class, () -> PngEncoder.setCompressionLevel(-2));
+        assertThrows(IllegalArgumentException.class,
+                () -> PngEncoder.setCompressionLevel(PngEncoder.MAX_COMPRESSION_LEVEL + 1));
+        assertEquals(compressionLevel, PngEncoder.getCompressionLevel());
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrequencySketchTest {
+
+    private FrequencySketch sketch;
+
+    @BeforeEach
+    void setUp() {
+        sketch = new FrequencySketch();
+    }
+
+    @Test
+    void testIncrement() {
+        assertEquals(0, sketch.frequency(42));
+        for (int i = 1; i <= 5; i++) {
+            sketch.increment(42);
+            assertEquals(i, sketch.frequency(42));
+        }
+        assertEquals(0, sketch.frequency(43));
+    }
+
+    @Test
+    void testFrequencyIsCapped() {
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(42);
+        }
+        assertEquals(15, sketch.frequency(42));
+    }
+
+    @Test
+    void testAging() {
+        for (int i = 0; i < 15; i++) {
+            sketch.increment(42);
+        }
+        // The default sketch ages its counters after 640 recorded accesses
+        for (long id = 1000; id < 2000; id++) {
+            sketch.increment(id);
+        }
+        assertTrue(sketch.frequency(42) < 15);
+    }
+
+    @Test
+    void testClear() {
+        sketch.increment(42);
+        sketch.clear();
+        assertEquals(0, sketch.frequency(42));
+    }
+
+    @Test
+    void testEnsureCapacityKeepsCountersIfLargeEnough() {
+        sketch.increment(42);
+        sketch.ensureCapacity(16);
+        assertEquals(1, sketch.frequency(42));
+        sketch.ensureCapacity(1 << 16);
+        assertEquals(0, sketch.frequency(42));
+    }
+}
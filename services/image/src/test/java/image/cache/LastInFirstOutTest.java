@@ -0,0 +1,74 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LastInFirstOutTest {
+
+    private static final long SIZE = 10;
+
+    private static void assertCached(IDataCache<TestData> cache, long... ids) {
+        for (long id = 1; id <= 10; id++) {
+            long current = id;
+            assertEquals(Arrays.stream(ids).anyMatch(cached -> cached == current), cache.dataIsInCache(id), "ID " + id);
+        }
+        assertEquals(ids.length * SIZE, cache.getCurrentCacheSize());
+    }
+
+    @Test
+    void testEvictionOrder() {
+        LastInFirstOut<TestData> cache = new LastInFirstOut<>(3 * SIZE);
+        for (long id = 1; id <= 3; id++) {
+            cache.cacheData(new TestData(id, SIZE));
+        }
+        // using an entry does not change its position
+        assertNotNull(cache.loadData(1));
+        cache.cacheData(new TestData(4, SIZE));
+        assertCached(cache, 1, 2, 4);
+        cache.cacheData(new TestData(5, SIZE));
+        assertCached(cache, 1, 2, 5);
+    }
+
+    @Test
+    void testUncacheAndRecache() {
+        LastInFirstOut<TestData> cache = new LastInFirstOut<>(3 * SIZE);
+        TestData first = new TestData(1, SIZE);
+        cache.cacheData(first);
+        cache.cacheData(new TestData(2, SIZE));
+        cache.cacheData(new TestData(3, SIZE));
+        cache.uncacheData(first);
+        assertCached(cache, 2, 3);
+        assertNull(cache.loadData(1));
+        // uncaching twice or an unknown ID changes nothing
+        cache.uncacheData(first);
+        cache.uncacheData(new TestData(7, SIZE));
+        assertCached(cache, 2, 3);
+
+        // the cached again entry is the newest one, so it is evicted first
+        TestData again = new TestData(1, SIZE);
+        cache.cacheData(again);
+        assertSame(again, cache.loadData(1));
+        cache.cacheData(new TestData(4, SIZE));
+        assertCached(cache, 2, 3, 4);
+        cache.uncacheData(new TestData(3, SIZE));
+        cache.cacheData(new TestData(1, SIZE));
+        cache.cacheData(new TestData(5, SIZE));
+        assertCached(cache, 2, 4, 5);
+    }
+}
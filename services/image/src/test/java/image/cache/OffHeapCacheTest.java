@@ -0,0 +1,174 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import image.StoreImage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utilities.datamodel.ImageSize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapCacheTest {
+
+    private static final ImageSize SIZE = new ImageSize(64, 64);
+    private static final int BASE64_LENGTH = 1000;
+
+    private OffHeapCache cache;
+    private long imageSize;
+
+    @BeforeEach
+    void setUp() {
+        imageSize = createImage(0).getByteSize();
+        cache = new OffHeapCache(10 * imageSize);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.clearCache();
+    }
+
+    private static StoreImage createImage(long id) {
+        byte[] base64 = new byte[BASE64_LENGTH];
+        Arrays.fill(base64, (byte) ('A' + id % 26));
+        return new StoreImage(id, base64, SIZE);
+    }
+
+    @Test
+    void testLoadBuffer() {
+        StoreImage image = createImage(1);
+        cache.cacheData(image);
+        ByteBuf data = cache.loadBuffer(1);
+        assertNotNull(data);
+        try {
+            assertEquals(image.toString(), data.toString(CharsetUtil.US_ASCII));
+        } finally {
+            data.release();
+        }
+        assertNull(cache.loadBuffer(2));
+        assertEquals(image.toString(), cache.loadData(1).toString());
+    }
+
+    @Test
+    void testWriteData() {
+        cache.cacheData(createImage(1));
+        ByteBuf target = Unpooled.buffer();
+        assertTrue(cache.writeData(1, target));
+        assertEquals(createImage(1).toString(), target.toString(CharsetUtil.US_ASCII));
+        assertFalse(cache.writeData(2, target));
+    }
+
+    @Test
+    void testReferencedEntryGetsSecondChance() {
+        for (long id = 0; id < 10; id++) {
+            cache.cacheData(createImage(id));
+        }
+        cache.loadBuffer(0).release();
+        cache.cacheData(createImage(10));
+        assertTrue(cache.dataIsInCache(0));
+        assertFalse(cache.dataIsInCache(1));
+        assertEquals(10 * imageSize, cache.getCurrentCacheSize());
+    }
+
+    @Test
+    void testBufferOutlivesEviction() {
+        cache.cacheData(createImage(1));
+        ByteBuf data = cache.loadBuffer(1);
+        cache.uncacheData(createImage(1));
+        assertFalse(cache.dataIsInCache(1));
+        assertEquals(0, cache.getCurrentCacheSize());
+        try {
+            assertEquals(createImage(1).toString(), data.toString(CharsetUtil.US_ASCII));
+        } finally {
+            data.release();
+        }
+    }
+
+    @Test
+    void testUncachedEntryIsSkippedByEviction() {
+        for (long id = 0; id < 10; id++) {
+            cache.cacheData(createImage(id));
+        }
+        cache.uncacheData(createImage(0));
+        cache.cacheData(createImage(0));
+        // the re-cached entry is the newest one, the removed one does not count as the oldest
+        cache.cacheData(createImage(10));
+        assertTrue(cache.dataIsInCache(0));
+        assertFalse(cache.dataIsInCache(1));
+        assertTrue(cache.dataIsInCache(10));
+        assertEquals(10 * imageSize, cache.getCurrentCacheSize());
+    }
+
+    @Test
+    void testRepeatedUncaching() {
+        for (int round = 0; round < 1000; round++) {
+            cache.cacheData(createImage(round % 3));
+            cache.uncacheData(createImage((round + 1) % 3));
+        }
+        assertEquals(2 * imageSize, cache.getCurrentCacheSize());
+        for (long id = 10; id < 20; id++) {
+            cache.cacheData(createImage(id));
+        }
+        assertEquals(10 * imageSize, cache.getCurrentCacheSize());
+        for (long id = 10; id < 20; id++) {
+            assertTrue(cache.dataIsInCache(id));
+        }
+        assertEquals(createImage(15).toString(), cache.loadData(15).toString());
+    }
+
+    @Test
+    void testConcurrentReadsAndEvictions() throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        for (long id = 0; id < 20; id++) {
+                            ByteBuf data = cache.loadBuffer(id);
+                            if (data != null) {
+                                assertEquals('A' + id % 26, data.getByte(data.readableBytes() - 1));
+                                data.release();
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int round = 0; round < 2000; round++) {
+            cache.cacheData(createImage(round % 20));
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        assertTrue(cache.getCurrentCacheSize() <= cache.getMaxCacheSize());
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import image.cache.rules.CacheAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomReplacementTest {
+
+    private static final long SIZE = 10;
+    private static final int CAPACITY = 8;
+
+    // Removes the given position like the cache, by moving the last entry into the gap
+    private static void swapRemove(List<Long> ids, int position) {
+        long last = ids.remove(ids.size() - 1);
+        if (position < ids.size()) {
+            ids.set(position, last);
+        }
+    }
+
+    private static void assertCached(RandomReplacement<TestData> cache, List<Long> expected, int maxId) {
+        for (long id = 0; id < maxId; id++) {
+            assertEquals(expected.contains(id), cache.dataIsInCache(id), "ID " + id);
+        }
+        assertEquals(expected.size() * SIZE, cache.getCurrentCacheSize());
+    }
+
+    @Test
+    void testEvictionOrder() {
+        long seed = 21;
+        RandomReplacement<TestData> cache = new RandomReplacement<>(null, CAPACITY * SIZE, new CacheAll<TestData>(),
+                seed);
+        Random random = new Random(seed);
+        Random operations = new Random(4);
+        // the expected order of the entries, the victim is picked by its position
+        List<Long> expected = new ArrayList<>();
+        int maxId = 30;
+        for (int i = 0; i < 2000; i++) {
+            long id = operations.nextInt(maxId);
+            int position = expected.indexOf(id);
+            if (operations.nextInt(3) == 0) {
+                cache.uncacheData(new TestData(id, SIZE));
+                if (position >= 0) {
+                    swapRemove(expected, position);
+                }
+            } else {
+                cache.cacheData(new TestData(id, SIZE));
+                if (position < 0) {
+                    if (expected.size() == CAPACITY) {
+                        swapRemove(expected, random.nextInt(expected.size()));
+                    }
+                    expected.add(id);
+                }
+            }
+            assertCached(cache, expected, maxId);
+        }
+    }
+
+    @Test
+    void testUncacheAndRecache() {
+        RandomReplacement<TestData> cache = new RandomReplacement<>(null, 3 * SIZE, new CacheAll<TestData>(), 1);
+        TestData first = new TestData(1, SIZE);
+        cache.cacheData(first);
+        cache.cacheData(new TestData(2, SIZE));
+        cache.cacheData(new TestData(3, SIZE));
+        cache.uncacheData(first);
+        assertFalse(cache.dataIsInCache(1));
+        assertNull(cache.loadData(1));
+        cache.uncacheData(first);
+        assertEquals(2 * SIZE, cache.getCurrentCacheSize());
+
+        TestData again = new TestData(1, SIZE);
+        cache.cacheData(again);
+        assertSame(again, cache.loadData(1));
+        assertEquals(3 * SIZE, cache.getCurrentCacheSize());
+        // uncache the moved entries as well, the positions of the remaining ones must stay valid
+        cache.uncacheData(new TestData(2, SIZE));
+        cache.uncacheData(again);
+        cache.uncacheData(new TestData(3, SIZE));
+        assertEquals(0, cache.getCurrentCacheSize());
+        for (long id = 1; id <= 3; id++) {
+            assertFalse(cache.dataIsInCache(id));
+            cache.cacheData(new TestData(id, SIZE));
+        }
+        cache.cacheData(new TestData(4, SIZE));
+        assertTrue(cache.dataIsInCache(4));
+        assertEquals(3 * SIZE, cache.getCurrentCacheSize());
+    }
+}
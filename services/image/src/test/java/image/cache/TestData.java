@@ -0,0 +1,40 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import image.cache.entry.ICachable;
+
+/**
+ * Cachable data of a fixed byte size used by the cache tests.
+ */
+final class TestData implements ICachable<TestData> {
+
+    private final long id;
+    private final long byteSize;
+
+    TestData(long id, long byteSize) {
+        this.id = id;
+        this.byteSize = byteSize;
+    }
+
+    @Override
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowTinyLFUTest {
+
+    private static final long ENTRY_SIZE = WindowTinyLFU.MIN_ENTRY_SIZE;
+    private static final int NR_OF_ENTRIES = 100;
+    private static final int NR_OF_IDS = 10000;
+    private static final int TRACE_LENGTH = 200000;
+
+    private WindowTinyLFU<TestData> cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new WindowTinyLFU<>(NR_OF_ENTRIES * ENTRY_SIZE);
+    }
+
+    // Zipf distributed trace whose popular IDs change after each phase, like the products of a shop over time
+    private static long[] createSkewedTrace(int phases) {
+        double[] distribution = new double[NR_OF_IDS];
+        double sum = 0;
+        for (int rank = 0; rank < NR_OF_IDS; rank++) {
+            sum += 1.0 / (rank + 1);
+            distribution[rank] = sum;
+        }
+        Random random = new Random(42);
+        long[] trace = new long[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            int rank = Arrays.binarySearch(distribution, random.nextDouble() * sum);
+            rank = rank < 0 ? -rank - 1 : rank;
+            int phase = i / (TRACE_LENGTH / phases);
+            trace[i] = (rank + phase * (NR_OF_IDS / phases)) % NR_OF_IDS;
+        }
+        return trace;
+    }
+
+    // Replays the trace, caching the data of every miss, and returns the hit ratio
+    private static double replay(IDataCache<TestData> cache, long[] trace) {
+        int hits = 0;
+        for (long id : trace) {
+            if (cache.loadData(id) != null) {
+                hits++;
+            } else {
+                cache.cacheData(new TestData(id, ENTRY_SIZE));
+            }
+        }
+        return (double) hits / trace.length;
+    }
+
+    @Test
+    void testHitRatioOfSkewedTrace() {
+        long[] trace = createSkewedTrace(4);
+        // Both caches are grown after their creation, the sketch has to follow the new size
+        cache.setMaxCacheSize(10 * NR_OF_ENTRIES * ENTRY_SIZE);
+        LeastFrequentlyUsed<TestData> lfu = new LeastFrequentlyUsed<>(NR_OF_ENTRIES * ENTRY_SIZE);
+        lfu.setMaxCacheSize(10 * NR_OF_ENTRIES * ENTRY_SIZE);
+        double tinyLfuHitRatio = replay(cache, trace);
+        double lfuHitRatio = replay(lfu, trace);
+        assertTrue(tinyLfuHitRatio > lfuHitRatio + 0.1, tinyLfuHitRatio + " <= " + lfuHitRatio + " + 0.1");
+    }
+
+    @Test
+    void testCacheData() {
+        cache.cacheData(new TestData(1, ENTRY_SIZE));
+        assertTrue(cache.dataIsInCache(1));
+        assertEquals(ENTRY_SIZE, cache.getCurrentCacheSize());
+        assertNotNull(cache.loadData(1));
+        assertNull(cache.loadData(2));
+        CacheStatistics stats = cache.getStatsCounter().snapshot("", cache.getMaxCacheSize(),
+                cache.getCurrentCacheSize());
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+    }
+
+    @Test
+    void testCacheDataTwice() {
+        cache.cacheData(new TestData(1, ENTRY_SIZE));
+        cache.cacheData(new TestData(1, ENTRY_SIZE));
+        assertEquals(ENTRY_SIZE, cache.getCurrentCacheSize());
+    }
+
+    @Test
+    void testSizeIsBounded() {
+        for (long id = 0; id < 10 * NR_OF_ENTRIES; id++) {
+            cache.cacheData(new TestData(id, ENTRY_SIZE));
+            assertTrue(cache.getCurrentCacheSize() <= cache.getMaxCacheSize());
+        }
+        assertEquals(cache.getMaxCacheSize(), cache.getCurrentCacheSize());
+        CacheStatistics stats = cache.getStatsCounter().snapshot("", cache.getMaxCacheSize(),
+                cache.getCurrentCacheSize());
+        assertEquals(9 * NR_OF_ENTRIES, stats.evictionCount());
+    }
+
+    @Test
+    void testFrequentEntrySurvivesScan() {
+        cache.cacheData(new TestData(1, ENTRY_SIZE));
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(cache.loadData(1));
+        }
+        // An LRU cache would evict the entry while warming up and during the scan
+        for (long id = 1000; id < 1000 + 5 * NR_OF_ENTRIES; id++) {
+            cache.cacheData(new TestData(id, ENTRY_SIZE));
+        }
+        assertTrue(cache.dataIsInCache(1));
+    }
+
+    @Test
+    void testFrequentCandidateIsAdmitted() {
+        for (long id = 0; id < NR_OF_ENTRIES; id++) {
+            cache.cacheData(new TestData(id, ENTRY_SIZE));
+        }
+        // The sketch counts every attempt to cache the candidate, so it beats the entries accessed once
+        TestData candidate = new TestData(1000, ENTRY_SIZE);
+        for (int i = 0; i < 3 && !cache.dataIsInCache(candidate.getId()); i++) {
+            cache.cacheData(candidate);
+        }
+        assertTrue(cache.dataIsInCache(candidate.getId()));
+        assertEquals(cache.getMaxCacheSize(), cache.getCurrentCacheSize());
+    }
+
+    @Test
+    void testOneTimeCandidateIsRejected() {
+        for (long id = 0; id < NR_OF_ENTRIES; id++) {
+            cache.cacheData(new TestData(id, ENTRY_SIZE));
+            cache.loadData(id);
+        }
+        cache.cacheData(new TestData(1000, ENTRY_SIZE));
+        cache.cacheData(new TestData(1001, ENTRY_SIZE));
+        // The last candidate stays in the window, the first one lost against the entries used twice
+        assertFalse(cache.dataIsInCache(1000));
+        assertTrue(cache.dataIsInCache(1001));
+        int cached = 0;
+        for (long id = 0; id < NR_OF_ENTRIES; id++) {
+            cached += cache.dataIsInCache(id) ? 1 : 0;
+        }
+        assertEquals(NR_OF_ENTRIES - 1, cached);
+    }
+
+    @Test
+    void testUncacheData() {
+        TestData data = new TestData(1, ENTRY_SIZE);
+        cache.cacheData(data);
+        cache.uncacheData(data);
+        assertFalse(cache.dataIsInCache(1));
+        assertEquals(0, cache.getCurrentCacheSize());
+    }
+
+    @Test
+    void testShrinkEvicts() {
+        for (long id = 0; id < NR_OF_ENTRIES; id++) {
+            cache.cacheData(new TestData(id, ENTRY_SIZE));
+        }
+        cache.setMaxCacheSize(10 * ENTRY_SIZE);
+        assertTrue(cache.getCurrentCacheSize() <= 10 * ENTRY_SIZE);
+    }
+
+    @Test
+    void testClearCache() {
+        cache.cacheData(new TestData(1, ENTRY_SIZE));
+        cache.clearCache();
+        assertFalse(cache.dataIsInCache(1));
+        assertEquals(0, cache.getCurrentCacheSize());
+    }
+}
@@ -13,12 +13,22 @@
  */
 package image.rest.api;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import image.setup.CachingMode;
+import image.setup.SetupController;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import utilities.datamodel.Category;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static io.netty.handler.codec.http.HttpMethod.GET;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
@@ -31,9 +41,11 @@ class ImageAPITest {
     private ByteBuf body;
     private HttpResponse response;
     private Http1ImageAPI api;
+    private CachingMode cachingMode;
 
     @BeforeEach
     void setUp() {
+        cachingMode = SetupController.SETUP.getCachingMode();
         header = new DefaultFullHttpRequest(
                 HTTP_1_1,
                 GET,
@@ -44,8 +56,13 @@ class ImageAPITest {
     }
 
     @AfterEach
-    void tearDown() {
+    void tearDown() throws Exception {
         api = null;
+        SetupController.SETUP.setCachingMode(cachingMode);
+    }
+
+    private JsonNode readContent() throws Exception {
+        return new ObjectMapper().readTree(((FullHttpResponse) response).content().toString(CharsetUtil.UTF_8));
     }
 
     @Test
@@ -66,6 +83,23 @@ class ImageAPITest {
         assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, response.status());
     }
 
+    @Test
+    void testGetRawImage() {
+        header.setMethod(GET);
+        header.setUri(IMAGE_ENDPOINT + "/raw/42");
+        assertNull(api.handleFile(header));
+        response = api.handle(header, body, null);
+        assertEquals(HttpResponseStatus.NOT_FOUND, response.status());
+    }
+
+    @Test
+    void testGetRawImageInvalidId() {
+        header.setMethod(GET);
+        header.setUri(IMAGE_ENDPOINT + "/raw/abc");
+        response = api.handle(header, body, null);
+        assertEquals(HttpResponseStatus.BAD_REQUEST, response.status());
+    }
+
     @Test
     void testRegenerateImages() {
         header.setMethod(GET);
@@ -98,4 +132,69 @@ class ImageAPITest {
         response = api.handle(header, body, null);
         assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, response.status());
     }
-}
\ No newline at end of file
+
+    private JsonNode getCacheStats() throws Exception {
+        header.setMethod(GET);
+        header.setUri(IMAGE_ENDPOINT + "/cache/stats");
+        response = api.handle(header, null, null);
+        assertEquals(HttpResponseStatus.OK, response.status());
+        return readContent();
+    }
+
+    private void requestProductImage() throws Exception {
+        header.setMethod(HttpMethod.POST);
+        header.setUri(IMAGE_ENDPOINT + "/productimages");
+        response = api.handle(header, Unpooled.copiedBuffer("{\"1\":\"300x300\"}", CharsetUtil.UTF_8), null);
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertTrue(readContent().has("1"));
+    }
+
+    @Test
+    void testGetCacheStats() throws Exception {
+        SetupController.SETUP.setCachingMode(CachingMode.LRU);
+        SetupController.SETUP.createWorkingDir();
+        SetupController.SETUP.generateImages(Map.of(new Category(1L, "Category", ""), List.of(1L)), new HashMap<>());
+        try {
+            assertTrue(SetupController.SETUP.awaitImageCreation());
+            SetupController.SETUP.configureImageProvider();
+            JsonNode before = getCacheStats();
+            assertEquals("LRU", before.get("cachingMode").asText());
+
+            // The first request loads the image from the storage, the second one finds it in the cache
+            requestProductImage();
+            JsonNode afterMiss = getCacheStats();
+            assertEquals(before.get("missCount").asLong() + 1, afterMiss.get("missCount").asLong());
+            assertEquals(before.get("loadSuccessCount").asLong() + 1, afterMiss.get("loadSuccessCount").asLong());
+            assertEquals(before.get("hitCount").asLong(), afterMiss.get("hitCount").asLong());
+            requestProductImage();
+            JsonNode afterHit = getCacheStats();
+            assertEquals(afterMiss.get("hitCount").asLong() + 1, afterHit.get("hitCount").asLong());
+            assertEquals(afterMiss.get("missCount").asLong(), afterHit.get("missCount").asLong());
+            assertEquals(afterMiss.get("loadSuccessCount").asLong(), afterHit.get("loadSuccessCount").asLong());
+            assertEquals(afterMiss.get("loadFailureCount").asLong(), afterHit.get("loadFailureCount").asLong());
+            assertTrue(afterHit.get("currentCacheSize").asLong() > 0);
+        } finally {
+            SetupController.SETUP.deleteImages();
+            SetupController.SETUP.deleteWorkingDir();
+        }
+    }
+
+    @Test
+    void testSetCachingMode() {
+        header.setMethod(HttpMethod.POST);
+        header.setUri(IMAGE_ENDPOINT + "/cache/mode");
+        body = Unpooled.copiedBuffer("\"LRU\"", CharsetUtil.UTF_8);
+        response = api.handle(header, body, null);
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals(CachingMode.LRU, SetupController.SETUP.getCachingMode());
+    }
+
+    @Test
+    void testSetUnknownCachingMode() {
+        header.setMethod(HttpMethod.POST);
+        header.setUri(IMAGE_ENDPOINT + "/cache/mode");
+        body = Unpooled.copiedBuffer("\"ARC\"", CharsetUtil.UTF_8);
+        response = api.handle(header, body, null);
+        assertEquals(HttpResponseStatus.BAD_REQUEST, response.status());
+    }
+}
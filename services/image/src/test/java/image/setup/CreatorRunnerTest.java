@@ -0,0 +1,67 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.setup;
+
+import image.ImageDB;
+import image.StoreImage;
+import image.storage.DriveStorage;
+import image.storage.NoStorage;
+import image.storage.rules.StoreAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utilities.datamodel.ImageSize;
+import utilities.enumeration.ImageSizePreset;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreatorRunnerTest {
+
+    private static final ImageSize SIZE = ImageSizePreset.STD_IMAGE_SIZE;
+    private static final ImageSize ICON = ImageSizePreset.ICON.getSize();
+
+    @TempDir
+    Path workingDir;
+
+    private final ImageDB imgDB = new ImageDB();
+    private final AtomicLong nrOfImagesGenerated = new AtomicLong();
+    private final AtomicLong nrOfImagesPreRendered = new AtomicLong();
+
+    @Test
+    void testStoredImageIsMapped() {
+        DriveStorage storage = new DriveStorage(workingDir, imgDB, new StoreAll<StoreImage>());
+        new CreatorRunner(imgDB, SIZE, 5, 3, null, storage, nrOfImagesGenerated, List.of(ICON),
+                nrOfImagesPreRendered).run();
+        assertEquals(1, nrOfImagesGenerated.get());
+        assertEquals(1, nrOfImagesPreRendered.get());
+        long imgID = imgDB.getImageID(5, SIZE);
+        assertNotEquals(0, imgID);
+        assertTrue(Files.exists(workingDir.resolve(Long.toString(imgID))));
+        assertTrue(Files.exists(workingDir.resolve(Long.toString(imgDB.getImageID(5, ICON)))));
+    }
+
+    @Test
+    void testUnstoredImageIsNotMapped() {
+        new CreatorRunner(imgDB, SIZE, 5, 3, null, new NoStorage<StoreImage>(), nrOfImagesGenerated,
+                List.of(ICON), nrOfImagesPreRendered).run();
+        assertFalse(imgDB.hasImageID(5, SIZE));
+        assertFalse(imgDB.hasImageID(5, ICON));
+        assertEquals(0, nrOfImagesGenerated.get());
+        assertEquals(0, nrOfImagesPreRendered.get());
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.setup;
+
+import image.ImageDB;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utilities.datamodel.ImageSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageManifestTest {
+
+    private static final ImageSize SMALL = new ImageSize(64, 64);
+    private static final ImageSize LARGE = new ImageSize(512, 512);
+    private static final byte[] FINGERPRINT = {1, 2, 3, 4};
+    // Magic, version, fingerprint length, fingerprint and next image ID precede the first mapping
+    private static final int FIRST_MAPPING_OFFSET = 3 * Integer.BYTES + FINGERPRINT.length + Long.BYTES;
+
+    @TempDir
+    Path workingDir;
+
+    private ImageDB imgDB;
+
+    @BeforeEach
+    void setUp() {
+        imgDB = new ImageDB();
+        imgDB.setImageMapping(7, 1, LARGE);
+        imgDB.setImageMapping(7, 2, SMALL);
+        imgDB.setImageMapping(8, 3, LARGE);
+        imgDB.setImageMapping("front", 4, LARGE);
+    }
+
+    @Test
+    void testWriteAndRead() {
+        assertEquals(4, ImageManifest.write(workingDir, imgDB, 42, FINGERPRINT));
+        ImageDB readDB = new ImageDB();
+        assertEquals(42, ImageManifest.read(workingDir, readDB, FINGERPRINT));
+        assertEquals(1, readDB.getImageID(7, LARGE));
+        assertEquals(2, readDB.getImageID(7, SMALL));
+        assertEquals(3, readDB.getImageID(8, LARGE));
+        assertEquals(4, readDB.getImageID("front", LARGE));
+        assertEquals(SMALL, readDB.getImageSize(2));
+    }
+
+    @Test
+    void testFingerprintMismatch() {
+        ImageManifest.write(workingDir, imgDB, 42, FINGERPRINT);
+        ImageDB readDB = new ImageDB();
+        assertEquals(0, ImageManifest.read(workingDir, readDB, new byte[] {1, 2, 3, 5}));
+        assertNull(readDB.getImageSize(1));
+    }
+
+    @Test
+    void testMissingManifest() {
+        assertEquals(0, ImageManifest.read(workingDir, new ImageDB(), FINGERPRINT));
+    }
+
+    @Test
+    void testUnknownKeyType() throws IOException {
+        ImageManifest.write(workingDir, imgDB, 42, FINGERPRINT);
+        Path manifest = workingDir.resolve(ImageManifest.MANIFEST_FILE);
+        byte[] header = Arrays.copyOf(Files.readAllBytes(manifest), FIRST_MAPPING_OFFSET);
+        // A mapping of an unknown key type without a key, followed by the end of the mappings
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(content)) {
+            out.write(header);
+            out.writeByte(7);
+            out.writeLong(1);
+            out.writeInt(LARGE.width());
+            out.writeInt(LARGE.height());
+            out.writeByte(-1);
+        }
+        Files.write(manifest, content.toByteArray());
+        ImageDB readDB = new ImageDB();
+        assertEquals(0, ImageManifest.read(workingDir, readDB, FINGERPRINT));
+        assertNull(readDB.getImageSize(1));
+    }
+
+    @Test
+    void testTruncatedManifest() throws IOException {
+        ImageManifest.write(workingDir, imgDB, 42, FINGERPRINT);
+        Path manifest = workingDir.resolve(ImageManifest.MANIFEST_FILE);
+        byte[] content = Files.readAllBytes(manifest);
+        Files.write(manifest, Arrays.copyOf(content, content.length - 1));
+        ImageDB readDB = new ImageDB();
+        assertEquals(0, ImageManifest.read(workingDir, readDB, FINGERPRINT));
+        assertNull(readDB.getImageSize(1));
+    }
+
+    @Test
+    void testDelete() {
+        ImageManifest.write(workingDir, imgDB, 42, FINGERPRINT);
+        assertTrue(ImageManifest.delete(workingDir));
+        assertFalse(ImageManifest.delete(workingDir));
+        assertEquals(0, ImageManifest.read(workingDir, new ImageDB(), FINGERPRINT));
+    }
+}
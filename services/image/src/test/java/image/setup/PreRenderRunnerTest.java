@@ -0,0 +1,78 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.setup;
+
+import image.ImageDB;
+import image.ImageDBKey;
+import image.StoreImage;
+import image.storage.DriveStorage;
+import image.storage.rules.StoreAll;
+import image.storage.rules.StoreLargeImages;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utilities.datamodel.ImageSize;
+import utilities.enumeration.ImageSizePreset;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreRenderRunnerTest {
+
+    private static final ImageSize FULL = ImageSizePreset.FULL.getSize();
+    private static final ImageSize ICON = ImageSizePreset.ICON.getSize();
+    private static final ImageSize PORTRAIT = ImageSizePreset.PORTRAIT.getSize();
+
+    @TempDir
+    Path workingDir;
+
+    private final ImageDB imgDB = new ImageDB();
+    private final ImageDBKey key = new ImageDBKey(5);
+    private final BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+    private final AtomicLong nrOfImagesPreRendered = new AtomicLong();
+
+    private long countFiles() throws Exception {
+        try (var files = Files.list(workingDir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testPreRender() throws Exception {
+        DriveStorage storage = new DriveStorage(workingDir, imgDB, new StoreAll<StoreImage>());
+        new PreRenderRunner(imgDB, key, image, List.of(ICON, PORTRAIT), storage, nrOfImagesPreRendered).run();
+        assertEquals(2, nrOfImagesPreRendered.get());
+        assertTrue(imgDB.hasImageID(key, ICON));
+        assertTrue(imgDB.hasImageID(key, PORTRAIT));
+        assertEquals(2, countFiles());
+    }
+
+    @Test
+    void testSizesRejectedByStorageRuleAreSkipped() throws Exception {
+        DriveStorage storage = new DriveStorage(workingDir, imgDB, new StoreLargeImages());
+        assertFalse(PreRenderRunner.isStorable(storage, ICON));
+        assertTrue(PreRenderRunner.isStorable(storage, FULL));
+        new PreRenderRunner(imgDB, key, image, List.of(ICON, FULL, PORTRAIT), storage, nrOfImagesPreRendered)
+                .run();
+        assertEquals(1, nrOfImagesPreRendered.get());
+        assertFalse(imgDB.hasImageID(key, ICON));
+        assertFalse(imgDB.hasImageID(key, PORTRAIT));
+        assertTrue(imgDB.hasImageID(key, FULL));
+        assertEquals(1, countFiles());
+    }
+}
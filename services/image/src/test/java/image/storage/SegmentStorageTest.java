@@ -0,0 +1,202 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package image.storage;
+
+import image.ImageDB;
+import image.StoreImage;
+import image.storage.rules.StoreAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utilities.datamodel.ImageSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentStorageTest {
+
+    private static final ImageSize SIZE = new ImageSize(64, 64);
+    private static final int IMAGE_LENGTH = 300;
+    // Three images fit into a segment
+    private static final int SEGMENT_SIZE = 1000;
+
+    @TempDir
+    Path workingDir;
+
+    private ImageDB imgDB;
+
+    @BeforeEach
+    void setUp() {
+        imgDB = new ImageDB();
+        for (long id = 1; id <= 9; id++) {
+            imgDB.setImageMapping(id, id, SIZE);
+        }
+    }
+
+    private SegmentStorage createStorage(ImageDB db) {
+        return new SegmentStorage(workingDir, db, new StoreAll<StoreImage>(), SEGMENT_SIZE);
+    }
+
+    private static byte[] createPng(long id) {
+        byte[] png = new byte[IMAGE_LENGTH];
+        Arrays.fill(png, (byte) id);
+        return png;
+    }
+
+    private static StoreImage createImage(long id) {
+        return StoreImage.fromPng(id, createPng(id), SIZE);
+    }
+
+    private static void assertImage(long id, StoreImage image) {
+        assertNotNull(image);
+        assertEquals(id, image.getId());
+        assertArrayEquals(createPng(id), image.getPng());
+    }
+
+    @Test
+    void testSaveAndLoad() {
+        SegmentStorage storage = createStorage(imgDB);
+        assertFalse(storage.dataExists(1));
+        assertNull(storage.loadData(1));
+        assertTrue(storage.saveData(createImage(1)));
+        assertTrue(storage.dataExists(1));
+        assertImage(1, storage.loadData(1));
+    }
+
+    @Test
+    void testAppendCreatesSegments() {
+        SegmentStorage storage = createStorage(imgDB);
+        for (long id = 1; id <= 9; id++) {
+            storage.saveData(createImage(id));
+        }
+        assertEquals(3, storage.getNrOfSegments());
+        for (long id = 1; id <= 9; id++) {
+            assertImage(id, storage.loadData(id));
+        }
+    }
+
+    @Test
+    void testReopen() {
+        SegmentStorage storage = createStorage(imgDB);
+        for (long id = 1; id <= 5; id++) {
+            storage.saveData(createImage(id));
+        }
+        storage = createStorage(imgDB);
+        assertEquals(2, storage.getNrOfSegments());
+        for (long id = 1; id <= 5; id++) {
+            assertImage(id, storage.loadData(id));
+        }
+        // New images are appended after the existing records
+        storage.saveData(createImage(6));
+        storage = createStorage(imgDB);
+        assertEquals(2, storage.getNrOfSegments());
+        for (long id = 1; id <= 6; id++) {
+            assertImage(id, storage.loadData(id));
+        }
+    }
+
+    @Test
+    void testReopenWithIncompleteImageDB() {
+        SegmentStorage storage = createStorage(imgDB);
+        for (long id = 1; id <= 9; id++) {
+            storage.saveData(createImage(id));
+        }
+        ImageDB partialDB = new ImageDB();
+        partialDB.setImageMapping(1, 1, SIZE);
+        createStorage(new ImageDB());
+        storage = createStorage(partialDB);
+        assertEquals(3, storage.getNrOfSegments());
+
+        storage = createStorage(imgDB);
+        for (long id = 1; id <= 9; id++) {
+            assertImage(id, storage.loadData(id));
+        }
+    }
+
+    @Test
+    void testDeleteUnknownImages() {
+        SegmentStorage storage = createStorage(imgDB);
+        for (long id = 1; id <= 9; id++) {
+            storage.saveData(createImage(id));
+        }
+        ImageDB partialDB = new ImageDB();
+        for (long id = 4; id <= 9; id++) {
+            partialDB.setImageMapping(id, id, SIZE);
+        }
+        storage = createStorage(partialDB);
+        assertEquals(3, storage.deleteUnknownImages());
+        // The first segment only contained unknown images
+        assertEquals(2, storage.getNrOfSegments());
+        assertFalse(storage.dataExists(1));
+
+        storage = createStorage(imgDB);
+        assertNull(storage.loadData(1));
+        for (long id = 4; id <= 9; id++) {
+            assertImage(id, storage.loadData(id));
+        }
+    }
+
+    @Test
+    void testCompaction() {
+        SegmentStorage storage = createStorage(imgDB);
+        for (long id = 1; id <= 7; id++) {
+            storage.saveData(createImage(id));
+        }
+        assertEquals(3, storage.getNrOfSegments());
+        storage.deleteData(createImage(1));
+        assertEquals(3, storage.getNrOfSegments());
+        // Two of three images of the first segment are deleted, the remaining one is moved to the active segment
+        storage.deleteData(createImage(2));
+        assertEquals(2, storage.getNrOfSegments());
+        assertImage(3, storage.loadData(3));
+
+        storage = createStorage(imgDB);
+        assertNull(storage.loadData(1));
+        assertNull(storage.loadData(2));
+        for (long id = 3; id <= 7; id++) {
+            assertImage(id, storage.loadData(id));
+        }
+    }
+
+    @Test
+    void testReopenKeepsLatestRecord() {
+        SegmentStorage storage = createStorage(imgDB);
+        storage.saveData(createImage(1));
+        storage.deleteData(createImage(1));
+        storage.saveEncodedData(1, createPng(2));
+        storage = createStorage(imgDB);
+        assertArrayEquals(createPng(2), storage.loadData(1).getPng());
+    }
+
+    @Test
+    void testImportLooseFile() throws IOException {
+        Files.write(workingDir.resolve("1"), createPng(1));
+        // Loose files of images unknown to the image database are not imported
+        Files.write(workingDir.resolve("42"), createPng(42));
+        SegmentStorage storage = createStorage(imgDB);
+        assertTrue(storage.dataExists(1));
+        assertImage(1, storage.loadData(1));
+        assertFalse(Files.exists(workingDir.resolve("1")));
+        assertFalse(storage.dataExists(42));
+        assertNull(storage.loadData(42));
+        assertTrue(Files.exists(workingDir.resolve("42")));
+
+        storage = createStorage(imgDB);
+        assertImage(1, storage.loadData(1));
+    }
+}
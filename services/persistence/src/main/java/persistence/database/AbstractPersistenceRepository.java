@@ -133,6 +133,32 @@ public abstract class AbstractPersistenceRepository<E, P> {
 		return entities;
 	}
 	
+	/**
+	 * Get all entities with an id greater than the given id, ordered by their id.
+	 * Allows clients to page through the entities or to fetch the entities added since
+	 * the last entity they know, as ids are generated in ascending order.
+	 * @param id The id after which to start. Use a negative value to start at the beginning.
+	 * @param limit The maximum number of entites to return. Set to negative value to return all.
+	 * @return List of entities.
+	 */
+	public List<P> getAllEntitiesAfter(long id, int limit) {
+		EntityManager em = getEM();
+		List<P> entities = null;
+		try {
+			TypedQuery<P> allMatchesQuery =
+					em.createQuery("SELECT u FROM " + getEntityClass().getName()
+					+ " u WHERE u.id > :id ORDER BY u.id", getEntityClass());
+			allMatchesQuery.setParameter("id", id);
+			entities = resultsWithStartAndLimit(em, allMatchesQuery, -1, limit);
+		} finally {
+			em.close();
+		}
+		if (entities == null) {
+			entities = new ArrayList<P>();
+		}
+		return entities;
+	}
+
 	/**
 	 * Removes the entity with the id from database.
 	 * @param id The id of the entity to remove.
@@ -44,6 +44,7 @@ public final class CacheManager {
 	 */
 	public void clearAllCaches() {
 		CategoryRepository.REPOSITORY.getEMF().getCache().evictAll();
+		CatalogVersion.VERSION.increment();
 		try {
 			//ServiceLoadBalancer.multicastRESTToOtherServiceInstances(ENDPOINTURI, String.class,
 			//		client -> clearRemoteCacheREST(client, null));
@@ -88,6 +89,7 @@ public final class CacheManager {
 	 */
 	public void clearLocalCacheOnly(Class<?> entityClass) {
 		CategoryRepository.REPOSITORY.getEMF().getCache().evict(entityClass);
+		CatalogVersion.VERSION.increment();
 	}
 	
 	/**
@@ -95,6 +97,7 @@ public final class CacheManager {
 	 */
 	public void clearLocalCacheOnly() {
 		CategoryRepository.REPOSITORY.getEMF().getCache().evictAll();
+		CatalogVersion.VERSION.increment();
 	}
 	
 	private String clearRemoteCacheREST(Class<?> entityClass) {//RESTClient<String> client, ) {
@@ -143,6 +146,7 @@ public final class CacheManager {
 	 */
 	public void resetLocalEMF() {
 		EMFManager.clearEMF();
+		CatalogVersion.VERSION.increment();
 	}
 	
 	private String resetRemoteEMF() {//RESTClient<String> client) {
@@ -0,0 +1,80 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package persistence.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the catalog data (categories and products).
+ * The version changes whenever categories or products are written or the cache is cleared,
+ * so responses with catalog data can be revalidated by their entity tag.
+ * @author Philipp Backes
+ *
+ */
+public final class CatalogVersion {
+
+	/**
+	 * Path prefix of all catalog resources.
+	 */
+	public static final String CATALOG_PATH_PREFIX = "/api/persistence";
+
+	/**
+	 * The catalog version singleton.
+	 */
+	public static final CatalogVersion VERSION = new CatalogVersion();
+
+	private final AtomicLong version = new AtomicLong();
+	// Entity tags of a restarted service never match the ones handed out before
+	private final String eTagPrefix = "\"c" + Long.toString(System.currentTimeMillis(), 36) + "-";
+
+	// Private constructor.
+	private CatalogVersion() {}
+
+	/**
+	 * Marks the catalog data as changed.
+	 */
+	public void increment() {
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Returns the current version of the catalog data.
+	 * @return The catalog version.
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Returns the quoted entity tag of the current catalog data.
+	 * @return The entity tag.
+	 */
+	public String getETag() {
+		return eTagPrefix + Long.toString(version.get(), 36) + "\"";
+	}
+
+	/**
+	 * Checks whether the given request path addresses catalog data.
+	 * @param path The request path without query string.
+	 * @return True, if the path addresses categories, products or the product count.
+	 */
+	public static boolean isCatalogPath(String path) {
+		if (!path.startsWith(CATALOG_PATH_PREFIX)) {
+			return false;
+		}
+		String subPath = path.substring(CATALOG_PATH_PREFIX.length());
+		return subPath.equals("/categories") || subPath.equals("/products") || subPath.equals("/products/count");
+	}
+
+}
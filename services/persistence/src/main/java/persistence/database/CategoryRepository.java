@@ -49,6 +49,7 @@ public final class CategoryRepository extends AbstractPersistenceRepository<Cate
 	    } finally {
 	        em.close();
 	    }
+	    CatalogVersion.VERSION.increment();
 	    return category.getId();
 	}
 
@@ -71,9 +72,20 @@ public final class CategoryRepository extends AbstractPersistenceRepository<Cate
 	    } finally {
 	        em.close();
 	    }
+	    CatalogVersion.VERSION.increment();
 	    return found;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean removeEntity(long id) {
+		boolean found = super.removeEntity(id);
+		CatalogVersion.VERSION.increment();
+		return found;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -62,6 +62,7 @@ public final class ProductRepository extends AbstractPersistenceRepository<Produ
 	    } finally {
 	        em.close();
 	    }
+	    CatalogVersion.VERSION.increment();
 	    return product.getId();
 	}
 
@@ -85,6 +86,7 @@ public final class ProductRepository extends AbstractPersistenceRepository<Produ
 	    } finally {
 	        em.close();
 	    }
+	    CatalogVersion.VERSION.increment();
 	    return found;
 	}
 	
@@ -146,6 +148,16 @@ public final class ProductRepository extends AbstractPersistenceRepository<Produ
 		return count;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean removeEntity(long id) {
+		boolean found = super.removeEntity(id);
+		CatalogVersion.VERSION.increment();
+		return found;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
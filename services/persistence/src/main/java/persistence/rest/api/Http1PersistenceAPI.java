@@ -23,6 +23,7 @@ import org.apache.logging.log4j.Logger;
 import persistence.database.*;
 import utilities.datamodel.*;
 import utilities.rest.api.API;
+import utilities.rest.api.ETagUtil;
 
 import java.util.*;
 import java.util.concurrent.Executors;
@@ -45,6 +46,25 @@ public class Http1PersistenceAPI implements API {
     }
 
     public FullHttpResponse handle(HttpRequest header, ByteBuf body, LastHttpContent trailer) {
+        String path = new QueryStringDecoder(header.uri()).path();
+        if (header.method() != HttpMethod.GET || !CatalogVersion.isCatalogPath(path)) {
+            return handleRequest(header, body, trailer);
+        }
+        // Read the entity tag first, so a change during the query never gets the new tag
+        String eTag = CatalogVersion.VERSION.getETag();
+        if (ETagUtil.matches(header.headers().get(HttpHeaderNames.IF_NONE_MATCH), eTag)) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, NOT_MODIFIED);
+            response.headers().set(HttpHeaderNames.ETAG, eTag);
+            return response;
+        }
+        FullHttpResponse response = handleRequest(header, body, trailer);
+        if (response.status().equals(OK)) {
+            response.headers().set(HttpHeaderNames.ETAG, eTag);
+        }
+        return response;
+    }
+
+    private FullHttpResponse handleRequest(HttpRequest header, ByteBuf body, LastHttpContent trailer) {
         QueryStringDecoder queryStringDecoder = new QueryStringDecoder(header.uri());
         Map<String, List<String>> params = queryStringDecoder.parameters();
         String method = header.method().name();
@@ -96,13 +116,17 @@ public class Http1PersistenceAPI implements API {
                                 Long id = Long.parseLong(params.get("userid").get(0));
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrders(id, start, max);
+                                return getAllOrders(id, null, start, max);
+                            } else if (params.containsKey("afterid") && params.containsKey("max")) {
+                                Long afterId = Long.parseLong(params.get("afterid").get(0));
+                                Integer max = Integer.parseInt(params.get("max").get(0));
+                                return getAllOrders(null, afterId, null, max);
                             } else if (params.containsKey("start") && params.containsKey("max")) {
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrders(null, start, max);
+                                return getAllOrders(null, null, start, max);
                             } else {
-                                return getAllOrders(null, null, null);
+                                return getAllOrders(null, null, null, null);
                             }
                         case "/orderitems":
                             if (params.containsKey("id")) {
@@ -115,7 +139,7 @@ public class Http1PersistenceAPI implements API {
                                 Long productId = Long.parseLong(params.get("product").get(0));
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrderItems(productId, null, start, max);
+                                return getAllOrderItems(productId, null, null, start, max);
                             } else if (params.containsKey("order")
                                     && params.containsKey("start")
                                     && params.containsKey("max")
@@ -123,13 +147,17 @@ public class Http1PersistenceAPI implements API {
                                 Long orderId = Long.parseLong(params.get("order").get(0));
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrderItems(null, orderId, start, max);
+                                return getAllOrderItems(null, orderId, null, start, max);
+                            } else if (params.containsKey("afterid") && params.containsKey("max")) {
+                                Long afterId = Long.parseLong(params.get("afterid").get(0));
+                                Integer max = Integer.parseInt(params.get("max").get(0));
+                                return getAllOrderItems(null, null, afterId, null, max);
                             } else if (params.containsKey("start") && params.containsKey("max")) {
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrderItems(null, null, start, max);
+                                return getAllOrderItems(null, null, null, start, max);
                             } else {
-                                return getAllOrderItems(null, null, null, null);
+                                return getAllOrderItems(null, null, null, null, null);
                             }
                         case "/products":
                             if (params.containsKey("id")) {
@@ -538,11 +566,12 @@ public class Http1PersistenceAPI implements API {
      * GET /orders
      *
      * @param userId Optional user id
+     * @param afterId Optional id, only orders with a greater id are returned, ordered by their id
      * @param startIndex Optional start index
      * @param maxResultCount Optional max result count
      * @return All orders
      */
-    private FullHttpResponse getAllOrders(Long userId, Integer startIndex, Integer maxResultCount) {
+    private FullHttpResponse getAllOrders(Long userId, Long afterId, Integer startIndex, Integer maxResultCount) {
         List<PersistenceOrder> persistenceEntities = null;
         if (userId != null) {
             persistenceEntities = OrderRepository.REPOSITORY.getAllEntitiesWithUser(
@@ -550,6 +579,11 @@ public class Http1PersistenceAPI implements API {
                     startIndex,
                     maxResultCount
             );
+        } else if (afterId != null) {
+            persistenceEntities = OrderRepository.REPOSITORY.getAllEntitiesAfter(
+                    afterId,
+                    maxResultCount == null ? -1 : maxResultCount
+            );
         } else if (startIndex == null || maxResultCount == null) {
             persistenceEntities = OrderRepository.REPOSITORY.getAllEntities();
         } else {
@@ -679,11 +713,12 @@ public class Http1PersistenceAPI implements API {
      *
      * @param productId Optional product id
      * @param orderId Optional order id
+     * @param afterId Optional id, only order items with a greater id are returned, ordered by their id
      * @param startIndex Optional start index
      * @param maxResultCount Optional max result count
      * @return All order items
      */
-    private FullHttpResponse getAllOrderItems(Long productId, Long orderId, Integer startIndex, Integer maxResultCount) {
+    private FullHttpResponse getAllOrderItems(Long productId, Long orderId, Long afterId, Integer startIndex, Integer maxResultCount) {
         List<PersistenceOrderItem> persistenceEntities = null;
         if (productId != null) {
             persistenceEntities = OrderItemRepository.REPOSITORY.getAllEntitiesWithProduct(
@@ -697,6 +732,11 @@ public class Http1PersistenceAPI implements API {
                     startIndex,
                     maxResultCount
             );
+        } else if (afterId != null) {
+            persistenceEntities = OrderItemRepository.REPOSITORY.getAllEntitiesAfter(
+                    afterId,
+                    maxResultCount == null ? -1 : maxResultCount
+            );
         } else if (startIndex == null || maxResultCount == null) {
             persistenceEntities = OrderItemRepository.REPOSITORY.getAllEntities();
         } else {
@@ -24,11 +24,15 @@ import org.apache.logging.log4j.Logger;
 import persistence.database.*;
 import utilities.datamodel.*;
 import utilities.rest.api.API;
+import utilities.rest.api.ETagUtil;
 import utilities.rest.api.Http2Response;
 
 import java.util.*;
 import java.util.concurrent.Executors;
 
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+
 /**
  * HTTP/2 API for persistence service
  * /api/persistence
@@ -44,6 +48,26 @@ public class Http2PersistenceAPI implements API {
     }
 
     public Http2Response handle(Http2Headers headers, ByteBuf body) {
+        String path = new QueryStringDecoder(headers.path().toString()).path();
+        if (!HttpMethod.GET.asciiName().contentEquals(headers.method()) || !CatalogVersion.isCatalogPath(path)) {
+            return handleRequest(headers, body);
+        }
+        // Read the entity tag first, so a change during the query never gets the new tag
+        String eTag = CatalogVersion.VERSION.getETag();
+        if (ETagUtil.matches(headers.get(HttpHeaderNames.IF_NONE_MATCH), eTag)) {
+            return new Http2Response(
+                    new DefaultHttp2Headers().status(NOT_MODIFIED.codeAsText()).set(HttpHeaderNames.ETAG, eTag),
+                    null
+            );
+        }
+        Http2Response response = handleRequest(headers, body);
+        if (OK.codeAsText().contentEquals(response.headers().status())) {
+            response.headers().set(HttpHeaderNames.ETAG, eTag);
+        }
+        return response;
+    }
+
+    private Http2Response handleRequest(Http2Headers headers, ByteBuf body) {
         QueryStringDecoder queryStringDecoder = new QueryStringDecoder(headers.path().toString());
         Map<String, List<String>> params = queryStringDecoder.parameters();
         String method = headers.method().toString();
@@ -95,13 +119,17 @@ public class Http2PersistenceAPI implements API {
                                 Long id = Long.parseLong(params.get("userid").get(0));
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrders(id, start, max);
+                                return getAllOrders(id, null, start, max);
+                            } else if (params.containsKey("afterid") && params.containsKey("max")) {
+                                Long afterId = Long.parseLong(params.get("afterid").get(0));
+                                Integer max = Integer.parseInt(params.get("max").get(0));
+                                return getAllOrders(null, afterId, null, max);
                             } else if (params.containsKey("start") && params.containsKey("max")) {
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrders(null, start, max);
+                                return getAllOrders(null, null, start, max);
                             } else {
-                                return getAllOrders(null, null, null);
+                                return getAllOrders(null, null, null, null);
                             }
                         case "/orderitems":
                             if (params.containsKey("id")) {
@@ -114,7 +142,7 @@ public class Http2PersistenceAPI implements API {
                                 Long productId = Long.parseLong(params.get("product").get(0));
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrderItems(productId, null, start, max);
+                                return getAllOrderItems(productId, null, null, start, max);
                             } else if (params.containsKey("order")
                                     && params.containsKey("start")
                                     && params.containsKey("max")
@@ -122,13 +150,17 @@ public class Http2PersistenceAPI implements API {
                                 Long orderId = Long.parseLong(params.get("order").get(0));
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrderItems(null, orderId, start, max);
+                                return getAllOrderItems(null, orderId, null, start, max);
+                            } else if (params.containsKey("afterid") && params.containsKey("max")) {
+                                Long afterId = Long.parseLong(params.get("afterid").get(0));
+                                Integer max = Integer.parseInt(params.get("max").get(0));
+                                return getAllOrderItems(null, null, afterId, null, max);
                             } else if (params.containsKey("start") && params.containsKey("max")) {
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrderItems(null, null, start, max);
+                                return getAllOrderItems(null, null, null, start, max);
                             } else {
-                                return getAllOrderItems(null, null, null, null);
+                                return getAllOrderItems(null, null, null, null, null);
                             }
                         case "/products":
                             if (params.containsKey("id")) {
@@ -531,11 +563,12 @@ public class Http2PersistenceAPI implements API {
      * GET /orders
      *
      * @param userId Optional user id
+     * @param afterId Optional id, only orders with a greater id are returned, ordered by their id
      * @param startIndex Optional start index
      * @param maxResultCount Optional max result count
      * @return All orders
      */
-    private Http2Response getAllOrders(Long userId, Integer startIndex, Integer maxResultCount) {
+    private Http2Response getAllOrders(Long userId, Long afterId, Integer startIndex, Integer maxResultCount) {
         List<PersistenceOrder> persistenceEntities = null;
         if (userId != null) {
             persistenceEntities = OrderRepository.REPOSITORY.getAllEntitiesWithUser(
@@ -543,6 +576,11 @@ public class Http2PersistenceAPI implements API {
                     startIndex,
                     maxResultCount
             );
+        } else if (afterId != null) {
+            persistenceEntities = OrderRepository.REPOSITORY.getAllEntitiesAfter(
+                    afterId,
+                    maxResultCount == null ? -1 : maxResultCount
+            );
         } else if (startIndex == null || maxResultCount == null) {
             persistenceEntities = OrderRepository.REPOSITORY.getAllEntities();
         } else {
@@ -669,11 +707,12 @@ public class Http2PersistenceAPI implements API {
      *
      * @param productId Optional product id
      * @param orderId Optional order id
+     * @param afterId Optional id, only order items with a greater id are returned, ordered by their id
      * @param startIndex Optional start index
      * @param maxResultCount Optional max result count
      * @return All order items
      */
-    private Http2Response getAllOrderItems(Long productId, Long orderId, Integer startIndex, Integer maxResultCount) {
+    private Http2Response getAllOrderItems(Long productId, Long orderId, Long afterId, Integer startIndex, Integer maxResultCount) {
         List<PersistenceOrderItem> persistenceEntities = null;
         if (productId != null) {
             persistenceEntities = OrderItemRepository.REPOSITORY.getAllEntitiesWithProduct(
@@ -687,6 +726,11 @@ public class Http2PersistenceAPI implements API {
                     startIndex,
                     maxResultCount
             );
+        } else if (afterId != null) {
+            persistenceEntities = OrderItemRepository.REPOSITORY.getAllEntitiesAfter(
+                    afterId,
+                    maxResultCount == null ? -1 : maxResultCount
+            );
         } else if (startIndex == null || maxResultCount == null) {
             persistenceEntities = OrderItemRepository.REPOSITORY.getAllEntities();
         } else {
@@ -16,7 +16,10 @@ package persistence.rest.api;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.incubator.codec.http3.DefaultHttp3Headers;
 import io.netty.incubator.codec.http3.Http3Headers;
 import io.netty.util.CharsetUtil;
 import org.apache.logging.log4j.LogManager;
@@ -24,6 +27,7 @@ import org.apache.logging.log4j.Logger;
 import persistence.database.*;
 import utilities.datamodel.*;
 import utilities.rest.api.API;
+import utilities.rest.api.ETagUtil;
 import utilities.rest.api.Http3Response;
 
 import java.nio.charset.StandardCharsets;
@@ -32,6 +36,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
 
+import static io.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+
 /**
  * HTTP/3 API for persistence service
  * /api/persistence
@@ -47,6 +54,26 @@ public class Http3PersistenceAPI implements API {
     }
 
     public Http3Response handle(Http3Headers headers, ByteBuf body) {
+        String path = new QueryStringDecoder(headers.path().toString()).path();
+        if (!HttpMethod.GET.asciiName().contentEquals(headers.method()) || !CatalogVersion.isCatalogPath(path)) {
+            return handleRequest(headers, body);
+        }
+        // Read the entity tag first, so a change during the query never gets the new tag
+        String eTag = CatalogVersion.VERSION.getETag();
+        if (ETagUtil.matches(headers.get(HttpHeaderNames.IF_NONE_MATCH), eTag)) {
+            return new Http3Response(
+                    new DefaultHttp3Headers().status(NOT_MODIFIED.codeAsText()).set(HttpHeaderNames.ETAG, eTag),
+                    null
+            );
+        }
+        Http3Response response = handleRequest(headers, body);
+        if (OK.codeAsText().contentEquals(response.headers().status())) {
+            response.headers().set(HttpHeaderNames.ETAG, eTag);
+        }
+        return response;
+    }
+
+    private Http3Response handleRequest(Http3Headers headers, ByteBuf body) {
         QueryStringDecoder queryStringDecoder = new QueryStringDecoder(headers.path().toString());
         Map<String, List<String>> params = queryStringDecoder.parameters();
         String method = headers.method().toString();
@@ -98,13 +125,17 @@ public class Http3PersistenceAPI implements API {
                                 Long id = Long.parseLong(params.get("userid").get(0));
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrders(id, start, max);
+                                return getAllOrders(id, null, start, max);
+                            } else if (params.containsKey("afterid") && params.containsKey("max")) {
+                                Long afterId = Long.parseLong(params.get("afterid").get(0));
+                                Integer max = Integer.parseInt(params.get("max").get(0));
+                                return getAllOrders(null, afterId, null, max);
                             } else if (params.containsKey("start") && params.containsKey("max")) {
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrders(null, start, max);
+                                return getAllOrders(null, null, start, max);
                             } else {
-                                return getAllOrders(null, null, null);
+                                return getAllOrders(null, null, null, null);
                             }
                         case "/orderitems":
                             if (params.containsKey("id")) {
@@ -117,7 +148,7 @@ public class Http3PersistenceAPI implements API {
                                 Long productId = Long.parseLong(params.get("product").get(0));
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrderItems(productId, null, start, max);
+                                return getAllOrderItems(productId, null, null, start, max);
                             } else if (params.containsKey("order")
                                     && params.containsKey("start")
                                     && params.containsKey("max")
@@ -125,13 +156,17 @@ public class Http3PersistenceAPI implements API {
                                 Long orderId = Long.parseLong(params.get("order").get(0));
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrderItems(null, orderId, start, max);
+                                return getAllOrderItems(null, orderId, null, start, max);
+                            } else if (params.containsKey("afterid") && params.containsKey("max")) {
+                                Long afterId = Long.parseLong(params.get("afterid").get(0));
+                                Integer max = Integer.parseInt(params.get("max").get(0));
+                                return getAllOrderItems(null, null, afterId, null, max);
                             } else if (params.containsKey("start") && params.containsKey("max")) {
                                 Integer start = Integer.parseInt(params.get("start").get(0));
                                 Integer max = Integer.parseInt(params.get("max").get(0));
-                                return getAllOrderItems(null, null, start, max);
+                                return getAllOrderItems(null, null, null, start, max);
                             } else {
-                                return getAllOrderItems(null, null, null, null);
+                                return getAllOrderItems(null, null, null, null, null);
                             }
                         case "/products":
                             if (params.containsKey("id")) {
@@ -534,11 +569,12 @@ public class Http3PersistenceAPI implements API {
      * GET /orders
      *
      * @param userId Optional user id
+     * @param afterId Optional id, only orders with a greater id are returned, ordered by their id
      * @param startIndex Optional start index
      * @param maxResultCount Optional max result count
      * @return All orders
      */
-    private Http3Response getAllOrders(Long userId, Integer startIndex, Integer maxResultCount) {
+    private Http3Response getAllOrders(Long userId, Long afterId, Integer startIndex, Integer maxResultCount) {
         List<PersistenceOrder> persistenceEntities = null;
         if (userId != null) {
             persistenceEntities = OrderRepository.REPOSITORY.getAllEntitiesWithUser(
@@ -546,6 +582,11 @@ public class Http3PersistenceAPI implements API {
                     startIndex,
                     maxResultCount
             );
+        } else if (afterId != null) {
+            persistenceEntities = OrderRepository.REPOSITORY.getAllEntitiesAfter(
+                    afterId,
+                    maxResultCount == null ? -1 : maxResultCount
+            );
         } else if (startIndex == null || maxResultCount == null) {
             persistenceEntities = OrderRepository.REPOSITORY.getAllEntities();
         } else {
@@ -673,11 +714,12 @@ public class Http3PersistenceAPI implements API {
      *
      * @param productId Optional product id
      * @param orderId Optional order id
+     * @param afterId Optional id, only order items with a greater id are returned, ordered by their id
      * @param startIndex Optional start index
      * @param maxResultCount Optional max result count
      * @return All order items
      */
-    private Http3Response getAllOrderItems(Long productId, Long orderId, Integer startIndex, Integer maxResultCount) {
+    private Http3Response getAllOrderItems(Long productId, Long orderId, Long afterId, Integer startIndex, Integer maxResultCount) {
         List<PersistenceOrderItem> persistenceEntities = null;
         if (productId != null) {
             persistenceEntities = OrderItemRepository.REPOSITORY.getAllEntitiesWithProduct(
@@ -691,6 +733,11 @@ public class Http3PersistenceAPI implements API {
                     startIndex,
                     maxResultCount
             );
+        } else if (afterId != null) {
+            persistenceEntities = OrderItemRepository.REPOSITORY.getAllEntitiesAfter(
+                    afterId,
+                    maxResultCount == null ? -1 : maxResultCount
+            );
         } else if (startIndex == null || maxResultCount == null) {
             persistenceEntities = OrderItemRepository.REPOSITORY.getAllEntities();
         } else {
@@ -0,0 +1,37 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package persistence.database;
+
+/**
+ * Switches the persistence of the tests to the in-memory database and back.
+ */
+public final class InMemoryDatabase {
+
+    private InMemoryDatabase() {
+    }
+
+    /**
+     * Uses a new, empty in-memory database for all repositories.
+     */
+    public static void setUp() {
+        EMFManager.configureEMFWithProperties(EMFManager.createPersistencePropertieForInMemoryDB());
+    }
+
+    /**
+     * Closes the in-memory database, the repositories use the configured database again.
+     */
+    public static void tearDown() {
+        EMFManager.configureEMFWithProperties(null);
+    }
+}
@@ -16,9 +16,12 @@ package persistence.rest.api;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import persistence.database.DataGenerator;
+import persistence.database.InMemoryDatabase;
 
 import static io.netty.handler.codec.http.HttpMethod.GET;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
@@ -82,6 +85,51 @@ class PersistenceAPITest {
         });
     }
 
+    private FullHttpResponse getCategories(String ifNoneMatch) {
+        HttpRequest request = new DefaultFullHttpRequest(HTTP_1_1, GET, PERSISTENCE_ENDPOINT + "/categories");
+        if (ifNoneMatch != null) {
+            request.headers().set(HttpHeaderNames.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return api.handle(request, null, null);
+    }
+
+    @Test
+    void testCategoriesETag() {
+        boolean maintenanceMode = DataGenerator.GENERATOR.isMaintenanceMode();
+        DataGenerator.GENERATOR.setMaintenanceModeInternal(false);
+        InMemoryDatabase.setUp();
+        try {
+            FullHttpResponse categories = getCategories(null);
+            assertEquals(HttpResponseStatus.OK, categories.status());
+            String eTag = categories.headers().get(HttpHeaderNames.ETAG);
+            assertNotNull(eTag);
+
+            // The client holds the current categories
+            FullHttpResponse notModified = getCategories(eTag);
+            assertEquals(HttpResponseStatus.NOT_MODIFIED, notModified.status());
+            assertEquals(eTag, notModified.headers().get(HttpHeaderNames.ETAG));
+            assertEquals(0, notModified.content().readableBytes());
+
+            header.setMethod(HttpMethod.POST);
+            header.setUri(PERSISTENCE_ENDPOINT + "/categories");
+            response = api.handle(header, Unpooled.copiedBuffer(
+                    "{\"name\":\"Black Tea\",\"description\":\"Strong\"}", CharsetUtil.UTF_8), null);
+            assertEquals(HttpResponseStatus.OK, response.status());
+
+            // The write changed the categories, the old entity tag is outdated
+            FullHttpResponse changed = getCategories(eTag);
+            assertEquals(HttpResponseStatus.OK, changed.status());
+            String newETag = changed.headers().get(HttpHeaderNames.ETAG);
+            assertNotNull(newETag);
+            assertNotEquals(eTag, newETag);
+            assertTrue(changed.content().toString(CharsetUtil.UTF_8).contains("Black Tea"));
+            assertEquals(HttpResponseStatus.NOT_MODIFIED, getCategories("W/" + newETag).status());
+        } finally {
+            InMemoryDatabase.tearDown();
+            DataGenerator.GENERATOR.setMaintenanceModeInternal(maintenanceMode);
+        }
+    }
+
     @Test
     void testCreateCategory() {
         header.setMethod(HttpMethod.POST);
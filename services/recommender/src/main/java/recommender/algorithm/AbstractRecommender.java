@@ -13,6 +13,9 @@
  */
 package recommender.algorithm;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -20,7 +23,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.Map.Entry;
 
 import org.apache.logging.log4j.Logger;
@@ -49,8 +51,10 @@ public abstract class AbstractRecommender implements IRecommender {
 	/**
 	 * This represents the matrix assigning each user a frequency for each product
 	 * ID. The frequency resembles the number of times, a user has bought that item.
+	 * Its product index enumerates all available products seen during the training
+	 * phase.
 	 */
-	private Map<Long, Map<Long, Double>> userBuyingMatrix;
+	private RatingMatrix ratings;
 
 	/**
 	 * This set maps a userId to a set, containing the corresponding OrderItemSets,
@@ -58,51 +62,260 @@ public abstract class AbstractRecommender implements IRecommender {
 	 */
 	private Map<Long, Set<OrderItemSet>> userItemSets;
 
-	/**
-	 * This is an enumeration of all available products seen during the training
-	 * phase.
-	 */
-	private Set<Long> totalProducts;
-
 	@Override
 	public void train(List<OrderItem> orderItems, List<Order> orders) {
 		long tic = System.currentTimeMillis();
-		totalProducts = new HashSet<>();
 		// first create order mapping unorderized
 		Map<Long, OrderItemSet> unOrderizeditemSets = new HashMap<>();
 		for (OrderItem orderItem : orderItems) {
-			if (!unOrderizeditemSets.containsKey(orderItem.orderId())) {
-				unOrderizeditemSets.put(orderItem.orderId(), new OrderItemSet());
-				unOrderizeditemSets.get(orderItem.orderId()).setOrderId(orderItem.orderId());
-			}
-			unOrderizeditemSets.get(orderItem.orderId()).getOrderset().put(orderItem.productId(),
-					orderItem.quantity());
-			// see, if we already have our item
-			if (!totalProducts.contains(orderItem.productId())) {
-				// if not known yet -> add
-				totalProducts.add(orderItem.productId());
+			OrderItemSet itemSet = unOrderizeditemSets.get(orderItem.orderId());
+			if (itemSet == null) {
+				itemSet = new OrderItemSet();
+				itemSet.setOrderId(orderItem.orderId());
+				unOrderizeditemSets.put(orderItem.orderId(), itemSet);
 			}
+			itemSet.getOrderset().put(orderItem.productId(), orderItem.quantity());
 		}
-		// now map each id with the corresponding order
-		Map<Order, OrderItemSet> itemSets = new HashMap<>();
-		for (Long orderid : unOrderizeditemSets.keySet()) {
-			Order realOrder = findOrder(orders, orderid);
-			itemSets.put(realOrder, unOrderizeditemSets.get(orderid));
+		// now map each id with the corresponding order, using an index instead of
+		// searching all orders for each id
+		Map<Long, Order> ordersById = new HashMap<>(2 * orders.size());
+		for (Order order : orders) {
+			ordersById.putIfAbsent(order.id(), order);
 		}
-		userItemSets = new HashMap<>();
-		for (Order order : itemSets.keySet()) {
-			if (!userItemSets.containsKey(order.userId())) {
-				userItemSets.put(order.userId(), new HashSet<OrderItemSet>());
+		Map<Long, Set<OrderItemSet>> itemSets = new HashMap<>();
+		for (OrderItemSet itemSet : unOrderizeditemSets.values()) {
+			Order order = ordersById.get(itemSet.getOrderId());
+			if (order == null) {
+				// items of unknown orders can not be assigned to a user
+				continue;
 			}
-			itemSets.get(order).setUserId(order.userId());
-			userItemSets.get(order.userId()).add(itemSets.get(order));
+			itemSet.setUserId(order.userId());
+			itemSets.computeIfAbsent(order.userId(), userId -> new HashSet<>()).add(itemSet);
 		}
-		userBuyingMatrix = createUserBuyingMatrix(userItemSets);
+		train(itemSets, tic);
+	}
+
+	/**
+	 * Trains this recommender with the given item sets of all users, e.g. collected
+	 * by an {@link OrderItemSetCollector}. The item sets are not modified, so they
+	 * can be shared with other recommenders.
+	 * 
+	 * @param userItemSets
+	 *            A map assigning each user-ID all its OrderItemSets
+	 */
+	public void train(Map<Long, Set<OrderItemSet>> userItemSets) {
+		train(userItemSets, System.currentTimeMillis());
+	}
+
+	private void train(Map<Long, Set<OrderItemSet>> itemSets, long tic) {
+		userItemSets = itemSets;
+		ratings = createRatingMatrix(userItemSets);
 		executePreprocessing();
 		LOG.info("Training recommender finished. Training took: " + (System.currentTimeMillis() - tic) + "ms.");
 		trainingFinished = true;
 	}
 
+	/**
+	 * Creates a new instance of this recommender, which knows the training data of
+	 * this instance and the given new {@link OrderItem}s. Items of orders this
+	 * instance already knows are added to these orders. Only the changed users and
+	 * orders are processed if the implementing class supports it, see
+	 * {@link AbstractRecommender#executeUpdate(AbstractRecommender, List)}. This
+	 * instance is not modified and can serve recommendations in the meantime.
+	 * 
+	 * @param orderItems
+	 *            The new {@link OrderItem}s.
+	 * @param orders
+	 *            The {@link Order}s of the new {@link OrderItem}s, may contain
+	 *            further orders.
+	 * @return the updated recommender or this instance, if no order changed
+	 * @throws UnsupportedOperationException
+	 *             If this instance is not trained yet.
+	 */
+	public AbstractRecommender update(List<OrderItem> orderItems, List<Order> orders)
+			throws UnsupportedOperationException {
+		if (!trainingFinished) {
+			throw new UnsupportedOperationException("This instance is not fully trained yet.");
+		}
+		long tic = System.currentTimeMillis();
+		Map<Long, Order> ordersById = new HashMap<>(2 * orders.size());
+		for (Order order : orders) {
+			ordersById.putIfAbsent(order.id(), order);
+		}
+		// copy only the sets of the changed users and orders, the others are shared
+		// with this instance and must not be modified
+		Map<Long, Set<OrderItemSet>> updatedItemSets = new HashMap<>(userItemSets);
+		Set<Long> copiedUsers = new HashSet<>();
+		Map<Long, OrderItemSet> changedSets = new HashMap<>();
+		List<OrderChange> changes = new ArrayList<>();
+		for (OrderItem orderItem : orderItems) {
+			OrderItemSet itemSet = changedSets.get(orderItem.orderId());
+			if (itemSet == null) {
+				Order order = ordersById.get(orderItem.orderId());
+				if (order == null) {
+					// items of unknown orders can not be assigned to a user
+					continue;
+				}
+				Set<OrderItemSet> sets = updatedItemSets.get(order.userId());
+				if (copiedUsers.add(order.userId())) {
+					sets = sets == null ? new HashSet<>() : new HashSet<>(sets);
+					updatedItemSets.put(order.userId(), sets);
+				}
+				OrderItemSet previous = null;
+				for (OrderItemSet set : sets) {
+					if (set.getOrderId() == order.id()) {
+						previous = set;
+						break;
+					}
+				}
+				itemSet = new OrderItemSet();
+				itemSet.setOrderId(order.id());
+				itemSet.setUserId(order.userId());
+				if (previous != null) {
+					itemSet.getOrderset().putAll(previous.getOrderset());
+					sets.remove(previous);
+				}
+				sets.add(itemSet);
+				changedSets.put(order.id(), itemSet);
+				changes.add(new OrderChange(previous, itemSet));
+			}
+			itemSet.getOrderset().put(orderItem.productId(), orderItem.quantity());
+		}
+		if (changes.isEmpty()) {
+			return this;
+		}
+		// the ratings of the changed users are recalculated from all their orders
+		IdIndex changedUsers = new IdIndex();
+		for (Long userId : copiedUsers) {
+			changedUsers.add(userId);
+		}
+		RatingMatrix.Builder matrix = new RatingMatrix.Builder().addAll(ratings, changedUsers);
+		for (Long userId : copiedUsers) {
+			for (OrderItemSet orderset : updatedItemSets.get(userId)) {
+				for (Entry<Long, Integer> product : orderset.getOrderset().entrySet()) {
+					matrix.add(userId, product.getKey(), product.getValue());
+				}
+			}
+		}
+		AbstractRecommender updated;
+		try {
+			updated = getClass().getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			LOG.error("Could not create a new instance of " + getClass().getName() + ".");
+			throw new IllegalStateException("Could not create a new instance of " + getClass().getName() + ".", e);
+		}
+		updated.userItemSets = updatedItemSets;
+		updated.ratings = matrix.build();
+		updated.executeUpdate(this, changes);
+		updated.trainingFinished = true;
+		LOG.info("Updating recommender finished. Updating " + changes.size() + " orders took: "
+				+ (System.currentTimeMillis() - tic) + "ms.");
+		return updated;
+	}
+
+	/**
+	 * Writes the training data and the pre-processed data of this trained instance
+	 * in a binary format, which is read by
+	 * {@link AbstractRecommender#readModel(DataInput)}.
+	 * 
+	 * @param out
+	 *            The output to write to
+	 * @throws IOException
+	 *             If writing fails
+	 * @throws UnsupportedOperationException
+	 *             If this instance is not trained yet.
+	 */
+	public void writeModel(DataOutput out) throws IOException, UnsupportedOperationException {
+		if (!trainingFinished) {
+			throw new UnsupportedOperationException("This instance is not fully trained yet.");
+		}
+		int numberOfOrders = 0;
+		for (Set<OrderItemSet> sets : userItemSets.values()) {
+			numberOfOrders += sets.size();
+		}
+		out.writeInt(numberOfOrders);
+		for (Set<OrderItemSet> sets : userItemSets.values()) {
+			for (OrderItemSet orderset : sets) {
+				out.writeLong(orderset.getOrderId());
+				out.writeLong(orderset.getUserId());
+				out.writeInt(orderset.getOrderset().size());
+				for (Entry<Long, Integer> product : orderset.getOrderset().entrySet()) {
+					out.writeLong(product.getKey());
+					out.writeInt(product.getValue());
+				}
+			}
+		}
+		writePreprocessedData(out);
+	}
+
+	/**
+	 * Reads the data written by {@link AbstractRecommender#writeModel(DataOutput)}
+	 * into this instance, which is trained afterwards. The rating matrix is
+	 * created from the orders again, so its indices are the same as in the written
+	 * instance.
+	 * 
+	 * @param in
+	 *            The input to read from
+	 * @throws IOException
+	 *             If reading fails or the data is not valid
+	 */
+	public void readModel(DataInput in) throws IOException {
+		long tic = System.currentTimeMillis();
+		int numberOfOrders = in.readInt();
+		if (numberOfOrders < 0) {
+			throw new IOException("Invalid number of orders.");
+		}
+		Map<Long, Set<OrderItemSet>> itemSets = new HashMap<>();
+		for (int order = 0; order < numberOfOrders; order++) {
+			OrderItemSet orderset = new OrderItemSet();
+			orderset.setOrderId(in.readLong());
+			orderset.setUserId(in.readLong());
+			int numberOfProducts = in.readInt();
+			if (numberOfProducts < 0) {
+				throw new IOException("Invalid number of products.");
+			}
+			for (int product = 0; product < numberOfProducts; product++) {
+				orderset.getOrderset().put(in.readLong(), in.readInt());
+			}
+			itemSets.computeIfAbsent(orderset.getUserId(), userId -> new HashSet<>()).add(orderset);
+		}
+		userItemSets = itemSets;
+		ratings = createRatingMatrix(itemSets);
+		readPreprocessedData(in);
+		LOG.info("Reading recommender finished. Reading took: " + (System.currentTimeMillis() - tic) + "ms.");
+		trainingFinished = true;
+	}
+
+	/**
+	 * Writes the pre-processed data of implementing classes during
+	 * {@link AbstractRecommender#writeModel(DataOutput)}. By default nothing is
+	 * written.
+	 * 
+	 * @param out
+	 *            The output to write to
+	 * @throws IOException
+	 *             If writing fails
+	 */
+	protected void writePreprocessedData(DataOutput out) throws IOException {
+		// do nothing
+	}
+
+	/**
+	 * Reads the data written by
+	 * {@link AbstractRecommender#writePreprocessedData(DataOutput)} during
+	 * {@link AbstractRecommender#readModel(DataInput)}. The rating matrix and the
+	 * item sets are already read. By default the pre-processing is executed
+	 * again.
+	 * 
+	 * @param in
+	 *            The input to read from
+	 * @throws IOException
+	 *             If reading fails or the data is not valid
+	 */
+	protected void readPreprocessedData(DataInput in) throws IOException {
+		executePreprocessing();
+	}
+
 	/**
 	 * Triggers implementing classes if they want to execute a pre-processing step
 	 * during {@link AbstractRecommender#train(List, List)}.
@@ -111,6 +324,22 @@ public abstract class AbstractRecommender implements IRecommender {
 		// do nothing
 	}
 
+	/**
+	 * Triggers implementing classes to execute the pre-processing step during
+	 * {@link AbstractRecommender#update(List, List)}. The rating matrix and the
+	 * item sets of this instance are already updated. Implementing classes can
+	 * override this method to update the pre-processed data of the previous
+	 * instance with the changed orders, by default everything is recalculated.
+	 * 
+	 * @param previous
+	 *            The instance this instance was updated from, must not be modified.
+	 * @param changes
+	 *            The changed orders.
+	 */
+	protected void executeUpdate(AbstractRecommender previous, List<OrderChange> changes) {
+		executePreprocessing();
+	}
+
 	@Override
 	public List<Long> recommendProducts(Long userid, List<OrderItem> currentItems)
 			throws UnsupportedOperationException {
@@ -144,35 +373,77 @@ public abstract class AbstractRecommender implements IRecommender {
 	 *         {@link AbstractRecommender#MAX_NUMBER_OF_RECOMMENDATIONS}
 	 */
 	protected List<Long> filterRecommendations(Map<Long, Double> priorityList, List<Long> currentItems) {
-		TreeMap<Double, List<Long>> ranking = createRanking(priorityList);
-		List<Long> reco = new ArrayList<>(MAX_NUMBER_OF_RECOMMENDATIONS);
-		for (Double score : ranking.descendingKeySet()) {
-			List<Long> productIds = ranking.get(score);
-			for (long productId : productIds) {
-				if (reco.size() < MAX_NUMBER_OF_RECOMMENDATIONS) {
-					if (!currentItems.contains(productId)) {
-						reco.add(productId);
-					}
-				} else {
-					return reco;
-				}
+		IdIndex excluded = createExclusions(currentItems);
+		TopKSelector reco = new TopKSelector(MAX_NUMBER_OF_RECOMMENDATIONS);
+		for (Entry<Long, Double> entry : priorityList.entrySet()) {
+			if (excluded.indexOf(entry.getKey()) < 0) {
+				reco.offer(entry.getKey(), entry.getValue());
+			}
+		}
+		return reco.toList();
+	}
+
+	/**
+	 * Filters the given scores of all products like
+	 * {@link AbstractRecommender#filterRecommendations(Map, List)}.
+	 * 
+	 * @param scores
+	 *            The unfiltered scores of all products, indexed by the product
+	 *            index of the rating matrix.
+	 * @param currentItems
+	 *            The list of item IDs that must NOT be contained in the returned
+	 *            list.
+	 * @return A sorted list of recommendations with a size not greater than
+	 *         {@link AbstractRecommender#MAX_NUMBER_OF_RECOMMENDATIONS}
+	 */
+	protected List<Long> filterRecommendations(double[] scores, List<Long> currentItems) {
+		IdIndex products = ratings.getProducts();
+		IdIndex excluded = createExclusions(currentItems);
+		TopKSelector reco = new TopKSelector(MAX_NUMBER_OF_RECOMMENDATIONS);
+		for (int product = 0; product < scores.length; product++) {
+			long productId = products.getId(product);
+			if (excluded.indexOf(productId) < 0) {
+				reco.offer(productId, scores[product]);
 			}
 		}
-		return reco;
+		return reco.toList();
 	}
 
-	private TreeMap<Double, List<Long>> createRanking(Map<Long, Double> map) {
-		// transforming the map into a treemap (for efficient access)
-		TreeMap<Double, List<Long>> ranking = new TreeMap<Double, List<Long>>();
-		for (Entry<Long, Double> entry : map.entrySet()) {
-			List<Long> productIds = ranking.get(entry.getValue());
-			if (productIds == null) {
-				productIds = new ArrayList<>();
-				ranking.put(entry.getValue(), productIds);
+	/**
+	 * Filters the given scores of some products like
+	 * {@link AbstractRecommender#filterRecommendations(Map, List)}.
+	 * 
+	 * @param productIndices
+	 *            The product indices of the rating matrix to recommend from.
+	 * @param scores
+	 *            The unfiltered scores of the given products.
+	 * @param currentItems
+	 *            The list of item IDs that must NOT be contained in the returned
+	 *            list.
+	 * @return A sorted list of recommendations with a size not greater than
+	 *         {@link AbstractRecommender#MAX_NUMBER_OF_RECOMMENDATIONS}
+	 */
+	protected List<Long> filterRecommendations(int[] productIndices, double[] scores, List<Long> currentItems) {
+		IdIndex products = ratings.getProducts();
+		IdIndex excluded = createExclusions(currentItems);
+		TopKSelector reco = new TopKSelector(MAX_NUMBER_OF_RECOMMENDATIONS);
+		for (int i = 0; i < productIndices.length; i++) {
+			long productId = products.getId(productIndices[i]);
+			if (excluded.indexOf(productId) < 0) {
+				reco.offer(productId, scores[i]);
 			}
-			productIds.add(entry.getKey());
 		}
-		return ranking;
+		return reco.toList();
+	}
+
+	private static IdIndex createExclusions(List<Long> currentItems) {
+		IdIndex excluded = new IdIndex();
+		for (Long productId : currentItems) {
+			if (productId != null) {
+				excluded.add(productId);
+			}
+		}
+		return excluded;
 	}
 
 	/**
@@ -189,43 +460,46 @@ public abstract class AbstractRecommender implements IRecommender {
 	 */
 	protected abstract List<Long> execute(Long userid, List<Long> currentItems);
 
-	private Order findOrder(List<Order> orders, long orderid) {
-		for (Order order : orders) {
-			if (order.id() == orderid) {
-				return order;
-			}
-		}
-		return null;
-	}
-
 	/**
-	 * @return the userBuyingMatrix
+	 * @return true if this instance is trained
 	 */
-	public Map<Long, Map<Long, Double>> getUserBuyingMatrix() {
-		return userBuyingMatrix;
+	public boolean isTrainingFinished() {
+		return trainingFinished;
 	}
 
 	/**
-	 * @param userBuyingMatrix
-	 *            the userBuyingMatrix to set
+	 * Maps the product indices of one rating matrix to the product indices of
+	 * another one. As products are indexed in the order of their IDs, the mapping
+	 * is ascending.
+	 * 
+	 * @param from
+	 *            The rating matrix to map from
+	 * @param to
+	 *            The rating matrix to map to
+	 * @return the product index in the other matrix of each product index or -1 if
+	 *         the product is not contained
 	 */
-	public void setUserBuyingMatrix(Map<Long, Map<Long, Double>> userBuyingMatrix) {
-		this.userBuyingMatrix = userBuyingMatrix;
+	protected static int[] mapProducts(RatingMatrix from, RatingMatrix to) {
+		int[] mapping = new int[from.getProducts().size()];
+		for (int product = 0; product < mapping.length; product++) {
+			mapping[product] = to.getProducts().indexOf(from.getProducts().getId(product));
+		}
+		return mapping;
 	}
 
 	/**
-	 * @return the totalProducts
+	 * @return the rating matrix
 	 */
-	public Set<Long> getTotalProducts() {
-		return totalProducts;
+	public RatingMatrix getRatings() {
+		return ratings;
 	}
 
 	/**
-	 * @param totalProducts
-	 *            the totalProducts to set
+	 * @param ratings
+	 *            the rating matrix to set
 	 */
-	public void setTotalProducts(Set<Long> totalProducts) {
-		this.totalProducts = totalProducts;
+	public void setRatings(RatingMatrix ratings) {
+		this.ratings = ratings;
 	}
 
 	/**
@@ -245,39 +519,39 @@ public abstract class AbstractRecommender implements IRecommender {
 
 	/**
 	 * Transforms the list of orders into one matrix containing all user-IDs and
-	 * their number of buys (i.e., their rating) of all product-IDs. A
-	 * quantity/rating of a user is null, if the user did not buy that item. If the
-	 * user bought one item at least once, the contained value (rating) is the
-	 * number of times, he bought one given item.
+	 * their number of buys (i.e., their rating) of all product-IDs. A user has no
+	 * rating for an item, if the user did not buy that item. If the user bought one
+	 * item at least once, the contained value (rating) is the number of times, he
+	 * bought one given item.
 	 * 
 	 * @param useritemsets
 	 *            A map assigning each user-ID all its OrderItemSets
-	 * @return A Map representing a matrix of each user-ID assigning each item-ID
-	 *         its number of buys (as double value)
+	 * @return A matrix of each user-ID assigning each item-ID its number of buys
 	 */
-	private static Map<Long, Map<Long, Double>> createUserBuyingMatrix(Map<Long, Set<OrderItemSet>> useritemsets) {
-		Map<Long, Map<Long, Double>> matrix = new HashMap<>();
+	private static RatingMatrix createRatingMatrix(Map<Long, Set<OrderItemSet>> useritemsets) {
+		RatingMatrix.Builder matrix = new RatingMatrix.Builder();
 		// for each user
 		for (Entry<Long, Set<OrderItemSet>> entry : useritemsets.entrySet()) {
-			// create a new line for this user-ID
-			Map<Long, Double> line = new HashMap<>();
 			// for all orders of that user
 			for (OrderItemSet orderset : entry.getValue()) {
 				// for all orderitems of that orderset
 				for (Entry<Long, Integer> product : orderset.getOrderset().entrySet()) {
-					// if key was not known before -> first occurence
-					if (!line.containsKey(product.getKey())) {
-						line.put(product.getKey(), Double.valueOf(product.getValue()));
-					} else {
-						// if key was known before -> increase counter
-						line.put(product.getKey(), Double.valueOf(line.get(product.getKey()) + product.getValue()));
-					}
+					matrix.add(entry.getKey(), product.getKey(), product.getValue());
 				}
 			}
-			// add this user-ID to the matrix
-			matrix.put(entry.getKey(), line);
 		}
-		return matrix;
+		return matrix.build();
+	}
+
+	/**
+	 * An order changed by {@link AbstractRecommender#update(List, List)}.
+	 * 
+	 * @param previous
+	 *            The order before the update or null if it is a new order
+	 * @param current
+	 *            The order after the update
+	 */
+	protected record OrderChange(OrderItemSet previous, OrderItemSet current) {
 	}
 
 }
@@ -0,0 +1,136 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Dense index assigning each added ID a contiguous int index, starting with 0
+ * in the order the IDs were added. Allows the recommenders to store their
+ * matrices in primitive arrays instead of maps with boxed keys and values.
+ *
+ * @author Philipp Backes
+ *
+ */
+public final class IdIndex {
+
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * Open addressing hash table, a slot contains the index + 1 of the ID or 0 if
+	 * it is free.
+	 */
+	private int[] slots = new int[MIN_CAPACITY];
+
+	/**
+	 * All added IDs, the position of an ID is its index.
+	 */
+	private long[] ids = new long[MIN_CAPACITY];
+
+	private int size;
+
+	/**
+	 * Adds the given ID if it is not contained yet.
+	 *
+	 * @param id
+	 *            The ID to add
+	 * @return The index of the ID
+	 */
+	public int add(long id) {
+		int mask = slots.length - 1;
+		for (int i = spread(id) & mask;; i = (i + 1) & mask) {
+			int slot = slots[i];
+			if (slot == 0) {
+				break;
+			}
+			if (ids[slot - 1] == id) {
+				return slot - 1;
+			}
+		}
+		if (size == ids.length) {
+			ids = Arrays.copyOf(ids, 2 * size);
+		}
+		ids[size] = id;
+		size++;
+		if (2 * size > slots.length) {
+			rehash(2 * slots.length);
+		} else {
+			insert(slots, size - 1);
+		}
+		return size - 1;
+	}
+
+	/**
+	 * Returns the index of the given ID.
+	 *
+	 * @param id
+	 *            The ID to look up
+	 * @return The index of the ID or -1 if the ID was never added
+	 */
+	public int indexOf(long id) {
+		int mask = slots.length - 1;
+		for (int i = spread(id) & mask;; i = (i + 1) & mask) {
+			int slot = slots[i];
+			if (slot == 0) {
+				return -1;
+			}
+			if (ids[slot - 1] == id) {
+				return slot - 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the ID with the given index.
+	 *
+	 * @param index
+	 *            The index, must be smaller than {@link #size()}
+	 * @return The ID
+	 */
+	public long getId(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for " + size + " IDs.");
+		}
+		return ids[index];
+	}
+
+	/**
+	 * @return the number of added IDs
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void rehash(int capacity) {
+		int[] newSlots = new int[capacity];
+		for (int index = 0; index < size; index++) {
+			insert(newSlots, index);
+		}
+		slots = newSlots;
+	}
+
+	private void insert(int[] table, int index) {
+		int mask = table.length - 1;
+		int i = spread(ids[index]) & mask;
+		while (table[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		table[i] = index + 1;
+	}
+
+	private static int spread(long id) {
+		long hash = id * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import utilities.datamodel.OrderItem;
+
+/**
+ * Binary snapshot of a trained model, i.e. the recommender and the fallback
+ * recommender, together with the watermark of the data they know. New
+ * instances start with the snapshot and only retrieve the data added since,
+ * instead of training on all data again. Snapshots are replaced atomically, so
+ * instances sharing the file through a volume never read a partial snapshot.
+ *
+ * @author Philipp Backes
+ *
+ */
+public final class ModelSnapshot {
+
+	/**
+	 * Version of the format, snapshots of other versions are not read.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final int MAGIC = 0x54535253;
+
+	private final AbstractRecommender recommender;
+	private final AbstractRecommender fallback;
+	private final OrderItem lastItem;
+	private final long maxTime;
+
+	/**
+	 * Creates a snapshot.
+	 *
+	 * @param recommender
+	 *            The trained recommender
+	 * @param fallback
+	 *            The trained fallback recommender
+	 * @param lastItem
+	 *            The order item with the highest ID known to the model
+	 * @param maxTime
+	 *            The maximum considered time of the orders
+	 */
+	public ModelSnapshot(AbstractRecommender recommender, AbstractRecommender fallback, OrderItem lastItem,
+			long maxTime) {
+		this.recommender = recommender;
+		this.fallback = fallback;
+		this.lastItem = lastItem;
+		this.maxTime = maxTime;
+	}
+
+	/**
+	 * @return the recommender
+	 */
+	public AbstractRecommender getRecommender() {
+		return recommender;
+	}
+
+	/**
+	 * @return the fallback recommender
+	 */
+	public AbstractRecommender getFallback() {
+		return fallback;
+	}
+
+	/**
+	 * @return the order item with the highest ID known to the model
+	 */
+	public OrderItem getLastItem() {
+		return lastItem;
+	}
+
+	/**
+	 * @return the maximum considered time of the orders
+	 */
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Writes this snapshot to a temporary file next to the given file, which then
+	 * replaces the given file.
+	 *
+	 * @param file
+	 *            The snapshot file
+	 * @throws IOException
+	 *             If writing fails
+	 */
+	public void write(Path file) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temporaryFile), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(recommender.getClass().getName());
+				out.writeUTF(fallback.getClass().getName());
+				out.writeLong(lastItem.id());
+				out.writeLong(lastItem.productId());
+				out.writeLong(lastItem.orderId());
+				out.writeInt(lastItem.quantity());
+				out.writeLong(lastItem.unitPriceInCents());
+				out.writeLong(maxTime);
+				fallback.writeModel(out);
+				out.writeBoolean(recommender != fallback);
+				if (recommender != fallback) {
+					recommender.writeModel(out);
+				}
+			}
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	/**
+	 * Reads the snapshot of the given file.
+	 *
+	 * @param file
+	 *            The snapshot file
+	 * @return the snapshot
+	 * @throws IOException
+	 *             If reading fails or the file is not a snapshot of this version
+	 */
+	public static ModelSnapshot read(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a recommender snapshot.");
+			}
+			int version = in.readInt();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("The snapshot version " + version + " is not supported.");
+			}
+			AbstractRecommender recommender = createInstance(in.readUTF());
+			AbstractRecommender fallback = createInstance(in.readUTF());
+			OrderItem lastItem = new OrderItem(in.readLong(), in.readLong(), in.readLong(), in.readInt(),
+					in.readLong());
+			long maxTime = in.readLong();
+			fallback.readModel(in);
+			if (in.readBoolean()) {
+				recommender.readModel(in);
+			} else {
+				recommender = fallback;
+			}
+			return new ModelSnapshot(recommender, fallback, lastItem, maxTime);
+		} catch (RuntimeException e) {
+			throw new IOException("The snapshot could not be read: " + e.getMessage(), e);
+		}
+	}
+
+	private static AbstractRecommender createInstance(String className) throws IOException {
+		try {
+			return Class.forName(className).asSubclass(AbstractRecommender.class).getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new IOException("The recommender " + className + " could not be created.", e);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import utilities.datamodel.*;
+
+/**
+ * Collects the training data page by page into the {@link OrderItemSet}s of
+ * all users, which are passed to {@link AbstractRecommender#train(Map)}. Only
+ * the user and time of each {@link Order} are kept in primitive arrays, so the
+ * retrieved pages can be dropped right away. All orders have to be added
+ * before their {@link OrderItem}s, and the order items have to be added in the
+ * order of their IDs.
+ *
+ * @author Philipp Backes
+ *
+ */
+public final class OrderItemSetCollector {
+
+	private final IdIndex orders = new IdIndex();
+	private long[] userIds = new long[16];
+	private long[] times = new long[16];
+
+	/**
+	 * Orders after this time in milliseconds and their items are ignored.
+	 */
+	private long maxTime = Long.MAX_VALUE;
+
+	private final Map<Long, OrderItemSet> itemSets = new HashMap<>();
+	private final Map<Long, Set<OrderItemSet>> userItemSets = new HashMap<>();
+	private long numberOfOrderItems;
+	private boolean itemIgnored;
+	private OrderItem lastItem;
+
+	/**
+	 * Adds an order, later orders with the same ID are ignored.
+	 *
+	 * @param orderId
+	 *            The order ID
+	 * @param userId
+	 *            The ID of the user placing the order
+	 * @param time
+	 *            The time of the order in milliseconds
+	 */
+	public void addOrder(long orderId, long userId, long time) {
+		int size = orders.size();
+		int order = orders.add(orderId);
+		if (order < size) {
+			return;
+		}
+		if (order == userIds.length) {
+			userIds = Arrays.copyOf(userIds, 2 * order);
+			times = Arrays.copyOf(times, 2 * order);
+		}
+		userIds[order] = userId;
+		times[order] = time;
+	}
+
+	/**
+	 * @return the time of the latest order or Long.MIN_VALUE if there is none
+	 */
+	public long getMaxOrderTime() {
+		long max = Long.MIN_VALUE;
+		for (int order = 0; order < orders.size(); order++) {
+			max = Math.max(max, times[order]);
+		}
+		return max;
+	}
+
+	/**
+	 * Ignores orders after the given time and their items.
+	 *
+	 * @param maxTime
+	 *            The maximum considered time in milliseconds
+	 */
+	public void setMaxTime(long maxTime) {
+		this.maxTime = maxTime;
+	}
+
+	/**
+	 * Adds the given order items to the item sets of their orders. Items of
+	 * unknown or ignored orders are ignored.
+	 *
+	 * @param orderItems
+	 *            The order items, in the order of their IDs
+	 */
+	public void addOrderItems(List<OrderItem> orderItems) {
+		for (OrderItem orderItem : orderItems) {
+			int order = orderItem.orderId() == null ? -1 : orders.indexOf(orderItem.orderId());
+			if (order < 0 || times[order] > maxTime) {
+				itemIgnored = true;
+				continue;
+			}
+			OrderItemSet itemSet = itemSets.get(orderItem.orderId());
+			if (itemSet == null) {
+				itemSet = new OrderItemSet();
+				itemSet.setOrderId(orderItem.orderId());
+				itemSet.setUserId(userIds[order]);
+				itemSets.put(orderItem.orderId(), itemSet);
+				userItemSets.computeIfAbsent(userIds[order], userId -> new HashSet<>()).add(itemSet);
+			}
+			itemSet.getOrderset().put(orderItem.productId(), orderItem.quantity());
+			numberOfOrderItems++;
+			if (!itemIgnored) {
+				// all items up to this one are part of the item sets
+				lastItem = orderItem;
+			}
+		}
+	}
+
+	/**
+	 * @return the item sets of all orders with at least one item, assigned to
+	 *         their users
+	 */
+	public Map<Long, Set<OrderItemSet>> getUserItemSets() {
+		return userItemSets;
+	}
+
+	/**
+	 * @return the number of added orders
+	 */
+	public int getNumberOfOrders() {
+		return orders.size();
+	}
+
+	/**
+	 * @return the number of order items in the item sets
+	 */
+	public long getNumberOfOrderItems() {
+		return numberOfOrderItems;
+	}
+
+	/**
+	 * @return the last order item, for which all order items with a lower ID are
+	 *         part of the item sets, or null if there is none
+	 */
+	public OrderItem getLastItem() {
+		return lastItem;
+	}
+}
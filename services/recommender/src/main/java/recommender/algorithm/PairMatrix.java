@@ -0,0 +1,360 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Sparse matrix over the product indices of the rating matrix, assigning pairs
+ * of products a count and optionally a sum, e.g. the number of users buying
+ * both products and the sum of their rating differences. The entries of item i
+ * are at {@link #getRowStart(int)} until {@link #getRowEnd(int)} - 1, sorted
+ * by the other item index. The matrix is immutable, counts and sums are
+ * additive, so an updated matrix is created from {@link Deltas} without
+ * recalculating the unchanged pairs.
+ *
+ * @author Philipp Backes
+ *
+ */
+public final class PairMatrix {
+
+	/**
+	 * Matrix without any products.
+	 */
+	public static final PairMatrix EMPTY = new PairMatrix(new int[1], new int[0], new int[0], null);
+
+	private final int[] start;
+	private final int[] products;
+	private final int[] counts;
+
+	/**
+	 * The sum of each entry or null if only counts are stored.
+	 */
+	private final double[] sums;
+
+	/**
+	 * Creates a matrix of the given rows.
+	 *
+	 * @param start
+	 *            The first entry of each item and the number of entries at the
+	 *            end, so its length is the number of products + 1
+	 * @param products
+	 *            The other item index of each entry, sorted within each row
+	 * @param counts
+	 *            The count of each entry
+	 * @param sums
+	 *            The sum of each entry, may be null
+	 */
+	public PairMatrix(int[] start, int[] products, int[] counts, double[] sums) {
+		this.start = start;
+		this.products = products;
+		this.counts = counts;
+		this.sums = sums;
+	}
+
+	/**
+	 * @return the number of products
+	 */
+	public int size() {
+		return start.length - 1;
+	}
+
+	/**
+	 * @return the number of stored pairs
+	 */
+	public int getNumberOfEntries() {
+		return products.length;
+	}
+
+	/**
+	 * @param item
+	 *            The product index
+	 * @return the first entry of the given item
+	 */
+	public int getRowStart(int item) {
+		return start[item];
+	}
+
+	/**
+	 * @param item
+	 *            The product index
+	 * @return the entry after the last entry of the given item
+	 */
+	public int getRowEnd(int item) {
+		return start[item + 1];
+	}
+
+	/**
+	 * @param entry
+	 *            An entry between {@link #getRowStart(int)} and
+	 *            {@link #getRowEnd(int)}
+	 * @return the other item index of the given entry
+	 */
+	public int getProduct(int entry) {
+		return products[entry];
+	}
+
+	/**
+	 * @param entry
+	 *            An entry between {@link #getRowStart(int)} and
+	 *            {@link #getRowEnd(int)}
+	 * @return the count of the given entry
+	 */
+	public int getCount(int entry) {
+		return counts[entry];
+	}
+
+	/**
+	 * @param entry
+	 *            An entry between {@link #getRowStart(int)} and
+	 *            {@link #getRowEnd(int)}
+	 * @return the sum of the given entry or 0 if no sums are stored
+	 */
+	public double getSum(int entry) {
+		return sums == null ? 0.0 : sums[entry];
+	}
+
+	/**
+	 * Finds the entry of the given pair.
+	 *
+	 * @param item
+	 *            The product index of the first item
+	 * @param otherItem
+	 *            The product index of the other item
+	 * @return the entry or -1 if the pair is not stored
+	 */
+	public int findEntry(int item, int otherItem) {
+		if (item < 0 || item >= size()) {
+			return -1;
+		}
+		int entry = Arrays.binarySearch(products, start[item], start[item + 1], otherItem);
+		return entry < 0 ? -1 : entry;
+	}
+
+	/**
+	 * Creates the matrix with the given changes applied. Pairs with a count of 0
+	 * are removed.
+	 *
+	 * @param productMapping
+	 *            The new product index of each product index of this matrix, must
+	 *            be ascending, -1 removes the product
+	 * @param numberOfProducts
+	 *            The new number of products
+	 * @param deltas
+	 *            The changes with new product indices
+	 * @return the updated matrix
+	 */
+	public PairMatrix update(int[] productMapping, int numberOfProducts, Deltas deltas) {
+		if (productMapping.length != size()) {
+			throw new IllegalArgumentException("The product mapping does not match the size of the matrix.");
+		}
+		// the old item of each new item
+		int[] previousItems = new int[numberOfProducts];
+		Arrays.fill(previousItems, -1);
+		for (int item = 0; item < productMapping.length; item++) {
+			if (productMapping[item] >= 0) {
+				previousItems[productMapping[item]] = item;
+			}
+		}
+		long[] keys = deltas.sortedKeys();
+		int capacity = products.length + keys.length;
+		int[] newStart = new int[numberOfProducts + 1];
+		int[] newProducts = new int[capacity];
+		int[] newCounts = new int[capacity];
+		double[] newSums = sums == null ? null : new double[capacity];
+		int entries = 0;
+		int key = 0;
+		for (int item = 0; item < numberOfProducts; item++) {
+			newStart[item] = entries;
+			int entry = previousItems[item] < 0 ? 0 : start[previousItems[item]];
+			int end = previousItems[item] < 0 ? 0 : start[previousItems[item] + 1];
+			// merge the old row with the changes of the row, both are sorted
+			while (entry < end || (key < keys.length && Deltas.getItem(keys[key]) == item)) {
+				int oldProduct = entry < end ? productMapping[products[entry]] : Integer.MAX_VALUE;
+				if (entry < end && oldProduct < 0) {
+					entry++;
+					continue;
+				}
+				int deltaProduct = key < keys.length && Deltas.getItem(keys[key]) == item
+						? Deltas.getOtherItem(keys[key])
+						: Integer.MAX_VALUE;
+				int product = Math.min(oldProduct, deltaProduct);
+				int count = 0;
+				double sum = 0.0;
+				if (oldProduct == product) {
+					count += counts[entry];
+					sum += getSum(entry);
+					entry++;
+				}
+				if (deltaProduct == product) {
+					int delta = deltas.indexOf(keys[key]);
+					count += deltas.counts[delta];
+					sum += deltas.sums[delta];
+					key++;
+				}
+				if (count != 0) {
+					newProducts[entries] = product;
+					newCounts[entries] = count;
+					if (newSums != null) {
+						newSums[entries] = sum;
+					}
+					entries++;
+				}
+			}
+		}
+		if (key < keys.length) {
+			throw new IllegalArgumentException("The changes contain products outside of the matrix.");
+		}
+		newStart[numberOfProducts] = entries;
+		return new PairMatrix(newStart, Arrays.copyOf(newProducts, entries), Arrays.copyOf(newCounts, entries),
+				newSums == null ? null : Arrays.copyOf(newSums, entries));
+	}
+
+	/**
+	 * Writes this matrix in a binary format, which is read by
+	 * {@link #read(DataInput)}.
+	 *
+	 * @param out
+	 *            The output to write to
+	 * @throws IOException
+	 *             If writing fails
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size());
+		out.writeInt(products.length);
+		out.writeBoolean(sums != null);
+		for (int item = 1; item <= size(); item++) {
+			out.writeInt(start[item]);
+		}
+		for (int entry = 0; entry < products.length; entry++) {
+			out.writeInt(products[entry]);
+			out.writeInt(counts[entry]);
+			if (sums != null) {
+				out.writeDouble(sums[entry]);
+			}
+		}
+	}
+
+	/**
+	 * Reads a matrix written by {@link #write(DataOutput)}.
+	 *
+	 * @param in
+	 *            The input to read from
+	 * @return the matrix
+	 * @throws IOException
+	 *             If reading fails or the data is not a valid matrix
+	 */
+	public static PairMatrix read(DataInput in) throws IOException {
+		int size = in.readInt();
+		int entries = in.readInt();
+		if (size < 0 || entries < 0) {
+			throw new IOException("Invalid size of the pair matrix.");
+		}
+		boolean hasSums = in.readBoolean();
+		int[] start = new int[size + 1];
+		for (int item = 1; item <= size; item++) {
+			start[item] = in.readInt();
+			if (start[item] < start[item - 1] || start[item] > entries) {
+				throw new IOException("Invalid row of the pair matrix.");
+			}
+		}
+		if (start[size] != entries) {
+			throw new IOException("Invalid number of entries of the pair matrix.");
+		}
+		int[] products = new int[entries];
+		int[] counts = new int[entries];
+		double[] sums = hasSums ? new double[entries] : null;
+		for (int entry = 0; entry < entries; entry++) {
+			products[entry] = in.readInt();
+			if (products[entry] < 0 || products[entry] >= size) {
+				throw new IOException("Invalid product of the pair matrix.");
+			}
+			counts[entry] = in.readInt();
+			if (hasSums) {
+				sums[entry] = in.readDouble();
+			}
+		}
+		return new PairMatrix(start, products, counts, sums);
+	}
+
+	/**
+	 * Changes of the counts and sums of pairs, which are applied to a matrix with
+	 * {@link PairMatrix#update(int[], int, Deltas)}. Changes of the same pair are
+	 * summed up.
+	 */
+	public static final class Deltas {
+
+		private final IdIndex keys = new IdIndex();
+		private int[] counts = new int[16];
+		private double[] sums = new double[16];
+
+		/**
+		 * Adds the given changes to the given pair.
+		 *
+		 * @param item
+		 *            The product index of the first item
+		 * @param otherItem
+		 *            The product index of the other item
+		 * @param count
+		 *            The change of the count
+		 * @param sum
+		 *            The change of the sum
+		 */
+		public void add(int item, int otherItem, int count, double sum) {
+			int delta = keys.add(toKey(item, otherItem));
+			if (delta == counts.length) {
+				counts = Arrays.copyOf(counts, 2 * delta);
+				sums = Arrays.copyOf(sums, 2 * delta);
+			}
+			counts[delta] += count;
+			sums[delta] += sum;
+		}
+
+		/**
+		 * @return the number of changed pairs
+		 */
+		public int size() {
+			return keys.size();
+		}
+
+		private int indexOf(long key) {
+			return keys.indexOf(key);
+		}
+
+		private long[] sortedKeys() {
+			long[] sorted = new long[keys.size()];
+			for (int delta = 0; delta < sorted.length; delta++) {
+				sorted[delta] = keys.getId(delta);
+			}
+			// product indices are not negative, so the keys are sorted by item first
+			Arrays.sort(sorted);
+			return sorted;
+		}
+
+		private static long toKey(int item, int otherItem) {
+			return ((long) item << 32) | otherItem;
+		}
+
+		private static int getItem(long key) {
+			return (int) (key >>> 32);
+		}
+
+		private static int getOtherItem(long key) {
+			return (int) key;
+		}
+	}
+}
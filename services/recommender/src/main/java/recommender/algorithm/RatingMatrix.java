@@ -0,0 +1,308 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Sparse matrix assigning users a rating for each product they bought, i.e.
+ * the number of times they bought it. Users and products are addressed by
+ * their index in the user and product {@link IdIndex}. The ratings are stored
+ * twice in primitive arrays, once row by row for each user (compressed sparse
+ * rows) and once column by column for each product (compressed sparse
+ * columns). The matrix is immutable and is created with a {@link Builder}.
+ *
+ * @author Philipp Backes
+ *
+ */
+public final class RatingMatrix {
+
+	private final IdIndex users;
+	private final IdIndex products;
+
+	/**
+	 * Entries of user u are at rowStart[u] until rowStart[u + 1] - 1.
+	 */
+	private final int[] rowStart;
+	private final int[] rowProducts;
+	private final double[] rowRatings;
+
+	/**
+	 * Entries of product p are at columnStart[p] until columnStart[p + 1] - 1.
+	 */
+	private final int[] columnStart;
+	private final int[] columnUsers;
+	private final double[] columnRatings;
+
+	private RatingMatrix(IdIndex users, IdIndex products, int[] rowStart, int[] rowProducts, double[] rowRatings) {
+		this.users = users;
+		this.products = products;
+		this.rowStart = rowStart;
+		this.rowProducts = rowProducts;
+		this.rowRatings = rowRatings;
+		// transpose the rows, users are visited in order, so each column is sorted
+		columnStart = new int[products.size() + 1];
+		for (int entry = 0; entry < rowProducts.length; entry++) {
+			columnStart[rowProducts[entry] + 1]++;
+		}
+		for (int product = 0; product < products.size(); product++) {
+			columnStart[product + 1] += columnStart[product];
+		}
+		columnUsers = new int[rowProducts.length];
+		columnRatings = new double[rowProducts.length];
+		int[] next = Arrays.copyOf(columnStart, products.size());
+		for (int user = 0; user < users.size(); user++) {
+			for (int entry = rowStart[user]; entry < rowStart[user + 1]; entry++) {
+				int position = next[rowProducts[entry]]++;
+				columnUsers[position] = user;
+				columnRatings[position] = rowRatings[entry];
+			}
+		}
+	}
+
+	/**
+	 * @return the index of all users with at least one rating
+	 */
+	public IdIndex getUsers() {
+		return users;
+	}
+
+	/**
+	 * @return the index of all products rated by at least one user
+	 */
+	public IdIndex getProducts() {
+		return products;
+	}
+
+	/**
+	 * @return the number of stored ratings
+	 */
+	public int getNumberOfRatings() {
+		return rowProducts.length;
+	}
+
+	/**
+	 * @param user
+	 *            The user index
+	 * @return the first entry of the given user
+	 */
+	public int getRowStart(int user) {
+		return rowStart[user];
+	}
+
+	/**
+	 * @param user
+	 *            The user index
+	 * @return the entry after the last entry of the given user
+	 */
+	public int getRowEnd(int user) {
+		return rowStart[user + 1];
+	}
+
+	/**
+	 * @param entry
+	 *            An entry between {@link #getRowStart(int)} and
+	 *            {@link #getRowEnd(int)}
+	 * @return the product index of the given row entry
+	 */
+	public int getRowProduct(int entry) {
+		return rowProducts[entry];
+	}
+
+	/**
+	 * @param entry
+	 *            An entry between {@link #getRowStart(int)} and
+	 *            {@link #getRowEnd(int)}
+	 * @return the rating of the given row entry
+	 */
+	public double getRowRating(int entry) {
+		return rowRatings[entry];
+	}
+
+	/**
+	 * @param product
+	 *            The product index
+	 * @return the first entry of the given product
+	 */
+	public int getColumnStart(int product) {
+		return columnStart[product];
+	}
+
+	/**
+	 * @param product
+	 *            The product index
+	 * @return the entry after the last entry of the given product
+	 */
+	public int getColumnEnd(int product) {
+		return columnStart[product + 1];
+	}
+
+	/**
+	 * @param entry
+	 *            An entry between {@link #getColumnStart(int)} and
+	 *            {@link #getColumnEnd(int)}
+	 * @return the user index of the given column entry
+	 */
+	public int getColumnUser(int entry) {
+		return columnUsers[entry];
+	}
+
+	/**
+	 * @param entry
+	 *            An entry between {@link #getColumnStart(int)} and
+	 *            {@link #getColumnEnd(int)}
+	 * @return the rating of the given column entry
+	 */
+	public double getColumnRating(int entry) {
+		return columnRatings[entry];
+	}
+
+	/**
+	 * Builder collecting the quantities of all bought items. Quantities of the same
+	 * user and product are summed up.
+	 */
+	public static final class Builder {
+
+		private final IdIndex users = new IdIndex();
+		private final IdIndex products = new IdIndex();
+		private int[] userIndices = new int[64];
+		private int[] productIndices = new int[64];
+		private double[] quantities = new double[64];
+		private int size;
+
+		/**
+		 * Adds the given quantity to the rating of the given user for the given
+		 * product.
+		 *
+		 * @param userId
+		 *            The user ID
+		 * @param productId
+		 *            The product ID
+		 * @param quantity
+		 *            The bought quantity
+		 * @return this builder
+		 */
+		public Builder add(long userId, long productId, double quantity) {
+			if (size == quantities.length) {
+				userIndices = Arrays.copyOf(userIndices, 2 * size);
+				productIndices = Arrays.copyOf(productIndices, 2 * size);
+				quantities = Arrays.copyOf(quantities, 2 * size);
+			}
+			userIndices[size] = users.add(userId);
+			productIndices[size] = products.add(productId);
+			quantities[size] = quantity;
+			size++;
+			return this;
+		}
+
+		/**
+		 * Adds all ratings of the given matrix, except the ratings of the given users.
+		 *
+		 * @param matrix
+		 *            The matrix to copy
+		 * @param excludedUsers
+		 *            The IDs of the users not to copy
+		 * @return this builder
+		 */
+		public Builder addAll(RatingMatrix matrix, IdIndex excludedUsers) {
+			for (int user = 0; user < matrix.users.size(); user++) {
+				long userId = matrix.users.getId(user);
+				if (excludedUsers.indexOf(userId) >= 0) {
+					continue;
+				}
+				for (int entry = matrix.rowStart[user]; entry < matrix.rowStart[user + 1]; entry++) {
+					add(userId, matrix.products.getId(matrix.rowProducts[entry]), matrix.rowRatings[entry]);
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Creates the matrix of all added quantities. Users and products are indexed
+		 * in the order of their IDs, so the matrix does not depend on the order the
+		 * quantities were added in.
+		 *
+		 * @return the rating matrix
+		 */
+		public RatingMatrix build() {
+			IdIndex sortedUsers = new IdIndex();
+			int[] userOrder = sort(users, sortedUsers);
+			IdIndex sortedProducts = new IdIndex();
+			int[] productOrder = sort(products, sortedProducts);
+			// sort the added quantities by user
+			int[] start = new int[users.size() + 1];
+			for (int i = 0; i < size; i++) {
+				start[userOrder[userIndices[i]] + 1]++;
+			}
+			for (int user = 0; user < users.size(); user++) {
+				start[user + 1] += start[user];
+			}
+			int[] byUser = new int[size];
+			int[] next = Arrays.copyOf(start, users.size());
+			for (int i = 0; i < size; i++) {
+				byUser[next[userOrder[userIndices[i]]]++] = i;
+			}
+			// sum up the quantities of each user and product
+			int[] rowStart = new int[users.size() + 1];
+			int[] rowProducts = new int[size];
+			double[] rowRatings = new double[size];
+			int[] position = new int[products.size()];
+			Arrays.fill(position, -1);
+			int entries = 0;
+			for (int user = 0; user < users.size(); user++) {
+				rowStart[user] = entries;
+				for (int i = start[user]; i < start[user + 1]; i++) {
+					int product = productOrder[productIndices[byUser[i]]];
+					if (position[product] < 0) {
+						position[product] = entries;
+						rowProducts[entries] = product;
+						entries++;
+					}
+					rowRatings[position[product]] += quantities[byUser[i]];
+				}
+				for (int entry = rowStart[user]; entry < entries; entry++) {
+					position[rowProducts[entry]] = -1;
+				}
+			}
+			rowStart[users.size()] = entries;
+			return new RatingMatrix(sortedUsers, sortedProducts, rowStart, Arrays.copyOf(rowProducts, entries),
+					Arrays.copyOf(rowRatings, entries));
+		}
+
+		/**
+		 * Adds the IDs of the given index to the sorted index in ascending order.
+		 *
+		 * @param index
+		 *            The index to sort
+		 * @param sorted
+		 *            The empty index receiving the sorted IDs
+		 * @return the index in the sorted index of each index of the given index
+		 */
+		private static int[] sort(IdIndex index, IdIndex sorted) {
+			long[] ids = new long[index.size()];
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = index.getId(i);
+			}
+			Arrays.sort(ids);
+			for (long id : ids) {
+				sorted.add(id);
+			}
+			int[] order = new int[ids.length];
+			for (int i = 0; i < ids.length; i++) {
+				order[i] = sorted.indexOf(index.getId(i));
+			}
+			return order;
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import utilities.datamodel.OrderItem;
+
+/**
+ * Bounded least recently used cache of recommendations, keyed by the user and
+ * the products in the cart. Each trained model starts a new generation of the
+ * cache, recommendations calculated with the model of an older generation are
+ * neither returned nor stored.
+ *
+ * @author Philipp Backes
+ *
+ */
+public final class RecommendationCache {
+
+	/**
+	 * Default maximum number of cached recommendations.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private static final Logger LOG = LogManager.getLogger(RecommendationCache.class);
+
+	private final LinkedHashMap<Key, List<Long>> entries = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, List<Long>> eldest) {
+			return size() > maxEntries;
+		}
+	};
+
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+	private long generation;
+	private long hitCount;
+	private long missCount;
+	private long invalidationCount;
+
+	/**
+	 * Creates the key for the given user and cart.
+	 *
+	 * @param userId
+	 *            The user ID, may be null
+	 * @param currentItems
+	 *            The items in the cart
+	 * @return the key or null if the recommendations for the cart are not cached
+	 */
+	public static Key createKey(Long userId, List<OrderItem> currentItems) {
+		if (currentItems.isEmpty()) {
+			return null;
+		}
+		long[] products = new long[currentItems.size()];
+		for (int i = 0; i < products.length; i++) {
+			OrderItem item = currentItems.get(i);
+			if (item == null || item.productId() == null) {
+				return null;
+			}
+			products[i] = item.productId();
+		}
+		// the recommendations do not depend on the order of the cart
+		Arrays.sort(products);
+		return new Key(userId, products);
+	}
+
+	/**
+	 * Returns the current generation, i.e. the number of invalidations.
+	 *
+	 * @return the generation
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the cached recommendations for the given key.
+	 *
+	 * @param key
+	 *            The key
+	 * @return the recommendations or null if none are cached
+	 */
+	public synchronized List<Long> get(Key key) {
+		List<Long> recommendations = entries.get(key);
+		if (recommendations == null) {
+			missCount++;
+		} else {
+			hitCount++;
+		}
+		return recommendations;
+	}
+
+	/**
+	 * Caches the given recommendations, unless the cache was invalidated since the
+	 * given generation.
+	 *
+	 * @param key
+	 *            The key
+	 * @param recommendations
+	 *            The recommendations
+	 * @param recommendationGeneration
+	 *            The generation before the recommendations were calculated
+	 * @return the cached recommendations, which must not be modified
+	 */
+	public synchronized List<Long> put(Key key, List<Long> recommendations, long recommendationGeneration) {
+		List<Long> cached = List.copyOf(recommendations);
+		if (recommendationGeneration == generation && maxEntries > 0) {
+			entries.put(key, cached);
+		}
+		return cached;
+	}
+
+	/**
+	 * Removes all cached recommendations and starts a new generation.
+	 */
+	public synchronized void invalidate() {
+		entries.clear();
+		generation++;
+		invalidationCount++;
+	}
+
+	/**
+	 * Sets the maximum number of cached recommendations and drops the least
+	 * recently used ones exceeding it.
+	 *
+	 * @param maxEntries
+	 *            The maximum number of entries, 0 disables the cache
+	 */
+	public synchronized void setMaxEntries(int maxEntries) {
+		if (maxEntries < 0) {
+			LOG.error("The supplied maximum number of cached recommendations is negative.");
+			throw new IllegalArgumentException("The supplied maximum number of cached recommendations is negative.");
+		}
+		this.maxEntries = maxEntries;
+		Iterator<Map.Entry<Key, List<Long>>> iterator = entries.entrySet().iterator();
+		while (entries.size() > maxEntries) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Returns the current size and hit rate of the cache.
+	 *
+	 * @return the statistics
+	 */
+	public synchronized RecommendationCacheStatistics getStatistics() {
+		long requests = hitCount + missCount;
+		return new RecommendationCacheStatistics(maxEntries, entries.size(), hitCount, missCount,
+				requests == 0 ? 0.0 : (double) hitCount / requests, invalidationCount);
+	}
+
+	/**
+	 * Key of the cached recommendations of a user and the sorted product IDs of
+	 * the cart.
+	 */
+	public static final class Key {
+
+		private final Long userId;
+		private final long[] products;
+		private final int hash;
+
+		private Key(Long userId, long[] products) {
+			this.userId = userId;
+			this.products = products;
+			hash = 31 * Long.hashCode(userId == null ? Long.MIN_VALUE : userId) + Arrays.hashCode(products);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return hash == key.hash && (userId == null ? key.userId == null : userId.equals(key.userId))
+					&& Arrays.equals(products, key.products);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
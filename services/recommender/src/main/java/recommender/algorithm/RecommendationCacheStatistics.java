@@ -0,0 +1,40 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+/**
+ * Statistics of the {@link RecommendationCache}.
+ *
+ * @param maxEntries
+ *            The maximum number of cached recommendations
+ * @param entries
+ *            The number of cached recommendations
+ * @param hitCount
+ *            The number of requests answered from the cache
+ * @param missCount
+ *            The number of requests calculated by the recommender
+ * @param hitRate
+ *            The ratio of hits to all requests
+ * @param invalidationCount
+ *            The number of times the cache was invalidated by a new model
+ * @author Philipp Backes
+ */
+public record RecommendationCacheStatistics(
+		int maxEntries,
+		int entries,
+		long hitCount,
+		long missCount,
+		double hitRate,
+		long invalidationCount
+) {}
@@ -16,6 +16,8 @@ package recommender.algorithm;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -61,15 +63,20 @@ public final class RecommenderSelector implements IRecommender {
 
 	private static RecommenderSelector instance;
 
-	private IRecommender fallbackrecommender;
+	/**
+	 * The recommender and fallback recommender of the current model. Both are
+	 * replaced at once by a newly trained model.
+	 */
+	private volatile Models models;
 
-	private IRecommender recommender;
+	private final RecommendationCache cache = new RecommendationCache();
 
 	/**
 	 * Private Constructor.
 	 */
 	private RecommenderSelector() {
-		fallbackrecommender = new PopularityBasedRecommender();
+		IRecommender fallbackrecommender = new PopularityBasedRecommender();
+		IRecommender recommender = null;
 		try {
 			String recommendername = (String) new InitialContext().lookup("java:comp/env/recommenderAlgorithm");
 			// if a specific algorithm is set, we can use that algorithm
@@ -101,11 +108,38 @@ public final class RecommenderSelector implements IRecommender {
 				recommender = fallbackrecommender;
 			}
 		}
+		if (recommender == null) {
+			recommender = fallbackrecommender;
+		}
+		models = new Models(recommender, fallbackrecommender);
 	}
 
+	/**
+	 * Returns the recommendations of the selected recommender, using the cached
+	 * recommendations for the same user and cart if the model did not change in
+	 * the meantime.
+	 */
 	@Override
 	public List<Long> recommendProducts(Long userid, List<OrderItem> currentItems)
 			throws UnsupportedOperationException {
+		RecommendationCache.Key key = RecommendationCache.createKey(userid, currentItems);
+		if (key == null) {
+			return recommend(userid, currentItems);
+		}
+		// read the generation first, so recommendations of a replaced model are not
+		// cached
+		long generation = cache.getGeneration();
+		List<Long> cached = cache.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		return cache.put(key, recommend(userid, currentItems), generation);
+	}
+
+	private List<Long> recommend(Long userid, List<OrderItem> currentItems) throws UnsupportedOperationException {
+		Models current = models;
+		IRecommender recommender = current.recommender();
+		IRecommender fallbackrecommender = current.fallback();
 		try {
 			return recommender.recommendProducts(userid, currentItems);
 		} catch (UseFallBackException e) {
@@ -127,6 +161,13 @@ public final class RecommenderSelector implements IRecommender {
 		}
 	}
 
+	/**
+	 * @return the cache of recommendations
+	 */
+	public RecommendationCache getCache() {
+		return cache;
+	}
+
 	/**
 	 * Returns the instance of this Singleton or creates a new one, if this is the
 	 * first call of this method.
@@ -140,17 +181,140 @@ public final class RecommenderSelector implements IRecommender {
 		return instance;
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * recommender.IRecommender#train(java.util.List,
-	 * java.util.List)
+	/**
+	 * Trains new instances of the recommender and fallback recommender, while the
+	 * current ones keep serving recommendations. Both are replaced at once, after
+	 * the training has finished.
 	 */
 	@Override
-	public void train(List<OrderItem> orderItems, List<Order> orders) {
-		recommender.train(orderItems, orders);
-		fallbackrecommender.train(orderItems, orders);
+	public synchronized void train(List<OrderItem> orderItems, List<Order> orders) {
+		train(recommender -> recommender.train(orderItems, orders));
+	}
+
+	/**
+	 * Trains new instances of the recommender and fallback recommender with the
+	 * given item sets of all users, see {@link AbstractRecommender#train(Map)}, and
+	 * replaces the current ones at once like {@link #train(List, List)}.
+	 *
+	 * @param userItemSets
+	 *            A map assigning each user-ID all its OrderItemSets
+	 */
+	public synchronized void train(Map<Long, Set<OrderItemSet>> userItemSets) {
+		train(recommender -> {
+			if (!(recommender instanceof AbstractRecommender)) {
+				throw new UnsupportedOperationException(
+						recommender.getClass().getName() + " can not be trained with item sets.");
+			}
+			((AbstractRecommender) recommender).train(userItemSets);
+		});
+	}
+
+	private void train(Consumer<IRecommender> training) {
+		Models current = models;
+		IRecommender fallbackrecommender = new PopularityBasedRecommender();
+		training.accept(fallbackrecommender);
+		IRecommender recommender = fallbackrecommender;
+		if (current.recommender() != current.fallback()) {
+			try {
+				recommender = current.recommender().getClass().getDeclaredConstructor().newInstance();
+				training.accept(recommender);
+			} catch (ReflectiveOperationException e) {
+				LOG.error(e.getMessage());
+				LOG.warn("Could not create a new instance of " + current.recommender().getClass().getName()
+						+ ". Using fallback.");
+				recommender = fallbackrecommender;
+			}
+		}
+		models = new Models(recommender, fallbackrecommender);
+		// invalidate after the swap, recommendations of the old model are not cached
+		// anymore
+		cache.invalidate();
+	}
+
+	/**
+	 * Updates the current recommender and fallback recommender with the given new
+	 * order items, see {@link AbstractRecommender#update(List, List)}. The current
+	 * ones keep serving recommendations, until both are replaced at once.
+	 *
+	 * @param orderItems
+	 *            The new {@link OrderItem}s.
+	 * @param orders
+	 *            The {@link Order}s of the new {@link OrderItem}s.
+	 * @return True if the model is up to date, false if it can not be updated and
+	 *         must be trained again
+	 */
+	public synchronized boolean update(List<OrderItem> orderItems, List<Order> orders) {
+		Models current = models;
+		if (!(current.recommender() instanceof AbstractRecommender)
+				|| !(current.fallback() instanceof AbstractRecommender)
+				|| !((AbstractRecommender) current.recommender()).isTrainingFinished()
+				|| !((AbstractRecommender) current.fallback()).isTrainingFinished()) {
+			return false;
+		}
+		IRecommender fallbackrecommender = ((AbstractRecommender) current.fallback()).update(orderItems, orders);
+		IRecommender recommender = fallbackrecommender;
+		if (current.recommender() != current.fallback()) {
+			recommender = ((AbstractRecommender) current.recommender()).update(orderItems, orders);
+		}
+		if (recommender != current.recommender() || fallbackrecommender != current.fallback()) {
+			models = new Models(recommender, fallbackrecommender);
+			cache.invalidate();
+		}
+		return true;
+	}
+
+	/**
+	 * Creates a snapshot of the current model.
+	 *
+	 * @param lastItem
+	 *            The order item with the highest ID known to the model
+	 * @param maxTime
+	 *            The maximum considered time of the orders
+	 * @return the snapshot or null if the current model is not trained
+	 */
+	public synchronized ModelSnapshot createSnapshot(OrderItem lastItem, long maxTime) {
+		Models current = models;
+		if (!(current.recommender() instanceof AbstractRecommender)
+				|| !(current.fallback() instanceof AbstractRecommender)
+				|| !((AbstractRecommender) current.recommender()).isTrainingFinished()
+				|| !((AbstractRecommender) current.fallback()).isTrainingFinished()) {
+			return null;
+		}
+		return new ModelSnapshot((AbstractRecommender) current.recommender(),
+				(AbstractRecommender) current.fallback(), lastItem, maxTime);
+	}
+
+	/**
+	 * Replaces the current model with the model of the given snapshot, if the
+	 * snapshot was taken with the same recommenders.
+	 *
+	 * @param snapshot
+	 *            The snapshot
+	 * @return True if the model was replaced
+	 */
+	public synchronized boolean restore(ModelSnapshot snapshot) {
+		Models current = models;
+		if (current.recommender().getClass() != snapshot.getRecommender().getClass()
+				|| current.fallback().getClass() != snapshot.getFallback().getClass()) {
+			LOG.warn("The snapshot of " + snapshot.getRecommender().getClass().getName() + " does not match "
+					+ current.recommender().getClass().getName() + ".");
+			return false;
+		}
+		models = new Models(snapshot.getRecommender(), snapshot.getFallback());
+		cache.invalidate();
+		return true;
+	}
+
+	/**
+	 * A trained model, i.e. the recommender and the fallback recommender trained
+	 * on the same data.
+	 * 
+	 * @param recommender
+	 *            The selected recommender
+	 * @param fallback
+	 *            The fallback recommender
+	 */
+	private record Models(IRecommender recommender, IRecommender fallback) {
 	}
 
 }
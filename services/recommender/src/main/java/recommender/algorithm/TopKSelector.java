@@ -0,0 +1,135 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Selects the IDs with the k highest scores out of all offered IDs, using a
+ * bounded min-heap in primitive arrays. IDs with the same score are ranked in
+ * the order they were offered. Scores are compared like {@link Double}s.
+ *
+ * @author Philipp Backes
+ *
+ */
+public final class TopKSelector {
+
+	private final long[] ids;
+	private final double[] scores;
+
+	/**
+	 * Position in which each ID of the heap was offered, to rank equal scores.
+	 */
+	private final long[] offers;
+	private long numberOfOffers;
+	private int size;
+
+	/**
+	 * Creates a selector for the given number of IDs.
+	 *
+	 * @param k
+	 *            The maximum number of selected IDs
+	 */
+	public TopKSelector(int k) {
+		ids = new long[k];
+		scores = new double[k];
+		offers = new long[k];
+	}
+
+	/**
+	 * Offers the given ID with the given score.
+	 *
+	 * @param id
+	 *            The ID
+	 * @param score
+	 *            The score of the ID
+	 */
+	public void offer(long id, double score) {
+		long offer = numberOfOffers++;
+		if (size < ids.length) {
+			ids[size] = id;
+			scores[size] = score;
+			offers[size] = offer;
+			siftUp(size++);
+		} else if (size > 0 && Double.compare(score, scores[0]) > 0) {
+			// the root is the worst selected ID, equal scores offered later are worse
+			ids[0] = id;
+			scores[0] = score;
+			offers[0] = offer;
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Removes all selected IDs and returns them ranked by their score.
+	 *
+	 * @return the selected IDs, the ID with the highest score first
+	 */
+	public List<Long> toList() {
+		Long[] ranking = new Long[size];
+		while (size > 0) {
+			ranking[size - 1] = ids[0];
+			size--;
+			ids[0] = ids[size];
+			scores[0] = scores[size];
+			offers[0] = offers[size];
+			siftDown(0);
+		}
+		return new ArrayList<>(Arrays.asList(ranking));
+	}
+
+	private void siftUp(int position) {
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (!isWorse(position, parent)) {
+				return;
+			}
+			swap(position, parent);
+			position = parent;
+		}
+	}
+
+	private void siftDown(int position) {
+		while (2 * position + 1 < size) {
+			int child = 2 * position + 1;
+			if (child + 1 < size && isWorse(child + 1, child)) {
+				child++;
+			}
+			if (!isWorse(child, position)) {
+				return;
+			}
+			swap(position, child);
+			position = child;
+		}
+	}
+
+	private boolean isWorse(int position, int other) {
+		int comparison = Double.compare(scores[position], scores[other]);
+		return comparison < 0 || (comparison == 0 && offers[position] > offers[other]);
+	}
+
+	private void swap(int position, int other) {
+		long id = ids[position];
+		ids[position] = ids[other];
+		ids[other] = id;
+		double score = scores[position];
+		scores[position] = scores[other];
+		scores[other] = score;
+		long offer = offers[position];
+		offers[position] = offers[other];
+		offers[other] = offer;
+	}
+}
@@ -13,6 +13,9 @@
  */
 package recommender.algorithm;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -21,6 +24,15 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -51,7 +63,7 @@ import static utilities.rest.api.API.PERSISTENCE_ENDPOINT;
 /**
  * This class organizes the communication with the other services and
  * synchronizes on startup and training.
- * Training data could be saved in the db to speed up new instance training.
+ * The trained model can be saved to a snapshot file to speed up new instance training.
  *
  * @author Johannes Grohmann
  *
@@ -73,6 +85,20 @@ public final class TrainingSynchronizer {
 	private Http3ClientStreamInboundHandler http3FrameHandler;
 	private Http3HeadersFrame http3HeadersFrame;
 
+	/**
+	 * The number of orders or order items retrieved with one request during the
+	 * training.
+	 */
+	public static final int PAGE_SIZE = 10000;
+
+	/**
+	 * The number of order item IDs below the last known order item, which are
+	 * retrieved again by each update. Items committed after items with a higher
+	 * ID, e.g. by concurrent transactions or instances allocating IDs in blocks,
+	 * are added once they show up within this window.
+	 */
+	public static final int UPDATE_RESCAN_WINDOW = 1000;
+
 	/**
 	 * This value signals that the maximum training time is not known.
 	 */
@@ -80,7 +106,63 @@ public final class TrainingSynchronizer {
 
 	private static TrainingSynchronizer instance;
 
-	private boolean isReady = false;
+	private volatile boolean isReady = false;
+
+	/**
+	 * Single thread training new models in the background, while the current
+	 * model keeps serving recommendations.
+	 */
+	private final ScheduledExecutorService trainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "recommender-training");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Signals that a training is queued but not started yet, further triggers are
+	 * merged into it.
+	 */
+	private final AtomicBoolean retrainPending = new AtomicBoolean();
+
+	/**
+	 * Signals that an update is queued but not started yet, further triggers are
+	 * merged into it.
+	 */
+	private final AtomicBoolean updatePending = new AtomicBoolean();
+
+	private ScheduledFuture<?> scheduledRetraining;
+
+	private ScheduledFuture<?> scheduledUpdates;
+
+	/**
+	 * The order item with the highest ID known to the current model, all order
+	 * items with a lower ID are known as well. Null if no model was trained yet.
+	 */
+	private OrderItem lastItem;
+
+	/**
+	 * The ID of the last known order item of the last training or snapshot. Items
+	 * up to this ID are considered known to the model.
+	 */
+	private long trainedItemId;
+
+	/**
+	 * The IDs of the order items added by updates since, within the rescan window.
+	 */
+	private final TreeSet<Long> updatedItemIds = new TreeSet<>();
+
+	/**
+	 * Minimum time in milliseconds between two snapshots written after updates.
+	 * Snapshots are always written after a training.
+	 */
+	private static final long MIN_SNAPSHOT_INTERVAL = 5 * 60 * 1000;
+
+	/**
+	 * The file the model is saved to and restored from, null to disable snapshots.
+	 */
+	private Path snapshotFile;
+
+	private long lastSnapshotTime;
 
 	/**
 	 * @return the isReady
@@ -149,6 +231,12 @@ public final class TrainingSynchronizer {
 	 */
 	private long maxTime = DEFAULT_MAX_TIME_VALUE;
 
+	/**
+	 * Signals that the maximum time was set explicitly, otherwise it is the time
+	 * of the latest order of each training.
+	 */
+	private boolean maxTimeFixed;
+
 	/**
 	 * @return the maxTime
 	 */
@@ -165,227 +253,561 @@ public final class TrainingSynchronizer {
 	}
 
 	/**
+	 * Sets the maximum considered time explicitly. It is kept by all following
+	 * trainings and updates.
+	 *
 	 * @param maxTime
 	 *            the maxTime to set
 	 */
-	public void setMaxTime(long maxTime) {
+	public synchronized void setMaxTime(long maxTime) {
 		this.maxTime = maxTime;
+		maxTimeFixed = true;
 	}
 
 	/**
-	 * Connects via REST to the database and retrieves all {@link OrderItem}s and
-	 * all {@link Order}s. Then, it triggers the training of the recommender.
+	 * @return the snapshot file or null if snapshots are disabled
+	 */
+	public Path getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	/**
+	 * @param snapshotFile
+	 *            the snapshot file to set, null disables snapshots
+	 */
+	public synchronized void setSnapshotFile(Path snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+
+	/**
+	 * Queues the initial training on the training thread. The model of the
+	 * snapshot file is restored and updated with the data added since, if
+	 * possible. Otherwise the model is trained with all data.
 	 *
-	 * @return The number of elements retrieved from the database or -1 if the
-	 *         process failed.
+	 * @return True if the initialization is queued, false if the HTTP client is
+	 *         not set up
 	 */
-	public long retrieveDataAndRetrain() {
-		setReady(false);
-		LOG.trace("Retrieving data objects from database...");
+	public boolean initializeInBackground() {
+		if (httpVersion == null) {
+			LOG.error("The HTTP client for the persistence service is not set up.");
+			return false;
+		}
+		trainer.execute(() -> {
+			try {
+				if (loadSnapshot()) {
+					retrieveChangesAndUpdate();
+				} else {
+					retrieveDataAndRetrain();
+				}
+			} catch (RuntimeException e) {
+				LOG.error("The (re)trainprocess failed: " + e.getMessage());
+				setReady(true);
+			}
+		});
+		return true;
+	}
 
-		List<OrderItem> items = new ArrayList<>();
-		List<Order> orders = new ArrayList<>();
-		// GET api/persistence/orderitems
-		String persistenceEndpointOrderItems = PERSISTENCE_ENDPOINT + "/orderitems?start=-1&max=-1";
-		// GET api/persistence/orders
-		String persistenceEndpointOrders = PERSISTENCE_ENDPOINT + "/orders?start=-1&max=-1";
-		// Switch between http versions
-		// Retrieve order items and orders
-		switch (httpVersion) {
-			case "HTTP/1.1":
+	/**
+	 * Restores the model of the snapshot file.
+	 *
+	 * @return True if the model was restored, false if there is no valid snapshot
+	 */
+	public synchronized boolean loadSnapshot() {
+		if (snapshotFile == null || !Files.isRegularFile(snapshotFile)) {
+			return false;
+		}
+		long start = System.currentTimeMillis();
+		try {
+			ModelSnapshot snapshot = ModelSnapshot.read(snapshotFile);
+			if (!RecommenderSelector.getInstance().restore(snapshot)) {
+				return false;
+			}
+			lastItem = snapshot.getLastItem();
+			resetKnownItems();
+			if (!maxTimeFixed) {
+				maxTime = snapshot.getMaxTime();
+			}
+		} catch (IOException e) {
+			LOG.warn("The snapshot " + snapshotFile + " could not be read: " + e.getMessage());
+			return false;
+		}
+		lastSnapshotTime = System.currentTimeMillis();
+		LOG.info("The snapshot " + snapshotFile + " was restored. It took " + (System.currentTimeMillis() - start)
+				+ "ms.");
+		setReady(true);
+		return true;
+	}
+
+	/**
+	 * Writes the current model to the snapshot file, if snapshots are enabled.
+	 */
+	private void writeSnapshot() {
+		if (snapshotFile == null || lastItem == null) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		try {
+			ModelSnapshot snapshot = RecommenderSelector.getInstance().createSnapshot(lastItem, maxTime);
+			if (snapshot == null) {
+				return;
+			}
+			snapshot.write(snapshotFile);
+		} catch (IOException | RuntimeException e) {
+			LOG.error("The snapshot " + snapshotFile + " could not be written: " + e.getMessage());
+			return;
+		}
+		lastSnapshotTime = System.currentTimeMillis();
+		LOG.info("The snapshot " + snapshotFile + " was written. It took " + (lastSnapshotTime - start) + "ms.");
+	}
+
+	/**
+	 * Queues a call of {@link #retrieveDataAndRetrain()} on the training thread.
+	 * Triggers arriving before the queued training started are merged into it.
+	 *
+	 * @return True if a training is queued, false if the HTTP client is not set up
+	 */
+	public boolean retrainInBackground() {
+		if (httpVersion == null) {
+			LOG.error("The HTTP client for the persistence service is not set up.");
+			return false;
+		}
+		if (retrainPending.compareAndSet(false, true)) {
+			trainer.execute(() -> {
+				retrainPending.set(false);
 				try {
-					request.setUri(persistenceEndpointOrderItems);
-					http1Client = new Http1Client(gatewayHost, persistencePort, request);
-					http1Handler = new Http1ClientHandler();
-					http1Client.sendRequest(http1Handler);
-					if (!http1Handler.jsonContent.isEmpty()) {
-						items = mapper.readValue(
-								http1Handler.jsonContent,
-								new TypeReference<List<OrderItem>>() {}
-						);
-						long noItems = items.size();
-						LOG.trace("Retrieved " + noItems + " orderItems, starting retrieving of orders now.");
-					}
-				} catch (Exception e) {
-					// Set ready anyway to avoid deadlocks
+					retrieveDataAndRetrain();
+				} catch (RuntimeException e) {
+					LOG.error("The (re)trainprocess failed: " + e.getMessage());
 					setReady(true);
-					LOG.error(e.getMessage());
-					return -1;
 				}
+			});
+		}
+		return true;
+	}
+
+	/**
+	 * Retrains the recommender periodically in the background.
+	 *
+	 * @param interval
+	 *            The time between the end of one and the start of the next
+	 *            training in seconds, 0 stops the periodic training
+	 */
+	public synchronized void scheduleRetraining(long interval) {
+		if (interval < 0) {
+			LOG.error("The supplied retraining interval is negative.");
+			throw new IllegalArgumentException("The supplied retraining interval is negative.");
+		}
+		if (scheduledRetraining != null) {
+			scheduledRetraining.cancel(false);
+			scheduledRetraining = null;
+		}
+		if (interval > 0) {
+			// the task runs on the training thread itself, so it never overlaps a training
+			scheduledRetraining = trainer.scheduleWithFixedDelay(this::retrainInBackground, interval, interval,
+					TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Queues a call of {@link #retrieveChangesAndUpdate()} on the training thread.
+	 * Triggers arriving before the queued update started are merged into it.
+	 *
+	 * @return True if an update is queued, false if the HTTP client is not set up
+	 */
+	public boolean updateInBackground() {
+		if (httpVersion == null) {
+			LOG.error("The HTTP client for the persistence service is not set up.");
+			return false;
+		}
+		if (updatePending.compareAndSet(false, true)) {
+			trainer.execute(() -> {
+				updatePending.set(false);
 				try {
-					request.setUri(persistenceEndpointOrders);
-					http1Client = new Http1Client(gatewayHost, persistencePort, request);
-					http1Handler = new Http1ClientHandler();
-					http1Client.sendRequest(http1Handler);
-					if (!http1Handler.jsonContent.isEmpty()) {
-						orders = mapper.readValue(
-								http1Handler.jsonContent,
-								new TypeReference<List<Order>>() {}
-						);
-						long noOrders = orders.size();
-						LOG.trace("Retrieved " + noOrders + " orders, starting training now.");
-					}
-				} catch (Exception e) {
-					// Set ready anyway to avoid deadlocks
+					retrieveChangesAndUpdate();
+				} catch (RuntimeException e) {
+					LOG.error("The update process failed: " + e.getMessage());
 					setReady(true);
-					LOG.error(e.getMessage());
-					return -1;
 				}
-				break;
-			case "HTTP/2":
-				try {
-					http2HeadersFrame = new DefaultHttp2HeadersFrame(
-							Http2Response.getHeader(
-									gatewayHost,
-									persistenceEndpointOrderItems
-							),
-							true
-					);
-					http2Client = new Http2Client(gatewayHost, persistencePort, http2HeadersFrame, null);
-					http2FrameHandler = new Http2ClientStreamFrameHandler();
-					http2Client.sendRequest(http2FrameHandler);
-					if (!http2FrameHandler.jsonContent.isEmpty()) {
-						items = mapper.readValue(
-								http2FrameHandler.jsonContent,
-								new TypeReference<List<OrderItem>>() {}
-						);
-						long noItems = items.size();
-						LOG.trace("Retrieved " + noItems + " orderItems, starting retrieving of orders now.");
+			});
+		}
+		return true;
+	}
+
+	/**
+	 * Updates the recommender periodically in the background with the order items
+	 * added since the last training or update.
+	 *
+	 * @param interval
+	 *            The time between the end of one and the start of the next
+	 *            update in seconds, 0 stops the periodic update
+	 */
+	public synchronized void scheduleUpdates(long interval) {
+		if (interval < 0) {
+			LOG.error("The supplied update interval is negative.");
+			throw new IllegalArgumentException("The supplied update interval is negative.");
+		}
+		if (scheduledUpdates != null) {
+			scheduledUpdates.cancel(false);
+			scheduledUpdates = null;
+		}
+		if (interval > 0) {
+			// the task runs on the training thread itself, so it never overlaps a training
+			scheduledUpdates = trainer.scheduleWithFixedDelay(this::updateInBackground, interval, interval,
+					TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Connects via REST to the database and retrieves all {@link OrderItem}s and
+	 * all {@link Order}s. Then, it triggers the training of a new recommender
+	 * model, which replaces the current model once it is finished.
+	 *
+	 * @return The number of elements retrieved from the database or -1 if the
+	 *         process failed.
+	 */
+	public synchronized long retrieveDataAndRetrain() {
+		long start = System.currentTimeMillis();
+		setReady(false);
+		LOG.trace("Retrieving data objects from database...");
+
+		OrderItemSetCollector data = new OrderItemSetCollector();
+		long retrieved;
+		try {
+			// GET api/persistence/orders, page by page
+			retrieved = retrievePages(
+					PERSISTENCE_ENDPOINT + "/orders",
+					new TypeReference<List<Order>>() {},
+					Order::id,
+					page -> {
+						for (Order order : page) {
+							data.addOrder(order.id(), order.userId(), toMillis(order.time()));
+						}
 					}
-				} catch (Exception e) {
-					// Set ready anyway to avoid deadlocks
-					setReady(true);
-					LOG.error(e.getMessage());
-					return -1;
-				}
-				try {
-					http2HeadersFrame = new DefaultHttp2HeadersFrame(
-							Http2Response.getHeader(
-									gatewayHost,
-									persistenceEndpointOrders
-							),
-							true
-					);
-					http2Client = new Http2Client(gatewayHost, persistencePort, http2HeadersFrame, null);
-					http2FrameHandler = new Http2ClientStreamFrameHandler();
-					http2Client.sendRequest(http2FrameHandler);
-					if (!http2FrameHandler.jsonContent.isEmpty()) {
-						orders = mapper.readValue(
-								http2FrameHandler.jsonContent,
-								new TypeReference<List<Order>>() {}
-						);
-						long noOrders = orders.size();
-						LOG.trace("Retrieved " + noOrders + " orders, starting training now.");
+			);
+			LOG.trace("Retrieved " + retrieved + " orders, starting retrieving of orderItems now.");
+			if (!maxTimeFixed) {
+				// every training considers all orders placed until now
+				maxTime = data.getMaxOrderTime();
+			}
+			// ignore newer entries
+			data.setMaxTime(maxTime);
+			// GET api/persistence/orderitems, page by page
+			retrieved += retrievePages(
+					PERSISTENCE_ENDPOINT + "/orderitems",
+					new TypeReference<List<OrderItem>>() {},
+					OrderItem::id,
+					data::addOrderItems
+			);
+			LOG.trace("Retrieved " + data.getNumberOfOrderItems() + " used orderItems, starting training now.");
+		} catch (Exception e) {
+			// Set ready anyway to avoid deadlocks, the current model is kept as the data
+			// is incomplete
+			setReady(true);
+			LOG.error("The training data could not be retrieved, the model is not retrained: " + e.getMessage());
+			return -1;
+		}
+
+		// train instance
+		RecommenderSelector.getInstance().train(data.getUserItemSets());
+		// all items up to the first ignored one are known to the model now
+		lastItem = data.getLastItem();
+		resetKnownItems();
+		LOG.info("The (re)train was succesfully done. It took " + (System.currentTimeMillis() - start) + "ms and "
+				+ retrieved + " of Orderitems and Orders were retrieved from the database.");
+		setReady(true);
+		writeSnapshot();
+		return retrieved;
+	}
+
+	/**
+	 * Connects via REST to the database and retrieves the {@link OrderItem}s added
+	 * since the last training or update and their {@link Order}s. Then, it
+	 * triggers the update of the recommender model, which replaces the current
+	 * model once it is finished. The last {@link #UPDATE_RESCAN_WINDOW} IDs before
+	 * the last known order item are retrieved again, to add items committed out of
+	 * the order of their IDs. Falls back to {@link #retrieveDataAndRetrain()}, if
+	 * no model was trained yet, or the last known order item changed, e.g.
+	 * because the database was generated again. Orders are not filtered by their
+	 * time, as the max time moves along with the updates. No updates are made if
+	 * the max time was set explicitly.
+	 *
+	 * @return The number of elements retrieved from the database or -1 if the
+	 *         process failed.
+	 */
+	public synchronized long retrieveChangesAndUpdate() {
+		if (lastItem == null) {
+			LOG.info("No order item is known to the model, retraining instead of updating.");
+			return retrieveDataAndRetrain();
+		}
+		if (maxTimeFixed) {
+			LOG.trace("The max time was set explicitly, newer orders are not added.");
+			return 0;
+		}
+		long start = System.currentTimeMillis();
+		List<OrderItem> items = new ArrayList<>();
+		List<Order> orders = new ArrayList<>();
+		try {
+			// GET api/persistence/orderitems, page by page, starting within the rescan
+			// window to find late items and the last known item to detect a changed
+			// database. Failed requests throw, so a missing item means the data changed
+			OrderItem[] knownItem = new OrderItem[1];
+			retrievePages(
+					PERSISTENCE_ENDPOINT + "/orderitems",
+					new TypeReference<List<OrderItem>>() {},
+					OrderItem::id,
+					Math.max(-1, lastItem.id() - UPDATE_RESCAN_WINDOW - 1),
+					page -> {
+						for (OrderItem item : page) {
+							if (item.id().equals(lastItem.id())) {
+								knownItem[0] = item;
+							} else if (item.id() > lastItem.id()
+									|| (item.id() > trainedItemId && !updatedItemIds.contains(item.id()))) {
+								items.add(item);
+							}
+						}
 					}
-				} catch (Exception e) {
-					// Set ready anyway to avoid deadlocks
-					setReady(true);
-					LOG.error(e.getMessage());
-					return -1;
+			);
+			if (!lastItem.equals(knownItem[0])) {
+				LOG.info("The last known order item changed, retraining instead of updating.");
+				return retrieveDataAndRetrain();
+			}
+			if (items.isEmpty()) {
+				return 0;
+			}
+			// orders up to the order of the last known item are retrieved one by one,
+			// as items are rarely added to them later on
+			long firstOrderId = Long.MAX_VALUE;
+			Set<Long> olderOrderIds = new TreeSet<>();
+			for (OrderItem item : items) {
+				if (item.orderId() == null) {
+					continue;
 				}
-				break;
-			case "HTTP/3":
-				try {
-					http3HeadersFrame = new DefaultHttp3HeadersFrame(
-							Http3Response.getHeader(
-									gatewayHost + ":" + persistencePort,
-									persistenceEndpointOrderItems
-							)
-					);
-					http3Client = new Http3Client(gatewayHost, persistencePort, http3HeadersFrame, null);
-					http3FrameHandler = new Http3ClientStreamInboundHandler();
-					http3Client.sendRequest(http3FrameHandler);
-					if (!http3FrameHandler.jsonContent.isEmpty()) {
-						items = mapper.readValue(
-								http3FrameHandler.jsonContent,
-								new TypeReference<List<OrderItem>>() {}
-						);
-						long noItems = items.size();
-						LOG.trace("Retrieved " + noItems + " orderItems, starting retrieving of orders now.");
-					} else {
-						LOG.error("RECOMMENDER: PERSISTENCE did not respond to " + persistenceEndpointOrderItems + " request!");
-					}
-				} catch (Exception e) {
-					// Set ready anyway to avoid deadlocks
-					setReady(true);
-					LOG.error(e.getMessage());
-					return -1;
+				if (lastItem.orderId() != null && item.orderId() <= lastItem.orderId()) {
+					olderOrderIds.add(item.orderId());
+				} else {
+					firstOrderId = Math.min(firstOrderId, item.orderId());
 				}
-				try {
-					http3HeadersFrame = new DefaultHttp3HeadersFrame(
-							Http3Response.getHeader(
-									gatewayHost + ":" + persistencePort,
-									persistenceEndpointOrders
-							)
-					);
-					http3Client = new Http3Client(gatewayHost, persistencePort, http3HeadersFrame, null);
-					http3FrameHandler = new Http3ClientStreamInboundHandler();
-					http3Client.sendRequest(http3FrameHandler);
-					if (!http3FrameHandler.jsonContent.isEmpty()) {
-						orders = mapper.readValue(
-								http3FrameHandler.jsonContent,
-								new TypeReference<List<Order>>() {}
-						);
-						long noOrders = orders.size();
-						LOG.trace("Retrieved " + noOrders + " orders, starting training now.");
-					} else {
-						LOG.error("RECOMMENDER: PERSISTENCE did not respond to " + persistenceEndpointOrders + " request!");
-					}
-				} catch (Exception e) {
-					// Set ready anyway to avoid deadlocks
-					setReady(true);
-					LOG.error(e.getMessage());
-					return -1;
+			}
+			if (firstOrderId != Long.MAX_VALUE) {
+				// GET api/persistence/orders, page by page
+				retrievePages(
+						PERSISTENCE_ENDPOINT + "/orders",
+						new TypeReference<List<Order>>() {},
+						Order::id,
+						firstOrderId - 1,
+						orders::addAll
+				);
+			}
+			for (Long orderId : olderOrderIds) {
+				Order order = retrieve(
+						PERSISTENCE_ENDPOINT + "/orders?id=" + orderId,
+						new TypeReference<Order>() {}
+				);
+				if (order != null) {
+					orders.add(order);
 				}
-				break;
-			default:
-				break;
+			}
+		} catch (Exception e) {
+			// the current model is kept, the next update retries
+			LOG.error("The changes could not be retrieved, the model is not updated: " + e.getMessage());
+			return -1;
+		}
+		for (Order order : orders) {
+			maxTime = Math.max(maxTime, toMillis(order.time()));
+		}
+		if (!RecommenderSelector.getInstance().update(items, orders)) {
+			LOG.info("The recommender can not be updated, retraining instead of updating.");
+			return retrieveDataAndRetrain();
+		}
+		// the items are ordered by their ID, late items come first
+		OrderItem newestItem = items.get(items.size() - 1);
+		if (newestItem.id() > lastItem.id()) {
+			lastItem = newestItem;
+		}
+		for (OrderItem item : items) {
+			updatedItemIds.add(item.id());
+		}
+		// IDs below the rescan window are not retrieved again
+		updatedItemIds.headSet(lastItem.id() - UPDATE_RESCAN_WINDOW).clear();
+		LOG.info("The update was succesfully done. It took " + (System.currentTimeMillis() - start) + "ms and "
+				+ (items.size() + orders.size()) + " of new Orderitems and Orders were retrieved from the database.");
+		if (System.currentTimeMillis() - lastSnapshotTime >= MIN_SNAPSHOT_INTERVAL) {
+			writeSnapshot();
 		}
-
-		// filter lists
-		filterLists(items, orders);
-		// train instance
-		RecommenderSelector.getInstance().train(items, orders);
-		LOG.trace("Finished training, ready for recommendation.");
-		setReady(true);
 		return items.size() + orders.size();
 	}
 
-	private void filterLists(List<OrderItem> orderItems, List<Order> orders) {
-		if (maxTime == Long.MIN_VALUE) {
-			// we are the only known service
-			// therefore we find max and set it
-			for (Order or : orders) {
-				maxTime = Math.max(maxTime, toMillis(or.time()));
+	/**
+	 * Considers all order items up to the last known one as known to the model,
+	 * after a training or restoring a snapshot.
+	 */
+	private void resetKnownItems() {
+		trainedItemId = lastItem == null ? -1 : lastItem.id();
+		updatedItemIds.clear();
+	}
+
+	/**
+	 * Retrieves all entities of the given persistence endpoint in pages of
+	 * {@link #PAGE_SIZE} entities, using the ID of the last entity of a page as
+	 * start of the next page. Only one page is held in memory at a time.
+	 *
+	 * @see #retrievePages(String, TypeReference, ToLongFunction, long, Consumer)
+	 *
+	 * @param endpoint
+	 *            The endpoint without query
+	 * @param type
+	 *            The type of the list
+	 * @param id
+	 *            The ID of an entity
+	 * @param consumer
+	 *            Receives each page, in the order of the IDs
+	 * @return the number of retrieved entities
+	 * @throws Exception
+	 *             if a request or the deserialization failed
+	 */
+	private <T> long retrievePages(String endpoint, TypeReference<List<T>> type, ToLongFunction<T> id,
+			Consumer<List<T>> consumer) throws Exception {
+		return retrievePages(endpoint, type, id, -1, consumer);
+	}
+
+	/**
+	 * Retrieves the entities of the given persistence endpoint with an ID after
+	 * the given one in pages of {@link #PAGE_SIZE} entities. Only an empty or a
+	 * short page ends the retrieval, a failed request aborts it.
+	 *
+	 * @param endpoint
+	 *            The endpoint without query
+	 * @param type
+	 *            The type of the list
+	 * @param id
+	 *            The ID of an entity
+	 * @param afterId
+	 *            Only entities with a higher ID are retrieved
+	 * @param consumer
+	 *            Receives each page, in the order of the IDs
+	 * @return the number of retrieved entities
+	 * @throws IOException
+	 *             if a page is missing or the endpoint ignored the ID
+	 * @throws Exception
+	 *             if a request or the deserialization failed
+	 */
+	private <T> long retrievePages(String endpoint, TypeReference<List<T>> type, ToLongFunction<T> id,
+			long afterId, Consumer<List<T>> consumer) throws Exception {
+		long retrieved = 0;
+		while (true) {
+			List<T> page = retrieveList(endpoint + "?afterid=" + afterId + "&max=" + PAGE_SIZE, type);
+			if (page.isEmpty()) {
+				return retrieved;
+			}
+			int size = page.size();
+			// protects against endpoints ignoring the ID, which would never end
+			long previousId = afterId;
+			page.removeIf(entity -> id.applyAsLong(entity) <= previousId);
+			if (page.isEmpty()) {
+				throw new IOException(endpoint + " returned no entities after the ID " + afterId + ".");
+			}
+			consumer.accept(page);
+			retrieved += page.size();
+			if (size < PAGE_SIZE) {
+				return retrieved;
+			}
+			for (T entity : page) {
+				afterId = Math.max(afterId, id.applyAsLong(entity));
 			}
 		}
-		filterForMaxTimeStamp(orderItems, orders);
 	}
 
-	private void filterForMaxTimeStamp(List<OrderItem> orderItems, List<Order> orders) {
-		// filter orderItems and orders and ignore newer entries.
-		List<Order> remove = new ArrayList<>();
-		for (Order or : orders) {
-			if (toMillis(or.time()) > maxTime) {
-				remove.add(or);
-			}
+	/**
+	 * Retrieves the JSON list of the given persistence endpoint.
+	 *
+	 * @param endpoint
+	 *            The endpoint with its query
+	 * @param type
+	 *            The type of the list
+	 * @return the list
+	 * @throws IOException
+	 *             if the persistence service did not respond or the list was not
+	 *             found
+	 * @throws Exception
+	 *             if the request or the deserialization failed
+	 */
+	private <T> List<T> retrieveList(String endpoint, TypeReference<List<T>> type) throws Exception {
+		List<T> list = retrieve(endpoint, type);
+		if (list == null) {
+			throw new IOException("The persistence service did not find " + endpoint + ".");
 		}
-		orders.removeAll(remove);
+		return list;
+	}
 
-		List<OrderItem> removeItems = new ArrayList<>();
-		for (OrderItem orderItem : orderItems) {
-			boolean contained = false;
-			for (Order or : orders) {
-				if (or.id().equals(orderItem.orderId())) {
-					contained = true;
-					break;
-				}
-			}
-			if (!contained) {
-				removeItems.add(orderItem);
-			}
+	/**
+	 * Retrieves the JSON content of the given persistence endpoint.
+	 *
+	 * @param endpoint
+	 *            The endpoint with its query
+	 * @param type
+	 *            The type of the content
+	 * @return the content or null if the entity was not found
+	 * @throws IOException
+	 *             if the persistence service did not respond or responded with an
+	 *             error
+	 * @throws Exception
+	 *             if the request or the deserialization failed
+	 */
+	private <T> T retrieve(String endpoint, TypeReference<T> type) throws Exception {
+		String jsonContent = "";
+		HttpResponseStatus status = null;
+		// Switch between http versions
+		switch (httpVersion) {
+			case "HTTP/1.1":
+				request.setUri(endpoint);
+				http1Client = new Http1Client(gatewayHost, persistencePort, request);
+				http1Handler = new Http1ClientHandler();
+				http1Client.sendRequest(http1Handler);
+				jsonContent = http1Handler.jsonContent;
+				status = http1Handler.status;
+				break;
+			case "HTTP/2":
+				http2HeadersFrame = new DefaultHttp2HeadersFrame(
+						Http2Response.getHeader(
+								gatewayHost,
+								endpoint
+						),
+						true
+				);
+				http2Client = new Http2Client(gatewayHost, persistencePort, http2HeadersFrame, null);
+				http2FrameHandler = new Http2ClientStreamFrameHandler();
+				http2Client.sendRequest(http2FrameHandler);
+				jsonContent = http2FrameHandler.jsonContent;
+				status = http2FrameHandler.status;
+				break;
+			case "HTTP/3":
+				http3HeadersFrame = new DefaultHttp3HeadersFrame(
+						Http3Response.getHeader(
+								gatewayHost + ":" + persistencePort,
+								endpoint
+						)
+				);
+				http3Client = new Http3Client(gatewayHost, persistencePort, http3HeadersFrame, null);
+				http3FrameHandler = new Http3ClientStreamInboundHandler();
+				http3Client.sendRequest(http3FrameHandler);
+				jsonContent = http3FrameHandler.jsonContent;
+				status = http3FrameHandler.status;
+				break;
+			default:
+				break;
+		}
+		if (HttpResponseStatus.NOT_FOUND.equals(status)) {
+			return null;
+		}
+		// the clients replace the content of a not modified response with the cached one
+		if (!HttpResponseStatus.OK.equals(status) && !HttpResponseStatus.NOT_MODIFIED.equals(status)) {
+			throw new IOException("The persistence service " + (status == null ? "did not respond" : "responded with "
+					+ status) + " to " + endpoint + ".");
+		}
+		if (jsonContent.isEmpty()) {
+			throw new IOException("The persistence service sent no content for " + endpoint + ".");
 		}
-		orderItems.removeAll(removeItems);
+		return mapper.readValue(jsonContent, type);
 	}
 
 	private long toMillis(String date) {
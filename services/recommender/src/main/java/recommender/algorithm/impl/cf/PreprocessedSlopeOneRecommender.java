@@ -13,8 +13,12 @@
  */
 package recommender.algorithm.impl.cf;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import recommender.algorithm.AbstractRecommender;
 
 /**
  * Recommender based on item-based collaborative filtering with the slope one
@@ -26,15 +30,15 @@ import java.util.Map;
 public class PreprocessedSlopeOneRecommender extends SlopeOneRecommender {
 
 	/**
-	 * Represents a matrix, assigning each user a calculated score for each item.
-	 * This score can be used to recommend items.
+	 * Represents a matrix, assigning each user index a calculated score for each
+	 * product index. This score can be used to recommend items.
 	 */
-	private Map<Long, Map<Long, Double>> predictedRatings;
+	private double[][] predictedRatings;
 
 	/**
 	 * @return the predictedRatings
 	 */
-	public Map<Long, Map<Long, Double>> getPredictedRatings() {
+	public double[][] getPredictedRatings() {
 		return predictedRatings;
 	}
 
@@ -42,26 +46,48 @@ public class PreprocessedSlopeOneRecommender extends SlopeOneRecommender {
 	 * @param predictedRatings
 	 *            the predictedRatings to set
 	 */
-	public void setPredictedRatings(Map<Long, Map<Long, Double>> predictedRatings) {
+	public void setPredictedRatings(double[][] predictedRatings) {
 		this.predictedRatings = predictedRatings;
 	}
 
 	@Override
-	protected Map<Long, Double> getUserVector(Long userid) {
+	protected double[] getUserVector(int user) {
 		// improve performance by preprocessing and storing userids
-		return predictedRatings.get(userid);
+		return predictedRatings[user];
 	}
 
 	@Override
 	protected void executePreprocessing() {
 		super.executePreprocessing();
-		predictedRatings = new HashMap<>();
+		predictAllUsers();
+	}
+
+	/**
+	 * The changed differences influence the predictions of all users rating one of
+	 * the changed items, and product indices might have changed, so all users are
+	 * predicted again.
+	 */
+	@Override
+	protected void executeUpdate(AbstractRecommender previous, List<OrderChange> changes) {
+		super.executeUpdate(previous, changes);
+		predictAllUsers();
+	}
+
+	/**
+	 * The predictions are not written, as they are larger than the differences
+	 * they are calculated from.
+	 */
+	@Override
+	protected void readPreprocessedData(DataInput in) throws IOException {
+		super.readPreprocessedData(in);
+		predictAllUsers();
+	}
+
+	private void predictAllUsers() {
+		double[][] pred = new double[getRatings().getUsers().size()][];
 		// Moving the matrix calculation to the preprocessing to optimize runtime
-		// behavior
-		for (Long userid : getUserBuyingMatrix().keySet()) {
-			// for all known users
-			Map<Long, Double> pred = super.getUserVector(userid);
-			predictedRatings.put(userid, pred);
-		}
+		// behavior, the users are independent and predicted in parallel
+		IntStream.range(0, pred.length).parallel().forEach(user -> pred[user] = super.getUserVector(user));
+		predictedRatings = pred;
 	}
 }
@@ -13,12 +13,20 @@
  */
 package recommender.algorithm.impl.cf;
 
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import recommender.algorithm.AbstractRecommender;
+import recommender.algorithm.PairMatrix;
+import recommender.algorithm.RatingMatrix;
 import recommender.algorithm.impl.UseFallBackException;
 
 /**
@@ -31,45 +39,47 @@ import recommender.algorithm.impl.UseFallBackException;
 public class SlopeOneRecommender extends AbstractRecommender {
 
 	/**
-	 * Represents a matrix, assigning each itemid an average difference (in
-	 * rating/buying) to any other itemid.
+	 * Minimum number of rating combinations before the matrices are calculated in
+	 * parallel.
 	 */
-	private Map<Long, Map<Long, Double>> differences = new HashMap<>();
+	static final long MIN_PARALLEL_WORK = 1 << 16;
 
 	/**
-	 * Represents a matrix, counting the frequencies of each combination (i.e. users
-	 * rating/buying both items).
+	 * Represents a matrix over the product indices of the rating matrix, counting
+	 * the frequencies of each combination (i.e. users rating/buying both items)
+	 * and summing up the differences (in rating/buying) of the first to the other
+	 * item. Sums instead of averages are stored, so changed users can be removed
+	 * and added again on an update.
 	 */
-	private Map<Long, Map<Long, Integer>> frequencies = new HashMap<>();
+	private PairMatrix differences = PairMatrix.EMPTY;
 
 	/**
-	 * @return the differences
-	 */
-	public Map<Long, Map<Long, Double>> getDifferences() {
-		return differences;
-	}
-
-	/**
-	 * @param differences
-	 *            the differences to set
-	 */
-	public void setDifferences(Map<Long, Map<Long, Double>> differences) {
-		this.differences = differences;
-	}
-
-	/**
-	 * @return the frequencies
+	 * Returns the average difference in rating/buying of two items.
+	 * 
+	 * @param item
+	 *            The product index of the first item
+	 * @param otherItem
+	 *            The product index of the other item
+	 * @return the average difference or {@link Double#NaN} if no user bought both
+	 *         items
 	 */
-	public Map<Long, Map<Long, Integer>> getFrequencies() {
-		return frequencies;
+	public double getDifference(int item, int otherItem) {
+		int entry = differences.findEntry(item, otherItem);
+		return entry < 0 ? Double.NaN : differences.getSum(entry) / differences.getCount(entry);
 	}
 
 	/**
-	 * @param frequencies
-	 *            the frequencies to set
+	 * Returns the number of users rating/buying both items.
+	 * 
+	 * @param item
+	 *            The product index of the first item
+	 * @param otherItem
+	 *            The product index of the other item
+	 * @return the frequency of the combination
 	 */
-	public void setFrequencies(Map<Long, Map<Long, Integer>> frequencies) {
-		this.frequencies = frequencies;
+	public int getFrequency(int item, int otherItem) {
+		int entry = differences.findEntry(item, otherItem);
+		return entry < 0 ? 0 : differences.getCount(entry);
 	}
 
 	/*
@@ -85,11 +95,12 @@ public class SlopeOneRecommender extends AbstractRecommender {
 			throw new UseFallBackException(this.getClass().getName()
 					+ " does not support null userids. Use a pseudouser or switch to another approach.");
 		}
-		if (getUserBuyingMatrix().get(userid) == null) {
+		int user = getRatings().getUsers().indexOf(userid);
+		if (user < 0) {
 			// this user has not bought anything yet, so we do not have any information
 			throw new UseFallBackException("No user information.");
 		}
-		Map<Long, Double> importances = getUserVector(userid);
+		double[] importances = getUserVector(user);
 		return filterRecommendations(importances, currentItems);
 
 	}
@@ -98,105 +109,270 @@ public class SlopeOneRecommender extends AbstractRecommender {
 	 * Generates one row of the matrix for the given user. (Predicts the user score
 	 * for each product ID.)
 	 * 
-	 * @param userid
-	 *            The user to predict for
-	 * @return A Map assigning each product ID a (predicted) score (for the given
-	 *         user)
+	 * @param user
+	 *            The user index to predict for
+	 * @return An array assigning each product index a (predicted) score (for the
+	 *         given user)
 	 */
-	protected Map<Long, Double> getUserVector(Long userid) {
+	protected double[] getUserVector(int user) {
 		// This could be further optimized by moving this part into the pre-processing
 		// step, but we want to have nicer performance behavior
-		HashMap<Long, Double> importances = new HashMap<>();
-		for (Long productid : getTotalProducts()) {
-			try {
-				importances.put(productid, calculateScoreForItem(userid, productid));
-			} catch (NullPointerException e) {
-				// this exception can be thrown if we have not enough information
-				importances.put(productid, -1.0);
+		RatingMatrix ratings = getRatings();
+		int numberOfProducts = ratings.getProducts().size();
+		double[] importances = new double[numberOfProducts];
+		double[] cumWeights = new double[numberOfProducts];
+		int[] knownItems = new int[numberOfProducts];
+		int rowStart = ratings.getRowStart(user);
+		int rowEnd = ratings.getRowEnd(user);
+		// calculate the (expected) rating for all items based on each item i of the
+		// user at once
+		for (int entry = rowStart; entry < rowEnd; entry++) {
+			int item = ratings.getRowProduct(entry);
+			double rating = ratings.getRowRating(entry);
+			for (int pair = differences.getRowStart(item); pair < differences.getRowEnd(item); pair++) {
+				int otherItem = differences.getProduct(pair);
+				int frequency = differences.getCount(pair);
+				importances[otherItem] += rating * frequency;
+				// the average difference times the frequency is the sum of the differences
+				importances[otherItem] += differences.getSum(pair);
+				cumWeights[otherItem] += frequency;
+				knownItems[otherItem]++;
 			}
 		}
-		return importances;
-	}
-
-	private double calculateScoreForItem(long userid, long itemid) {
-		double score = 0;
-		double cumWeights = 0;
-		for (Entry<Long, Double> useritem : getUserBuyingMatrix().get(userid).entrySet()) {
-			// if we find that the user actually bought this item before, we can return this
-			// value
-			// (considering it is his rating, we can directly return this rating)
-			if (useritem.getKey() == itemid) {
-				return useritem.getValue();
+		for (int item = 0; item < numberOfProducts; item++) {
+			if (knownItems[item] == rowEnd - rowStart) {
+				// normalize
+				importances[item] /= cumWeights[item];
+			} else {
+				// we have not enough information, if one of the items of the user was never
+				// bought together with this item
+				importances[item] = -1.0;
 			}
-			// if not, we can calculate the (expected) rating for that user based on item i
-			int frequency = frequencies.get(useritem.getKey()).get(itemid);
-			score += useritem.getValue() * frequency;
-			score += differences.get(useritem.getKey()).get(itemid) * frequency;
-			cumWeights += frequency;
 		}
-		// normalize
-		return score / cumWeights;
+		// if we find that the user actually bought an item before, we can use this
+		// value (considering it is his rating, we can directly use this rating)
+		for (int entry = rowStart; entry < rowEnd; entry++) {
+			importances[ratings.getRowProduct(entry)] = ratings.getRowRating(entry);
+		}
+		return importances;
 	}
 
 	@Override
 	protected void executePreprocessing() {
 		// The buying matrix is considered to be the rating
 		// i.e. the more buys, the higher the rating
-		buildDifferencesMatrices(getUserBuyingMatrix());
+		differences = buildDifferencesMatrices(getRatings(), 4 * ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	@Override
+	protected void writePreprocessedData(DataOutput out) throws IOException {
+		differences.write(out);
+	}
+
+	@Override
+	protected void readPreprocessedData(DataInput in) throws IOException {
+		PairMatrix read = PairMatrix.read(in);
+		if (read.size() != getRatings().getProducts().size()) {
+			throw new IOException("The differences do not match the rating matrix.");
+		}
+		differences = read;
+	}
+
+	/**
+	 * Updates the differences and frequencies of the previous instance, by
+	 * removing the old ratings of all changed users and adding their new ratings.
+	 */
+	@Override
+	protected void executeUpdate(AbstractRecommender previous, List<OrderChange> changes) {
+		RatingMatrix previousRatings = previous.getRatings();
+		RatingMatrix ratings = getRatings();
+		int[] productMapping = mapProducts(previousRatings, ratings);
+		Set<Long> changedUsers = new HashSet<>();
+		for (OrderChange change : changes) {
+			changedUsers.add(change.current().getUserId());
+		}
+		PairMatrix.Deltas deltas = new PairMatrix.Deltas();
+		for (Long userId : changedUsers) {
+			int user = previousRatings.getUsers().indexOf(userId);
+			if (user >= 0) {
+				addDifferences(previousRatings, user, productMapping, -1, deltas);
+			}
+			addDifferences(ratings, ratings.getUsers().indexOf(userId), null, 1, deltas);
+		}
+		differences = ((SlopeOneRecommender) previous).differences.update(productMapping,
+				ratings.getProducts().size(), deltas);
+	}
+
+	/**
+	 * Adds the differences of all combinations of the ratings of the given user.
+	 * 
+	 * @param userRatingMatrix
+	 *            The user rating matrix
+	 * @param user
+	 *            The user index
+	 * @param productMapping
+	 *            The new product index of each product index or null to keep them
+	 * @param sign
+	 *            1 to add the ratings or -1 to remove them
+	 * @param deltas
+	 *            Receives the changes
+	 */
+	private static void addDifferences(RatingMatrix userRatingMatrix, int user, int[] productMapping, int sign,
+			PairMatrix.Deltas deltas) {
+		int rowStart = userRatingMatrix.getRowStart(user);
+		int rowEnd = userRatingMatrix.getRowEnd(user);
+		for (int entry = rowStart; entry < rowEnd; entry++) {
+			int item = userRatingMatrix.getRowProduct(entry);
+			double rating = userRatingMatrix.getRowRating(entry);
+			for (int other = rowStart; other < rowEnd; other++) {
+				int otherItem = userRatingMatrix.getRowProduct(other);
+				deltas.add(productMapping == null ? item : productMapping[item],
+						productMapping == null ? otherItem : productMapping[otherItem], sign,
+						sign * (rating - userRatingMatrix.getRowRating(other)));
+			}
+		}
 	}
 
 	/**
 	 * Based on the available data, calculate the relationships between the items
-	 * and number of occurrences. Fill the difference and frequencies matrix.
+	 * and number of occurrences. Fill the difference and frequencies matrix. The
+	 * rows of the matrices are independent, so blocks of rows with about the same
+	 * amount of work are calculated in parallel and concatenated afterwards.
 	 * 
-	 * @param data
+	 * @param userRatingMatrix
 	 *            The user rating matrix
+	 * @param maxBlocks
+	 *            The maximum number of blocks if there is enough work to split it
+	 * @return the differences and frequencies matrix
 	 */
-	private void buildDifferencesMatrices(Map<Long, Map<Long, Double>> userRatingMatrix) {
-		for (Map<Long, Double> uservalues : userRatingMatrix.values()) {
-			for (Entry<Long, Double> singleRating : uservalues.entrySet()) {
-				// if not present -> create
-				if (!frequencies.containsKey(singleRating.getKey())) {
-					frequencies.put(singleRating.getKey(), new HashMap<Long, Integer>());
-					differences.put(singleRating.getKey(), new HashMap<Long, Double>());
-				}
-				// for all other ratings of that user
-				for (Entry<Long, Double> otherRating : uservalues.entrySet()) {
-					int currCount = 0;
-					Integer count = frequencies.get(singleRating.getKey()).get(otherRating.getKey());
-					if (count != null) {
-						// count is != null, if the key is actually found
-						// if so, we use the known count value as count, otherwise the count until now
-						// is 0
-						currCount = count.intValue();
-					}
+	static PairMatrix buildDifferencesMatrices(RatingMatrix userRatingMatrix, int maxBlocks) {
+		int numberOfProducts = userRatingMatrix.getProducts().size();
+		// the work for an item is the number of ratings of all users rating it
+		long[] work = new long[numberOfProducts + 1];
+		for (int item = 0; item < numberOfProducts; item++) {
+			work[item + 1] = work[item];
+			for (int column = userRatingMatrix.getColumnStart(item); column < userRatingMatrix
+					.getColumnEnd(item); column++) {
+				int user = userRatingMatrix.getColumnUser(column);
+				work[item + 1] += userRatingMatrix.getRowEnd(user) - userRatingMatrix.getRowStart(user);
+			}
+		}
+		int blocks = 1;
+		if (work[numberOfProducts] >= MIN_PARALLEL_WORK) {
+			blocks = Math.max(1, Math.min(numberOfProducts, maxBlocks));
+		}
+		int[] firstItems = new int[blocks + 1];
+		for (int block = 1, item = 0; block <= blocks; block++) {
+			long blockEnd = work[numberOfProducts] * block / blocks;
+			while (item < numberOfProducts && work[item] < blockEnd) {
+				item++;
+			}
+			firstItems[block] = block == blocks ? numberOfProducts : item;
+		}
+		List<DifferenceRows> rows = IntStream.range(0, blocks).parallel()
+				.mapToObj(block -> buildDifferenceRows(userRatingMatrix, firstItems[block], firstItems[block + 1]))
+				.collect(Collectors.toList());
 
-					double currDiff = 0;
-					Double diff = differences.get(singleRating.getKey()).get(otherRating.getKey());
-					if (diff != null) {
-						// diff is != null, if the key is actually found
-						// if so, we use the known difference value as currDiff, otherwise the diff
-						// until now is 0.0
-						currDiff = diff.doubleValue();
-					}
+		int entries = 0;
+		for (DifferenceRows block : rows) {
+			entries += block.products().length;
+		}
+		int[] start = new int[numberOfProducts + 1];
+		int[] products = new int[entries];
+		double[] sums = new double[entries];
+		int[] counts = new int[entries];
+		int offset = 0;
+		for (int block = 0; block < blocks; block++) {
+			DifferenceRows blockRows = rows.get(block);
+			for (int item = firstItems[block]; item < firstItems[block + 1]; item++) {
+				start[item] = offset + blockRows.start()[item - firstItems[block]];
+			}
+			int length = blockRows.products().length;
+			System.arraycopy(blockRows.products(), 0, products, offset, length);
+			System.arraycopy(blockRows.differences(), 0, sums, offset, length);
+			System.arraycopy(blockRows.frequencies(), 0, counts, offset, length);
+			offset += length;
+		}
+		start[numberOfProducts] = entries;
+		return new PairMatrix(start, products, counts, sums);
+	}
 
+	/**
+	 * Calculates the rows of the difference and frequencies matrix for the given
+	 * items.
+	 * 
+	 * @param userRatingMatrix
+	 *            The user rating matrix
+	 * @param firstItem
+	 *            The first item to calculate
+	 * @param endItem
+	 *            The item after the last item to calculate
+	 * @return the calculated rows
+	 */
+	private static DifferenceRows buildDifferenceRows(RatingMatrix userRatingMatrix, int firstItem, int endItem) {
+		int numberOfProducts = userRatingMatrix.getProducts().size();
+		int[] start = new int[endItem - firstItem];
+		int[] products = new int[16];
+		double[] sums = new double[products.length];
+		int[] counts = new int[products.length];
+		int entries = 0;
+		// sums and counts of the row of the current item, indexed by the other item
+		double[] rowSums = new double[numberOfProducts];
+		int[] rowCounts = new int[numberOfProducts];
+		int[] otherItems = new int[numberOfProducts];
+		for (int item = firstItem; item < endItem; item++) {
+			start[item - firstItem] = entries;
+			int numberOfOtherItems = 0;
+			// for all users rating this item
+			for (int column = userRatingMatrix.getColumnStart(item); column < userRatingMatrix
+					.getColumnEnd(item); column++) {
+				int user = userRatingMatrix.getColumnUser(column);
+				double rating = userRatingMatrix.getColumnRating(column);
+				// for all other ratings of that user
+				for (int entry = userRatingMatrix.getRowStart(user); entry < userRatingMatrix
+						.getRowEnd(user); entry++) {
+					int otherItem = userRatingMatrix.getRowProduct(entry);
+					if (rowCounts[otherItem] == 0) {
+						otherItems[numberOfOtherItems++] = otherItem;
+					}
 					// get the diff value of this user
-					double userdiff = singleRating.getValue() - otherRating.getValue();
-					frequencies.get(singleRating.getKey()).put(otherRating.getKey(), currCount + 1);
-					differences.get(singleRating.getKey()).put(otherRating.getKey(), currDiff + userdiff);
+					rowCounts[otherItem]++;
+					rowSums[otherItem] += rating - userRatingMatrix.getRowRating(entry);
 				}
 			}
-		}
-
-		// now, transform the differences matrix into real differences (not just the sum
-		// of all found differences)
-		for (Long i : differences.keySet()) {
-			for (Long j : differences.get(i).keySet()) {
-				// for all matrix entries divide the differences by the sum of occurences
-				double diffval = differences.get(i).get(j);
-				double freq = frequencies.get(i).get(j);
-				differences.get(i).put(j, diffval / freq);
+			Arrays.sort(otherItems, 0, numberOfOtherItems);
+			if (entries + numberOfOtherItems > products.length) {
+				int capacity = Math.max(2 * products.length, entries + numberOfOtherItems);
+				products = Arrays.copyOf(products, capacity);
+				sums = Arrays.copyOf(sums, capacity);
+				counts = Arrays.copyOf(counts, capacity);
+			}
+			for (int i = 0; i < numberOfOtherItems; i++) {
+				int otherItem = otherItems[i];
+				products[entries] = otherItem;
+				sums[entries] = rowSums[otherItem];
+				counts[entries] = rowCounts[otherItem];
+				entries++;
+				rowSums[otherItem] = 0;
+				rowCounts[otherItem] = 0;
 			}
 		}
+		return new DifferenceRows(start, Arrays.copyOf(products, entries), Arrays.copyOf(sums, entries),
+				Arrays.copyOf(counts, entries));
+	}
+
+	/**
+	 * Consecutive rows of the difference and frequencies matrix.
+	 * 
+	 * @param start
+	 *            The first entry of each row
+	 * @param products
+	 *            The other item index of each entry
+	 * @param differences
+	 *            The summed up differences of each entry
+	 * @param frequencies
+	 *            The frequency of each entry
+	 */
+	private record DifferenceRows(int[] start, int[] products, double[] differences, int[] frequencies) {
 	}
 }
@@ -13,12 +13,17 @@
  */
 package recommender.algorithm.impl.orderbased;
 
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
 import recommender.algorithm.AbstractRecommender;
+import recommender.algorithm.IdIndex;
 import recommender.algorithm.OrderItemSet;
+import recommender.algorithm.PairMatrix;
 import recommender.algorithm.impl.UseFallBackException;
 
 /**
@@ -30,6 +35,12 @@ import recommender.algorithm.impl.UseFallBackException;
  */
 public class OrderBasedRecommender extends AbstractRecommender {
 
+	/**
+	 * Sparse matrix over the product indices of the rating matrix, counting how
+	 * often two products have been bought in the same order.
+	 */
+	private PairMatrix cooccurrences = PairMatrix.EMPTY;
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -39,51 +50,191 @@ public class OrderBasedRecommender extends AbstractRecommender {
 	 */
 	@Override
 	protected List<Long> execute(Long userid, List<Long> currentItems) {
-		// Map with all product IDs and how often they have been bought in the same cart
-		// with one of the items in the current cart
-		HashMap<Long, Double> counts = new HashMap<>();
+		IdIndex products = getRatings().getProducts();
+		// all product indices and how often they have been bought in the same cart
+		// with one of the items in the current cart, sorted by product index
+		int[] cooccurring = new int[0];
+		double[] counts = new double[0];
 		// treat all products in the current cart equally, and sum all the occurrences
 		for (Long product : currentItems) {
-			addAllCountsOfProduct(counts, product);
+			int item = product == null ? -1 : products.indexOf(product);
+			if (item < 0 || cooccurrences.getRowStart(item) == cooccurrences.getRowEnd(item)) {
+				continue;
+			}
+			int[] mergedProducts = new int[cooccurring.length + cooccurrences.getRowEnd(item)
+					- cooccurrences.getRowStart(item)];
+			double[] mergedCounts = new double[mergedProducts.length];
+			int length = mergeRow(cooccurring, counts, item, mergedProducts, mergedCounts);
+			cooccurring = Arrays.copyOf(mergedProducts, length);
+			counts = Arrays.copyOf(mergedCounts, length);
 		}
 
-		if (counts.isEmpty()) {
+		if (cooccurring.length == 0) {
 			throw new UseFallBackException(
 					"No item was bought together with the current cart. Therefore, all counts are 0.");
 		}
 
 		// the count list contains all items in the current cart
 		// however, this is fine, as it is filtered
-		return filterRecommendations(counts, currentItems);
+		return filterRecommendations(cooccurring, counts, currentItems);
 	}
 
 	/**
-	 * Adds the counts of the given product to the given count list.
+	 * Merges the sorted counts with the sorted row of the given product.
 	 * 
+	 * @param products
+	 *            The sorted product indices of the counts
 	 * @param counts
-	 *            The count list, assinging each product id, how often it was bought
-	 *            with the given product.
-	 * @param product
-	 *            The product id of the specific product.
+	 *            The counts
+	 * @param item
+	 *            The product index of the row to add
+	 * @param mergedProducts
+	 *            Receives the merged product indices
+	 * @param mergedCounts
+	 *            Receives the merged counts
+	 * @return the number of merged entries
 	 */
-	private void addAllCountsOfProduct(HashMap<Long, Double> counts, Long product) {
+	private int mergeRow(int[] products, double[] counts, int item, int[] mergedProducts, double[] mergedCounts) {
+		int i = 0;
+		int entry = cooccurrences.getRowStart(item);
+		int end = cooccurrences.getRowEnd(item);
+		int length = 0;
+		while (i < products.length || entry < end) {
+			if (entry == end || (i < products.length && products[i] < cooccurrences.getProduct(entry))) {
+				mergedProducts[length] = products[i];
+				mergedCounts[length++] = counts[i++];
+			} else if (i == products.length || cooccurrences.getProduct(entry) < products[i]) {
+				mergedProducts[length] = cooccurrences.getProduct(entry);
+				mergedCounts[length++] = cooccurrences.getCount(entry++);
+			} else {
+				mergedProducts[length] = products[i];
+				mergedCounts[length++] = counts[i++] + cooccurrences.getCount(entry++);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Counts for each product, how often it was bought in the same order with any
+	 * other product. We do not count the NUMBER of items, just if the item occurred
+	 * in the order. Each product is counted with itself as well.
+	 */
+	@Override
+	protected void executePreprocessing() {
+		IdIndex products = getRatings().getProducts();
+		int numberOfProducts = products.size();
+		// flatten all orders into their product indices, ignore which user bought
+		// which set
+		int numberOfOrders = 0;
+		int numberOfItems = 0;
 		for (Set<OrderItemSet> set : getUserItemSets().values()) {
-			// ignore which user bought which set
+			numberOfOrders += set.size();
 			for (OrderItemSet orderset : set) {
-				// look through all orders bought
-				if (orderset.getOrderset().keySet().contains(product)) {
-					for (Long o : orderset.getOrderset().keySet()) {
-						// we count all order of the set (including the product we are currently looking
-						// at)
-						if (counts.containsKey(o)) {
-							// we do not count the NUMBER of items, just if the item occurred in the order
-							counts.put(o, counts.get(o) + 1);
-						} else {
-							counts.put(o, 1.0);
-						}
+				numberOfItems += orderset.getOrderset().size();
+			}
+		}
+		int[] orderStart = new int[numberOfOrders + 1];
+		int[] orderProducts = new int[numberOfItems];
+		int order = 0;
+		int items = 0;
+		for (Set<OrderItemSet> set : getUserItemSets().values()) {
+			for (OrderItemSet orderset : set) {
+				orderStart[order++] = items;
+				for (Long product : orderset.getOrderset().keySet()) {
+					orderProducts[items++] = products.indexOf(product);
+				}
+			}
+		}
+		orderStart[numberOfOrders] = items;
+		// index the orders containing each product
+		int[] productStart = new int[numberOfProducts + 1];
+		for (int item = 0; item < numberOfItems; item++) {
+			productStart[orderProducts[item] + 1]++;
+		}
+		for (int product = 0; product < numberOfProducts; product++) {
+			productStart[product + 1] += productStart[product];
+		}
+		int[] productOrders = new int[numberOfItems];
+		int[] next = Arrays.copyOf(productStart, numberOfProducts);
+		for (order = 0; order < numberOfOrders; order++) {
+			for (int item = orderStart[order]; item < orderStart[order + 1]; item++) {
+				productOrders[next[orderProducts[item]]++] = order;
+			}
+		}
+		// count the products of all orders containing a product, one product at a time
+		int[] start = new int[numberOfProducts + 1];
+		int[] others = new int[Math.max(16, numberOfItems)];
+		int[] counts = new int[others.length];
+		int entries = 0;
+		int[] rowCounts = new int[numberOfProducts];
+		int[] rowProducts = new int[numberOfProducts];
+		for (int product = 0; product < numberOfProducts; product++) {
+			start[product] = entries;
+			int numberOfOthers = 0;
+			for (int entry = productStart[product]; entry < productStart[product + 1]; entry++) {
+				order = productOrders[entry];
+				for (int item = orderStart[order]; item < orderStart[order + 1]; item++) {
+					int other = orderProducts[item];
+					if (rowCounts[other]++ == 0) {
+						rowProducts[numberOfOthers++] = other;
 					}
 				}
 			}
+			Arrays.sort(rowProducts, 0, numberOfOthers);
+			if (entries + numberOfOthers > others.length) {
+				int capacity = Math.max(2 * others.length, entries + numberOfOthers);
+				others = Arrays.copyOf(others, capacity);
+				counts = Arrays.copyOf(counts, capacity);
+			}
+			for (int i = 0; i < numberOfOthers; i++) {
+				others[entries] = rowProducts[i];
+				counts[entries++] = rowCounts[rowProducts[i]];
+				rowCounts[rowProducts[i]] = 0;
+			}
+		}
+		start[numberOfProducts] = entries;
+		cooccurrences = new PairMatrix(start, Arrays.copyOf(others, entries), Arrays.copyOf(counts, entries), null);
+	}
+
+	@Override
+	protected void writePreprocessedData(DataOutput out) throws IOException {
+		cooccurrences.write(out);
+	}
+
+	@Override
+	protected void readPreprocessedData(DataInput in) throws IOException {
+		PairMatrix read = PairMatrix.read(in);
+		if (read.size() != getRatings().getProducts().size()) {
+			throw new IOException("The co-occurrences do not match the rating matrix.");
+		}
+		cooccurrences = read;
+	}
+
+	/**
+	 * Updates the counts of the previous instance, by removing the changed orders
+	 * as they were before and adding them as they are now.
+	 */
+	@Override
+	protected void executeUpdate(AbstractRecommender previous, List<OrderChange> changes) {
+		IdIndex products = getRatings().getProducts();
+		PairMatrix.Deltas deltas = new PairMatrix.Deltas();
+		for (OrderChange change : changes) {
+			if (change.previous() != null) {
+				addCooccurrences(change.previous(), products, -1, deltas);
+			}
+			addCooccurrences(change.current(), products, 1, deltas);
+		}
+		cooccurrences = ((OrderBasedRecommender) previous).cooccurrences
+				.update(mapProducts(previous.getRatings(), getRatings()), products.size(), deltas);
+	}
+
+	private static void addCooccurrences(OrderItemSet orderset, IdIndex products, int sign,
+			PairMatrix.Deltas deltas) {
+		for (Long product : orderset.getOrderset().keySet()) {
+			int item = products.indexOf(product);
+			for (Long other : orderset.getOrderset().keySet()) {
+				deltas.add(item, products.indexOf(other), sign, 0.0);
+			}
 		}
 	}
 }
@@ -13,12 +13,11 @@
  */
 package recommender.algorithm.impl.pop;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 
 import recommender.algorithm.AbstractRecommender;
+import recommender.algorithm.RatingMatrix;
 
 /**
  * A simple Recommender that makes recommendations based on general popularity.
@@ -29,9 +28,10 @@ import recommender.algorithm.AbstractRecommender;
 public class PopularityBasedRecommender extends AbstractRecommender {
 
 	/**
-	 * Map with all product IDs and their corresponding total purchase counts.
+	 * Total purchase counts of all products, indexed by the product index of the
+	 * rating matrix.
 	 */
-	private HashMap<Long, Double> counts;
+	private double[] counts;
 
 	/*
 	 * (non-Javadoc)
@@ -48,17 +48,39 @@ public class PopularityBasedRecommender extends AbstractRecommender {
 	@Override
 	protected void executePreprocessing() {
 		// assigns each product a quantity
-		counts = new HashMap<>();
+		RatingMatrix ratings = getRatings();
+		double[] productCounts = new double[ratings.getProducts().size()];
 		// calculate product frequencies
-		for (Map<Long, Double> usermap : getUserBuyingMatrix().values()) {
-			for (Entry<Long, Double> product : usermap.entrySet()) {
-				if (!counts.containsKey(product.getKey())) {
-					counts.put(product.getKey(), product.getValue());
-				} else {
-					counts.put(product.getKey(), counts.get(product.getKey()) + product.getValue());
-				}
+		for (int product = 0; product < productCounts.length; product++) {
+			for (int entry = ratings.getColumnStart(product); entry < ratings.getColumnEnd(product); entry++) {
+				productCounts[product] += ratings.getColumnRating(entry);
 			}
 		}
+		counts = productCounts;
+	}
 
+	/**
+	 * Updates the counts of the previous instance with the changed orders.
+	 */
+	@Override
+	protected void executeUpdate(AbstractRecommender previous, List<OrderChange> changes) {
+		RatingMatrix ratings = getRatings();
+		int[] productMapping = mapProducts(previous.getRatings(), ratings);
+		double[] previousCounts = ((PopularityBasedRecommender) previous).counts;
+		double[] productCounts = new double[ratings.getProducts().size()];
+		for (int product = 0; product < productMapping.length; product++) {
+			productCounts[productMapping[product]] = previousCounts[product];
+		}
+		for (OrderChange change : changes) {
+			if (change.previous() != null) {
+				for (Entry<Long, Integer> item : change.previous().getOrderset().entrySet()) {
+					productCounts[ratings.getProducts().indexOf(item.getKey())] -= item.getValue();
+				}
+			}
+			for (Entry<Long, Integer> item : change.current().getOrderset().entrySet()) {
+				productCounts[ratings.getProducts().indexOf(item.getKey())] += item.getValue();
+			}
+		}
+		counts = productCounts;
 	}
 }
@@ -22,6 +22,7 @@ import io.netty.handler.codec.http2.*;
 import io.netty.util.CharsetUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import recommender.algorithm.RecommendationCacheStatistics;
 import recommender.algorithm.RecommenderSelector;
 import recommender.algorithm.TrainingSynchronizer;
 import utilities.datamodel.*;
@@ -62,6 +63,8 @@ public class Http2RecommenderAPI implements API {
                             return getTimeStamp();
                         case "/train/isready":
                             return isReady();
+                        case "/cache/stats":
+                            return getCacheStats();
                     }
                 case "POST":
                     switch (subPath) {
@@ -134,9 +137,11 @@ public class Http2RecommenderAPI implements API {
     /**
      * GET /train
      *
-     * Triggers the training of the recommendation algorithm.
+     * Triggers the training of the recommendation algorithm in the background.
      * It retrieves all data order items and all orders from the database entity
      * and is therefore both very network and computation time intensive.
+     * Recommendations are served by the current model until the new one is trained,
+     * /train/isready returns true again once the new model is in use.
      * <br>
      * This method must be called before the endpoint is usable,
      * as the IRecommender will throw an UnsupportedOperationException.
@@ -146,21 +151,11 @@ public class Http2RecommenderAPI implements API {
      * @return OK or INTERNAL_SERVER_ERROR
      */
     private Http2Response train() {
-        try {
-            long start = System.currentTimeMillis();
-            long number = TrainingSynchronizer.getInstance().retrieveDataAndRetrain();
-            long time = System.currentTimeMillis() - start;
-            if (number != -1) {
-                LOG.info(
-                        "The (re)train was succesfully done. It took " + time + "ms and "
-                                + number + " of Orderitems were retrieved from the database."
-                );
-                return Http2Response.okResponse();
-            }
-        } catch (Exception e) {
-            LOG.error(e.getMessage());
+        if (TrainingSynchronizer.getInstance().retrainInBackground()) {
+            LOG.info("The (re)train was scheduled, the current model is used until it is finished.");
+            return Http2Response.okResponse();
         }
-        LOG.error("The (re)trainprocess failed.");
+        LOG.error("The (re)trainprocess could not be started.");
         return Http2Response.internalServerErrorResponse();
     }
 
@@ -213,4 +208,25 @@ public class Http2RecommenderAPI implements API {
         }
         return Http2Response.internalServerErrorResponse();
     }
+
+    /**
+     * GET /cache/stats
+     *
+     * Size, hits, misses, hit rate and invalidations of the cache of recommendations
+     *
+     * @return Cache statistics
+     */
+    private Http2Response getCacheStats() {
+        RecommendationCacheStatistics statistics = RecommenderSelector.getInstance().getCache().getStatistics();
+        try {
+            String json = mapper.writeValueAsString(statistics);
+            return new Http2Response(
+                    Http2Response.okJsonHeader(json.getBytes(CharsetUtil.UTF_8).length),
+                    Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
+            );
+        } catch (Exception e) {
+            LOG.error(e.getMessage());
+        }
+        return Http2Response.internalServerErrorResponse();
+    }
 }
@@ -33,9 +33,11 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
+import recommender.algorithm.RecommenderSelector;
 import recommender.algorithm.TrainingSynchronizer;
 
 import java.net.InetSocketAddress;
+import java.nio.file.Paths;
 import java.util.concurrent.TimeUnit;
 
 import static utilities.rest.api.API.DEFAULT_RECOMMENDER_PORT;
@@ -59,13 +61,44 @@ public class HttpRecommenderServer {
         this.gatewayHost = gatewayHost;
         this.recommenderPort = recommenderPort;
         this.persistencePort = persistencePort;
+        String cacheSize = System.getenv("RECOMMENDER_CACHE_SIZE");
+        if (cacheSize != null && !cacheSize.isBlank()) {
+            try {
+                RecommenderSelector.getInstance().getCache().setMaxEntries(Integer.parseInt(cacheSize.trim()));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Invalid recommendation cache size \"{}\", using the default size.", cacheSize);
+            }
+        }
         // Setup and start training
         TrainingSynchronizer.getInstance().setupHttpClient(
                 httpVersion,
                 gatewayHost,
                 persistencePort == 80 ? recommenderPort : persistencePort
         );
-        TrainingSynchronizer.getInstance().retrieveDataAndRetrain();
+        String snapshotFile = System.getenv("RECOMMENDER_SNAPSHOT_FILE");
+        if (snapshotFile != null && !snapshotFile.isBlank()) {
+            TrainingSynchronizer.getInstance().setSnapshotFile(Paths.get(snapshotFile.trim()));
+        }
+        // Restore the snapshot or train in the background, the port is bound meanwhile
+        TrainingSynchronizer.getInstance().initializeInBackground();
+        String retrainInterval = System.getenv("RECOMMENDER_RETRAIN_INTERVAL");
+        if (retrainInterval != null && !retrainInterval.isBlank()) {
+            try {
+                TrainingSynchronizer.getInstance().scheduleRetraining(Long.parseLong(retrainInterval.trim()));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Invalid retraining interval \"{}\", the recommender is only retrained on request.",
+                        retrainInterval);
+            }
+        }
+        String updateInterval = System.getenv("RECOMMENDER_UPDATE_INTERVAL");
+        if (updateInterval != null && !updateInterval.isBlank()) {
+            try {
+                TrainingSynchronizer.getInstance().scheduleUpdates(Long.parseLong(updateInterval.trim()));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Invalid update interval \"{}\", new orders are only used after a retraining.",
+                        updateInterval);
+            }
+        }
     }
 
     public static void main(String[] args) throws Exception {
@@ -0,0 +1,105 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import recommender.algorithm.impl.cf.PreprocessedSlopeOneRecommender;
+import recommender.algorithm.impl.cf.SlopeOneRecommender;
+import recommender.algorithm.impl.orderbased.OrderBasedRecommender;
+import recommender.algorithm.impl.pop.PopularityBasedRecommender;
+import utilities.datamodel.OrderItem;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbstractRecommenderTest {
+
+    private static final int SEEDS = 10;
+
+    private static final List<Class<? extends AbstractRecommender>> TYPES = List.of(
+            PopularityBasedRecommender.class,
+            SlopeOneRecommender.class,
+            PreprocessedSlopeOneRecommender.class,
+            OrderBasedRecommender.class
+    );
+
+    private static AbstractRecommender create(Class<? extends AbstractRecommender> type) throws Exception {
+        return type.getDeclaredConstructor().newInstance();
+    }
+
+    private static void assertSameRecommendations(TestOrders data, long seed, AbstractRecommender expected,
+            AbstractRecommender actual) {
+        Random random = new Random(seed);
+        // the users 0 and users + 1 are unknown
+        for (long userId = 0; userId <= data.users + 1; userId++) {
+            for (int size = 1; size <= 4; size++) {
+                List<OrderItem> cart = data.createCart(random, size);
+                assertEquals(
+                        TestOrders.recommend(expected, userId, cart),
+                        TestOrders.recommend(actual, userId, cart),
+                        actual.getClass().getSimpleName() + " for user " + userId + " with cart " + cart
+                );
+            }
+        }
+    }
+
+    @Test
+    void testUpdateEqualsTraining() throws Exception {
+        for (Class<? extends AbstractRecommender> type : TYPES) {
+            for (long seed = 0; seed < SEEDS; seed++) {
+                TestOrders data = new TestOrders(seed);
+                int size = data.items.size();
+                int firstCut = size / 3 + (int) (seed * 7 % (size / 3));
+                int secondCut = firstCut + (size - firstCut) / 2;
+                AbstractRecommender updated = create(type);
+                updated.train(new ArrayList<>(data.items.subList(0, firstCut)), data.orders);
+                updated = updated.update(new ArrayList<>(data.items.subList(firstCut, secondCut)), data.orders);
+                updated = updated.update(new ArrayList<>(data.items.subList(secondCut, size)), data.orders);
+                AbstractRecommender trained = create(type);
+                trained.train(data.items, data.orders);
+                assertSameRecommendations(data, seed, trained, updated);
+            }
+        }
+    }
+
+    @Test
+    void testUpdateKeepsPreviousModel() throws Exception {
+        TestOrders data = new TestOrders(42);
+        List<OrderItem> firstHalf = new ArrayList<>(data.items.subList(0, data.items.size() / 2));
+        List<OrderItem> secondHalf = new ArrayList<>(data.items.subList(data.items.size() / 2, data.items.size()));
+        for (Class<? extends AbstractRecommender> type : TYPES) {
+            AbstractRecommender previous = create(type);
+            previous.train(firstHalf, data.orders);
+            AbstractRecommender expected = create(type);
+            expected.train(firstHalf, data.orders);
+            assertNotSame(previous, previous.update(secondHalf, data.orders));
+            assertSameRecommendations(data, 42, expected, previous);
+        }
+    }
+
+    @Test
+    void testUpdateWithKnownItems() throws Exception {
+        // items retrieved again within the rescan window do not change the model
+        TestOrders data = new TestOrders(7);
+        List<OrderItem> secondHalf = new ArrayList<>(data.items.subList(data.items.size() / 2, data.items.size()));
+        for (Class<? extends AbstractRecommender> type : TYPES) {
+            AbstractRecommender trained = create(type);
+            trained.train(data.items, data.orders);
+            assertSameRecommendations(data, 7, trained, trained.update(secondHalf, data.orders));
+        }
+    }
+}
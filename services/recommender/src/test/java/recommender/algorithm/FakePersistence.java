@@ -0,0 +1,102 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToLongFunction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import utilities.datamodel.Order;
+import utilities.datamodel.OrderItem;
+
+import static utilities.rest.api.API.PERSISTENCE_ENDPOINT;
+
+/**
+ * Persistence service serving the orders and order items of the recommender
+ * tests, like the paged endpoints of the real service.
+ */
+final class FakePersistence implements AutoCloseable {
+
+    final List<Order> orders = new CopyOnWriteArrayList<>();
+    final List<OrderItem> items = new CopyOnWriteArrayList<>();
+
+    /**
+     * Requests of endpoints starting with this path are answered with 503, null
+     * answers all requests.
+     */
+    volatile String failingPath;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+
+    FakePersistence() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(PERSISTENCE_ENDPOINT + "/orders", exchange -> respond(exchange, orders, Order::id));
+        server.createContext(PERSISTENCE_ENDPOINT + "/orderitems",
+                exchange -> respond(exchange, items, OrderItem::id));
+        server.start();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private <T> void respond(HttpExchange exchange, List<T> entities, ToLongFunction<T> id) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (failingPath != null && path.startsWith(failingPath)) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            Map<String, Long> params = new HashMap<>();
+            for (String param : exchange.getRequestURI().getQuery().split("&")) {
+                String[] pair = param.split("=");
+                params.put(pair[0], Long.parseLong(pair[1]));
+            }
+            Object content;
+            if (params.containsKey("id")) {
+                content = entities.stream().filter(entity -> id.applyAsLong(entity) == params.get("id"))
+                        .findFirst().orElse(null);
+                if (content == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+            } else {
+                long max = params.get("max") < 0 ? Long.MAX_VALUE : params.get("max");
+                content = entities.stream().filter(entity -> id.applyAsLong(entity) > params.get("afterid"))
+                        .sorted((a, b) -> Long.compare(id.applyAsLong(a), id.applyAsLong(b))).limit(max).toList();
+            }
+            byte[] json = mapper.writeValueAsBytes(content);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=" + StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, json.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(json);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
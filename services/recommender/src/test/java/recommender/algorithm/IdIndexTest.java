@@ -0,0 +1,73 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdIndexTest {
+
+    @Test
+    void testAdd() {
+        IdIndex index = new IdIndex();
+        assertEquals(0, index.size());
+        assertEquals(0, index.add(42L));
+        assertEquals(1, index.add(-7L));
+        assertEquals(0, index.add(42L));
+        assertEquals(2, index.add(0L));
+        assertEquals(3, index.size());
+        assertEquals(1, index.indexOf(-7L));
+        assertEquals(-1, index.indexOf(43L));
+        assertEquals(42L, index.getId(0));
+        assertEquals(0L, index.getId(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.getId(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.getId(-1));
+    }
+
+    @Test
+    void testRehash() {
+        IdIndex index = new IdIndex();
+        Random random = new Random(7);
+        long[] ids = new long[10000];
+        for (int i = 0; i < ids.length; i++) {
+            // Random IDs, IDs differing only in the high bits and the extreme values
+            ids[i] = switch (i % 4) {
+                case 0 -> random.nextLong();
+                case 1 -> (long) i << 40;
+                case 2 -> i == 2 ? Long.MIN_VALUE : i == 6 ? Long.MAX_VALUE : -i;
+                default -> i;
+            };
+            assertEquals(i, index.add(ids[i]), "ID " + ids[i]);
+            // All IDs added before are still found while the table grows
+            if (Integer.bitCount(i) == 1) {
+                for (int j = 0; j <= i; j++) {
+                    assertEquals(j, index.indexOf(ids[j]));
+                }
+            }
+        }
+        assertEquals(ids.length, index.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(i, index.indexOf(ids[i]));
+            assertEquals(ids[i], index.getId(i));
+            assertEquals(i, index.add(ids[i]));
+        }
+        assertEquals(ids.length, index.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(-1, index.indexOf(((long) (ids.length + i) << 40) + 1));
+        }
+    }
+}
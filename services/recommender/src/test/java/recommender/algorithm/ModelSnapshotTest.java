@@ -0,0 +1,149 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import recommender.algorithm.impl.cf.PreprocessedSlopeOneRecommender;
+import recommender.algorithm.impl.cf.SlopeOneRecommender;
+import recommender.algorithm.impl.orderbased.OrderBasedRecommender;
+import recommender.algorithm.impl.pop.PopularityBasedRecommender;
+import utilities.datamodel.OrderItem;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelSnapshotTest {
+
+    private static final long MAX_TIME = 1577872800000L;
+
+    @TempDir
+    Path directory;
+
+    private final TestOrders data = new TestOrders(3);
+
+    private ModelSnapshot createSnapshot(AbstractRecommender recommender) {
+        AbstractRecommender fallback = new PopularityBasedRecommender();
+        fallback.train(data.items, data.orders);
+        recommender.train(data.items, data.orders);
+        return new ModelSnapshot(recommender, fallback, data.items.get(data.items.size() - 1), MAX_TIME);
+    }
+
+    private void assertSameRecommendations(IRecommender expected, IRecommender actual) {
+        Random random = new Random(3);
+        for (long userId = 0; userId <= data.users + 1; userId++) {
+            List<OrderItem> cart = data.createCart(random, 1 + random.nextInt(3));
+            assertEquals(TestOrders.recommend(expected, userId, cart), TestOrders.recommend(actual, userId, cart));
+        }
+    }
+
+    private Path writeValidSnapshot() throws IOException {
+        Path file = directory.resolve("recommender.snapshot");
+        createSnapshot(new SlopeOneRecommender()).write(file);
+        return file;
+    }
+
+    @Test
+    void testWriteAndRead() throws Exception {
+        for (AbstractRecommender recommender : List.of(new SlopeOneRecommender(),
+                new PreprocessedSlopeOneRecommender(), new OrderBasedRecommender())) {
+            ModelSnapshot snapshot = createSnapshot(recommender);
+            Path file = directory.resolve(recommender.getClass().getSimpleName() + ".snapshot");
+            snapshot.write(file);
+            ModelSnapshot read = ModelSnapshot.read(file);
+            assertSame(recommender.getClass(), read.getRecommender().getClass());
+            assertSame(PopularityBasedRecommender.class, read.getFallback().getClass());
+            assertEquals(snapshot.getLastItem(), read.getLastItem());
+            assertEquals(MAX_TIME, read.getMaxTime());
+            assertTrue(read.getRecommender().isTrainingFinished());
+            assertSameRecommendations(snapshot.getRecommender(), read.getRecommender());
+            assertSameRecommendations(snapshot.getFallback(), read.getFallback());
+        }
+    }
+
+    @Test
+    void testWriteAndReadFallbackOnly() throws Exception {
+        AbstractRecommender fallback = new PopularityBasedRecommender();
+        fallback.train(data.items, data.orders);
+        Path file = directory.resolve("fallback.snapshot");
+        new ModelSnapshot(fallback, fallback, data.items.get(0), MAX_TIME).write(file);
+        ModelSnapshot read = ModelSnapshot.read(file);
+        assertSame(read.getFallback(), read.getRecommender());
+        assertSameRecommendations(fallback, read.getRecommender());
+    }
+
+    @Test
+    void testWriteReplacesFile() throws Exception {
+        Path file = directory.resolve("recommender.snapshot");
+        Files.write(file, new byte[] {1, 2, 3});
+        createSnapshot(new SlopeOneRecommender()).write(file);
+        assertEquals(data.items.get(data.items.size() - 1), ModelSnapshot.read(file).getLastItem());
+        // the temporary file is moved
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(file), files.toList());
+        }
+    }
+
+    @Test
+    void testTruncatedFile() throws Exception {
+        Path file = writeValidSnapshot();
+        byte[] content = Files.readAllBytes(file);
+        for (int length : new int[] {0, 4, 20, content.length / 2, content.length - 1}) {
+            Files.write(file, Arrays.copyOf(content, length));
+            assertThrows(IOException.class, () -> ModelSnapshot.read(file), "length " + length);
+        }
+    }
+
+    @Test
+    void testWrongMagic() throws Exception {
+        Path file = writeValidSnapshot();
+        byte[] content = Files.readAllBytes(file);
+        content[0] ^= 1;
+        Files.write(file, content);
+        assertThrows(IOException.class, () -> ModelSnapshot.read(file));
+    }
+
+    @Test
+    void testWrongVersion() throws Exception {
+        Path file = writeValidSnapshot();
+        byte[] content = Files.readAllBytes(file);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.write(content, 0, 4);
+            out.writeInt(ModelSnapshot.FORMAT_VERSION + 1);
+            out.write(content, 8, content.length - 8);
+        }
+        IOException e = assertThrows(IOException.class, () -> ModelSnapshot.read(file));
+        assertTrue(e.getMessage().contains("version"));
+    }
+
+    @Test
+    void testUnknownRecommender() throws Exception {
+        Path file = writeValidSnapshot();
+        byte[] content = Files.readAllBytes(file);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            // keep the magic and version
+            out.write(content, 0, 8);
+            out.writeUTF(String.class.getName());
+            out.writeUTF(PopularityBasedRecommender.class.getName());
+        }
+        assertThrows(IOException.class, () -> ModelSnapshot.read(file));
+    }
+}
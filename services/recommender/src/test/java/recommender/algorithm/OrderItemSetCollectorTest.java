@@ -0,0 +1,143 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import recommender.algorithm.impl.cf.SlopeOneRecommender;
+import utilities.datamodel.Order;
+import utilities.datamodel.OrderItem;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderItemSetCollectorTest {
+
+    private static OrderItemSetCollector collect(TestOrders data, int pageSize) {
+        OrderItemSetCollector collector = new OrderItemSetCollector();
+        for (Order order : data.orders) {
+            collector.addOrder(order.id(), order.userId(), 1000 * order.id());
+        }
+        for (int start = 0; start < data.items.size(); start += pageSize) {
+            collector.addOrderItems(new ArrayList<>(
+                    data.items.subList(start, Math.min(data.items.size(), start + pageSize))));
+        }
+        return collector;
+    }
+
+    private static Map<Long, Map<Long, Integer>> toOrdersets(Map<Long, Set<OrderItemSet>> userItemSets) {
+        Map<Long, Map<Long, Integer>> ordersets = new HashMap<>();
+        for (Map.Entry<Long, Set<OrderItemSet>> entry : userItemSets.entrySet()) {
+            for (OrderItemSet itemSet : entry.getValue()) {
+                assertEquals(entry.getKey(), itemSet.getUserId());
+                assertNull(ordersets.put(itemSet.getOrderId(), itemSet.getOrderset()));
+            }
+        }
+        return ordersets;
+    }
+
+    @Test
+    void testPagesEqualOneBatch() {
+        TestOrders data = new TestOrders(5);
+        OrderItemSetCollector batch = collect(data, data.items.size());
+        Map<Long, Map<Long, Integer>> expected = toOrdersets(batch.getUserItemSets());
+        for (int pageSize : new int[] {1, 7, 100}) {
+            OrderItemSetCollector paged = collect(data, pageSize);
+            assertEquals(expected, toOrdersets(paged.getUserItemSets()));
+            assertEquals(batch.getNumberOfOrderItems(), paged.getNumberOfOrderItems());
+            assertEquals(data.items.get(data.items.size() - 1), paged.getLastItem());
+        }
+        assertEquals(data.orders.size(), batch.getNumberOfOrders());
+        assertEquals(data.items.size(), batch.getNumberOfOrderItems());
+    }
+
+    @Test
+    void testTrainingWithCollectedItemSets() {
+        TestOrders data = new TestOrders(5);
+        AbstractRecommender expected = new SlopeOneRecommender();
+        expected.train(data.items, data.orders);
+        AbstractRecommender actual = new SlopeOneRecommender();
+        actual.train(collect(data, 10).getUserItemSets());
+        Random random = new Random(5);
+        for (long userId = 0; userId <= data.users + 1; userId++) {
+            List<OrderItem> cart = data.createCart(random, 2);
+            assertEquals(TestOrders.recommend(expected, userId, cart), TestOrders.recommend(actual, userId, cart));
+        }
+    }
+
+    @Test
+    void testDuplicateOrder() {
+        OrderItemSetCollector collector = new OrderItemSetCollector();
+        collector.addOrder(1, 10, 1000);
+        collector.addOrder(1, 11, 2000);
+        collector.addOrderItems(List.of(new OrderItem(1L, 5L, 1L, 2, 100L)));
+        assertEquals(1, collector.getNumberOfOrders());
+        assertEquals(1000, collector.getMaxOrderTime());
+        assertEquals(Set.of(10L), collector.getUserItemSets().keySet());
+    }
+
+    @Test
+    void testMaxOrderTime() {
+        OrderItemSetCollector collector = new OrderItemSetCollector();
+        assertEquals(Long.MIN_VALUE, collector.getMaxOrderTime());
+        collector.addOrder(2, 10, 3000);
+        collector.addOrder(1, 10, 5000);
+        collector.addOrder(3, 11, 4000);
+        assertEquals(5000, collector.getMaxOrderTime());
+    }
+
+    @Test
+    void testLastItemStopsAtUnknownOrder() {
+        OrderItemSetCollector collector = new OrderItemSetCollector();
+        collector.addOrder(1, 10, 1000);
+        collector.addOrder(2, 10, 2000);
+        OrderItem first = new OrderItem(1L, 5L, 1L, 1, 100L);
+        collector.addOrderItems(List.of(first, new OrderItem(2L, 6L, 3L, 1, 100L)));
+        collector.addOrderItems(List.of(new OrderItem(3L, 7L, 2L, 1, 100L)));
+        // the item of the unknown order 3 is ignored, so the watermark stays before it
+        assertEquals(first, collector.getLastItem());
+        assertEquals(2, collector.getNumberOfOrderItems());
+        assertEquals(2, collector.getUserItemSets().get(10L).size());
+    }
+
+    @Test
+    void testLastItemStopsAtIgnoredTime() {
+        OrderItemSetCollector collector = new OrderItemSetCollector();
+        collector.addOrder(1, 10, 1000);
+        collector.addOrder(2, 11, 3000);
+        collector.setMaxTime(2000);
+        OrderItem first = new OrderItem(1L, 5L, 1L, 1, 100L);
+        collector.addOrderItems(List.of(first, new OrderItem(2L, 6L, 2L, 1, 100L),
+                new OrderItem(3L, 7L, 1L, 1, 100L)));
+        assertEquals(first, collector.getLastItem());
+        assertEquals(2, collector.getNumberOfOrderItems());
+        assertEquals(Set.of(10L), collector.getUserItemSets().keySet());
+        assertEquals(Map.of(5L, 1, 7L, 1), collector.getUserItemSets().get(10L).iterator().next().getOrderset());
+    }
+
+    @Test
+    void testNoItems() {
+        OrderItemSetCollector collector = new OrderItemSetCollector();
+        collector.addOrder(1, 10, 1000);
+        collector.addOrderItems(List.of(new OrderItem(1L, 5L, null, 1, 100L)));
+        assertNull(collector.getLastItem());
+        assertEquals(0, collector.getNumberOfOrderItems());
+        assertTrue(collector.getUserItemSets().isEmpty());
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PairMatrixTest {
+
+    /**
+     * Rows of three products: 0 -> {1, 2}, 1 -> {0, 2}, 2 -> {0}.
+     */
+    private static PairMatrix createMatrix() {
+        return new PairMatrix(new int[] {0, 2, 4, 5}, new int[] {1, 2, 0, 2, 0}, new int[] {1, 2, 1, 3, 2},
+                new double[] {0.5, 1.0, -0.5, 2.0, -1.0});
+    }
+
+    private static void assertEntry(PairMatrix matrix, int item, int otherItem, int count, double sum) {
+        int entry = matrix.findEntry(item, otherItem);
+        assertTrue(entry >= 0, item + " -> " + otherItem);
+        assertEquals(otherItem, matrix.getProduct(entry));
+        assertEquals(count, matrix.getCount(entry));
+        assertEquals(sum, matrix.getSum(entry), 1e-9);
+    }
+
+    private static void assertSortedRows(PairMatrix matrix) {
+        for (int item = 0; item < matrix.size(); item++) {
+            for (int entry = matrix.getRowStart(item) + 1; entry < matrix.getRowEnd(item); entry++) {
+                assertTrue(matrix.getProduct(entry - 1) < matrix.getProduct(entry));
+            }
+        }
+    }
+
+    @Test
+    void testFindEntry() {
+        PairMatrix matrix = createMatrix();
+        assertEquals(3, matrix.size());
+        assertEquals(5, matrix.getNumberOfEntries());
+        assertEntry(matrix, 0, 2, 2, 1.0);
+        assertEntry(matrix, 2, 0, 2, -1.0);
+        assertTrue(matrix.findEntry(2, 1) < 0);
+        assertTrue(matrix.findEntry(0, 0) < 0);
+    }
+
+    @Test
+    void testUpdateWithRemovedProduct() {
+        // product 1 is removed, products 0 and 2 keep their order and a new product follows
+        int[] mapping = {0, -1, 1};
+        PairMatrix.Deltas deltas = new PairMatrix.Deltas();
+        deltas.add(0, 1, 1, 0.5);
+        deltas.add(0, 1, 1, 0.25);
+        deltas.add(1, 0, -2, 1.0);
+        deltas.add(0, 2, 1, 1.5);
+        deltas.add(2, 0, 1, -1.5);
+        PairMatrix updated = createMatrix().update(mapping, 3, deltas);
+        assertSortedRows(updated);
+        assertEquals(3, updated.size());
+        // the merged pair of the kept products
+        assertEntry(updated, 0, 1, 4, 1.75);
+        // the pair of the new product
+        assertEntry(updated, 0, 2, 1, 1.5);
+        assertEntry(updated, 2, 0, 1, -1.5);
+        // the pair which reaches a count of 0 is removed
+        assertTrue(updated.findEntry(1, 0) < 0);
+        assertTrue(updated.findEntry(1, 2) < 0);
+        assertEquals(3, updated.getNumberOfEntries());
+        assertEquals(updated.getRowStart(1), updated.getRowEnd(1));
+    }
+
+    @Test
+    void testUpdateWithoutChanges() {
+        PairMatrix matrix = createMatrix();
+        PairMatrix updated = matrix.update(new int[] {0, 1, 2}, 4, new PairMatrix.Deltas());
+        assertEquals(4, updated.size());
+        assertEquals(matrix.getNumberOfEntries(), updated.getNumberOfEntries());
+        for (int item = 0; item < matrix.size(); item++) {
+            for (int entry = matrix.getRowStart(item); entry < matrix.getRowEnd(item); entry++) {
+                assertEntry(updated, item, matrix.getProduct(entry), matrix.getCount(entry), matrix.getSum(entry));
+            }
+        }
+        assertEquals(updated.getRowStart(3), updated.getRowEnd(3));
+    }
+
+    @Test
+    void testUpdateOfEmptyMatrix() {
+        PairMatrix.Deltas deltas = new PairMatrix.Deltas();
+        deltas.add(1, 0, 1, 2.0);
+        deltas.add(0, 1, 1, -2.0);
+        PairMatrix updated = PairMatrix.EMPTY.update(new int[0], 2, deltas);
+        assertEquals(2, updated.getNumberOfEntries());
+        // the empty matrix only stores counts, so the sums are dropped
+        assertEntry(updated, 1, 0, 1, 0.0);
+        assertEntry(updated, 0, 1, 1, 0.0);
+    }
+
+    @Test
+    void testInvalidUpdate() {
+        PairMatrix matrix = createMatrix();
+        assertThrows(IllegalArgumentException.class,
+                () -> matrix.update(new int[] {0, 1}, 3, new PairMatrix.Deltas()));
+        PairMatrix.Deltas deltas = new PairMatrix.Deltas();
+        deltas.add(0, 1, 1, 1.0);
+        deltas.add(3, 0, 1, 1.0);
+        assertThrows(IllegalArgumentException.class, () -> matrix.update(new int[] {0, 1, 2}, 3, deltas));
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        PairMatrix matrix = createMatrix();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        matrix.write(new DataOutputStream(bytes));
+        PairMatrix read = PairMatrix.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(matrix.size(), read.size());
+        assertEquals(matrix.getNumberOfEntries(), read.getNumberOfEntries());
+        for (int item = 0; item < matrix.size(); item++) {
+            for (int entry = matrix.getRowStart(item); entry < matrix.getRowEnd(item); entry++) {
+                assertEntry(read, item, matrix.getProduct(entry), matrix.getCount(entry), matrix.getSum(entry));
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RatingMatrixTest {
+
+    private static Map<Long, Map<Long, Double>> toRows(RatingMatrix matrix) {
+        Map<Long, Map<Long, Double>> rows = new TreeMap<>();
+        IdIndex users = matrix.getUsers();
+        IdIndex products = matrix.getProducts();
+        for (int user = 0; user < users.size(); user++) {
+            Map<Long, Double> row = rows.computeIfAbsent(users.getId(user), id -> new TreeMap<>());
+            for (int entry = matrix.getRowStart(user); entry < matrix.getRowEnd(user); entry++) {
+                assertNull(row.put(products.getId(matrix.getRowProduct(entry)), matrix.getRowRating(entry)));
+            }
+        }
+        return rows;
+    }
+
+    private static Map<Long, Map<Long, Double>> toColumns(RatingMatrix matrix) {
+        Map<Long, Map<Long, Double>> columns = new TreeMap<>();
+        IdIndex users = matrix.getUsers();
+        IdIndex products = matrix.getProducts();
+        for (int product = 0; product < products.size(); product++) {
+            int previousUser = -1;
+            for (int entry = matrix.getColumnStart(product); entry < matrix.getColumnEnd(product); entry++) {
+                int user = matrix.getColumnUser(entry);
+                assertTrue(user > previousUser, "columns are sorted by user");
+                previousUser = user;
+                columns.computeIfAbsent(users.getId(user), id -> new TreeMap<>())
+                        .put(products.getId(product), matrix.getColumnRating(entry));
+            }
+        }
+        return columns;
+    }
+
+    private static void assertSortedIds(IdIndex index) {
+        for (int i = 1; i < index.size(); i++) {
+            assertTrue(index.getId(i - 1) < index.getId(i));
+        }
+    }
+
+    @Test
+    void testDuplicatesAreSummed() {
+        RatingMatrix matrix = new RatingMatrix.Builder()
+                .add(5L, 30L, 1.0)
+                .add(2L, 10L, 2.0)
+                .add(5L, 30L, 3.0)
+                .add(2L, 30L, 1.0)
+                .add(5L, 10L, 1.0)
+                .add(2L, 10L, 0.5)
+                .build();
+        assertEquals(4, matrix.getNumberOfRatings());
+        assertEquals(2, matrix.getUsers().size());
+        assertEquals(2, matrix.getProducts().size());
+        assertEquals(Map.of(2L, Map.of(10L, 2.5, 30L, 1.0), 5L, Map.of(10L, 1.0, 30L, 4.0)), toRows(matrix));
+        assertEquals(toRows(matrix), toColumns(matrix));
+    }
+
+    @Test
+    void testOrderOfIds() {
+        RatingMatrix matrix = new RatingMatrix.Builder()
+                .add(9L, 7L, 1.0)
+                .add(-3L, 100L, 1.0)
+                .add(4L, -1L, 1.0)
+                .build();
+        assertSortedIds(matrix.getUsers());
+        assertSortedIds(matrix.getProducts());
+        assertEquals(-3L, matrix.getUsers().getId(0));
+        assertEquals(-1L, matrix.getProducts().getId(0));
+    }
+
+    @Test
+    void testRandomMatrix() {
+        Random random = new Random(5);
+        Map<Long, Map<Long, Double>> expected = new TreeMap<>();
+        RatingMatrix.Builder builder = new RatingMatrix.Builder();
+        for (int i = 0; i < 5000; i++) {
+            long userId = random.nextInt(300);
+            long productId = random.nextInt(100) * 1000L;
+            double quantity = 1 + random.nextInt(4);
+            builder.add(userId, productId, quantity);
+            expected.computeIfAbsent(userId, id -> new TreeMap<>()).merge(productId, quantity, Double::sum);
+        }
+        RatingMatrix matrix = builder.build();
+        assertSortedIds(matrix.getUsers());
+        assertSortedIds(matrix.getProducts());
+        assertEquals(expected, toRows(matrix));
+        assertEquals(expected, toColumns(matrix));
+        assertEquals(expected.values().stream().mapToInt(Map::size).sum(), matrix.getNumberOfRatings());
+    }
+
+    @Test
+    void testAddAll() {
+        RatingMatrix matrix = new RatingMatrix.Builder()
+                .add(1L, 10L, 1.0)
+                .add(2L, 10L, 2.0)
+                .add(2L, 20L, 1.0)
+                .add(3L, 30L, 1.0)
+                .build();
+        IdIndex excludedUsers = new IdIndex();
+        excludedUsers.add(2L);
+        RatingMatrix copy = new RatingMatrix.Builder()
+                .addAll(matrix, excludedUsers)
+                .add(1L, 10L, 2.0)
+                .add(4L, 20L, 1.0)
+                .build();
+        // product 20 is kept by the new rating, the excluded user is gone
+        assertEquals(Map.of(1L, Map.of(10L, 3.0), 3L, Map.of(30L, 1.0), 4L, Map.of(20L, 1.0)), toRows(copy));
+        assertEquals(toRows(copy), toColumns(copy));
+    }
+
+    @Test
+    void testEmptyMatrix() {
+        RatingMatrix matrix = new RatingMatrix.Builder().build();
+        assertEquals(0, matrix.getNumberOfRatings());
+        assertEquals(0, matrix.getUsers().size());
+        assertEquals(0, matrix.getProducts().size());
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import utilities.datamodel.OrderItem;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecommendationCacheTest {
+
+    private final RecommendationCache cache = new RecommendationCache();
+
+    private static RecommendationCache.Key key(long userId, long... products) {
+        OrderItem[] items = new OrderItem[products.length];
+        for (int i = 0; i < products.length; i++) {
+            items[i] = new OrderItem((long) i, products[i], 1L, 1, 100L);
+        }
+        return RecommendationCache.createKey(userId, List.of(items));
+    }
+
+    @Test
+    void testCreateKey() {
+        assertEquals(key(1L, 3L, 5L), key(1L, 5L, 3L));
+        assertNotEquals(key(1L, 3L, 5L), key(2L, 3L, 5L));
+        assertNotEquals(key(1L, 3L, 5L), key(1L, 3L, 5L, 5L));
+        assertEquals(RecommendationCache.createKey(null, List.of(new OrderItem(1L, 3L, 1L, 1, 100L))),
+                RecommendationCache.createKey(null, List.of(new OrderItem(2L, 3L, 4L, 2, 100L))));
+        assertNull(RecommendationCache.createKey(1L, List.of()));
+        assertNull(RecommendationCache.createKey(1L, List.of(new OrderItem(1L, null, 1L, 1, 100L))));
+    }
+
+    @Test
+    void testGetAndPut() {
+        RecommendationCache.Key key = key(1L, 3L);
+        assertNull(cache.get(key));
+        List<Long> cached = cache.put(key, List.of(4L, 5L), cache.getGeneration());
+        assertEquals(List.of(4L, 5L), cached);
+        assertThrows(UnsupportedOperationException.class, () -> cached.add(6L));
+        assertSame(cached, cache.get(key));
+        RecommendationCacheStatistics statistics = cache.getStatistics();
+        assertEquals(1, statistics.hitCount());
+        assertEquals(1, statistics.missCount());
+        assertEquals(0.5, statistics.hitRate());
+        assertEquals(1, statistics.entries());
+    }
+
+    @Test
+    void testPutWithStaleGeneration() {
+        RecommendationCache.Key key = key(1L, 3L);
+        long generation = cache.getGeneration();
+        cache.invalidate();
+        assertEquals(generation + 1, cache.getGeneration());
+        // recommendations of the old model are returned to the caller, but not cached
+        assertEquals(List.of(4L), cache.put(key, List.of(4L), generation));
+        assertNull(cache.get(key));
+        assertEquals(0, cache.getStatistics().entries());
+        assertEquals(1, cache.getStatistics().invalidationCount());
+    }
+
+    @Test
+    void testInvalidate() {
+        RecommendationCache.Key key = key(1L, 3L);
+        cache.put(key, List.of(4L), cache.getGeneration());
+        cache.invalidate();
+        assertNull(cache.get(key));
+        assertEquals(0, cache.getStatistics().entries());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        cache.setMaxEntries(2);
+        RecommendationCache.Key first = key(1L, 1L);
+        RecommendationCache.Key second = key(1L, 2L);
+        RecommendationCache.Key third = key(1L, 3L);
+        cache.put(first, List.of(1L), cache.getGeneration());
+        cache.put(second, List.of(2L), cache.getGeneration());
+        // the access makes the second entry the eldest one
+        assertNotNull(cache.get(first));
+        cache.put(third, List.of(3L), cache.getGeneration());
+        assertEquals(2, cache.getStatistics().entries());
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(first));
+        assertNotNull(cache.get(third));
+    }
+
+    @Test
+    void testSetMaxEntries() {
+        for (long product = 0; product < 5; product++) {
+            cache.put(key(1L, product), List.of(product), cache.getGeneration());
+        }
+        assertNotNull(cache.get(key(1L, 0L)));
+        cache.setMaxEntries(2);
+        assertEquals(2, cache.getStatistics().maxEntries());
+        assertEquals(2, cache.getStatistics().entries());
+        assertNotNull(cache.get(key(1L, 0L)));
+        assertNotNull(cache.get(key(1L, 4L)));
+        assertNull(cache.get(key(1L, 3L)));
+        assertThrows(IllegalArgumentException.class, () -> cache.setMaxEntries(-1));
+        assertEquals(2, cache.getStatistics().maxEntries());
+    }
+
+    @Test
+    void testDisabledCache() {
+        RecommendationCache.Key key = key(1L, 3L);
+        cache.put(key, List.of(4L), cache.getGeneration());
+        cache.setMaxEntries(0);
+        assertEquals(0, cache.getStatistics().entries());
+        assertEquals(List.of(4L), cache.put(key, List.of(4L), cache.getGeneration()));
+        assertNull(cache.get(key));
+        assertEquals(0, cache.getStatistics().entries());
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import utilities.datamodel.Order;
+import utilities.datamodel.OrderItem;
+
+/**
+ * Random orders and order items used by the recommender tests. Most items
+ * follow their orders, some are added to older orders later on.
+ */
+final class TestOrders {
+
+    final int users;
+    final int products;
+    final List<Order> orders = new ArrayList<>();
+    final List<OrderItem> items = new ArrayList<>();
+
+    TestOrders(long seed) {
+        Random random = new Random(seed);
+        users = 20 + random.nextInt(100);
+        products = 5 + random.nextInt(50);
+        int numberOfOrders = 3 * users;
+        for (long orderId = 1; orderId <= numberOfOrders; orderId++) {
+            orders.add(new Order(orderId, 1L + random.nextInt(users), "2020-01-01T10:00:00", 100L,
+                    "", "", "", "", "", ""));
+        }
+        for (int item = 0; item < 3 * numberOfOrders; item++) {
+            long orderId = item / 3 + 1 - (random.nextInt(5) == 0 ? random.nextInt(20) : 0);
+            orderId = Math.max(1, Math.min(numberOfOrders, orderId));
+            items.add(new OrderItem(item + 1L, 1L + random.nextInt(products), orderId,
+                    1 + random.nextInt(3), 100L));
+        }
+    }
+
+    /**
+     * @return a cart of the given size with random products, including unknown
+     *         ones
+     */
+    List<OrderItem> createCart(Random random, int size) {
+        List<OrderItem> cart = new ArrayList<>();
+        for (int item = 0; item < size; item++) {
+            cart.add(new OrderItem(0L, 1L + random.nextInt(products + 2), 0L, 1, 100L));
+        }
+        return cart;
+    }
+
+    /**
+     * @return the recommendations or the name of the thrown exception
+     */
+    static String recommend(IRecommender recommender, long userId, List<OrderItem> cart) {
+        try {
+            return recommender.recommendProducts(userId, cart).toString();
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKSelectorTest {
+
+    private static List<Long> select(int k, double... scores) {
+        TopKSelector selector = new TopKSelector(k);
+        for (int id = 0; id < scores.length; id++) {
+            selector.offer(id, scores[id]);
+        }
+        return selector.toList();
+    }
+
+    @Test
+    void testSelect() {
+        assertEquals(List.of(3L, 1L, 4L), select(3, 0.5, 2.0, -1.0, 7.0, 1.5, 0.0));
+        assertEquals(List.of(1L, 0L), select(5, 1.0, 2.0));
+        assertEquals(List.of(), select(3));
+    }
+
+    @Test
+    void testTiesKeepOfferOrder() {
+        assertEquals(List.of(0L, 1L, 2L), select(3, 1.0, 1.0, 1.0, 1.0, 1.0));
+        assertEquals(List.of(2L, 0L, 3L), select(3, 1.0, 0.5, 2.0, 1.0, 1.0, 0.5));
+    }
+
+    @Test
+    void testZeroK() {
+        assertEquals(List.of(), select(0, 1.0, 2.0, 3.0));
+    }
+
+    @Test
+    void testSpecialScores() {
+        // Scores are compared like Doubles, NaN ranks above positive infinity and -0.0 below 0.0
+        assertEquals(List.of(2L, 1L, 3L, 4L, 0L),
+                select(5, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NaN, 0.0, -0.0));
+        assertEquals(List.of(1L, 3L), select(2, 1.0, Double.NaN, 2.0, Double.NaN));
+    }
+
+    @Test
+    void testToListEmptiesSelector() {
+        TopKSelector selector = new TopKSelector(2);
+        selector.offer(1L, 1.0);
+        assertEquals(List.of(1L), selector.toList());
+        assertEquals(List.of(), selector.toList());
+        selector.offer(2L, 0.5);
+        selector.offer(3L, 0.7);
+        selector.offer(4L, 0.6);
+        assertEquals(List.of(3L, 4L), selector.toList());
+    }
+
+    @Test
+    void testEqualsStableSort() {
+        Random random = new Random(11);
+        for (int round = 0; round < 100; round++) {
+            int k = random.nextInt(12);
+            double[] scores = new double[random.nextInt(50)];
+            List<Long> ids = new ArrayList<>();
+            for (int id = 0; id < scores.length; id++) {
+                // Few distinct scores, so many ties
+                scores[id] = random.nextInt(5);
+                ids.add((long) id);
+            }
+            ids.sort(Comparator.comparingDouble((Long id) -> scores[id.intValue()]).reversed());
+            assertEquals(ids.subList(0, Math.min(k, ids.size())), select(k, scores));
+        }
+    }
+}
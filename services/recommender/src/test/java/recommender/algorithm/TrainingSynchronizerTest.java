@@ -0,0 +1,166 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import recommender.algorithm.impl.cf.SlopeOneRecommender;
+import recommender.algorithm.impl.pop.PopularityBasedRecommender;
+import utilities.datamodel.OrderItem;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utilities.rest.api.API.PERSISTENCE_ENDPOINT;
+
+class TrainingSynchronizerTest {
+
+    @TempDir
+    Path directory;
+
+    private final TestOrders data = new TestOrders(11);
+    private final TrainingSynchronizer synchronizer = TrainingSynchronizer.getInstance();
+    private final RecommenderSelector selector = RecommenderSelector.getInstance();
+    private FakePersistence persistence;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        persistence = new FakePersistence();
+        persistence.orders.addAll(data.orders);
+        synchronizer.setupHttpClient("HTTP/1.1", "localhost", persistence.getPort());
+        synchronizer.setSnapshotFile(directory.resolve("recommender.snapshot"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        persistence.close();
+        // the other tests expect the singleton without a max time and HTTP client
+        restore(data.items);
+        synchronizer.setSnapshotFile(null);
+        synchronizer.setupHttpClient(null, "", null);
+    }
+
+    /**
+     * Restores a model trained on the given items, which knows all of them.
+     */
+    private void restore(List<OrderItem> items) throws Exception {
+        AbstractRecommender recommender = new SlopeOneRecommender();
+        recommender.train(items, data.orders);
+        AbstractRecommender fallback = new PopularityBasedRecommender();
+        fallback.train(items, data.orders);
+        new ModelSnapshot(recommender, fallback, items.get(items.size() - 1),
+                TrainingSynchronizer.DEFAULT_MAX_TIME_VALUE).write(synchronizer.getSnapshotFile());
+        assertTrue(synchronizer.loadSnapshot());
+    }
+
+    private List<String> recommendAll() {
+        Random random = new Random(11);
+        return LongStream.rangeClosed(0, data.users + 1)
+                .mapToObj(userId -> TestOrders.recommend(selector, userId, data.createCart(random, 2)))
+                .toList();
+    }
+
+    private List<String> recommendTrainedOn(List<OrderItem> items) throws Exception {
+        restore(items);
+        return recommendAll();
+    }
+
+    @Test
+    void testRetrain() throws Exception {
+        List<String> expected = recommendTrainedOn(data.items);
+        restore(data.items.subList(0, 10));
+        persistence.items.addAll(data.items);
+        assertEquals(data.orders.size() + data.items.size(), synchronizer.retrieveDataAndRetrain());
+        assertEquals(expected, recommendAll());
+    }
+
+    @Test
+    void testRetrainWithoutPersistenceKeepsModel() throws Exception {
+        persistence.items.addAll(data.items);
+        List<String> expected = recommendTrainedOn(data.items.subList(0, 10));
+        persistence.failingPath = PERSISTENCE_ENDPOINT;
+        assertEquals(-1, synchronizer.retrieveDataAndRetrain());
+        assertEquals(expected, recommendAll());
+        assertTrue(synchronizer.isReady());
+    }
+
+    @Test
+    void testRetrainWithMissingItemsKeepsModel() throws Exception {
+        // the orders are retrieved, but the order items are not
+        persistence.items.addAll(data.items);
+        List<String> expected = recommendTrainedOn(data.items.subList(0, 10));
+        persistence.failingPath = PERSISTENCE_ENDPOINT + "/orderitems";
+        assertEquals(-1, synchronizer.retrieveDataAndRetrain());
+        assertEquals(expected, recommendAll());
+        assertTrue(synchronizer.isReady());
+    }
+
+    @Test
+    void testUpdate() throws Exception {
+        List<String> expected = recommendTrainedOn(data.items);
+        int half = data.items.size() / 2;
+        restore(data.items.subList(0, half));
+        persistence.items.addAll(data.items);
+        assertTrue(synchronizer.retrieveChangesAndUpdate() >= data.items.size() - half);
+        assertEquals(expected, recommendAll());
+        assertEquals(0, synchronizer.retrieveChangesAndUpdate());
+    }
+
+    @Test
+    void testUpdateWithLateItem() throws Exception {
+        List<String> expected = recommendTrainedOn(data.items);
+        int half = data.items.size() / 2;
+        restore(data.items.subList(0, half));
+        // an item after the watermark is committed after the items with higher IDs
+        OrderItem lateItem = data.items.get(half + 5);
+        List<OrderItem> items = new ArrayList<>(data.items);
+        items.remove(lateItem);
+        persistence.items.addAll(items);
+        assertTrue(synchronizer.retrieveChangesAndUpdate() > 0);
+        assertNotEquals(expected, recommendAll());
+        persistence.items.add(lateItem);
+        assertTrue(synchronizer.retrieveChangesAndUpdate() > 0);
+        assertEquals(expected, recommendAll());
+        assertEquals(0, synchronizer.retrieveChangesAndUpdate());
+    }
+
+    @Test
+    void testUpdateWithoutPersistenceKeepsModel() throws Exception {
+        persistence.items.addAll(data.items);
+        List<String> expected = recommendTrainedOn(data.items.subList(0, 10));
+        persistence.failingPath = PERSISTENCE_ENDPOINT;
+        assertEquals(-1, synchronizer.retrieveChangesAndUpdate());
+        // the watermark is kept as well, so the next update does not retrain
+        assertEquals(-1, synchronizer.retrieveChangesAndUpdate());
+        assertEquals(expected, recommendAll());
+        assertTrue(synchronizer.isReady());
+    }
+
+    @Test
+    void testUpdateWithChangedDatabase() throws Exception {
+        restore(data.items.subList(0, 10));
+        // the database was generated again, so the last known item is gone
+        TestOrders other = new TestOrders(12);
+        persistence.orders.clear();
+        persistence.orders.addAll(other.orders);
+        persistence.items.addAll(other.items);
+        assertEquals(other.orders.size() + other.items.size(), synchronizer.retrieveChangesAndUpdate());
+    }
+}
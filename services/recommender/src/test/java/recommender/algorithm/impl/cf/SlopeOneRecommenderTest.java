@@ -0,0 +1,81 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package recommender.algorithm.impl.cf;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import recommender.algorithm.PairMatrix;
+import recommender.algorithm.RatingMatrix;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlopeOneRecommenderTest {
+
+    private static RatingMatrix createRatings(Random random, int users, int products, int maxItems) {
+        RatingMatrix.Builder builder = new RatingMatrix.Builder();
+        for (long userId = 0; userId < users; userId++) {
+            int items = 1 + random.nextInt(maxItems);
+            for (int i = 0; i < items; i++) {
+                // skewed, so the blocks differ in their number of items
+                int product = (int) (products * Math.pow(random.nextDouble(), 2));
+                builder.add(userId, product, 1 + random.nextInt(3));
+            }
+        }
+        return builder.build();
+    }
+
+    private static long getWork(RatingMatrix ratings) {
+        long work = 0;
+        for (int user = 0; user < ratings.getUsers().size(); user++) {
+            long rowLength = ratings.getRowEnd(user) - ratings.getRowStart(user);
+            work += rowLength * rowLength;
+        }
+        return work;
+    }
+
+    private static void assertSameMatrix(PairMatrix expected, PairMatrix actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getNumberOfEntries(), actual.getNumberOfEntries());
+        for (int item = 0; item < expected.size(); item++) {
+            assertEquals(expected.getRowStart(item), actual.getRowStart(item));
+            assertEquals(expected.getRowEnd(item), actual.getRowEnd(item));
+        }
+        for (int entry = 0; entry < expected.getNumberOfEntries(); entry++) {
+            assertEquals(expected.getProduct(entry), actual.getProduct(entry));
+            assertEquals(expected.getCount(entry), actual.getCount(entry));
+            assertEquals(expected.getSum(entry), actual.getSum(entry));
+        }
+    }
+
+    @Test
+    void testParallelBlocksMatchSingleBlock() {
+        Random random = new Random(17);
+        RatingMatrix ratings = createRatings(random, 2000, 300, 20);
+        assertTrue(getWork(ratings) >= SlopeOneRecommender.MIN_PARALLEL_WORK);
+        PairMatrix single = SlopeOneRecommender.buildDifferencesMatrices(ratings, 1);
+        assertTrue(single.getNumberOfEntries() > 0);
+        for (int maxBlocks : new int[] {2, 3, 7, 64, 300, 1000}) {
+            assertSameMatrix(single, SlopeOneRecommender.buildDifferencesMatrices(ratings, maxBlocks));
+        }
+    }
+
+    @Test
+    void testSmallDataUsesSingleBlock() {
+        RatingMatrix ratings = createRatings(new Random(3), 20, 10, 4);
+        assertTrue(getWork(ratings) < SlopeOneRecommender.MIN_PARALLEL_WORK);
+        assertSameMatrix(SlopeOneRecommender.buildDifferencesMatrices(ratings, 1),
+                SlopeOneRecommender.buildDifferencesMatrices(ratings, 8));
+    }
+}
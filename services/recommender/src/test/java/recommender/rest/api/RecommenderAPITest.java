@@ -13,12 +13,20 @@
  */
 package recommender.rest.api;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import recommender.algorithm.RecommendationCache;
+import recommender.algorithm.RecommenderSelector;
+import utilities.datamodel.OrderItem;
+
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static utilities.rest.api.API.RECOMMENDER_ENDPOINT;
@@ -46,6 +54,10 @@ class RecommenderAPITest {
         api = null;
     }
 
+    private JsonNode readContent() throws Exception {
+        return new ObjectMapper().readTree(((FullHttpResponse) response).content().toString(CharsetUtil.UTF_8));
+    }
+
     @Test
     void testGetRecommendedProducts() {
         header.setMethod(HttpMethod.POST);
@@ -78,4 +90,31 @@ class RecommenderAPITest {
         response = api.handle(header, body, null);
         assertEquals(HttpResponseStatus.OK, response.status());
     }
+
+    @Test
+    void testGetCacheStats() throws Exception {
+        header.setMethod(HttpMethod.GET);
+        header.setUri(RECOMMENDER_ENDPOINT + "/cache/stats");
+        response = api.handle(header, body, null);
+        assertEquals(HttpResponseStatus.OK, response.status());
+        JsonNode before = readContent();
+
+        // One miss, one hit and one invalidation
+        RecommendationCache cache = RecommenderSelector.getInstance().getCache();
+        RecommendationCache.Key key = RecommendationCache.createKey(42L,
+                List.of(new OrderItem(1L, 7L, 1L, 1, 100L)));
+        assertNotNull(key);
+        assertNull(cache.get(key));
+        cache.put(key, List.of(1L, 2L), cache.getGeneration());
+        assertEquals(List.of(1L, 2L), cache.get(key));
+        cache.invalidate();
+
+        response = api.handle(header, body, null);
+        assertEquals(HttpResponseStatus.OK, response.status());
+        JsonNode after = readContent();
+        assertEquals(before.get("hitCount").asLong() + 1, after.get("hitCount").asLong());
+        assertEquals(before.get("missCount").asLong() + 1, after.get("missCount").asLong());
+        assertEquals(before.get("invalidationCount").asLong() + 1, after.get("invalidationCount").asLong());
+        assertEquals(0, after.get("entries").asInt());
+    }
 }
\ No newline at end of file
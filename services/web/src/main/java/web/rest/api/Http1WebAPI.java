@@ -50,11 +50,14 @@ public class Http1WebAPI implements API {
     private final Integer authPort;
     private final Integer persistencePort;
     private final Integer recommenderPort;
+    private final boolean imageUrls;
     private final HttpRequest request;
     private static final Logger LOG = LogManager.getLogger(Http1WebAPI.class);
 
     public Http1WebAPI(String gatewayHost, Integer gatewayPort) {
         mapper = new ObjectMapper();
+        // Let views reference images by URL instead of embedding the image data
+        imageUrls = Boolean.parseBoolean(System.getenv("IMAGE_URLS"));
         if (gatewayHost.isEmpty()) {
             this.gatewayHost = "localhost";
             authPort = DEFAULT_AUTH_PORT;
@@ -193,6 +196,13 @@ public class Http1WebAPI implements API {
     // Helper methods
     //
 
+    private String imageRequestPath(String imageEndpoint) {
+        if (imageUrls) {
+            return imageEndpoint + "?" + IMAGE_FORMAT_PARAMETER + "=" + IMAGE_FORMAT_URL;
+        }
+        return imageEndpoint;
+    }
+
     private Map<String, String> getWebImages(
             String imageEndpoint,
             Map<String, String> imageSizeMap
@@ -203,7 +213,7 @@ public class Http1WebAPI implements API {
         FullHttpRequest postRequest = new DefaultFullHttpRequest(
                 HTTP_1_1,
                 POST,
-                imageEndpoint,
+                imageRequestPath(imageEndpoint),
                 postBody
         );
         postRequest.headers().set(HttpHeaderNames.CONTENT_LENGTH, postBody.readableBytes());
@@ -231,7 +241,7 @@ public class Http1WebAPI implements API {
         FullHttpRequest postRequest = new DefaultFullHttpRequest(
                 HTTP_1_1,
                 POST,
-                imageEndpoint,
+                imageRequestPath(imageEndpoint),
                 Unpooled.copiedBuffer(json, CharsetUtil.UTF_8)
         );
         postRequest.headers().set(HttpHeaderNames.CONTENT_LENGTH, postBody.readableBytes());
@@ -48,12 +48,15 @@ public class Http2WebAPI implements API {
     private final Integer authPort;
     private final Integer persistencePort;
     private final Integer recommenderPort;
+    private final boolean imageUrls;
     private Http2HeadersFrame http2HeadersFrame;
     private Http2DataFrame http2DataFrame;
     private static final Logger LOG = LogManager.getLogger(Http2WebAPI.class);
 
     public Http2WebAPI(String gatewayHost, Integer gatewayPort) {
         mapper = new ObjectMapper();
+        // Let views reference images by URL instead of embedding the image data
+        imageUrls = Boolean.parseBoolean(System.getenv("IMAGE_URLS"));
         if (gatewayHost.isEmpty()) {
             this.gatewayHost = "localhost";
             authPort = DEFAULT_AUTH_PORT;
@@ -183,6 +186,13 @@ public class Http2WebAPI implements API {
     // Helper methods
     //
 
+    private String imageRequestPath(String imageEndpoint) {
+        if (imageUrls) {
+            return imageEndpoint + "?" + IMAGE_FORMAT_PARAMETER + "=" + IMAGE_FORMAT_URL;
+        }
+        return imageEndpoint;
+    }
+
     private Map<String, String> getWebImages(
             String imageEndpoint,
             Map<String, String> imageSizeMap
@@ -193,7 +203,7 @@ public class Http2WebAPI implements API {
         http2HeadersFrame = new DefaultHttp2HeadersFrame(
                 Http2Response.postContentHeader(
                         gatewayHost + ":" + imagePort,
-                        imageEndpoint,
+                        imageRequestPath(imageEndpoint),
                         String.valueOf(postBody.readableBytes())
                 ),
                 false
@@ -222,7 +232,7 @@ public class Http2WebAPI implements API {
         http2HeadersFrame = new DefaultHttp2HeadersFrame(
                 Http2Response.postContentHeader(
                         gatewayHost + ":" + imagePort,
-                        imageEndpoint,
+                        imageRequestPath(imageEndpoint),
                         String.valueOf(postBody.readableBytes())
                 ),
                 false
@@ -52,6 +52,7 @@ public class Http3WebAPI implements API {
     private final Integer authPort;
     private final Integer imagePort;
     private final Integer recommenderPort;
+    private final boolean imageUrls;
     private Http3HeadersFrame http3HeadersFrame;
     private Http3DataFrame http3DataFrame;
     private static final Logger LOG = LogManager.getLogger(Http3WebAPI.class);
@@ -64,6 +65,8 @@ public class Http3WebAPI implements API {
             Integer recommenderPort
     ) {
         mapper = new ObjectMapper();
+        // Let views reference images by URL instead of embedding the image data
+        imageUrls = Boolean.parseBoolean(System.getenv("IMAGE_URLS"));
         if (gatewayHost.isEmpty()) {
             this.gatewayHost = "localhost";
             this.persistencePort = DEFAULT_PERSISTENCE_PORT;
@@ -193,6 +196,13 @@ public class Http3WebAPI implements API {
     // Helper methods
     //
 
+    private String imageRequestPath(String imageEndpoint) {
+        if (imageUrls) {
+            return imageEndpoint + "?" + IMAGE_FORMAT_PARAMETER + "=" + IMAGE_FORMAT_URL;
+        }
+        return imageEndpoint;
+    }
+
     private Map<String, String> getWebImages(
             String imageEndpoint,
             Map<String, String> imageSizeMap
@@ -203,7 +213,7 @@ public class Http3WebAPI implements API {
         http3HeadersFrame = new DefaultHttp3HeadersFrame(
                 Http3Response.postContentHeader(
                         gatewayHost + ":" + imagePort,
-                        imageEndpoint,
+                        imageRequestPath(imageEndpoint),
                         String.valueOf(postBody.readableBytes())
                 )
         );
@@ -233,7 +243,7 @@ public class Http3WebAPI implements API {
         http3HeadersFrame = new DefaultHttp3HeadersFrame(
                 Http3Response.postContentHeader(
                         gatewayHost + ":" + imagePort,
-                        imageEndpoint,
+                        imageRequestPath(imageEndpoint),
                         String.valueOf(postBody.readableBytes())
                 )
         );
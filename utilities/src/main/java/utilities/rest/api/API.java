@@ -32,6 +32,9 @@ public interface API {
     // Image service
     Integer DEFAULT_IMAGE_PORT = 1004;
     String IMAGE_ENDPOINT = "/api/image";
+    String IMAGE_RAW_PATH = "/raw/";
+    String IMAGE_FORMAT_PARAMETER = "format";
+    String IMAGE_FORMAT_URL = "url";
     // Recommender service
     Integer DEFAULT_RECOMMENDER_PORT = 1005;
     String RECOMMENDER_ENDPOINT = "/api/recommender";
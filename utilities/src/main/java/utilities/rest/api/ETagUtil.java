@@ -0,0 +1,49 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package utilities.rest.api;
+
+/**
+ * Helper class for entity tags and conditional requests
+ *
+ * @author Philipp Backes
+ *
+ */
+public class ETagUtil {
+
+    /**
+     * Check whether an If-None-Match header value matches the given entity tag
+     *
+     * @param ifNoneMatch If-None-Match header value, may be null
+     * @param eTag Quoted entity tag of the current representation
+     * @return True if the client already holds the current representation
+     */
+    public static boolean matches(CharSequence ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || eTag == null) {
+            return false;
+        }
+        // Weak comparison as defined for If-None-Match, ignoring the weakness indicator of both tags
+        String opaqueTag = opaqueTag(eTag);
+        for (String candidate : ifNoneMatch.toString().split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || opaqueTag(candidate).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+}
@@ -20,7 +20,10 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -42,6 +45,19 @@ public class Http1Client {
     }
 
     public void sendRequest(Http1ClientHandler handler) {
+        // Revalidate a cached response instead of transferring it again
+        String cacheKey = null;
+        ValidatorCache.Entry cached = null;
+        if (HttpMethod.GET.equals(httpRequest.method())) {
+            cacheKey = ValidatorCache.key(host, port, httpRequest.uri());
+            cached = ValidatorCache.VALIDATORS.get(cacheKey);
+            // A reused request must not carry the entity tag of a response that is no longer cached
+            if (cached != null) {
+                httpRequest.headers().set(HttpHeaderNames.IF_NONE_MATCH, cached.eTag());
+            } else {
+                httpRequest.headers().remove(HttpHeaderNames.IF_NONE_MATCH);
+            }
+        }
         EventLoopGroup group = new NioEventLoopGroup(1);
 
         try {
@@ -64,6 +80,11 @@ public class Http1Client {
             channel.writeAndFlush(httpRequest);
             // Wait until the connection is closed
             channel.closeFuture().sync();
+            if (cached != null && HttpResponseStatus.NOT_MODIFIED.equals(handler.status)) {
+                handler.jsonContent = cached.content();
+            } else if (cacheKey != null && HttpResponseStatus.OK.equals(handler.status)) {
+                ValidatorCache.VALIDATORS.put(cacheKey, handler.eTag, handler.jsonContent);
+            }
         } catch(Exception e) {
             LOG.error(e.getMessage());
         } finally {
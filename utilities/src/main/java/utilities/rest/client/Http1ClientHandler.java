@@ -16,7 +16,10 @@ package utilities.rest.client;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.util.CharsetUtil;
 import org.apache.logging.log4j.LogManager;
@@ -29,6 +32,8 @@ import org.apache.logging.log4j.Logger;
 public class Http1ClientHandler extends SimpleChannelInboundHandler<HttpObject> {
 
     public String jsonContent = "";
+    public HttpResponseStatus status;
+    public String eTag;
     private static final Logger LOG = LogManager.getLogger(Http1ClientHandler.class);
 
     @Override
@@ -44,6 +49,10 @@ public class Http1ClientHandler extends SimpleChannelInboundHandler<HttpObject>
 
     @Override
     protected void channelRead0(ChannelHandlerContext context, HttpObject message) {
+        if (message instanceof HttpResponse response) {
+            status = response.status();
+            eTag = response.headers().get(HttpHeaderNames.ETAG);
+        }
         if (message instanceof HttpContent httpContent) {
             if (httpContent instanceof LastHttpContent) {
                 jsonContent += httpContent.content().toString(CharsetUtil.UTF_8);
@@ -18,6 +18,9 @@ import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http2.*;
 import io.netty.handler.ssl.*;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
@@ -44,6 +47,20 @@ public class Http2Client {
     }
 
     public void sendRequest(Http2ClientStreamFrameHandler handler) {
+        // Revalidate a cached response instead of transferring it again
+        String cacheKey = null;
+        ValidatorCache.Entry cached = null;
+        Http2Headers headers = header.headers();
+        if (HttpMethod.GET.asciiName().contentEquals(headers.method()) && headers.path() != null) {
+            cacheKey = ValidatorCache.key(host, port, headers.path());
+            cached = ValidatorCache.VALIDATORS.get(cacheKey);
+            // A reused request must not carry the entity tag of a response that is no longer cached
+            if (cached != null) {
+                headers.set(HttpHeaderNames.IF_NONE_MATCH, cached.eTag());
+            } else {
+                headers.remove(HttpHeaderNames.IF_NONE_MATCH);
+            }
+        }
         EventLoopGroup group = new NioEventLoopGroup(1);
 
         try {
@@ -93,6 +110,11 @@ public class Http2Client {
             }
             // Wait until the channel is closed
             channel.closeFuture().syncUninterruptibly();
+            if (cached != null && HttpResponseStatus.NOT_MODIFIED.equals(handler.status)) {
+                handler.jsonContent = cached.content();
+            } else if (cacheKey != null && HttpResponseStatus.OK.equals(handler.status)) {
+                ValidatorCache.VALIDATORS.put(cacheKey, handler.eTag, handler.jsonContent);
+            }
         } catch(Exception e) {
             LOG.error(e.getMessage());
         } finally {
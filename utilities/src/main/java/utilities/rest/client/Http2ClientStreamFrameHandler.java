@@ -14,6 +14,8 @@
 package utilities.rest.client;
 
 import io.netty.channel.*;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http2.Http2DataFrame;
 import io.netty.handler.codec.http2.Http2HeadersFrame;
 import io.netty.handler.codec.http2.Http2StreamFrame;
@@ -29,6 +31,8 @@ public class Http2ClientStreamFrameHandler extends SimpleChannelInboundHandler<H
 
     private Channel channel;
     public String jsonContent = "";
+    public HttpResponseStatus status;
+    public String eTag;
     private static final Logger LOG = LogManager.getLogger(Http2ClientStreamFrameHandler.class);
 
     public void setCloseableChannel(Channel channel) {
@@ -55,11 +59,16 @@ public class Http2ClientStreamFrameHandler extends SimpleChannelInboundHandler<H
                 // LOG.info("Received end data frame: " + dataFrame);
                 channel.close();
             }
-        } 
-        /*
-        else if (message instanceof Http2HeadersFrame headersFrame && headersFrame.isEndStream()) {
-            LOG.info("Received end header frame: " + headersFrame);
-        } 
-        */
+        } else if (message instanceof Http2HeadersFrame headersFrame) {
+            if (headersFrame.headers().status() != null) {
+                status = HttpResponseStatus.parseLine(headersFrame.headers().status());
+                CharSequence eTagValue = headersFrame.headers().get(HttpHeaderNames.ETAG);
+                eTag = eTagValue == null ? null : eTagValue.toString();
+            }
+            // Responses without content like 304 Not Modified end with the header frame
+            if (headersFrame.isEndStream()) {
+                channel.close();
+            }
+        }
     }
 }
@@ -17,6 +17,9 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import io.netty.incubator.codec.http3.*;
 import io.netty.incubator.codec.quic.QuicChannel;
@@ -49,6 +52,20 @@ public class Http3Client {
     }
 
     public void sendRequest(Http3ClientStreamInboundHandler handler) {
+        // Revalidate a cached response instead of transferring it again
+        String cacheKey = null;
+        ValidatorCache.Entry cached = null;
+        Http3Headers headers = header.headers();
+        if (HttpMethod.GET.asciiName().contentEquals(headers.method()) && headers.path() != null) {
+            cacheKey = ValidatorCache.key(host, port, headers.path());
+            cached = ValidatorCache.VALIDATORS.get(cacheKey);
+            // A reused request must not carry the entity tag of a response that is no longer cached
+            if (cached != null) {
+                headers.set(HttpHeaderNames.IF_NONE_MATCH, cached.eTag());
+            } else {
+                headers.remove(HttpHeaderNames.IF_NONE_MATCH);
+            }
+        }
         EventLoopGroup group = new NioEventLoopGroup(1);
 
         try {
@@ -94,6 +111,11 @@ public class Http3Client {
             // After we received the response lets also close the underlying QUIC and datagram channel
             quicChannel.close().sync();
             channel.close().sync();
+            if (cached != null && HttpResponseStatus.NOT_MODIFIED.equals(handler.status)) {
+                handler.jsonContent = cached.content();
+            } else if (cacheKey != null && HttpResponseStatus.OK.equals(handler.status)) {
+                ValidatorCache.VALIDATORS.put(cacheKey, handler.eTag, handler.jsonContent);
+            }
         } catch(Exception e) {
             LOG.error(e.getMessage());
         } finally {
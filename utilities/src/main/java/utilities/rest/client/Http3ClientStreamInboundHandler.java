@@ -15,6 +15,7 @@ package utilities.rest.client;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.incubator.codec.http3.Http3DataFrame;
 import io.netty.incubator.codec.http3.Http3HeadersFrame;
 import io.netty.incubator.codec.http3.Http3RequestStreamInboundHandler;
@@ -30,6 +31,8 @@ import org.apache.logging.log4j.Logger;
 public class Http3ClientStreamInboundHandler extends Http3RequestStreamInboundHandler {
 
     public String jsonContent = "";
+    public HttpResponseStatus status;
+    public String eTag;
     private static final Logger LOG = LogManager.getLogger(Http3ClientStreamInboundHandler.class);
 
     @Override
@@ -39,7 +42,16 @@ public class Http3ClientStreamInboundHandler extends Http3RequestStreamInboundHa
 
     @Override
     protected void channelRead(ChannelHandlerContext context, Http3HeadersFrame headersFrame, boolean isLast) {
+        if (headersFrame.headers().status() != null) {
+            status = HttpResponseStatus.parseLine(headersFrame.headers().status());
+            CharSequence eTagValue = headersFrame.headers().get(HttpHeaderNames.ETAG);
+            eTag = eTagValue == null ? null : eTagValue.toString();
+        }
         ReferenceCountUtil.release(headersFrame);
+        // Responses without content like 304 Not Modified end with the header frame
+        if (isLast) {
+            context.close();
+        }
     }
 
     @Override
@@ -0,0 +1,100 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package utilities.rest.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of GET responses with an entity tag for inter-service communication.
+ * Clients revalidate cached responses with If-None-Match and reuse the cached
+ * content if the server answers with 304 Not Modified.
+ * @author Philipp Backes
+ */
+final class ValidatorCache {
+
+    /**
+     * Maximum number of cached responses
+     */
+    static final int MAX_ENTRIES = 256;
+    /**
+     * Maximum number of characters of all cached responses
+     */
+    static final int MAX_TOTAL_LENGTH = 4 * 1024 * 1024;
+    /**
+     * Maximum number of characters of a single cached response
+     */
+    static final int MAX_CONTENT_LENGTH = 256 * 1024;
+    /**
+     * Shared cache of all clients
+     */
+    static final ValidatorCache VALIDATORS = new ValidatorCache();
+
+    // Least recently used responses first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalLength;
+
+    ValidatorCache() {}
+
+    /**
+     * Build the cache key of a request
+     * @param host Host of the server
+     * @param port Port of the server
+     * @param path Path including the query string
+     * @return Cache key
+     */
+    static String key(String host, Integer port, CharSequence path) {
+        return host + ':' + port + path;
+    }
+
+    /**
+     * Get the cached response of a request
+     * @param key Cache key of the request
+     * @return Cached response or null
+     */
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Cache the response of a request, responses without entity tag or with large content are dropped
+     * @param key Cache key of the request
+     * @param eTag Entity tag of the response, may be null
+     * @param content Content of the response
+     */
+    synchronized void put(String key, String eTag, String content) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            totalLength -= old.content().length();
+        }
+        if (eTag == null || content.isEmpty() || content.length() > MAX_CONTENT_LENGTH) {
+            return;
+        }
+        entries.put(key, new Entry(eTag, content));
+        totalLength += content.length();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > MAX_ENTRIES || totalLength > MAX_TOTAL_LENGTH) {
+            totalLength -= eldest.next().content().length();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Cached response
+     * @param eTag Entity tag of the response
+     * @param content Content of the response
+     */
+    record Entry(String eTag, String content) {}
+}
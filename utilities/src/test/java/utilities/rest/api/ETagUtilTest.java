@@ -0,0 +1,61 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package utilities.rest.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ETagUtilTest {
+
+    private static final String ETAG = "\"abc123\"";
+
+    @Test
+    void testStrongTag() {
+        assertTrue(ETagUtil.matches(ETAG, ETAG));
+        assertTrue(ETagUtil.matches(" " + ETAG + " ", ETAG));
+        assertFalse(ETagUtil.matches("\"abc124\"", ETAG));
+        // Tags are opaque quoted strings, the unquoted value is a different tag
+        assertFalse(ETagUtil.matches("abc123", ETAG));
+        assertFalse(ETagUtil.matches("", ETAG));
+    }
+
+    @Test
+    void testWeakTag() {
+        assertTrue(ETagUtil.matches("W/" + ETAG, ETAG));
+        assertTrue(ETagUtil.matches(ETAG, "W/" + ETAG));
+        assertTrue(ETagUtil.matches("W/" + ETAG, "W/" + ETAG));
+        assertFalse(ETagUtil.matches("W/\"abc124\"", ETAG));
+    }
+
+    @Test
+    void testList() {
+        assertTrue(ETagUtil.matches("\"x\", " + ETAG + ", \"y\"", ETAG));
+        assertTrue(ETagUtil.matches("\"x\",W/" + ETAG, ETAG));
+        assertFalse(ETagUtil.matches("\"x\", \"y\"", ETAG));
+    }
+
+    @Test
+    void testWildcard() {
+        assertTrue(ETagUtil.matches("*", ETAG));
+        assertTrue(ETagUtil.matches("\"x\", *", ETAG));
+    }
+
+    @Test
+    void testMissingTags() {
+        assertFalse(ETagUtil.matches(null, ETAG));
+        assertFalse(ETagUtil.matches(ETAG, null));
+        assertFalse(ETagUtil.matches("*", null));
+    }
+}
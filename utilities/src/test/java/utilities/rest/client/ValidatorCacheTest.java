@@ -0,0 +1,88 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package utilities.rest.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidatorCacheTest {
+
+    private final ValidatorCache cache = new ValidatorCache();
+
+    private static String key(int i) {
+        return ValidatorCache.key("localhost", 8080, "/api/persistence/products?id=" + i);
+    }
+
+    @Test
+    void testPutAndGet() {
+        assertNull(cache.get(key(1)));
+        cache.put(key(1), "\"a\"", "[1]");
+        assertEquals(new ValidatorCache.Entry("\"a\"", "[1]"), cache.get(key(1)));
+        cache.put(key(1), "\"b\"", "[2]");
+        assertEquals(new ValidatorCache.Entry("\"b\"", "[2]"), cache.get(key(1)));
+        assertNotEquals(key(1), ValidatorCache.key("localhost", 8081, "/api/persistence/products?id=1"));
+    }
+
+    @Test
+    void testUncachableResponses() {
+        cache.put(key(1), "\"a\"", "[1]");
+        // A response without entity tag replaces the cached one
+        cache.put(key(1), null, "[1]");
+        assertNull(cache.get(key(1)));
+        cache.put(key(2), "\"a\"", "");
+        assertNull(cache.get(key(2)));
+        cache.put(key(3), "\"a\"", "x".repeat(ValidatorCache.MAX_CONTENT_LENGTH + 1));
+        assertNull(cache.get(key(3)));
+        cache.put(key(4), "\"a\"", "x".repeat(ValidatorCache.MAX_CONTENT_LENGTH));
+        assertNotNull(cache.get(key(4)));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        for (int i = 0; i < ValidatorCache.MAX_ENTRIES; i++) {
+            cache.put(key(i), "\"" + i + "\"", "[" + i + "]");
+        }
+        // The access makes the second entry the least recently used one
+        assertNotNull(cache.get(key(0)));
+        cache.put(key(ValidatorCache.MAX_ENTRIES), "\"new\"", "[]");
+        assertNotNull(cache.get(key(0)));
+        assertNull(cache.get(key(1)));
+        assertNotNull(cache.get(key(2)));
+        assertNotNull(cache.get(key(ValidatorCache.MAX_ENTRIES)));
+    }
+
+    @Test
+    void testTotalLengthIsBounded() {
+        String content = "x".repeat(ValidatorCache.MAX_CONTENT_LENGTH);
+        int fitting = ValidatorCache.MAX_TOTAL_LENGTH / ValidatorCache.MAX_CONTENT_LENGTH;
+        for (int i = 0; i < fitting; i++) {
+            cache.put(key(i), "\"" + i + "\"", content);
+        }
+        for (int i = 0; i < fitting; i++) {
+            assertNotNull(cache.get(key(i)));
+        }
+        cache.put(key(fitting), "\"new\"", content);
+        assertNull(cache.get(key(0)));
+        assertNotNull(cache.get(key(1)));
+        assertNotNull(cache.get(key(fitting)));
+        // Replacing an entry releases its length, so the next large entry evicts a single one
+        cache.put(key(1), "\"smaller\"", "[]");
+        cache.put(key(fitting + 1), "\"new\"", content);
+        assertNull(cache.get(key(2)));
+        assertNotNull(cache.get(key(3)));
+        assertNotNull(cache.get(key(1)));
+        assertNotNull(cache.get(key(fitting + 1)));
+    }
+}